@@ -6,6 +6,7 @@ package it.geosolutions.java2d;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
@@ -16,12 +17,33 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import org.gui.ImageUtils;
+import org.jfree.fx.FXGraphics2D;
 
 public final class DrawingCommands implements Serializable {
 
     private static final long serialVersionUID = 4224204056540669349L;
 
+    /** true to load the binary map (see MapFile) converted from the .ser file if it exists */
+    final static boolean USE_BINARY = "true".equalsIgnoreCase(System.getProperty("DrawingCommands.binary", "false"));
+
+    /** true to build a spatial index (see MapIndex) and only draw the commands visible in the viewport */
+    final static boolean USE_INDEX = "true".equalsIgnoreCase(System.getProperty("DrawingCommands.index", "false"));
+
+    /** true to draw the geometry simplified for the current scale (see MapLevels) */
+    final static boolean USE_LOD = "true".equalsIgnoreCase(System.getProperty("DrawingCommands.lod", "false"));
+
+    /** maximum simplification error (device pixels) */
+    final static double LOD_MAX_ERROR = Double.parseDouble(System.getProperty("DrawingCommands.lodMaxError", "0.5"));
+
+    /** threads used by prepareCommands (1 = sequential, 0 = available processors) */
+    final static int PREPARE_THREADS = Integer.getInteger("DrawingCommands.prepareThreads", 1);
+
+    /** minimum number of commands prepared by a fork/join task */
+    private final static int PREPARE_MIN_COMMANDS = 256;
+
     /* members */
     int width;
     int height;
@@ -34,6 +56,18 @@ public final class DrawingCommands implements Serializable {
     transient int imgWidth = 0;
     transient int imgHeight = 0;
     transient Rectangle2D.Double clip;
+    /** geometry of the compacted commands (see compact()) */
+    transient MapGeometry geometry = null;
+    /** spatial index of the commands (or of the geometry shapes) */
+    transient MapIndex index = null;
+    /** true to draw all the commands even if indexed */
+    transient boolean noCulling = false;
+    /** true to draw the geometry simplified for the current scale (null = USE_LOD) */
+    transient Boolean lod = null;
+    /** simplified levels of the geometry (built lazily) */
+    transient MapLevels levels = null;
+    /** clipped (ie invisible) shapes found by the last prepareCommands */
+    transient int clipped = 0;
 
     public DrawingCommands(int width, int height, ArrayList<DrawingCommand> commands) {
         this.width = width;
@@ -43,6 +77,9 @@ public final class DrawingCommands implements Serializable {
 
     public void dispose() {
         this.prepared = false;
+        // the geometry is kept: it replaces the commands once compacted
+        this.index = null;
+        this.levels = null;
         final ArrayList<DrawingCommand> _commands = commands;
 
         for (int i = 0, len = _commands.size(); i < len; i++) {
@@ -52,7 +89,8 @@ public final class DrawingCommands implements Serializable {
 
     @Override
     public String toString() {
-        return "DrawingCommands{" + "width=" + width + ", height=" + height + ", commands=" + commands.size() + '}';
+        return "DrawingCommands{" + "width=" + width + ", height=" + height + ", commands=" + commands.size()
+                + ((geometry != null) ? ", geometry=" + geometry : "") + '}';
     }
 
     public AffineTransform getAt() {
@@ -75,55 +113,206 @@ public final class DrawingCommands implements Serializable {
     }
 
     public void prepareCommands(final boolean doClip, final boolean doOverrideWindingRule, final int windingRule) {
-        if (!prepared) {
-            int n = 0;
-
-            final boolean isWarmup = BaseTest.isWarmup;
-
-            // filter commands:
-            final Rectangle2D clip = (doClip && !isWarmup) ? new Rectangle2D.Double(0d, 0d, width, height) : null;
-            final Rectangle2D sizeRanges = (!isWarmup) ? MapConst.sizeRanges : null;
+        prepareCommands(doClip, doOverrideWindingRule, windingRule, PREPARE_THREADS);
+    }
 
-            final ArrayList<DrawingCommand> _commands = commands;
+    /**
+     * Prepares the commands (filter, transform and winding rule) using the
+     * given number of threads (1 = sequential, 0 = available processors),
+     * see prepare().
+     */
+    public void prepareCommands(final boolean doClip, final boolean doOverrideWindingRule, final int windingRule,
+                                final int threads) {
+        if (!prepared) {
+            final int n = prepareWithoutIndex(doClip, doOverrideWindingRule, windingRule, threads);
 
-            for (int i = 0, len = _commands.size(); i < len; i++) {
-                if (_commands.get(i).filter(clip, sizeRanges)) {
-                    n++;
-                }
-            }
             if (n != 0) {
                 System.out.println("prepareCommands: clipped (ie invisible) shapes = " + n);
             }
 
-            // Prepare transforms:
-            prepareCommandsForAffineTransform();
-
-            if (doOverrideWindingRule) {
-                // Update winding Rule:
-                for (int i = 0, len = _commands.size(); i < len; i++) {
-                    _commands.get(i).setWindingRule(windingRule);
-                }
-            }
+            prepareIndex();
 
             prepared = true;
         }
     }
 
+    /**
+     * Filters, transforms and sets the winding rule of the commands as
+     * prepareCommands() but without logging nor building the index (used by
+     * PrepareBenchmark to time the preparation alone)
+     *
+     * @return the number of clipped shapes
+     */
+    int prepareWithoutIndex(final boolean doClip, final boolean doOverrideWindingRule, final int windingRule,
+                            final int threads) {
+        final boolean isWarmup = BaseTest.isWarmup;
+
+        // filter commands:
+        final Rectangle2D clip = (doClip && !isWarmup) ? new Rectangle2D.Double(0d, 0d, width, height) : null;
+        final Rectangle2D sizeRanges = (!isWarmup) ? MapConst.sizeRanges : null;
+
+        final int n = prepare(threads, true, clip, sizeRanges, doOverrideWindingRule, windingRule);
+        clipped = n;
+        return n;
+    }
+
     public void prepareCommandsForAffineTransform() {
         if (!prepared) {
-            final ArrayList<DrawingCommand> _commands = commands;
-
             // Prepare transforms:
-            final AffineTransform _at = getAt();
+            prepare(PREPARE_THREADS, false, null, null, false, 0);
+
+            prepared = true;
+        }
+    }
+
+    /**
+     * Prepares every command in the same order as the sequential loops
+     * (filter if doFilter, transform then winding rule if overridden). With
+     * more than one thread, the command list is split in ranges prepared by
+     * a fork/join pool, each command being prepared by a single task.
+     *
+     * @return the number of clipped shapes
+     */
+    private int prepare(final int threads, final boolean doFilter,
+                        final Rectangle2D clip, final Rectangle2D sizeRanges,
+                        final boolean doOverrideWindingRule, final int windingRule) {
+        final int parallelism = (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
 
-            for (int i = 0, len = _commands.size(); i < len; i++) {
-                _commands.get(i).prepareTransform(_at);
+        final ArrayList<DrawingCommand> _commands = commands;
+        final int len = _commands.size();
+
+        final PrepareTask task = new PrepareTask(_commands, 0, len,
+                (parallelism > 1) ? Math.max(PREPARE_MIN_COMMANDS, len / (8 * parallelism)) : len,
+                doFilter, clip, sizeRanges, getAt(), doOverrideWindingRule, windingRule);
+
+        if (parallelism <= 1) {
+            // single range: no pool
+            return task.compute().intValue();
+        }
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(task).intValue();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Prepares the commands [from, to[ (split in sub tasks above the
+     * threshold) and returns the number of clipped shapes
+     */
+    private static final class PrepareTask extends RecursiveTask<Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<DrawingCommand> commands;
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final boolean doFilter;
+        private final Rectangle2D clip;
+        private final Rectangle2D sizeRanges;
+        private final AffineTransform at;
+        private final boolean doOverrideWindingRule;
+        private final int windingRule;
+
+        PrepareTask(final ArrayList<DrawingCommand> commands, final int from, final int to, final int threshold,
+                    final boolean doFilter, final Rectangle2D clip, final Rectangle2D sizeRanges,
+                    final AffineTransform at, final boolean doOverrideWindingRule, final int windingRule) {
+            this.commands = commands;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.doFilter = doFilter;
+            this.clip = clip;
+            this.sizeRanges = sizeRanges;
+            this.at = at;
+            this.doOverrideWindingRule = doOverrideWindingRule;
+            this.windingRule = windingRule;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from > threshold) {
+                final int mid = (from + to) >>> 1;
+                final PrepareTask left = new PrepareTask(commands, from, mid, threshold,
+                        doFilter, clip, sizeRanges, at, doOverrideWindingRule, windingRule);
+                final PrepareTask right = new PrepareTask(commands, mid, to, threshold,
+                        doFilter, clip, sizeRanges, at, doOverrideWindingRule, windingRule);
+                left.fork();
+                final int n = right.compute().intValue();
+                return Integer.valueOf(n + left.join().intValue());
             }
+            int n = 0;
+            for (int i = from; i < to; i++) {
+                final DrawingCommand command = commands.get(i);
+                if (doFilter && command.filter(clip, sizeRanges)) {
+                    n++;
+                }
+                command.prepareTransform(at);
+                if (doOverrideWindingRule) {
+                    command.setWindingRule(windingRule);
+                }
+            }
+            return Integer.valueOf(n);
+        }
+    }
 
-            prepared = true;
+    /**
+     * Replaces the DrawingCommand instances (and their Shape object graphs)
+     * by their geometry stored as a struct of arrays (see MapGeometry). It
+     * must be called after prepareCommands() to keep its filters (clipped
+     * shapes); the commands are then drawn by FXGraphics2D only.
+     */
+    public void compact() {
+        if (geometry == null) {
+            geometry = MapRecorder.record(this);
+            commands = new ArrayList<DrawingCommand>(0);
+            levels = null;
+            // index the shapes instead of the commands:
+            if (index != null) {
+                index = null;
+                prepareIndex();
+            }
         }
     }
 
+    /**
+     * Builds the spatial index of the geometry shapes or of the drawing
+     * commands (their bounds are given by executing them once on a
+     * MapBoundsTarget).
+     */
+    private void prepareIndex() {
+        if (USE_INDEX && (index == null)) {
+            final long start = System.nanoTime();
+            index = (geometry != null) ? MapIndex.forShapes(geometry) : MapIndex.forCommands(MapBoundsTarget.record(this));
+            System.out.println("prepareIndex: " + index + " built in "
+                    + BaseTest.Result.toMillis(System.nanoTime() - start) + " ms");
+        }
+    }
+
+    /**
+     * Enables or disables the viewport culling (if the commands are indexed)
+     */
+    public void setCulling(final boolean enabled) {
+        this.noCulling = !enabled;
+    }
+
+    public boolean isCulling() {
+        return !noCulling;
+    }
+
+    /**
+     * Enables or disables the level of detail simplification (if compacted)
+     */
+    public void setLod(final boolean enabled) {
+        this.lod = Boolean.valueOf(enabled);
+    }
+
+    public boolean isLod() {
+        return (lod != null) ? lod.booleanValue() : USE_LOD;
+    }
+
     public Image prepareImage() {
         return prepareImage(Integer.MAX_VALUE, Integer.MAX_VALUE);
     }
@@ -184,6 +373,51 @@ public final class DrawingCommands implements Serializable {
         }
     }
 
+    /**
+     * Renders the drawing commands into the given device area only (pan 
+     * scenario): the area is cleared and used as clip, the other pixels are
+     * left untouched.
+     */
+    public void execute(final Graphics2D graphics, final AffineTransform animAt, final Rectangle area) {
+        // reset graphics (transform / image):
+        graphics.setTransform(MapConst.IDENTITY);
+        graphics.setBackground(Color.WHITE);
+        graphics.setClip(area);
+
+        // Disable antialiasing:
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        graphics.clearRect(area.x, area.y, area.width, area.height);
+
+        // Enable antialiasing:
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        graphics.setTransform(animAt);
+        graphics.setColor(Color.RED);
+        graphics.setStroke(MapConst.STROKE_THIN);
+        graphics.drawRect(0, 0, width, height); // original size
+
+        if (clip != null) {
+            graphics.clip(clip);
+        }
+
+        if (geometry != null) {
+            drawGeometry(graphics, animAt, area);
+            return;
+        }
+
+        final ArrayList<DrawingCommand> _commands = commands;
+        final MapIndex _index = (noCulling) ? null : index;
+
+        if ((_index != null) && _index.query(animAt, area, clip)) {
+            executeVisible(graphics, animAt, false, _index.getVisible());
+            return;
+        }
+
+        for (int i = 0, len = _commands.size(); i < len; i++) {
+            _commands.get(i).execute(graphics, animAt, false);
+        }
+    }
+
     public void execute(final Graphics2D graphics, final AffineTransform animAt) {
         // reset graphics (transform / image):
         graphics.setTransform(MapConst.IDENTITY);
@@ -219,15 +453,84 @@ public final class DrawingCommands implements Serializable {
             graphics.setClip(clip);
         }
 
+        final Rectangle2D area = new Rectangle2D.Double(0d, 0d, imgWidth, imgHeight);
+
+        if (geometry != null) {
+            drawGeometry(graphics, _at, area);
+            return;
+        }
+
         final ArrayList<DrawingCommand> _commands = commands;
         final boolean usePreparedTx = this.prepared && (animAt == null);
+        final MapIndex _index = (noCulling) ? null : index;
+
+        if ((_index != null) && _index.query(_at, area, clip)) {
+            executeVisible(graphics, _at, usePreparedTx, _index.getVisible());
+            return;
+        }
 
         for (int i = 0, len = _commands.size(); i < len; i++) {
             _commands.get(i).execute(graphics, _at, usePreparedTx);
         }
     }
 
+    /**
+     * Executes the commands marked in the visible bitmap, in order
+     */
+    private void executeVisible(final Graphics2D graphics, final AffineTransform at,
+                                final boolean usePreparedTx, final long[] visible) {
+        final ArrayList<DrawingCommand> _commands = commands;
+
+        for (int w = 0; w < visible.length; w++) {
+            for (long word = visible[w]; word != 0L; word &= word - 1L) {
+                _commands.get((w << 6) + Long.numberOfTrailingZeros(word)).execute(graphics, at, usePreparedTx);
+            }
+        }
+    }
+
+    /**
+     * Draws the compacted geometry under the current transform and clip,
+     * only the shapes visible in the device area if indexed and simplified
+     * for the transform scale if lod is enabled.
+     */
+    private void drawGeometry(final Graphics2D graphics, final AffineTransform at, final Rectangle2D area) {
+        if (!(graphics instanceof FXGraphics2D)) {
+            throw new UnsupportedOperationException("Compacted commands can only be drawn by FXGraphics2D");
+        }
+        final MapGeometry _geometry;
+        if (isLod()) {
+            if (levels == null) {
+                levels = new MapLevels(geometry, LOD_MAX_ERROR);
+            }
+            _geometry = levels.select(at);
+        } else {
+            _geometry = geometry;
+        }
+        final MapIndex _index = (noCulling) ? null : index;
+
+        if ((_index != null) && _index.query(at, area, clip)) {
+            final long[] visible = _index.getVisible();
+            ((FXGraphics2D) graphics).drawCommands((target, tx) -> _geometry.replay(target, tx, visible));
+        } else {
+            ((FXGraphics2D) graphics).drawCommands(_geometry);
+        }
+    }
+
     public static DrawingCommands load(File input) throws IOException, ClassNotFoundException {
+        if (input.getName().endsWith(MapFile.EXTENSION)) {
+            return MapFile.load(input);
+        }
+        if (USE_BINARY) {
+            final File binary = MapFile.getBinaryFile(input);
+            if (binary.isFile()) {
+                return MapFile.load(binary);
+            }
+        }
+        return loadSerialized(input);
+    }
+
+    static DrawingCommands loadSerialized(File input) throws IOException, ClassNotFoundException {
+        final long start = System.nanoTime();
         ObjectInputStream ois = null;
         try {
             ois = new ObjectInputStream(new FileInputStream(input));
@@ -235,7 +538,8 @@ public final class DrawingCommands implements Serializable {
             dc.name = input.getName();
             dc.file = input;
 
-            System.out.println("Loaded DrawingCommands: " + String.valueOf(dc));
+            System.out.println("Loaded DrawingCommands: " + String.valueOf(dc) + " in "
+                    + BaseTest.Result.toMillis(System.nanoTime() - start) + " ms");
 
             return dc;
 
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * MapBench project (GPLv2 + CP)
+ ******************************************************************************/
+package it.geosolutions.java2d;
+
+import static it.geosolutions.java2d.BaseTest.getSortedFiles;
+import java.awt.geom.AffineTransform;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.image.WritableImage;
+import org.jfree.fx.FXGraphics2D;
+
+/**
+ * Measures the level of detail simplification (see MapLevels) on each map
+ * with the real JavaFX rendering: for every zoom factor (1, 1/2 ... 1/64),
+ * the compacted map is drawn by FXGraphics2D into a Canvas (the whole map
+ * scaled) and the canvas is rendered by Prism into an image (snapshot), with
+ * DrawingCommands.lod off then on (maximum error given by
+ * -DDrawingCommands.lodMaxError, 0.5 px by default). The segment counts,
+ * the frame times (median) and the speedup are reported per zoom and per
+ * map.
+ *
+ * Usage: LodBenchmark [file.ser | file.mapbin]* (the files of the profile
+ * if none).
+ */
+@SuppressWarnings("UseOfSystemOutOrSystemErr")
+public final class LodBenchmark {
+
+    private final static int WARMUP = Integer.getInteger("LodBenchmark.warmup", 10);
+    private final static int PASSES = Integer.getInteger("LodBenchmark.passes", 30);
+    private final static int ZOOMS = 7;
+
+    public static void main(String[] args) throws Exception {
+        Locale.setDefault(Locale.US);
+
+        final File[] files;
+        if (args.length == 0) {
+            files = getSortedFiles();
+        } else {
+            files = new File[args.length];
+            for (int i = 0; i < args.length; i++) {
+                files[i] = new File(args[i]);
+            }
+        }
+        System.out.println("LodBenchmark: maxError = " + DrawingCommands.LOD_MAX_ERROR
+                + " px passes = " + PASSES);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        Platform.startup(started::countDown);
+        started.await();
+
+        try {
+            for (File file : files) {
+                final DrawingCommands dc = DrawingCommands.load(file);
+                dc.prepareCommands(true, MapConst.doUseWindingRule, MapConst.customWindingRule);
+                dc.compact();
+
+                // canvas and snapshots need the FX application thread:
+                final FutureTask<Void> task = new FutureTask<Void>(() -> {
+                    benchmark(file.getName(), dc);
+                    return null;
+                });
+                Platform.runLater(task);
+                task.get();
+
+                dc.dispose();
+            }
+        } finally {
+            Platform.exit();
+        }
+    }
+
+    private static void benchmark(final String name, final DrawingCommands dc) {
+        final MapGeometry geometry = dc.geometry;
+        double totalRef = 0.0;
+        double totalLod = 0.0;
+
+        for (int z = 0; z < ZOOMS; z++) {
+            final double scale = 1.0 / (1 << z);
+            final AffineTransform at = AffineTransform.getScaleInstance(scale, scale);
+            final int w = Math.max(1, (int) Math.ceil(dc.width * scale));
+            final int h = Math.max(1, (int) Math.ceil(dc.height * scale));
+
+            final Canvas canvas = new Canvas(w, h);
+            new Scene(new Group(canvas));
+            final FXGraphics2D g2 = new FXGraphics2D(canvas.getGraphicsContext2D());
+            final WritableImage image = new WritableImage(w, h);
+            dc.prepareWindow(w, h);
+
+            dc.setLod(false);
+            final double ref = run(dc, g2, canvas, image, at);
+            dc.setLod(true);
+            final double time = run(dc, g2, canvas, image, at);
+
+            final int level = dc.levels.getLevel(at);
+            final long segments = dc.levels.select(at).getSegmentCount();
+            final long refSegments = geometry.getSegmentCount();
+            totalRef += ref;
+            totalLod += time;
+
+            System.out.println(String.format("%-40s zoom: 1/%-3d level: %2d segments: %9d / %9d (%5.1f %%) "
+                    + "time: %8.3f / %8.3f ms speedup: %5.2f",
+                    name, 1 << z, level, segments, refSegments,
+                    (100.0 * segments) / Math.max(1L, refSegments), time, ref, ref / time));
+        }
+        System.out.println(String.format("%-40s all zooms: time: %8.3f / %8.3f ms speedup: %5.2f",
+                name, totalLod, totalRef, totalRef / totalLod));
+        System.out.println(dc.levels);
+    }
+
+    /**
+     * @return frame time in milliseconds (median pass): drawing into the
+     * canvas and rendering it (snapshot)
+     */
+    private static double run(final DrawingCommands dc, final FXGraphics2D g2, final Canvas canvas,
+                              final WritableImage image, final AffineTransform at) {
+        final long[] nanos = new long[PASSES];
+
+        for (int pass = -WARMUP; pass < PASSES; pass++) {
+            final long start = System.nanoTime();
+
+            dc.execute(g2, at);
+            canvas.snapshot(null, image);
+
+            final long elapsed = System.nanoTime() - start;
+
+            if (pass >= 0) {
+                nanos[pass] = elapsed;
+            }
+        }
+        Arrays.sort(nanos);
+        return nanos[PASSES / 2] / 1e6;
+    }
+}
@@ -0,0 +1,448 @@
+/*******************************************************************************
+ * MapBench project (GPLv2 + CP)
+ ******************************************************************************/
+package it.geosolutions.java2d;
+
+import java.awt.RenderingHints;
+import java.util.ArrayList;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.effect.BlendMode;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.ArcType;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+import javafx.scene.text.Font;
+import org.jfree.fx.FXGraphics2D;
+import org.jfree.fx.FXHints;
+import org.jfree.fx.FXRenderTarget;
+
+/**
+ * Render target that only keeps the bounds (x0, y0, x1, y1) of the
+ * primitives sent by FXGraphics2D for each drawing command: no coordinate
+ * is stored, so the commands can be indexed (see MapIndex) without
+ * recording their geometry.
+ *
+ * The bounds are conservative: strokes are enlarged by their (miter) join
+ * extent, curves and arcs by their control points or bounding box, and text
+ * by its font size per character (no text layout). Images are bounded by
+ * their destination rectangle.
+ *
+ * @author bourgesl
+ */
+final class MapBoundsTarget implements FXRenderTarget {
+
+    /* members */
+    private final double width;
+    private final double height;
+    // current state:
+    private State state = new State();
+    private final ArrayList<State> stack = new ArrayList<State>();
+    // current path bounds (transformed):
+    private double px0;
+    private double py0;
+    private double px1;
+    private double py1;
+    // command bounds:
+    private final float[] bounds;
+    private int command = 0;
+
+    MapBoundsTarget(final double width, final double height, final int commandCount) {
+        this.width = width;
+        this.height = height;
+        this.bounds = new float[4 * commandCount];
+        for (int i = 0; i < bounds.length; i += 4) {
+            bounds[i] = Float.POSITIVE_INFINITY;
+            bounds[i + 1] = Float.POSITIVE_INFINITY;
+            bounds[i + 2] = Float.NEGATIVE_INFINITY;
+            bounds[i + 3] = Float.NEGATIVE_INFINITY;
+        }
+        beginPath();
+    }
+
+    /**
+     * @return the bounds (x0, y0, x1, y1) of each drawing command executed
+     * by FXGraphics2D (without the preparation filters)
+     */
+    static float[] record(final DrawingCommands dc) {
+        final ArrayList<DrawingCommand> _commands = dc.commands;
+        final MapBoundsTarget target = new MapBoundsTarget(dc.width, dc.height, _commands.size());
+        final FXGraphics2D g2 = new FXGraphics2D(target);
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        g2.setRenderingHint(FXHints.KEY_CLIP_CULLING, Boolean.FALSE);
+
+        for (int i = 0, len = _commands.size(); i < len; i++) {
+            target.command = i;
+            _commands.get(i).execute(g2, MapConst.IDENTITY, false);
+        }
+        return target.bounds;
+    }
+
+    @Override
+    public double getWidth() {
+        return width;
+    }
+
+    @Override
+    public double getHeight() {
+        return height;
+    }
+
+    @Override
+    public Canvas getCanvas() {
+        return null;
+    }
+
+    @Override
+    public void save() {
+        stack.add(new State(state));
+    }
+
+    @Override
+    public void restore() {
+        if (!stack.isEmpty()) {
+            state = stack.remove(stack.size() - 1);
+        }
+    }
+
+    @Override
+    public void setFill(final Paint p) {
+        // bounds only
+    }
+
+    @Override
+    public void setStroke(final Paint p) {
+        // bounds only
+    }
+
+    @Override
+    public void setLineWidth(final double lw) {
+        state.lineWidth = lw;
+    }
+
+    @Override
+    public void setLineCap(final StrokeLineCap cap) {
+        // the join extent covers the square caps
+    }
+
+    @Override
+    public void setLineJoin(final StrokeLineJoin join) {
+        state.lineJoin = join;
+    }
+
+    @Override
+    public void setMiterLimit(final double ml) {
+        state.miterLimit = ml;
+    }
+
+    @Override
+    public void setLineDashes(final double[] dashes) {
+        // bounds only
+    }
+
+    @Override
+    public void setLineDashOffset(final double dashOffset) {
+        // bounds only
+    }
+
+    @Override
+    public void setGlobalAlpha(final double alpha) {
+        // bounds only
+    }
+
+    @Override
+    public void setGlobalBlendMode(final BlendMode op) {
+        // bounds only
+    }
+
+    @Override
+    public void setFont(final Font f) {
+        state.fontSize = f.getSize();
+    }
+
+    @Override
+    public void setTransform(final double mxx, final double myx, final double mxy, final double myy,
+                             final double mxt, final double myt) {
+        final State s = state;
+        s.mxx = mxx;
+        s.myx = myx;
+        s.mxy = mxy;
+        s.myy = myy;
+        s.mxt = mxt;
+        s.myt = myt;
+    }
+
+    @Override
+    public void beginPath() {
+        px0 = Double.POSITIVE_INFINITY;
+        py0 = Double.POSITIVE_INFINITY;
+        px1 = Double.NEGATIVE_INFINITY;
+        py1 = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Adds the transformed point to the path bounds
+     */
+    private void point(final double x, final double y) {
+        final State s = state;
+        final double tx = s.mxx * x + s.mxy * y + s.mxt;
+        final double ty = s.myx * x + s.myy * y + s.myt;
+        if (tx < px0) {
+            px0 = tx;
+        }
+        if (tx > px1) {
+            px1 = tx;
+        }
+        if (ty < py0) {
+            py0 = ty;
+        }
+        if (ty > py1) {
+            py1 = ty;
+        }
+    }
+
+    @Override
+    public void moveTo(final double x0, final double y0) {
+        point(x0, y0);
+    }
+
+    @Override
+    public void lineTo(final double x1, final double y1) {
+        point(x1, y1);
+    }
+
+    @Override
+    public void quadraticCurveTo(final double xc, final double yc, final double x1, final double y1) {
+        point(xc, yc);
+        point(x1, y1);
+    }
+
+    @Override
+    public void bezierCurveTo(final double xc1, final double yc1, final double xc2, final double yc2,
+                              final double x1, final double y1) {
+        point(xc1, yc1);
+        point(xc2, yc2);
+        point(x1, y1);
+    }
+
+    @Override
+    public void closePath() {
+        // no new point
+    }
+
+    @Override
+    public void rect(final double x, final double y, final double w, final double h) {
+        point(x, y);
+        point(x + w, y);
+        point(x + w, y + h);
+        point(x, y + h);
+    }
+
+    @Override
+    public void fill() {
+        addPath(false);
+    }
+
+    @Override
+    public void stroke() {
+        addPath(true);
+    }
+
+    @Override
+    public void clip() {
+        // the clip is ignored (DrawingCommands sets its own clip)
+    }
+
+    @Override
+    public void clearRect(final double x, final double y, final double w, final double h) {
+        // the background is cleared by DrawingCommands
+    }
+
+    @Override
+    public void fillRect(final double x, final double y, final double w, final double h) {
+        box(x, y, w, h, false);
+    }
+
+    @Override
+    public void strokeRect(final double x, final double y, final double w, final double h) {
+        box(x, y, w, h, true);
+    }
+
+    @Override
+    public void fillRoundRect(final double x, final double y, final double w, final double h,
+                              final double arcWidth, final double arcHeight) {
+        box(x, y, w, h, false);
+    }
+
+    @Override
+    public void strokeRoundRect(final double x, final double y, final double w, final double h,
+                                final double arcWidth, final double arcHeight) {
+        box(x, y, w, h, true);
+    }
+
+    @Override
+    public void fillOval(final double x, final double y, final double w, final double h) {
+        box(x, y, w, h, false);
+    }
+
+    @Override
+    public void strokeOval(final double x, final double y, final double w, final double h) {
+        box(x, y, w, h, true);
+    }
+
+    @Override
+    public void fillArc(final double x, final double y, final double w, final double h,
+                        final double startAngle, final double arcExtent, final ArcType closure) {
+        box(x, y, w, h, false);
+    }
+
+    @Override
+    public void strokeArc(final double x, final double y, final double w, final double h,
+                          final double startAngle, final double arcExtent, final ArcType closure) {
+        box(x, y, w, h, true);
+    }
+
+    @Override
+    public void strokeLine(final double x1, final double y1, final double x2, final double y2) {
+        final double x0 = px0;
+        final double y0 = py0;
+        final double x1p = px1;
+        final double y1p = py1;
+        beginPath();
+        point(x1, y1);
+        point(x2, y2);
+        addPath(true);
+        setPath(x0, y0, x1p, y1p);
+    }
+
+    @Override
+    public void fillPolygon(final double[] xPoints, final double[] yPoints, final int nPoints) {
+        polygon(xPoints, yPoints, nPoints, false);
+    }
+
+    @Override
+    public void strokePolygon(final double[] xPoints, final double[] yPoints, final int nPoints) {
+        polygon(xPoints, yPoints, nPoints, true);
+    }
+
+    @Override
+    public void strokePolyline(final double[] xPoints, final double[] yPoints, final int nPoints) {
+        polygon(xPoints, yPoints, nPoints, true);
+    }
+
+    @Override
+    public void fillText(final String text, final double x, final double y) {
+        // no layout: at most one em per character, ascent and descent below 2 em:
+        final double size = state.fontSize;
+        box(x - size, y - 2.0 * size, size * (text.length() + 2), 3.0 * size, false);
+    }
+
+    @Override
+    public void drawImage(final Image img, final double x, final double y, final double w, final double h) {
+        box(x, y, w, h, false);
+    }
+
+    @Override
+    public void drawImage(final Image img, final double sx, final double sy, final double sw, final double sh,
+                          final double dx, final double dy, final double dw, final double dh) {
+        box(dx, dy, dw, dh, false);
+    }
+
+    private void polygon(final double[] xPoints, final double[] yPoints, final int nPoints,
+                         final boolean stroked) {
+        final double x0 = px0;
+        final double y0 = py0;
+        final double x1 = px1;
+        final double y1 = py1;
+        beginPath();
+        for (int i = 0; i < nPoints; i++) {
+            point(xPoints[i], yPoints[i]);
+        }
+        addPath(stroked);
+        setPath(x0, y0, x1, y1);
+    }
+
+    /**
+     * Adds the transformed rectangle (bounding box of a primitive) to the
+     * command bounds
+     */
+    private void box(final double x, final double y, final double w, final double h, final boolean stroked) {
+        final double x0 = px0;
+        final double y0 = py0;
+        final double x1 = px1;
+        final double y1 = py1;
+        beginPath();
+        rect(x, y, w, h);
+        addPath(stroked);
+        setPath(x0, y0, x1, y1);
+    }
+
+    /**
+     * Restores the current path bounds (the fillXXX / strokeXXX methods do
+     * not change the current path)
+     */
+    private void setPath(final double x0, final double y0, final double x1, final double y1) {
+        px0 = x0;
+        py0 = y0;
+        px1 = x1;
+        py1 = y1;
+    }
+
+    /**
+     * Adds the path bounds (enlarged by the stroke if stroked) to the
+     * command bounds
+     */
+    private void addPath(final boolean stroked) {
+        if (px0 > px1) {
+            // empty path
+            return;
+        }
+        double pad = 0.0;
+        if (stroked) {
+            final State s = state;
+            pad = 0.5 * s.lineWidth * ((s.lineJoin == StrokeLineJoin.MITER)
+                    ? Math.max(s.miterLimit, Math.sqrt(2.0)) : Math.sqrt(2.0))
+                    * MapLevels.getMaxScale(s.mxx, s.myx, s.mxy, s.myy);
+        }
+        final float[] b = bounds;
+        final int c = 4 * command;
+        b[c] = Math.min(b[c], (float) (px0 - pad));
+        b[c + 1] = Math.min(b[c + 1], (float) (py0 - pad));
+        b[c + 2] = Math.max(b[c + 2], (float) (px1 + pad));
+        b[c + 3] = Math.max(b[c + 3], (float) (py1 + pad));
+    }
+
+    /**
+     * The state saved / restored by the target
+     */
+    private static final class State {
+
+        double mxx = 1.0;
+        double myx = 0.0;
+        double mxy = 0.0;
+        double myy = 1.0;
+        double mxt = 0.0;
+        double myt = 0.0;
+        double lineWidth = 1.0;
+        StrokeLineJoin lineJoin = StrokeLineJoin.MITER;
+        double miterLimit = 10.0;
+        double fontSize = 12.0;
+
+        State() {
+        }
+
+        State(final State s) {
+            this.mxx = s.mxx;
+            this.myx = s.myx;
+            this.mxy = s.mxy;
+            this.myy = s.myy;
+            this.mxt = s.mxt;
+            this.myt = s.myt;
+            this.lineWidth = s.lineWidth;
+            this.lineJoin = s.lineJoin;
+            this.miterLimit = s.miterLimit;
+            this.fontSize = s.fontSize;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * MapBench project (GPLv2 + CP)
+ ******************************************************************************/
+package it.geosolutions.java2d;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Drawing command loaded from a binary map (see MapFile): the shapes drawn
+ * or filled by the original command, each with its color, stroke and
+ * composite, in the order of the original calls.
+ *
+ * filter() hides the command if the union of its shape bounds (without the
+ * stroke width) does not intersect the clip or if its width or height is
+ * outside the size ranges ([minX, maxX] for the width, [minY, maxY] for the
+ * height). prepareTransform() transforms the shapes once and scales the
+ * strokes (width and dashes) by the square root of the transform
+ * determinant.
+ *
+ * The instances are not serializable (BasicStroke and AlphaComposite are
+ * not): binary maps are converted from the .ser files, not the reverse.
+ *
+ * @author bourgesl
+ */
+final class MapCommand extends DrawingCommand {
+
+    private static final long serialVersionUID = 1L;
+
+    /* members */
+    private final Shape[] shapes;
+    /** fill or draw (stroke) per shape */
+    private final boolean[] filled;
+    private final Color[] colors;
+    /** stroke per shape (null for filled shapes) */
+    private final BasicStroke[] strokes;
+    private final AlphaComposite[] composites;
+    /** union of the shape bounds */
+    private final Rectangle2D bounds;
+    private boolean visible = true;
+    // prepared transform:
+    private transient Shape[] txShapes = null;
+    private transient BasicStroke[] txStrokes = null;
+
+    MapCommand(final Shape[] shapes, final boolean[] filled, final Color[] colors,
+               final BasicStroke[] strokes, final AlphaComposite[] composites,
+               final Rectangle2D bounds) {
+        this.shapes = shapes;
+        this.filled = filled;
+        this.colors = colors;
+        this.strokes = strokes;
+        this.composites = composites;
+        this.bounds = bounds;
+    }
+
+    int getShapeCount() {
+        return shapes.length;
+    }
+
+    @Override
+    public boolean filter(final Rectangle2D clip, final Rectangle2D sizeRanges) {
+        visible = (shapes.length != 0);
+
+        if (visible && (clip != null)) {
+            visible = (bounds.getMaxX() >= clip.getMinX()) && (bounds.getMinX() <= clip.getMaxX())
+                    && (bounds.getMaxY() >= clip.getMinY()) && (bounds.getMinY() <= clip.getMaxY());
+        }
+        if (visible && (sizeRanges != null)) {
+            final double w = bounds.getWidth();
+            final double h = bounds.getHeight();
+            visible = (w >= sizeRanges.getMinX()) && (w <= sizeRanges.getMaxX())
+                    && (h >= sizeRanges.getMinY()) && (h <= sizeRanges.getMaxY());
+        }
+        return !visible && (shapes.length != 0);
+    }
+
+    @Override
+    public void prepareTransform(final AffineTransform at) {
+        if ((at == null) || at.isIdentity()) {
+            txShapes = null;
+            txStrokes = null;
+            return;
+        }
+        final double scale = Math.sqrt(Math.abs(at.getDeterminant()));
+        final int n = shapes.length;
+        final Shape[] _txShapes = new Shape[n];
+        final BasicStroke[] _txStrokes = new BasicStroke[n];
+
+        for (int i = 0; i < n; i++) {
+            _txShapes[i] = at.createTransformedShape(shapes[i]);
+
+            final BasicStroke s = strokes[i];
+            if (s != null) {
+                _txStrokes[i] = scale(s, scale);
+            }
+        }
+        txShapes = _txShapes;
+        txStrokes = _txStrokes;
+    }
+
+    private static BasicStroke scale(final BasicStroke s, final double scale) {
+        float[] dashes = s.getDashArray();
+        if (dashes != null) {
+            dashes = dashes.clone();
+            for (int i = 0; i < dashes.length; i++) {
+                dashes[i] *= scale;
+            }
+        }
+        return new BasicStroke((float) (s.getLineWidth() * scale), s.getEndCap(), s.getLineJoin(),
+                s.getMiterLimit(), dashes, (float) (s.getDashPhase() * scale));
+    }
+
+    @Override
+    public void setWindingRule(final int windingRule) {
+        setWindingRule(shapes, windingRule);
+        if (txShapes != null) {
+            setWindingRule(txShapes, windingRule);
+        }
+    }
+
+    private static void setWindingRule(final Shape[] shapes, final int windingRule) {
+        for (Shape shape : shapes) {
+            if (shape instanceof Path2D) {
+                ((Path2D) shape).setWindingRule(windingRule);
+            }
+        }
+    }
+
+    @Override
+    public void dispose() {
+        txShapes = null;
+        txStrokes = null;
+    }
+
+    @Override
+    public void execute(final Graphics2D graphics, final AffineTransform at, final boolean usePreparedTx) {
+        if (!visible) {
+            return;
+        }
+        final Shape[] _txShapes = txShapes;
+        final boolean useTx = usePreparedTx && (_txShapes != null);
+        if (useTx) {
+            graphics.setTransform(MapConst.IDENTITY);
+        }
+        final Shape[] _shapes = (useTx) ? _txShapes : shapes;
+        final BasicStroke[] _strokes = (useTx) ? txStrokes : strokes;
+
+        for (int i = 0; i < _shapes.length; i++) {
+            graphics.setComposite(composites[i]);
+            graphics.setColor(colors[i]);
+
+            if (filled[i]) {
+                graphics.fill(_shapes[i]);
+            } else {
+                graphics.setStroke(_strokes[i]);
+                graphics.draw(_shapes[i]);
+            }
+        }
+        if (useTx) {
+            graphics.setTransform(at);
+        }
+    }
+}
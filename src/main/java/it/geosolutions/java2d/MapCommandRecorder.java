@@ -0,0 +1,670 @@
+/*******************************************************************************
+ * MapBench project (GPLv2 + CP)
+ ******************************************************************************/
+package it.geosolutions.java2d;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Paint;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.text.AttributedCharacterIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import static it.geosolutions.java2d.MapFile.*;
+
+/**
+ * Graphics2D that records the shapes drawn or filled by the drawing commands
+ * with their color, stroke, composite and winding rule (see MapFile), in
+ * user space: nothing is rasterized or transformed.
+ *
+ * Only what MapCommand can draw again is supported: shapes drawn with a
+ * Color, a BasicStroke and an AlphaComposite under the identity transform,
+ * without clip nor rendering hint change. Text, images, other paints and
+ * strokes throw an UnsupportedOperationException (the map is then not
+ * converted).
+ *
+ * @author bourgesl
+ */
+final class MapCommandRecorder extends Graphics2D {
+
+    /* members */
+    private final Recording recording;
+    // current state:
+    private Paint paint;
+    private Color background = Color.WHITE;
+    private Stroke stroke;
+    private Composite composite = AlphaComposite.SrcOver;
+    private final AffineTransform transform;
+    private Shape clip = null;
+    private Font font = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+    private final RenderingHints hints;
+    /** true if the hints differ from the initial hints */
+    private boolean hintsChanged = false;
+
+    /**
+     * Creates a recorder whose initial state is the one set by
+     * DrawingCommands.execute() before the commands (red color, thin stroke
+     * and antialiasing)
+     */
+    MapCommandRecorder() {
+        this.recording = new Recording();
+        this.paint = Color.RED;
+        this.stroke = MapConst.STROKE_THIN;
+        this.transform = new AffineTransform();
+        this.hints = new RenderingHints(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    }
+
+    private MapCommandRecorder(final MapCommandRecorder parent) {
+        this.recording = parent.recording;
+        this.paint = parent.paint;
+        this.background = parent.background;
+        this.stroke = parent.stroke;
+        this.composite = parent.composite;
+        this.transform = new AffineTransform(parent.transform);
+        this.clip = parent.clip;
+        this.font = parent.font;
+        this.hints = (RenderingHints) parent.hints.clone();
+        this.hintsChanged = parent.hintsChanged;
+    }
+
+    /**
+     * Records the given drawing commands (as executed by DrawingCommands
+     * without preparation)
+     */
+    static Recording record(final DrawingCommands dc) {
+        final MapCommandRecorder g2 = new MapCommandRecorder();
+        final ArrayList<DrawingCommand> _commands = dc.commands;
+
+        for (int i = 0, len = _commands.size(); i < len; i++) {
+            _commands.get(i).execute(g2, MapConst.IDENTITY, false);
+            g2.recording.endCommand();
+        }
+        return g2.recording;
+    }
+
+    /**
+     * Adds the shape with the current state to the recording
+     */
+    private void record(final Shape shape, final boolean filled) {
+        if (!transform.isIdentity()) {
+            throw new UnsupportedOperationException("Unsupported transform: " + transform);
+        }
+        if (clip != null) {
+            throw new UnsupportedOperationException("Unsupported clip: " + clip);
+        }
+        if (hintsChanged) {
+            throw new UnsupportedOperationException("Unsupported rendering hints: " + hints);
+        }
+        if (!(paint instanceof Color)) {
+            throw new UnsupportedOperationException("Unsupported paint: " + paint);
+        }
+        if (!(composite instanceof AlphaComposite)) {
+            throw new UnsupportedOperationException("Unsupported composite: " + composite);
+        }
+        if (!filled && !(stroke instanceof BasicStroke)) {
+            throw new UnsupportedOperationException("Unsupported stroke: " + stroke);
+        }
+        recording.addShape(shape, filled, ((Color) paint).getRGB(),
+                (filled) ? null : (BasicStroke) stroke, (AlphaComposite) composite);
+    }
+
+    @Override
+    public void draw(final Shape s) {
+        record(s, false);
+    }
+
+    @Override
+    public void fill(final Shape s) {
+        record(s, true);
+    }
+
+    @Override
+    public void drawLine(final int x1, final int y1, final int x2, final int y2) {
+        draw(new Line2D.Double(x1, y1, x2, y2));
+    }
+
+    @Override
+    public void drawRect(final int x, final int y, final int width, final int height) {
+        draw(new Rectangle2D.Double(x, y, width, height));
+    }
+
+    @Override
+    public void fillRect(final int x, final int y, final int width, final int height) {
+        fill(new Rectangle2D.Double(x, y, width, height));
+    }
+
+    @Override
+    public void drawRoundRect(final int x, final int y, final int width, final int height,
+                              final int arcWidth, final int arcHeight) {
+        draw(new RoundRectangle2D.Double(x, y, width, height, arcWidth, arcHeight));
+    }
+
+    @Override
+    public void fillRoundRect(final int x, final int y, final int width, final int height,
+                              final int arcWidth, final int arcHeight) {
+        fill(new RoundRectangle2D.Double(x, y, width, height, arcWidth, arcHeight));
+    }
+
+    @Override
+    public void drawOval(final int x, final int y, final int width, final int height) {
+        draw(new Ellipse2D.Double(x, y, width, height));
+    }
+
+    @Override
+    public void fillOval(final int x, final int y, final int width, final int height) {
+        fill(new Ellipse2D.Double(x, y, width, height));
+    }
+
+    @Override
+    public void drawArc(final int x, final int y, final int width, final int height,
+                        final int startAngle, final int arcAngle) {
+        draw(new Arc2D.Double(x, y, width, height, startAngle, arcAngle, Arc2D.OPEN));
+    }
+
+    @Override
+    public void fillArc(final int x, final int y, final int width, final int height,
+                        final int startAngle, final int arcAngle) {
+        fill(new Arc2D.Double(x, y, width, height, startAngle, arcAngle, Arc2D.PIE));
+    }
+
+    @Override
+    public void drawPolyline(final int[] xPoints, final int[] yPoints, final int nPoints) {
+        if (nPoints > 0) {
+            final Path2D p = new Path2D.Float();
+            p.moveTo(xPoints[0], yPoints[0]);
+            for (int i = 1; i < nPoints; i++) {
+                p.lineTo(xPoints[i], yPoints[i]);
+            }
+            draw(p);
+        }
+    }
+
+    @Override
+    public void drawPolygon(final int[] xPoints, final int[] yPoints, final int nPoints) {
+        draw(new Polygon(xPoints, yPoints, nPoints));
+    }
+
+    @Override
+    public void fillPolygon(final int[] xPoints, final int[] yPoints, final int nPoints) {
+        fill(new Polygon(xPoints, yPoints, nPoints));
+    }
+
+    @Override
+    public void clearRect(final int x, final int y, final int width, final int height) {
+        throw new UnsupportedOperationException("clearRect is not supported by the binary map format");
+    }
+
+    @Override
+    public void copyArea(final int x, final int y, final int width, final int height, final int dx, final int dy) {
+        throw new UnsupportedOperationException("copyArea is not supported by the binary map format");
+    }
+
+    @Override
+    public void drawString(final String str, final int x, final int y) {
+        throw new UnsupportedOperationException("Text is not supported by the binary map format");
+    }
+
+    @Override
+    public void drawString(final String str, final float x, final float y) {
+        throw new UnsupportedOperationException("Text is not supported by the binary map format");
+    }
+
+    @Override
+    public void drawString(final AttributedCharacterIterator iterator, final int x, final int y) {
+        throw new UnsupportedOperationException("Text is not supported by the binary map format");
+    }
+
+    @Override
+    public void drawString(final AttributedCharacterIterator iterator, final float x, final float y) {
+        throw new UnsupportedOperationException("Text is not supported by the binary map format");
+    }
+
+    @Override
+    public void drawGlyphVector(final GlyphVector g, final float x, final float y) {
+        throw new UnsupportedOperationException("Text is not supported by the binary map format");
+    }
+
+    @Override
+    public boolean drawImage(final Image img, final AffineTransform xform, final ImageObserver obs) {
+        throw new UnsupportedOperationException("Images are not supported by the binary map format");
+    }
+
+    @Override
+    public void drawImage(final BufferedImage img, final BufferedImageOp op, final int x, final int y) {
+        throw new UnsupportedOperationException("Images are not supported by the binary map format");
+    }
+
+    @Override
+    public void drawRenderedImage(final RenderedImage img, final AffineTransform xform) {
+        throw new UnsupportedOperationException("Images are not supported by the binary map format");
+    }
+
+    @Override
+    public void drawRenderableImage(final RenderableImage img, final AffineTransform xform) {
+        throw new UnsupportedOperationException("Images are not supported by the binary map format");
+    }
+
+    @Override
+    public boolean drawImage(final Image img, final int x, final int y, final ImageObserver observer) {
+        throw new UnsupportedOperationException("Images are not supported by the binary map format");
+    }
+
+    @Override
+    public boolean drawImage(final Image img, final int x, final int y, final int width, final int height,
+                             final ImageObserver observer) {
+        throw new UnsupportedOperationException("Images are not supported by the binary map format");
+    }
+
+    @Override
+    public boolean drawImage(final Image img, final int x, final int y, final Color bgcolor,
+                             final ImageObserver observer) {
+        throw new UnsupportedOperationException("Images are not supported by the binary map format");
+    }
+
+    @Override
+    public boolean drawImage(final Image img, final int x, final int y, final int width, final int height,
+                             final Color bgcolor, final ImageObserver observer) {
+        throw new UnsupportedOperationException("Images are not supported by the binary map format");
+    }
+
+    @Override
+    public boolean drawImage(final Image img, final int dx1, final int dy1, final int dx2, final int dy2,
+                             final int sx1, final int sy1, final int sx2, final int sy2,
+                             final ImageObserver observer) {
+        throw new UnsupportedOperationException("Images are not supported by the binary map format");
+    }
+
+    @Override
+    public boolean drawImage(final Image img, final int dx1, final int dy1, final int dx2, final int dy2,
+                             final int sx1, final int sy1, final int sx2, final int sy2,
+                             final Color bgcolor, final ImageObserver observer) {
+        throw new UnsupportedOperationException("Images are not supported by the binary map format");
+    }
+
+    @Override
+    public boolean hit(final Rectangle rect, final Shape s, final boolean onStroke) {
+        final Shape shape = (onStroke) ? stroke.createStrokedShape(s) : s;
+        return transform.createTransformedShape(shape).intersects(rect);
+    }
+
+    @Override
+    public GraphicsConfiguration getDeviceConfiguration() {
+        return null;
+    }
+
+    @Override
+    public Graphics create() {
+        return new MapCommandRecorder(this);
+    }
+
+    @Override
+    public void dispose() {
+        // nothing to release
+    }
+
+    @Override
+    public Color getColor() {
+        return (paint instanceof Color) ? (Color) paint : null;
+    }
+
+    @Override
+    public void setColor(final Color c) {
+        if (c != null) {
+            this.paint = c;
+        }
+    }
+
+    @Override
+    public Paint getPaint() {
+        return paint;
+    }
+
+    @Override
+    public void setPaint(final Paint paint) {
+        if (paint != null) {
+            this.paint = paint;
+        }
+    }
+
+    @Override
+    public void setPaintMode() {
+        setComposite(AlphaComposite.SrcOver);
+    }
+
+    @Override
+    public void setXORMode(final Color c) {
+        throw new UnsupportedOperationException("XOR mode is not supported by the binary map format");
+    }
+
+    @Override
+    public Composite getComposite() {
+        return composite;
+    }
+
+    @Override
+    public void setComposite(final Composite comp) {
+        if (comp == null) {
+            throw new IllegalArgumentException("Null composite");
+        }
+        this.composite = comp;
+    }
+
+    @Override
+    public Color getBackground() {
+        return background;
+    }
+
+    @Override
+    public void setBackground(final Color color) {
+        this.background = color;
+    }
+
+    @Override
+    public Stroke getStroke() {
+        return stroke;
+    }
+
+    @Override
+    public void setStroke(final Stroke s) {
+        if (s == null) {
+            throw new IllegalArgumentException("Null stroke");
+        }
+        this.stroke = s;
+    }
+
+    @Override
+    public Font getFont() {
+        return font;
+    }
+
+    @Override
+    public void setFont(final Font font) {
+        if (font != null) {
+            this.font = font;
+        }
+    }
+
+    @Override
+    public FontMetrics getFontMetrics(final Font f) {
+        throw new UnsupportedOperationException("Text is not supported by the binary map format");
+    }
+
+    @Override
+    public FontRenderContext getFontRenderContext() {
+        return new FontRenderContext(new AffineTransform(transform),
+                hints.get(RenderingHints.KEY_TEXT_ANTIALIASING), hints.get(RenderingHints.KEY_FRACTIONALMETRICS));
+    }
+
+    @Override
+    public Object getRenderingHint(final RenderingHints.Key hintKey) {
+        return hints.get(hintKey);
+    }
+
+    @Override
+    public void setRenderingHint(final RenderingHints.Key hintKey, final Object hintValue) {
+        final Object old = hints.put(hintKey, hintValue);
+        if ((old == null) ? (hintValue != null) : !old.equals(hintValue)) {
+            hintsChanged = true;
+        }
+    }
+
+    @Override
+    public void setRenderingHints(final Map<?, ?> hints) {
+        this.hints.clear();
+        addRenderingHints(hints);
+        hintsChanged = true;
+    }
+
+    @Override
+    public void addRenderingHints(final Map<?, ?> hints) {
+        for (Map.Entry<?, ?> e : hints.entrySet()) {
+            setRenderingHint((RenderingHints.Key) e.getKey(), e.getValue());
+        }
+    }
+
+    @Override
+    public RenderingHints getRenderingHints() {
+        return (RenderingHints) hints.clone();
+    }
+
+    @Override
+    public void translate(final int x, final int y) {
+        transform.translate(x, y);
+    }
+
+    @Override
+    public void translate(final double tx, final double ty) {
+        transform.translate(tx, ty);
+    }
+
+    @Override
+    public void rotate(final double theta) {
+        transform.rotate(theta);
+    }
+
+    @Override
+    public void rotate(final double theta, final double x, final double y) {
+        transform.rotate(theta, x, y);
+    }
+
+    @Override
+    public void scale(final double sx, final double sy) {
+        transform.scale(sx, sy);
+    }
+
+    @Override
+    public void shear(final double shx, final double shy) {
+        transform.shear(shx, shy);
+    }
+
+    @Override
+    public void transform(final AffineTransform tx) {
+        transform.concatenate(tx);
+    }
+
+    @Override
+    public void setTransform(final AffineTransform tx) {
+        transform.setTransform(tx);
+    }
+
+    @Override
+    public AffineTransform getTransform() {
+        return new AffineTransform(transform);
+    }
+
+    @Override
+    public Shape getClip() {
+        return clip;
+    }
+
+    @Override
+    public Rectangle getClipBounds() {
+        return (clip != null) ? clip.getBounds() : null;
+    }
+
+    @Override
+    public void clipRect(final int x, final int y, final int width, final int height) {
+        clip(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void setClip(final int x, final int y, final int width, final int height) {
+        setClip(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void setClip(final Shape clip) {
+        this.clip = clip;
+    }
+
+    @Override
+    public void clip(final Shape s) {
+        // any clip is unsupported (only checked when drawing):
+        this.clip = s;
+    }
+
+    /**
+     * The recorded shapes stored as a struct of arrays (see MapFile) with
+     * the strokes and composites in tables:
+     * - commandOffsets: the first shape per command (commandCount + 1 entries)
+     * - shapeColors: the color per shape (ARGB)
+     * - shapeStrokes: the stroke index per shape (-1 for filled shapes)
+     * - shapeComposites: the composite index per shape
+     * - shapeFlags: FLAG_FILLED, the shape type and the winding rule
+     * - segOffsets / coordOffsets: the first segment / coordinate per shape
+     * - segTypes: the segment types (PathIterator codes)
+     * - coords: the segment coordinates (x, y pairs) or the rectangle
+     *   (x, y, width, height) or line (x1, y1, x2, y2) coordinates
+     */
+    static final class Recording {
+
+        final ArrayList<BasicStroke> strokes = new ArrayList<BasicStroke>();
+        private final HashMap<BasicStroke, Integer> strokeIndex = new HashMap<BasicStroke, Integer>();
+        final ArrayList<AlphaComposite> composites = new ArrayList<AlphaComposite>();
+        private final HashMap<AlphaComposite, Integer> compositeIndex = new HashMap<AlphaComposite, Integer>();
+        int commandCount = 0;
+        int[] commandOffsets = new int[1024 + 1];
+        int shapeCount = 0;
+        int[] shapeColors = new int[1024];
+        int[] shapeStrokes = new int[1024];
+        int[] shapeComposites = new int[1024];
+        int[] shapeFlags = new int[1024];
+        int[] segOffsets = new int[1024 + 1];
+        int[] coordOffsets = new int[1024 + 1];
+        byte[] segTypes = new byte[16 * 1024];
+        int segCount = 0;
+        double[] coords = new double[32 * 1024];
+        int coordCount = 0;
+        private final double[] pts = new double[6];
+
+        int getDashCount() {
+            int n = 0;
+            for (BasicStroke s : strokes) {
+                if (s.getDashArray() != null) {
+                    n += s.getDashArray().length;
+                }
+            }
+            return n;
+        }
+
+        void endCommand() {
+            if (commandCount + 1 == commandOffsets.length) {
+                commandOffsets = Arrays.copyOf(commandOffsets, (commandCount << 1) + 1);
+            }
+            commandOffsets[++commandCount] = shapeCount;
+        }
+
+        void addShape(final Shape shape, final boolean filled, final int argb,
+                      final BasicStroke stroke, final AlphaComposite composite) {
+            final int n = shapeCount;
+            if (n + 1 == segOffsets.length) {
+                final int capacity = n << 1;
+                shapeColors = Arrays.copyOf(shapeColors, capacity);
+                shapeStrokes = Arrays.copyOf(shapeStrokes, capacity);
+                shapeComposites = Arrays.copyOf(shapeComposites, capacity);
+                shapeFlags = Arrays.copyOf(shapeFlags, capacity);
+                segOffsets = Arrays.copyOf(segOffsets, capacity + 1);
+                coordOffsets = Arrays.copyOf(coordOffsets, capacity + 1);
+            }
+            final int type;
+            final int windingRule;
+
+            if (shape instanceof Rectangle2D) {
+                final Rectangle2D r = (Rectangle2D) shape;
+                type = SHAPE_RECT;
+                windingRule = Path2D.WIND_NON_ZERO;
+                coords(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+            } else if (shape instanceof Line2D) {
+                final Line2D l = (Line2D) shape;
+                type = SHAPE_LINE;
+                windingRule = Path2D.WIND_NON_ZERO;
+                coords(l.getX1(), l.getY1(), l.getX2(), l.getY2());
+            } else {
+                type = (shape instanceof Path2D.Float) ? SHAPE_PATH_FLOAT : SHAPE_PATH_DOUBLE;
+                windingRule = segments(shape.getPathIterator(null));
+            }
+            shapeColors[n] = argb;
+            shapeStrokes[n] = (stroke != null) ? index(strokes, strokeIndex, stroke) : -1;
+            shapeComposites[n] = index(composites, compositeIndex, composite);
+            shapeFlags[n] = ((filled) ? FLAG_FILLED : 0) | (type << SHAPE_TYPE_SHIFT)
+                    | (windingRule << WINDING_SHIFT);
+            segOffsets[n + 1] = segCount;
+            coordOffsets[n + 1] = coordCount;
+            shapeCount = n + 1;
+        }
+
+        private void coords(final double a, final double b, final double c, final double d) {
+            ensureCoords(4);
+            coords[coordCount++] = a;
+            coords[coordCount++] = b;
+            coords[coordCount++] = c;
+            coords[coordCount++] = d;
+        }
+
+        /**
+         * Appends the path segments
+         * @return the winding rule of the path
+         */
+        private int segments(final PathIterator it) {
+            final double[] c = pts;
+            for (; !it.isDone(); it.next()) {
+                final int type = it.currentSegment(c);
+                final int n = coordCount(type);
+
+                if (segCount == segTypes.length) {
+                    segTypes = Arrays.copyOf(segTypes, segCount << 1);
+                }
+                segTypes[segCount++] = (byte) type;
+                ensureCoords(n);
+                System.arraycopy(c, 0, coords, coordCount, n);
+                coordCount += n;
+            }
+            return it.getWindingRule();
+        }
+
+        private void ensureCoords(final int n) {
+            if (coordCount + n > coords.length) {
+                coords = Arrays.copyOf(coords, coords.length << 1);
+            }
+        }
+
+        private static <K> int index(final ArrayList<K> list, final HashMap<K, Integer> map, final K key) {
+            Integer i = map.get(key);
+            if (i == null) {
+                i = Integer.valueOf(list.size());
+                list.add(key);
+                map.put(key, i);
+            }
+            return i.intValue();
+        }
+    }
+}
@@ -4,13 +4,19 @@
 package it.geosolutions.java2d;
 
 import static it.geosolutions.java2d.BaseTest.getSortedFiles;
+import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Locale;
 import javafx.application.Application;
+import org.jfree.fx.FXCommandBuffer;
+import org.jfree.fx.FXGraphics2D;
+import org.jfree.fx.FXHints;
 
 /**
  *
@@ -26,6 +32,24 @@ public final class MapDemoFX extends BenchTest {
         Run
     }
 
+    public enum PanMode {
+        /** rotate animation (default) */
+        none,
+        /** pan by re-rendering the whole canvas */
+        full,
+        /** pan by shifting the canvas with copyArea() and rendering the exposed strip */
+        copyArea
+    }
+
+    final static PanMode PAN_MODE = PanMode.valueOf(System.getProperty("MapDemoFX.pan", "none"));
+    final static int PAN_STEP = Integer.getInteger("MapDemoFX.panStep", 8);
+
+    /** true to replace the drawing commands by their geometry arrays (see DrawingCommands.compact()) */
+    final static boolean USE_COMPACT = "true".equalsIgnoreCase(System.getProperty("MapDemoFX.compact", "false"));
+
+    /** true to record the drawing commands once and replay them in the rotate animation */
+    final static boolean USE_REPLAY = "true".equalsIgnoreCase(System.getProperty("MapDemoFX.replay", "false"));
+
     static MapDemoFX INSTANCE = null;
 
     public static void main(String[] args) throws Exception {
@@ -50,6 +74,10 @@ public final class MapDemoFX extends BenchTest {
             System.exit(1);
         }
 
+        System.out.println("Pan mode: " + PAN_MODE + " (step = " + PAN_STEP + " px)");
+        System.out.println("Replay recorded commands: " + USE_REPLAY);
+        System.out.println("Compact drawing commands: " + USE_COMPACT);
+
         startTests();
 
         // Create singleton
@@ -103,6 +131,11 @@ public final class MapDemoFX extends BenchTest {
     AffineTransform animAt = null;
 
     double cx, cy, hx, hy;
+    int panOffset = 0;
+    final Rectangle panStrip = new Rectangle();
+    FXCommandBuffer recorded = null;
+    AffineTransform recordedAtInverse = null;
+    final AffineTransform replayAt = new AffineTransform();
 
     MapDemoFX() {
         this.dataFiles = getSortedFiles();
@@ -157,6 +190,10 @@ public final class MapDemoFX extends BenchTest {
              */
 
             System.out.println("Loading drawing commands from file: " + file.getAbsolutePath());
+            // release the previous map before measuring the heap:
+            commands = null;
+            final long heapBaseline = (USE_COMPACT) ? usedHeap() : 0L;
+
             commands = DrawingCommands.load(file);
 
             System.out.println("drawing[" + file.getName() + "][width = " + commands.getWidth()
@@ -170,10 +207,18 @@ public final class MapDemoFX extends BenchTest {
             commands.prepareCommands(MapConst.doClip, MapConst.doUseWindingRule, MapConst.customWindingRule);
             commands.setAt(null);
 
+            if (USE_COMPACT) {
+                compact(heapBaseline);
+            }
+
             commands.prepareWindow(MapDemoFXApplication.WIDTH, MapDemoFXApplication.HEIGHT);
 
             // Prepare the animation affine transform:
             resetAnimTx();
+
+            if (USE_REPLAY && (g2 instanceof FXGraphics2D)) {
+                record(g2);
+            }
         }
 
         String sRes;
@@ -292,6 +337,14 @@ public final class MapDemoFX extends BenchTest {
                 // reset AT:
                 resetAnimTx();
 
+                resetGraphicsStats(g2);
+                if (commands.index != null) {
+                    commands.index.resetStatistics();
+                }
+                if (commands.levels != null) {
+                    commands.levels.resetStatistics();
+                }
+
             } else if (iter >= nOps) {
                 res = new Result(commands.name, 1, nOps, opss, nanoss);
                 res.totalTime = Result.toMillis(now - lastStartTime);
@@ -302,6 +355,14 @@ public final class MapDemoFX extends BenchTest {
                 System.out.println(sRes);
                 sbRes.append(sRes).append('\n');
 
+                dumpGraphicsStats(g2);
+                if (commands.index != null) {
+                    System.out.println("Spatial index: " + commands.index);
+                }
+                if (commands.levels != null) {
+                    System.out.println("Levels of detail: " + commands.levels);
+                }
+
                 nTest++;
                 totalMed += res.nsPerOpMed;
                 totalPct95 += res.nsPerOpPct95;
@@ -329,10 +390,18 @@ public final class MapDemoFX extends BenchTest {
             }
         }
         // Render
-        commands.execute(g2, animAt);
+        if (PAN_MODE == PanMode.none) {
+            if (recorded != null) {
+                replay(g2);
+            } else {
+                commands.execute(g2, animAt);
+            }
 
-        // animate graphics:
-        animAt.rotate(ANGLE_STEP, cx, cy);
+            // animate graphics:
+            animAt.rotate(ANGLE_STEP, cx, cy);
+        } else {
+            renderPan(g2);
+        }
 
         /*
         // TODO: use next file
@@ -347,6 +416,139 @@ public final class MapDemoFX extends BenchTest {
         return false;
     }
 
+    /**
+     * Replaces the drawing commands by their geometry arrays and reports the
+     * heap used by the map before and after.
+     */
+    void compact(final long heapBaseline) {
+        final long before = usedHeap() - heapBaseline;
+        final long start = System.nanoTime();
+
+        commands.compact();
+
+        final double elapsed = Result.toMillis(System.nanoTime() - start);
+        final long after = usedHeap() - heapBaseline;
+
+        System.out.println(String.format("Heap footprint [%s]: commands = %.2f MB, compact = %.2f MB"
+                + " (arrays = %.2f MB) built in %.1f ms: %s", file.getName(), before / 1e6, after / 1e6,
+                commands.geometry.getBytes() / 1e6, elapsed, commands.geometry));
+    }
+
+    /**
+     * @return the heap used after garbage collection
+     */
+    static long usedHeap() {
+        final Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * Translates the drawing commands once into a command buffer, with the
+     * initial animation transform.
+     */
+    void record(final Graphics2D g2) {
+        final long start = System.nanoTime();
+
+        recorded = new FXCommandBuffer(MapDemoFXApplication.WIDTH, MapDemoFXApplication.HEIGHT);
+        final FXGraphics2D rg2 = new FXGraphics2D(recorded);
+        rg2.setRenderingHints(g2.getRenderingHints());
+        // keep the shapes outside the initial view (visible once rotated):
+        rg2.setRenderingHint(FXHints.KEY_CLIP_CULLING, Boolean.FALSE);
+        final boolean culling = commands.isCulling();
+        commands.setCulling(false);
+        commands.execute(rg2, animAt);
+        commands.setCulling(culling);
+
+        try {
+            recordedAtInverse = animAt.createInverse();
+        } catch (NoninvertibleTransformException nte) {
+            System.out.println("Unable to replay commands: " + nte.getMessage());
+            recorded = null;
+            return;
+        }
+        System.out.println("Recorded commands: " + recorded + " in "
+                + Result.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    /**
+     * Replays the recorded commands under the animation transform (relative 
+     * to the recorded one).
+     */
+    void replay(final Graphics2D g2) {
+        g2.setTransform(MapConst.IDENTITY);
+        g2.setBackground(Color.WHITE);
+        g2.setClip(null);
+        g2.clearRect(0, 0, MapDemoFXApplication.WIDTH, MapDemoFXApplication.HEIGHT);
+
+        replayAt.setTransform(animAt);
+        replayAt.concatenate(recordedAtInverse);
+        g2.setTransform(replayAt);
+        ((FXGraphics2D) g2).drawCommands(recorded);
+    }
+
+    /**
+     * Pans the map to the left by PAN_STEP pixels per frame: either renders
+     * the whole canvas or shifts the previous frame with copyArea() and only
+     * renders the exposed strip on the right side.
+     */
+    void renderPan(final Graphics2D g2) {
+        final int w = MapDemoFXApplication.WIDTH;
+        final int h = MapDemoFXApplication.HEIGHT;
+        final int step = PAN_STEP;
+
+        if ((iter == 0) || (panOffset + step >= w)) {
+            // start again from the initial view:
+            resetAnimTx();
+            panOffset = 0;
+            commands.execute(g2, animAt);
+            return;
+        }
+        animAt.preConcatenate(AffineTransform.getTranslateInstance(-step, 0.0));
+        panOffset += step;
+
+        if (PAN_MODE == PanMode.copyArea) {
+            g2.setTransform(MapConst.IDENTITY);
+            g2.setClip(null);
+            g2.copyArea(step, 0, w - step, h, -step, 0);
+
+            panStrip.setBounds(w - step, 0, step, h);
+            commands.execute(g2, animAt, panStrip);
+        } else {
+            commands.execute(g2, animAt);
+        }
+    }
+
+    static void resetGraphicsStats(final Graphics2D g2) {
+        if (g2 instanceof FXGraphics2D) {
+            final FXGraphics2D fxg2 = (FXGraphics2D) g2;
+            fxg2.getPaintCache().resetStatistics();
+            fxg2.getContextTracker().resetStatistics();
+            fxg2.getImageCache().resetStatistics();
+            fxg2.getClipCuller().resetStatistics();
+            fxg2.getFontCache().resetStatistics();
+            fxg2.getTextAtlas().resetStatistics();
+            fxg2.getGlyphCache().resetStatistics();
+            fxg2.getStrokeCache().resetStatistics();
+        }
+    }
+
+    static void dumpGraphicsStats(final Graphics2D g2) {
+        if (g2 instanceof FXGraphics2D) {
+            final FXGraphics2D fxg2 = (FXGraphics2D) g2;
+            System.out.println("Paint cache: " + fxg2.getPaintCache());
+            System.out.println("Context state: " + fxg2.getContextTracker());
+            System.out.println("Image cache: " + fxg2.getImageCache());
+            System.out.println("Clip culling: " + fxg2.getClipCuller());
+            System.out.println("Font cache: " + fxg2.getFontCache());
+            System.out.println("Text atlas: " + fxg2.getTextAtlas());
+            System.out.println("Glyph cache: " + fxg2.getGlyphCache());
+            System.out.println("Stroke cache: " + fxg2.getStrokeCache());
+        }
+    }
+
     void showResults() {
 
         System.out.println("WARMUP results:");
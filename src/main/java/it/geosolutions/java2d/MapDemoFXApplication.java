@@ -3,7 +3,10 @@
  ******************************************************************************/
 package it.geosolutions.java2d;
 
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
@@ -11,6 +14,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.scene.Group;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.control.Label;
@@ -24,6 +28,8 @@ import javafx.scene.shape.Shape;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
 import org.jfree.fx.FXGraphics2D;
+import org.jfree.fx.FXHints;
+import org.jfree.fx.FXImageCache;
 
 /**
  * Path.subtract performance issue:
@@ -54,6 +60,8 @@ public final class MapDemoFXApplication extends Application {
     private final static boolean DO_CLIP_EVERY_RENDER = "true".equalsIgnoreCase(System.getProperty("MapBenchFX.doClipEveryRender", "true"));
     private final static boolean USE_COMPLEX_CLIP = "true".equalsIgnoreCase(System.getProperty("MapBenchFX.useComplexClip", "false"));
     private final static boolean USE_COMPLEX_CLIP_TWICE = "true".equalsIgnoreCase(System.getProperty("MapBenchFX.useComplexClipTwice", "false"));
+    private final static boolean USE_CLIP_CULLING = "true".equalsIgnoreCase(System.getProperty("MapBenchFX.useClipCulling", "false"));
+    private final static boolean USE_FRAME_GRAPH = "true".equalsIgnoreCase(System.getProperty("MapBenchFX.frameGraph", "false"));
 
     final static int COMPLEX_CLIP_ELLIPSES = 10;
 
@@ -61,6 +69,8 @@ public final class MapDemoFXApplication extends Application {
         System.out.println("MapBenchFX.doClipEveryRender:   " + DO_CLIP_EVERY_RENDER);
         System.out.println("MapBenchFX.useComplexClip:      " + USE_COMPLEX_CLIP);
         System.out.println("MapBenchFX.useComplexClipTwice: " + USE_COMPLEX_CLIP_TWICE);
+        System.out.println("MapBenchFX.useClipCulling:      " + USE_CLIP_CULLING);
+        System.out.println("MapBenchFX.frameGraph:          " + USE_FRAME_GRAPH);
         System.out.println("COMPLEX_CLIP_ELLIPSES:          " + COMPLEX_CLIP_ELLIPSES);
     }
 
@@ -104,6 +114,7 @@ public final class MapDemoFXApplication extends Application {
     private Label frameRate;
 
     private ChartCanvas canvas;
+    private FrameGraph frameGraph = null;
 
     private List<Ellipse> points = null;
 
@@ -121,6 +132,9 @@ public final class MapDemoFXApplication extends Application {
         if (USE_COMPLEX_CLIP) {
             initPoints();
         }
+        if (USE_FRAME_GRAPH) {
+            frameGraph = new FrameGraph();
+        }
     }
 
     @Override
@@ -139,7 +153,12 @@ public final class MapDemoFXApplication extends Application {
         canvas = new ChartCanvas(WIDTH, HEIGHT);
 
         final StackPane stackPane = new StackPane();
-        stackPane.getChildren().add(canvas);
+        if (frameGraph != null) {
+            // overlay above the map canvas (never shifted by copyArea panning):
+            stackPane.getChildren().add(new Group(canvas, frameGraph.canvas));
+        } else {
+            stackPane.getChildren().add(canvas);
+        }
         if (false) {
             // Bind canvas size to stack pane size. 
             canvas.widthProperty().bind(stackPane.widthProperty());
@@ -213,7 +232,11 @@ public final class MapDemoFXApplication extends Application {
         }
         try {
             // clearBackground();
-            return bench.render(canvas.g2, startNanos, elapsed);
+            final boolean done = bench.render(canvas.g2, startNanos, elapsed);
+            if (frameGraph != null) {
+                frameGraph.draw(elapsed);
+            }
+            return done;
         } catch (Exception e) {
             logger.log(Level.SEVERE, "failure", e);
         }
@@ -227,6 +250,7 @@ public final class MapDemoFXApplication extends Application {
         ChartCanvas(double w, double h) {
             super(w, h);
             this.g2 = new FXGraphics2D(getGraphicsContext2D());
+            this.g2.setRenderingHint(FXHints.KEY_CLIP_CULLING, USE_CLIP_CULLING);
             // Redraw canvas when size changes.
             widthProperty().addListener(e -> setClip());
             heightProperty().addListener(e -> setClip());
@@ -265,6 +289,61 @@ public final class MapDemoFXApplication extends Application {
         }
     }
 
+    /**
+     * Graph of the frame times drawn over the map: its image is shared with
+     * JavaFX (see FXHints.KEY_SHARED_IMAGE_BUFFERS) and one column (1 frame)
+     * is updated per frame through FXImageCache.update(), on the FX thread.
+     * The graph has its own canvas, stacked above the map canvas, so that it
+     * is not shifted with the map by copyArea() (MapDemoFX.pan=copyArea) and
+     * its semi-transparent background is drawn once per frame.
+     */
+    final static class FrameGraph {
+
+        private final static int WIDTH = 300;
+        private final static int HEIGHT = 100;
+        /** vertical scale: 50 ms for the full height */
+        private final static double PX_PER_MS = HEIGHT / 50.0;
+        // premultiplied ARGB:
+        private final static int BACKGROUND = 0x80000000;
+        private final static int BAR = 0xFF00C000;
+        private final static int CURSOR = 0xFFFFFFFF;
+
+        /* members */
+        private final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB_PRE);
+        private final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        final Canvas canvas = new Canvas(WIDTH, HEIGHT);
+        private final FXGraphics2D g2 = new FXGraphics2D(canvas.getGraphicsContext2D());
+        private int column = 0;
+
+        FrameGraph() {
+            Arrays.fill(pixels, BACKGROUND);
+            canvas.relocate(10.0, 10.0);
+            canvas.setMouseTransparent(true);
+            g2.setRenderingHint(FXHints.KEY_SHARED_IMAGE_BUFFERS, Boolean.TRUE);
+        }
+
+        void draw(final long elapsed) {
+            final int x = column;
+            column = (x + 1) % WIDTH;
+            final int bar = (int) Math.min(HEIGHT, Math.round(PX_PER_MS * elapsed / 1e6));
+            final int next = column;
+
+            // the column of this frame and the cursor (next column):
+            final FXImageCache cache = g2.getImageCache();
+            cache.update(image, x, 0, 1, HEIGHT, img -> fillColumn(x, bar));
+            cache.update(image, next, 0, 1, HEIGHT, img -> fillColumn(next, -1));
+
+            canvas.getGraphicsContext2D().clearRect(0.0, 0.0, WIDTH, HEIGHT);
+            g2.drawImage(image, 0, 0, null);
+        }
+
+        private void fillColumn(final int x, final int bar) {
+            for (int y = 0, off = x; y < HEIGHT; y++, off += WIDTH) {
+                pixels[off] = (bar < 0) ? CURSOR : (y >= HEIGHT - bar) ? BAR : BACKGROUND;
+            }
+        }
+    }
+
     private Shape computeComplexClip(final Rectangle rect) {
         final long startTime = System.nanoTime();
 
@@ -0,0 +1,585 @@
+/*******************************************************************************
+ * MapBench project (GPLv2 + CP)
+ ******************************************************************************/
+package it.geosolutions.java2d;
+
+import static it.geosolutions.java2d.BaseTest.getSortedFiles;
+import it.geosolutions.java2d.MapCommandRecorder.Recording;
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Binary map format: the data of the drawing commands (the shapes they draw
+ * or fill with their color, stroke, composite and winding rule, see
+ * MapCommandRecorder), read with FileChannel.map() instead of the
+ * ObjectInputStream deserialization of the .ser files. The loaded commands
+ * are MapCommand instances, prepared and executed like the original ones
+ * on any Graphics2D.
+ *
+ * All values are little-endian and every section starts on a 8 bytes
+ * boundary:
+ * - header (64 bytes): magic, version, width, height, command count, shape
+ *   count, stroke count, composite count, dash count, segment count,
+ *   coordinate count
+ * - stroke table (32 bytes per stroke): line width, miter limit, dash phase
+ *   (float), first dash, dash count (-1 for none), end cap, line join (int),
+ *   padding
+ * - composite table (8 bytes per composite): rule (int), alpha (float)
+ * - dashes (float)
+ * - command offsets: the first shape per command (int, command count + 1)
+ * - shapes (16 bytes per shape): color (ARGB), stroke index (-1 to fill),
+ *   composite index, flags (FLAG_FILLED, shape type, winding rule) (int)
+ * - segment offsets, coordinate offsets (int, shape count + 1)
+ * - coordinates (double): path segments, rectangle (x, y, w, h) or line
+ *   (x1, y1, x2, y2)
+ * - segment types (byte)
+ *
+ * Usage: MapFile [file.ser | directory]* converts the given .ser files (or
+ * the files of the profile if none) to .mapbin files in the same directory.
+ *
+ * @author bourgesl
+ */
+@SuppressWarnings("UseOfSystemOutOrSystemErr")
+public final class MapFile {
+
+    public final static String EXTENSION = ".mapbin";
+
+    final static int MAGIC = 0x4D424658; // MBFX
+    final static int VERSION = 2;
+
+    final static int HEADER_SIZE = 64;
+    final static int STROKE_SIZE = 32;
+    final static int COMPOSITE_SIZE = 8;
+    final static int SHAPE_SIZE = 16;
+
+    /* shape flags */
+    final static int FLAG_FILLED = 1;
+    final static int SHAPE_TYPE_SHIFT = 1;
+    final static int WINDING_SHIFT = 3;
+    private final static int FLAGS_MASK = 0xF;
+
+    /* shape types */
+    final static int SHAPE_PATH_FLOAT = 0;
+    final static int SHAPE_PATH_DOUBLE = 1;
+    final static int SHAPE_RECT = 2;
+    final static int SHAPE_LINE = 3;
+
+    /* section indices in the layout */
+    final static int STROKES = 0;
+    final static int COMPOSITES = 1;
+    final static int DASHES = 2;
+    final static int COMMAND_OFFSETS = 3;
+    final static int SHAPES = 4;
+    final static int SEG_OFFSETS = 5;
+    final static int COORD_OFFSETS = 6;
+    final static int COORDS = 7;
+    final static int SEG_TYPES = 8;
+    final static int END = 9;
+
+    public static void main(String[] args) {
+        Locale.setDefault(Locale.US);
+
+        final ArrayList<File> files = new ArrayList<File>();
+        if (args.length == 0) {
+            for (File file : getSortedFiles()) {
+                files.add(file);
+            }
+        } else {
+            for (String arg : args) {
+                final File file = new File(arg);
+                if (file.isDirectory()) {
+                    final File[] children = file.listFiles();
+                    if (children != null) {
+                        for (File child : children) {
+                            if (child.getName().endsWith(".ser")) {
+                                files.add(child);
+                            }
+                        }
+                    }
+                } else {
+                    files.add(file);
+                }
+            }
+        }
+
+        for (File file : files) {
+            try {
+                convert(file);
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                System.out.println("Unable to convert " + file + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Converts a .ser file to the binary format, compares the load times and
+     * checks that both maps have the same clipped commands (with the clip
+     * and size ranges of prepareCommands)
+     */
+    static void convert(final File input) throws IOException, ClassNotFoundException {
+        final File output = getBinaryFile(input);
+
+        long start = System.nanoTime();
+        final DrawingCommands dc = DrawingCommands.loadSerialized(input);
+        final double serTime = BaseTest.Result.toMillis(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        final Recording recording = MapCommandRecorder.record(dc);
+        final double recordTime = BaseTest.Result.toMillis(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        write(recording, dc.width, dc.height, output);
+        final double writeTime = BaseTest.Result.toMillis(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        final DrawingCommands binary = load(output);
+        final double loadTime = BaseTest.Result.toMillis(System.nanoTime() - start);
+
+        final int serClipped = countClipped(dc);
+        final int binClipped = countClipped(binary);
+
+        System.out.println(String.format("%s: ser = %.1f MB loaded in %.1f ms, binary = %.1f MB"
+                + " (recorded in %.1f ms, written in %.1f ms) loaded in %.1f ms: %d commands, %d shapes,"
+                + " clipped: %d / %d%s",
+                input.getName(), input.length() / 1e6, serTime, output.length() / 1e6,
+                recordTime, writeTime, loadTime, recording.commandCount, recording.shapeCount,
+                binClipped, serClipped, (binClipped != serClipped) ? " (filters differ)" : ""));
+    }
+
+    private static int countClipped(final DrawingCommands dc) {
+        final Rectangle2D clip = new Rectangle2D.Double(0d, 0d, dc.width, dc.height);
+        int n = 0;
+        for (DrawingCommand command : dc.commands) {
+            if (command.filter(clip, MapConst.sizeRanges)) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return the binary file converted from the given .ser file
+     */
+    public static File getBinaryFile(final File input) {
+        String name = input.getName();
+        if (name.endsWith(".ser")) {
+            name = name.substring(0, name.length() - 4);
+        }
+        return new File(input.getParentFile(), name + EXTENSION);
+    }
+
+    /**
+     * Loads the binary file as drawing commands (MapCommand instances)
+     */
+    public static DrawingCommands load(final File input) throws IOException {
+        final long start = System.nanoTime();
+
+        final DrawingCommands dc = read(input);
+        dc.name = input.getName();
+        dc.file = input;
+
+        System.out.println("Loaded DrawingCommands: " + String.valueOf(dc) + " in "
+                + BaseTest.Result.toMillis(System.nanoTime() - start) + " ms");
+        return dc;
+    }
+
+    /**
+     * Writes the recorded commands in the binary format.
+     */
+    static void write(final Recording rec, final int width, final int height, final File output)
+            throws IOException {
+        final int strokeCount = rec.strokes.size();
+        final int compositeCount = rec.composites.size();
+        final int dashCount = rec.getDashCount();
+        final int commandCount = rec.commandCount;
+        final int shapeCount = rec.shapeCount;
+        final int segCount = rec.segCount;
+        final int coordCount = rec.coordCount;
+
+        final int[] layout = layout(strokeCount, compositeCount, dashCount, commandCount, shapeCount,
+                segCount, coordCount);
+
+        final ByteBuffer bb = ByteBuffer.allocate(layout[END]).order(ByteOrder.LITTLE_ENDIAN);
+        bb.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height)
+                .putInt(commandCount).putInt(shapeCount).putInt(strokeCount).putInt(compositeCount)
+                .putInt(dashCount).putInt(segCount).putInt(coordCount);
+
+        int dash = 0;
+        for (int i = 0; i < strokeCount; i++) {
+            final BasicStroke s = rec.strokes.get(i);
+            final float[] dashes = s.getDashArray();
+
+            bb.position(layout[STROKES] + i * STROKE_SIZE);
+            bb.putFloat(s.getLineWidth()).putFloat(s.getMiterLimit()).putFloat(s.getDashPhase());
+            if (dashes != null) {
+                bb.putInt(dash).putInt(dashes.length);
+                for (int j = 0; j < dashes.length; j++) {
+                    bb.putFloat(layout[DASHES] + 4 * dash++, dashes[j]);
+                }
+            } else {
+                bb.putInt(0).putInt(-1);
+            }
+            bb.putInt(s.getEndCap()).putInt(s.getLineJoin());
+        }
+        for (int i = 0; i < compositeCount; i++) {
+            final AlphaComposite c = rec.composites.get(i);
+            bb.putInt(layout[COMPOSITES] + i * COMPOSITE_SIZE, c.getRule());
+            bb.putFloat(layout[COMPOSITES] + i * COMPOSITE_SIZE + 4, c.getAlpha());
+        }
+        slice(bb, layout[COMMAND_OFFSETS], 4 * (commandCount + 1)).asIntBuffer()
+                .put(rec.commandOffsets, 0, commandCount + 1);
+
+        for (int i = 0; i < shapeCount; i++) {
+            bb.position(layout[SHAPES] + i * SHAPE_SIZE);
+            bb.putInt(rec.shapeColors[i]).putInt(rec.shapeStrokes[i]).putInt(rec.shapeComposites[i])
+                    .putInt(rec.shapeFlags[i]);
+        }
+        slice(bb, layout[SEG_OFFSETS], 4 * (shapeCount + 1)).asIntBuffer().put(rec.segOffsets, 0, shapeCount + 1);
+        slice(bb, layout[COORD_OFFSETS], 4 * (shapeCount + 1)).asIntBuffer().put(rec.coordOffsets, 0, shapeCount + 1);
+        slice(bb, layout[COORDS], 8 * coordCount).asDoubleBuffer().put(rec.coords, 0, coordCount);
+        slice(bb, layout[SEG_TYPES], segCount).put(rec.segTypes, 0, segCount);
+
+        bb.clear();
+        try (FileChannel ch = FileChannel.open(output.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (bb.hasRemaining()) {
+                ch.write(bb);
+            }
+        }
+    }
+
+    /**
+     * Maps the binary file in memory, validates it and creates its commands
+     * (an invalid file gives an IOException).
+     */
+    static DrawingCommands read(final File input) throws IOException {
+        try (FileChannel ch = FileChannel.open(input.toPath(), StandardOpenOption.READ)) {
+            final long size = ch.size();
+            if (size < HEADER_SIZE) {
+                throw invalid(input, "truncated header");
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw invalid(input, "too large");
+            }
+            final ByteBuffer bb = ch.map(FileChannel.MapMode.READ_ONLY, 0L, size).order(ByteOrder.LITTLE_ENDIAN);
+
+            if (bb.getInt(0) != MAGIC) {
+                throw invalid(input, "bad magic number");
+            }
+            final int version = bb.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported map file version " + version + ": " + input);
+            }
+            final int width = bb.getInt(8);
+            final int height = bb.getInt(12);
+            final int commandCount = bb.getInt(16);
+            final int shapeCount = bb.getInt(20);
+            final int strokeCount = bb.getInt(24);
+            final int compositeCount = bb.getInt(28);
+            final int dashCount = bb.getInt(32);
+            final int segCount = bb.getInt(36);
+            final int coordCount = bb.getInt(40);
+
+            if ((width | height | commandCount | shapeCount | strokeCount | compositeCount | dashCount
+                    | segCount | coordCount) < 0) {
+                throw invalid(input, "negative count");
+            }
+            final int[] layout = layout(strokeCount, compositeCount, dashCount, commandCount, shapeCount,
+                    segCount, coordCount);
+            if (layout[END] > size) {
+                throw invalid(input, "truncated data");
+            }
+
+            final BasicStroke[] strokes = new BasicStroke[strokeCount];
+            for (int i = 0; i < strokeCount; i++) {
+                strokes[i] = readStroke(input, bb, layout, i, dashCount);
+            }
+
+            final AlphaComposite[] composites = new AlphaComposite[compositeCount];
+            for (int i = 0; i < compositeCount; i++) {
+                final int p = layout[COMPOSITES] + i * COMPOSITE_SIZE;
+                final int rule = bb.getInt(p);
+                final float alpha = bb.getFloat(p + 4);
+                if (rule < AlphaComposite.CLEAR || rule > AlphaComposite.XOR || !(alpha >= 0f && alpha <= 1f)) {
+                    throw invalid(input, "bad composite " + i);
+                }
+                composites[i] = AlphaComposite.getInstance(rule, alpha);
+            }
+
+            final int[] commandOffsets = readOffsets(input, bb, layout[COMMAND_OFFSETS], commandCount, shapeCount,
+                    "command offsets");
+            final int[] segOffsets = readOffsets(input, bb, layout[SEG_OFFSETS], shapeCount, segCount,
+                    "segment offsets");
+            final int[] coordOffsets = readOffsets(input, bb, layout[COORD_OFFSETS], shapeCount, coordCount,
+                    "coordinate offsets");
+
+            final byte[] segTypes = new byte[segCount];
+            slice(bb, layout[SEG_TYPES], segCount).get(segTypes);
+            final double[] coords = new double[coordCount];
+            slice(bb, layout[COORDS], 8 * coordCount).asDoubleBuffer().get(coords);
+
+            final HashMap<Integer, Color> colors = new HashMap<Integer, Color>();
+            final ArrayList<DrawingCommand> commands = new ArrayList<DrawingCommand>(commandCount);
+
+            for (int c = 0; c < commandCount; c++) {
+                final int s0 = commandOffsets[c];
+                final int n = commandOffsets[c + 1] - s0;
+
+                final Shape[] _shapes = new Shape[n];
+                final boolean[] _filled = new boolean[n];
+                final Color[] _colors = new Color[n];
+                final BasicStroke[] _strokes = new BasicStroke[n];
+                final AlphaComposite[] _composites = new AlphaComposite[n];
+                final double[] bounds = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                                         Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+
+                for (int j = 0; j < n; j++) {
+                    final int s = s0 + j;
+                    final int p = layout[SHAPES] + s * SHAPE_SIZE;
+                    final int argb = bb.getInt(p);
+                    final int stroke = bb.getInt(p + 4);
+                    final int composite = bb.getInt(p + 8);
+                    final int flags = bb.getInt(p + 12);
+
+                    if ((flags & ~FLAGS_MASK) != 0) {
+                        throw invalid(input, "bad flags for shape " + s);
+                    }
+                    final boolean filled = (flags & FLAG_FILLED) != 0;
+                    if (filled ? (stroke != -1) : (stroke < 0 || stroke >= strokeCount)) {
+                        throw invalid(input, "bad stroke index for shape " + s);
+                    }
+                    if (composite < 0 || composite >= compositeCount) {
+                        throw invalid(input, "bad composite index for shape " + s);
+                    }
+                    Color color = colors.get(argb);
+                    if (color == null) {
+                        color = new Color(argb, true);
+                        colors.put(argb, color);
+                    }
+                    _shapes[j] = readShape(input, s, (flags >> SHAPE_TYPE_SHIFT) & 3, (flags >> WINDING_SHIFT) & 1,
+                            segTypes, segOffsets[s], segOffsets[s + 1],
+                            coords, coordOffsets[s], coordOffsets[s + 1], bounds);
+                    _filled[j] = filled;
+                    _colors[j] = color;
+                    _strokes[j] = (filled) ? null : strokes[stroke];
+                    _composites[j] = composites[composite];
+                }
+                commands.add(new MapCommand(_shapes, _filled, _colors, _strokes, _composites,
+                        (n != 0) ? new Rectangle2D.Double(bounds[0], bounds[1],
+                                        bounds[2] - bounds[0], bounds[3] - bounds[1])
+                                : new Rectangle2D.Double()));
+            }
+            return new DrawingCommands(width, height, commands);
+        }
+    }
+
+    private static BasicStroke readStroke(final File input, final ByteBuffer bb, final int[] layout,
+                                          final int i, final int dashCount) throws IOException {
+        final int p = layout[STROKES] + i * STROKE_SIZE;
+        final float width = bb.getFloat(p);
+        final float miterLimit = bb.getFloat(p + 4);
+        final float dashPhase = bb.getFloat(p + 8);
+        final int dashStart = bb.getInt(p + 12);
+        final int dashLen = bb.getInt(p + 16);
+        final int cap = bb.getInt(p + 20);
+        final int join = bb.getInt(p + 24);
+
+        if (cap < BasicStroke.CAP_BUTT || cap > BasicStroke.CAP_SQUARE
+                || join < BasicStroke.JOIN_MITER || join > BasicStroke.JOIN_BEVEL
+                || !(width >= 0f && miterLimit >= 1f)) {
+            throw invalid(input, "bad stroke " + i);
+        }
+        float[] dashes = null;
+        if (dashLen != -1) {
+            // dashStart + dashLen <= dashCount without overflow:
+            if (dashLen <= 0 || dashStart < 0 || dashLen > dashCount - dashStart) {
+                throw invalid(input, "bad dashes for stroke " + i);
+            }
+            dashes = new float[dashLen];
+            for (int j = 0; j < dashLen; j++) {
+                dashes[j] = bb.getFloat(layout[DASHES] + 4 * (dashStart + j));
+            }
+        }
+        try {
+            return new BasicStroke(width, cap, join, miterLimit, dashes, dashPhase);
+        } catch (IllegalArgumentException iae) {
+            throw new IOException("Invalid map file (bad stroke " + i + "): " + input, iae);
+        }
+    }
+
+    /**
+     * @return the offsets (count + 1 values) after checking that they start
+     * at 0, never decrease and end at the given total
+     */
+    private static int[] readOffsets(final File input, final ByteBuffer bb, final int pos, final int count,
+                                     final int total, final String name) throws IOException {
+        final int[] offsets = new int[count + 1];
+        slice(bb, pos, 4 * (count + 1)).asIntBuffer().get(offsets);
+
+        if (offsets[0] != 0 || offsets[count] != total) {
+            throw invalid(input, "bad " + name);
+        }
+        for (int i = 0; i < count; i++) {
+            if (offsets[i + 1] < offsets[i]) {
+                throw invalid(input, "bad " + name);
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Creates the shape s from its segments [s0, s1[ and coordinates [c0, c1[
+     * after checking them and adds its control points to the bounds.
+     */
+    private static Shape readShape(final File input, final int s, final int type, final int windingRule,
+                                   final byte[] types, final int s0, final int s1,
+                                   final double[] xy, final int c0, final int c1,
+                                   final double[] bounds) throws IOException {
+        final Shape shape;
+        switch (type) {
+            case SHAPE_RECT:
+            case SHAPE_LINE:
+                if (s1 != s0 || c1 - c0 != 4) {
+                    throw invalid(input, "bad rectangle or line " + s);
+                }
+                if (type == SHAPE_RECT) {
+                    shape = new Rectangle2D.Double(xy[c0], xy[c0 + 1], xy[c0 + 2], xy[c0 + 3]);
+                    addBounds(bounds, xy[c0], xy[c0 + 1]);
+                    addBounds(bounds, xy[c0] + xy[c0 + 2], xy[c0 + 1] + xy[c0 + 3]);
+                } else {
+                    shape = new Line2D.Double(xy[c0], xy[c0 + 1], xy[c0 + 2], xy[c0 + 3]);
+                    addBounds(bounds, xy[c0], xy[c0 + 1]);
+                    addBounds(bounds, xy[c0 + 2], xy[c0 + 3]);
+                }
+                return shape;
+            case SHAPE_PATH_FLOAT:
+            case SHAPE_PATH_DOUBLE:
+                break;
+            default:
+                throw invalid(input, "bad type for shape " + s);
+        }
+        // check the segments first (Path2D throws on a missing moveTo):
+        int n = 0;
+        for (int i = s0; i < s1; i++) {
+            final int t = types[i];
+            if (t < PathIterator.SEG_MOVETO || t > PathIterator.SEG_CLOSE
+                    || (i == s0 && t != PathIterator.SEG_MOVETO)) {
+                throw invalid(input, "bad segment type for shape " + s);
+            }
+            n += coordCount(t);
+        }
+        if (n != c1 - c0) {
+            throw invalid(input, "bad coordinate count for shape " + s);
+        }
+        final Path2D path = (type == SHAPE_PATH_FLOAT)
+                ? new Path2D.Float(windingRule, s1 - s0) : new Path2D.Double(windingRule, s1 - s0);
+        int c = c0;
+        for (int i = s0; i < s1; i++) {
+            switch (types[i]) {
+                case PathIterator.SEG_MOVETO:
+                    path.moveTo(xy[c], xy[c + 1]);
+                    break;
+                case PathIterator.SEG_LINETO:
+                    path.lineTo(xy[c], xy[c + 1]);
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    path.quadTo(xy[c], xy[c + 1], xy[c + 2], xy[c + 3]);
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    path.curveTo(xy[c], xy[c + 1], xy[c + 2], xy[c + 3], xy[c + 4], xy[c + 5]);
+                    break;
+                default:
+                    path.closePath();
+            }
+            c += coordCount(types[i]);
+        }
+        for (int i = c0; i < c1; i += 2) {
+            addBounds(bounds, xy[i], xy[i + 1]);
+        }
+        return path;
+    }
+
+    private static void addBounds(final double[] bounds, final double x, final double y) {
+        bounds[0] = Math.min(bounds[0], x);
+        bounds[1] = Math.min(bounds[1], y);
+        bounds[2] = Math.max(bounds[2], x);
+        bounds[3] = Math.max(bounds[3], y);
+    }
+
+    /**
+     * @return the number of coordinates of the given segment type
+     */
+    static int coordCount(final int type) {
+        switch (type) {
+            case PathIterator.SEG_MOVETO:
+            case PathIterator.SEG_LINETO:
+                return 2;
+            case PathIterator.SEG_QUADTO:
+                return 4;
+            case PathIterator.SEG_CUBICTO:
+                return 6;
+            default:
+                return 0;
+        }
+    }
+
+    private static IOException invalid(final File input, final String reason) {
+        return new IOException("Invalid map file (" + reason + "): " + input);
+    }
+
+    /**
+     * @return the section offsets (and the file size at END)
+     */
+    static int[] layout(final int strokeCount, final int compositeCount, final int dashCount,
+                        final int commandCount, final int shapeCount,
+                        final int segCount, final int coordCount) throws IOException {
+        final long[] sizes = new long[END];
+        sizes[STROKES] = (long) STROKE_SIZE * strokeCount;
+        sizes[COMPOSITES] = (long) COMPOSITE_SIZE * compositeCount;
+        sizes[DASHES] = 4L * dashCount;
+        sizes[COMMAND_OFFSETS] = 4L * (commandCount + 1L);
+        sizes[SHAPES] = (long) SHAPE_SIZE * shapeCount;
+        sizes[SEG_OFFSETS] = 4L * (shapeCount + 1L);
+        sizes[COORD_OFFSETS] = 4L * (shapeCount + 1L);
+        sizes[COORDS] = 8L * coordCount;
+        sizes[SEG_TYPES] = segCount;
+
+        final int[] layout = new int[END + 1];
+        long pos = HEADER_SIZE;
+        for (int i = 0; i < END; i++) {
+            layout[i] = (int) pos;
+            // align the next section on 8 bytes:
+            pos = (pos + sizes[i] + 7L) & ~7L;
+            if (pos > Integer.MAX_VALUE) {
+                throw new IOException("Map too large for the binary format (> 2GB)");
+            }
+        }
+        layout[END] = (int) pos;
+        return layout;
+    }
+
+    private static ByteBuffer slice(final ByteBuffer bb, final int offset, final int length) {
+        final ByteBuffer b = bb.duplicate();
+        b.limit(offset + length).position(offset);
+        return b.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private MapFile() {
+        // utility class
+    }
+}
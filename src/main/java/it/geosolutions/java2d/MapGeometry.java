@@ -0,0 +1,349 @@
+/*******************************************************************************
+ * MapBench project (GPLv2 + CP)
+ ******************************************************************************/
+package it.geosolutions.java2d;
+
+import java.awt.geom.AffineTransform;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import javafx.scene.effect.BlendMode;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+import org.jfree.fx.FXDrawing;
+import org.jfree.fx.FXRenderTarget;
+
+/**
+ * The drawing commands of a map translated once to JavaFX primitives: each
+ * shape is a path that is filled or stroked with one entry of a small
+ * attribute table (color, stroke, alpha and blend mode).
+ *
+ * The shapes are stored as a struct of arrays on the heap (see MapRecorder
+ * and DrawingCommands.compact()), read directly when drawing:
+ * - shapeAttrs: the attribute index per shape (STROKED bit set for strokes)
+ * - shapeCommands: the index of the drawing command that produced the shape
+ * - shapeBounds: the bounds per shape (x0, y0, x1, y1, without the stroke width)
+ * - segOffsets / coordOffsets: the first segment / coordinate per shape
+ *   (shapeCount + 1 entries)
+ * - segTypes: the segment types (PathIterator codes)
+ * - coords: the segment coordinates (x, y pairs)
+ *
+ * @author bourgesl
+ */
+public final class MapGeometry implements FXDrawing {
+
+    /** attribute flag set for the stroked shapes */
+    static final int STROKED = 1 << 31;
+    static final int ATTR_MASK = ~STROKED;
+
+    /* segment types (same codes as PathIterator) */
+    static final byte SEG_MOVETO = 0;
+    static final byte SEG_LINETO = 1;
+    static final byte SEG_QUADTO = 2;
+    static final byte SEG_CUBICTO = 3;
+    static final byte SEG_CLOSE = 4;
+
+    static final StrokeLineCap[] CAPS = StrokeLineCap.values();
+    static final StrokeLineJoin[] JOINS = StrokeLineJoin.values();
+    static final BlendMode[] BLEND_MODES = BlendMode.values();
+
+    /* members */
+    final int width;
+    final int height;
+    final int commandCount;
+    final Attribute[] attributes;
+    final int shapeCount;
+    final IntBuffer shapeAttrs;
+    final IntBuffer shapeCommands;
+    final FloatBuffer shapeBounds;
+    final IntBuffer segOffsets;
+    final IntBuffer coordOffsets;
+    final ByteBuffer segTypes;
+    final FloatBuffer coords;
+    /* arrays of the heap buffers */
+    private final int[] attrArray;
+    private final int[] segOffsetArray;
+    private final int[] coordOffsetArray;
+    private final byte[] segTypeArray;
+    private final float[] coordArray;
+
+    MapGeometry(final int width, final int height, final int commandCount,
+                final Attribute[] attributes, final int shapeCount,
+                final IntBuffer shapeAttrs, final IntBuffer shapeCommands,
+                final FloatBuffer shapeBounds,
+                final IntBuffer segOffsets, final IntBuffer coordOffsets,
+                final ByteBuffer segTypes, final FloatBuffer coords) {
+        this.width = width;
+        this.height = height;
+        this.commandCount = commandCount;
+        this.attributes = attributes;
+        this.shapeCount = shapeCount;
+        this.shapeAttrs = shapeAttrs;
+        this.shapeCommands = shapeCommands;
+        this.shapeBounds = shapeBounds;
+        this.segOffsets = segOffsets;
+        this.coordOffsets = coordOffsets;
+        this.segTypes = segTypes;
+        this.coords = coords;
+
+        // the heap buffers wrap whole arrays (see MapRecorder):
+        this.attrArray = shapeAttrs.array();
+        this.segOffsetArray = segOffsets.array();
+        this.coordOffsetArray = coordOffsets.array();
+        this.segTypeArray = segTypes.array();
+        this.coordArray = coords.array();
+    }
+
+    public int getShapeCount() {
+        return shapeCount;
+    }
+
+    public int getSegmentCount() {
+        return segOffsets.get(shapeCount);
+    }
+
+    public int getCoordinateCount() {
+        return coordOffsets.get(shapeCount);
+    }
+
+    /**
+     * @return the number of bytes used by the shape arrays
+     */
+    public long getBytes() {
+        return 4L * (shapeAttrs.capacity() + shapeCommands.capacity() + shapeBounds.capacity()
+                + segOffsets.capacity() + coordOffsets.capacity() + coords.capacity())
+                + segTypes.capacity();
+    }
+
+    /**
+     * Draws all the shapes in order: the attributes are only sent when they
+     * change and the target attributes are restored when done.
+     */
+    @Override
+    public void replay(final FXRenderTarget target, final AffineTransform tx) {
+        replay(target, tx, null);
+    }
+
+    /**
+     * Draws the shapes marked in the visible bitmap (one bit per shape, see
+     * MapIndex), in order.
+     *
+     * @param visible the bitmap or null to draw all the shapes
+     */
+    void replay(final FXRenderTarget target, final AffineTransform tx, final long[] visible) {
+        target.save();
+        if (tx != null) {
+            target.setTransform(tx.getScaleX(), tx.getShearY(), tx.getShearX(), tx.getScaleY(),
+                    tx.getTranslateX(), tx.getTranslateY());
+        } else {
+            target.setTransform(1.0, 0.0, 0.0, 1.0, 0.0, 0.0);
+        }
+        final AttributeState state = new AttributeState(target, attributes);
+
+        if (visible == null) {
+            draw(target, state, 0, shapeCount);
+        } else {
+            // draw the runs of consecutive visible shapes:
+            for (int w = 0; w < visible.length; w++) {
+                long word = visible[w];
+
+                while (word != 0L) {
+                    final int start = Long.numberOfTrailingZeros(word);
+                    final int len = Long.numberOfTrailingZeros(~(word >>> start));
+                    final int from = (w << 6) + start;
+
+                    draw(target, state, from, from + len);
+
+                    word = (start + len < 64) ? word & (-1L << (start + len)) : 0L;
+                }
+            }
+        }
+        target.restore();
+    }
+
+    /**
+     * Draws the shapes [from, to[ from the heap arrays
+     */
+    private void draw(final FXRenderTarget target, final AttributeState state,
+                            final int from, final int to) {
+        final int[] _attrs = attrArray;
+        final int[] _segOffsets = segOffsetArray;
+        final int[] _coordOffsets = coordOffsetArray;
+        final byte[] _segTypes = segTypeArray;
+        final float[] xy = coordArray;
+
+        for (int i = from; i < to; i++) {
+            final int a = _attrs[i];
+            state.apply(a);
+            drawPath(target, _segTypes, _segOffsets[i], _segOffsets[i + 1], xy, _coordOffsets[i], a < 0);
+        }
+    }
+
+    /**
+     * Sends the segments [from, to[ (with their coordinates starting at c) as
+     * a new path and fills or strokes it.
+     */
+    private static void drawPath(final FXRenderTarget target, final byte[] types, final int from, final int to,
+                                 final float[] xy, int c, final boolean stroked) {
+        target.beginPath();
+
+        for (int s = from; s < to; s++) {
+            switch (types[s]) {
+                case SEG_MOVETO:
+                    target.moveTo(xy[c], xy[c + 1]);
+                    c += 2;
+                    break;
+                case SEG_LINETO:
+                    target.lineTo(xy[c], xy[c + 1]);
+                    c += 2;
+                    break;
+                case SEG_QUADTO:
+                    target.quadraticCurveTo(xy[c], xy[c + 1], xy[c + 2], xy[c + 3]);
+                    c += 4;
+                    break;
+                case SEG_CUBICTO:
+                    target.bezierCurveTo(xy[c], xy[c + 1], xy[c + 2], xy[c + 3], xy[c + 4], xy[c + 5]);
+                    c += 6;
+                    break;
+                case SEG_CLOSE:
+                    target.closePath();
+                    break;
+                default:
+                    throw new IllegalStateException("Invalid segment type " + types[s]);
+            }
+        }
+        if (stroked) {
+            target.stroke();
+        } else {
+            target.fill();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MapGeometry{" + "width=" + width + ", height=" + height + ", commands=" + commandCount
+                + ", attributes=" + attributes.length + ", shapes=" + shapeCount
+                + ", segments=" + getSegmentCount() + ", coords=" + getCoordinateCount()
+                + ", bytes=" + getBytes() + '}';
+    }
+
+    /**
+     * The attributes sent to the target while drawing the shapes (only
+     * when they change).
+     */
+    private static final class AttributeState {
+
+        private final FXRenderTarget target;
+        private final Attribute[] attributes;
+        private int lastFill = -1;
+        private int lastStroke = -1;
+        private double alpha = Double.NaN;
+        private BlendMode blendMode = null;
+
+        AttributeState(final FXRenderTarget target, final Attribute[] attributes) {
+            this.target = target;
+            this.attributes = attributes;
+        }
+
+        void apply(final int a) {
+            final int attr = a & ATTR_MASK;
+            final Attribute attribute = attributes[attr];
+
+            if (a < 0) {
+                if (attr != lastStroke) {
+                    lastStroke = attr;
+                    attribute.applyStroke(target);
+                }
+            } else if (attr != lastFill) {
+                lastFill = attr;
+                target.setFill(attribute.color);
+            }
+            if (attribute.alpha != alpha) {
+                alpha = attribute.alpha;
+                target.setGlobalAlpha(alpha);
+            }
+            if (attribute.blendMode != blendMode) {
+                blendMode = attribute.blendMode;
+                target.setGlobalBlendMode(blendMode);
+            }
+        }
+    }
+
+    /**
+     * The paint and stroke attributes of a shape (the stroke attributes of
+     * the filled shapes have their default values).
+     */
+    static final class Attribute {
+
+        final Color color;
+        final double lineWidth;
+        final StrokeLineCap lineCap;
+        final StrokeLineJoin lineJoin;
+        final double miterLimit;
+        final double[] lineDashes;
+        final double lineDashOffset;
+        final double alpha;
+        final BlendMode blendMode;
+
+        Attribute(final Color color, final double lineWidth,
+                  final StrokeLineCap lineCap, final StrokeLineJoin lineJoin,
+                  final double miterLimit, final double[] lineDashes, final double lineDashOffset,
+                  final double alpha, final BlendMode blendMode) {
+            this.color = color;
+            this.lineWidth = lineWidth;
+            this.lineCap = lineCap;
+            this.lineJoin = lineJoin;
+            this.miterLimit = miterLimit;
+            this.lineDashes = lineDashes;
+            this.lineDashOffset = lineDashOffset;
+            this.alpha = alpha;
+            this.blendMode = blendMode;
+        }
+
+        void applyStroke(final FXRenderTarget target) {
+            target.setStroke(color);
+            target.setLineWidth(lineWidth);
+            target.setLineCap(lineCap);
+            target.setLineJoin(lineJoin);
+            target.setMiterLimit(miterLimit);
+            target.setLineDashes(lineDashes);
+            target.setLineDashOffset(lineDashOffset);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Attribute)) {
+                return false;
+            }
+            final Attribute other = (Attribute) obj;
+            return color.equals(other.color)
+                    && lineWidth == other.lineWidth
+                    && lineCap == other.lineCap
+                    && lineJoin == other.lineJoin
+                    && miterLimit == other.miterLimit
+                    && Arrays.equals(lineDashes, other.lineDashes)
+                    && lineDashOffset == other.lineDashOffset
+                    && alpha == other.alpha
+                    && blendMode == other.blendMode;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = color.hashCode();
+            hash = 31 * hash + Double.hashCode(lineWidth);
+            hash = 31 * hash + lineCap.hashCode();
+            hash = 31 * hash + lineJoin.hashCode();
+            hash = 31 * hash + Double.hashCode(miterLimit);
+            hash = 31 * hash + Arrays.hashCode(lineDashes);
+            hash = 31 * hash + Double.hashCode(lineDashOffset);
+            hash = 31 * hash + Double.hashCode(alpha);
+            hash = 31 * hash + blendMode.hashCode();
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * MapBench project (GPLv2 + CP)
+ ******************************************************************************/
+package it.geosolutions.java2d;
+
+import it.geosolutions.java2d.MapGeometry.Attribute;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import javafx.scene.shape.StrokeLineJoin;
+
+/**
+ * Packed R-tree over the bounds of the map items (the shapes of a
+ * MapGeometry or the drawing commands), built once with the
+ * Sort-Tile-Recursive algorithm (NODE_SIZE entries per node, stored level by
+ * level in a single float array).
+ *
+ * query() marks the items intersecting the inverse-transformed viewport in a
+ * bitmap (one bit per item), so they can be drawn in their original order
+ * (z-order) by iterating over the set bits.
+ *
+ * @author bourgesl
+ */
+final class MapIndex {
+
+    private final static int NODE_SIZE = 16;
+
+    /** margin (in device pixels) added to the viewport for antialiasing */
+    private final static double AA_MARGIN = 1.0;
+
+    /* members */
+    private final int itemCount;
+    /** item indices in the leaf order */
+    private final int[] leafItems;
+    /** node bounds (x0, y0, x1, y1): the items (leaf order) then each level up to the root */
+    private final float[] bounds;
+    /** first node of each level (levelStarts[levels] = node count) */
+    private final int[] levelStarts;
+    /** the items found by the last query */
+    private final long[] visible;
+    /** traversal stack (node indices) */
+    private final int[] stack;
+    private final double[] pts = new double[8];
+    // statistics:
+    private long queries = 0L;
+    private long visibleItems = 0L;
+
+    /**
+     * Creates the index of the shapes of the given geometry
+     */
+    static MapIndex forShapes(final MapGeometry geometry) {
+        final int n = geometry.shapeCount;
+        final float[] itemBounds = new float[4 * n];
+
+        for (int i = 0; i < n; i++) {
+            shapeBounds(geometry, i, itemBounds, i);
+        }
+        return new MapIndex(itemBounds, n);
+    }
+
+    /**
+     * Creates the index of the drawing commands given their bounds (x0, y0,
+     * x1, y1 per command, see MapBoundsTarget)
+     */
+    static MapIndex forCommands(final float[] commandBounds) {
+        return new MapIndex(commandBounds, commandBounds.length / 4);
+    }
+
+    /**
+     * Gets the bounds of the shape i, enlarged by the stroke (conservative:
+     * miter joins may extend up to miterLimit * lineWidth / 2).
+     */
+    private static void shapeBounds(final MapGeometry geometry, final int i, final float[] dst, final int j) {
+        final int a = geometry.shapeAttrs.get(i);
+        double pad = 0.0;
+
+        if (a < 0) {
+            final Attribute attr = geometry.attributes[a & MapGeometry.ATTR_MASK];
+            pad = 0.5 * attr.lineWidth * ((attr.lineJoin == StrokeLineJoin.MITER)
+                    ? Math.max(attr.miterLimit, Math.sqrt(2.0)) : Math.sqrt(2.0));
+        }
+        final float p = (float) pad;
+        dst[4 * j] = geometry.shapeBounds.get(4 * i) - p;
+        dst[4 * j + 1] = geometry.shapeBounds.get(4 * i + 1) - p;
+        dst[4 * j + 2] = geometry.shapeBounds.get(4 * i + 2) + p;
+        dst[4 * j + 3] = geometry.shapeBounds.get(4 * i + 3) + p;
+    }
+
+    private MapIndex(final float[] itemBounds, final int n) {
+        this.itemCount = n;
+        this.visible = new long[(n + 63) >> 6];
+
+        // STR order: sort by x center, then by y center within vertical strips
+        final long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = key(0.5f * (itemBounds[4 * i] + itemBounds[4 * i + 2]), i);
+        }
+        Arrays.sort(keys);
+
+        final int leaves = (n + NODE_SIZE - 1) / NODE_SIZE;
+        final int stripSize = NODE_SIZE * (int) Math.ceil(Math.sqrt(leaves));
+
+        for (int s = 0; s < n; s += stripSize) {
+            final int e = Math.min(n, s + stripSize);
+            for (int j = s; j < e; j++) {
+                final int i = (int) keys[j];
+                keys[j] = key(0.5f * (itemBounds[4 * i + 1] + itemBounds[4 * i + 3]), i);
+            }
+            Arrays.sort(keys, s, e);
+        }
+
+        // levels:
+        int levels = 1;
+        int nodes = n;
+        for (int count = n; count > 1; levels++) {
+            count = (count + NODE_SIZE - 1) / NODE_SIZE;
+            nodes += count;
+        }
+        this.levelStarts = new int[levels + 1];
+        this.bounds = new float[4 * nodes];
+        this.leafItems = new int[n];
+
+        for (int j = 0; j < n; j++) {
+            final int i = (int) keys[j];
+            leafItems[j] = i;
+            System.arraycopy(itemBounds, 4 * i, bounds, 4 * j, 4);
+        }
+        levelStarts[0] = 0;
+        levelStarts[1] = n;
+
+        for (int l = 1; l < levels; l++) {
+            final int childStart = levelStarts[l - 1];
+            final int childEnd = levelStarts[l];
+            int node = childEnd;
+
+            for (int c = childStart; c < childEnd; c += NODE_SIZE, node++) {
+                float x0 = Float.POSITIVE_INFINITY;
+                float y0 = Float.POSITIVE_INFINITY;
+                float x1 = Float.NEGATIVE_INFINITY;
+                float y1 = Float.NEGATIVE_INFINITY;
+
+                for (int k = c, end = Math.min(c + NODE_SIZE, childEnd); k < end; k++) {
+                    x0 = Math.min(x0, bounds[4 * k]);
+                    y0 = Math.min(y0, bounds[4 * k + 1]);
+                    x1 = Math.max(x1, bounds[4 * k + 2]);
+                    y1 = Math.max(y1, bounds[4 * k + 3]);
+                }
+                bounds[4 * node] = x0;
+                bounds[4 * node + 1] = y0;
+                bounds[4 * node + 2] = x1;
+                bounds[4 * node + 3] = y1;
+            }
+            levelStarts[l + 1] = node;
+        }
+        this.stack = new int[levels * NODE_SIZE + 1];
+    }
+
+    /**
+     * @return a sort key (the float value, then the index)
+     */
+    private static long key(final float value, final int index) {
+        int bits = Float.floatToIntBits(value);
+        // order the negative values as signed integers:
+        bits ^= (bits >> 31) & 0x7FFFFFFF;
+        return ((long) bits << 32) | index;
+    }
+
+    /**
+     * Marks the items visible in the device area drawn with the given
+     * transform (and inside the clip given in user space, if any).
+     *
+     * @return false if the transform is not invertible (nothing is marked)
+     */
+    boolean query(final AffineTransform at, final Rectangle2D area, final Rectangle2D clip) {
+        final double[] p = pts;
+        p[0] = area.getMinX() - AA_MARGIN;
+        p[1] = area.getMinY() - AA_MARGIN;
+        p[2] = area.getMaxX() + AA_MARGIN;
+        p[3] = p[1];
+        p[4] = p[2];
+        p[5] = area.getMaxY() + AA_MARGIN;
+        p[6] = p[0];
+        p[7] = p[5];
+        try {
+            at.inverseTransform(p, 0, p, 0, 4);
+        } catch (NoninvertibleTransformException nte) {
+            return false;
+        }
+        double x0 = Math.min(Math.min(p[0], p[2]), Math.min(p[4], p[6]));
+        double y0 = Math.min(Math.min(p[1], p[3]), Math.min(p[5], p[7]));
+        double x1 = Math.max(Math.max(p[0], p[2]), Math.max(p[4], p[6]));
+        double y1 = Math.max(Math.max(p[1], p[3]), Math.max(p[5], p[7]));
+
+        if (clip != null) {
+            x0 = Math.max(x0, clip.getMinX());
+            y0 = Math.max(y0, clip.getMinY());
+            x1 = Math.min(x1, clip.getMaxX());
+            y1 = Math.min(y1, clip.getMaxY());
+        }
+        search(x0, y0, x1, y1);
+        return true;
+    }
+
+    private void search(final double x0, final double y0, final double x1, final double y1) {
+        final long[] _visible = visible;
+        Arrays.fill(_visible, 0L);
+
+        queries++;
+        if (itemCount == 0 || x0 > x1 || y0 > y1) {
+            return;
+        }
+        final float[] b = bounds;
+        final int[] _levelStarts = levelStarts;
+        final int[] _stack = stack;
+        int found = 0;
+
+        // stack of nodes (their level is found from levelStarts):
+        int sp = 0;
+        final int root = _levelStarts[_levelStarts.length - 1] - 1;
+        final int rootLevel = _levelStarts.length - 2;
+
+        if (intersects(b, root, x0, y0, x1, y1)) {
+            if (rootLevel == 0) {
+                final int item = leafItems[root];
+                _visible[item >> 6] |= 1L << item;
+                found++;
+            } else {
+                _stack[sp++] = root;
+            }
+        }
+        while (sp != 0) {
+            final int node = _stack[--sp];
+            // find the node level:
+            int level = 1;
+            while (node >= _levelStarts[level + 1]) {
+                level++;
+            }
+            final int childStart = _levelStarts[level - 1] + NODE_SIZE * (node - _levelStarts[level]);
+            final int childEnd = Math.min(childStart + NODE_SIZE, _levelStarts[level]);
+
+            for (int c = childStart; c < childEnd; c++) {
+                if (intersects(b, c, x0, y0, x1, y1)) {
+                    if (level == 1) {
+                        final int item = leafItems[c];
+                        _visible[item >> 6] |= 1L << item;
+                        found++;
+                    } else {
+                        _stack[sp++] = c;
+                    }
+                }
+            }
+        }
+        visibleItems += found;
+    }
+
+    private static boolean intersects(final float[] b, final int node,
+                                      final double x0, final double y0, final double x1, final double y1) {
+        final int k = 4 * node;
+        return b[k] <= x1 && b[k + 2] >= x0 && b[k + 1] <= y1 && b[k + 3] >= y0;
+    }
+
+    /**
+     * @return the bitmap of the items found by the last query (one bit per item)
+     */
+    long[] getVisible() {
+        return visible;
+    }
+
+    int getItemCount() {
+        return itemCount;
+    }
+
+    void resetStatistics() {
+        queries = 0L;
+        visibleItems = 0L;
+    }
+
+    @Override
+    public String toString() {
+        return "MapIndex{" + "items=" + itemCount + ", nodes=" + (levelStarts[levelStarts.length - 1])
+                + ", levels=" + (levelStarts.length - 1) + ", queries=" + queries
+                + ", visible=" + ((queries != 0L) ? String.format("%.1f %%",
+                        (100.0 * visibleItems) / ((double) queries * itemCount)) : "n/a") + '}';
+    }
+}
@@ -0,0 +1,295 @@
+/*******************************************************************************
+ * MapBench project (GPLv2 + CP)
+ ******************************************************************************/
+package it.geosolutions.java2d;
+
+import java.awt.geom.AffineTransform;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import static it.geosolutions.java2d.MapGeometry.*;
+
+/**
+ * Level of detail pyramid of a MapGeometry: level k is the geometry whose
+ * polylines are simplified by the Douglas-Peucker algorithm with the
+ * tolerance BASE_TOLERANCE * 2^k (in map units). Every removed vertex lies
+ * within the tolerance of the simplified polyline, so the outline of every
+ * shape moves by less than tolerance * scale device pixels.
+ *
+ * The levels are built lazily (on the first frame that needs them) and kept
+ * in memory. They have the same shapes in the same order as the geometry
+ * (so the MapIndex bitmaps remain valid); the shapes with curves are copied
+ * as is.
+ *
+ * select() returns the coarsest level whose error is below the maximum
+ * error (in device pixels) for the largest scale factor of the transform.
+ *
+ * @author bourgesl
+ */
+final class MapLevels {
+
+    /** tolerance of the level 0 (map units) */
+    final static double BASE_TOLERANCE = 0.25;
+    /** number of levels: tolerances from 0.25 to 32 map units */
+    final static int LEVELS = 8;
+
+    /* members */
+    private final MapGeometry geometry;
+    /** maximum error in device pixels */
+    private final double maxError;
+    private final MapGeometry[] levels = new MapGeometry[LEVELS];
+    // simplification state:
+    private boolean[] keep = new boolean[256];
+    private int[] stack = new int[256];
+    // statistics:
+    private final long[] selected = new long[LEVELS + 1];
+    private double buildTime = 0.0;
+
+    MapLevels(final MapGeometry geometry, final double maxError) {
+        this.geometry = geometry;
+        this.maxError = maxError;
+    }
+
+    /**
+     * @return the geometry to draw with the given transform: the original
+     * geometry or the coarsest level whose error is below maxError pixels
+     */
+    MapGeometry select(final AffineTransform at) {
+        final int level = getLevel(at);
+        selected[level + 1]++;
+
+        if (level < 0) {
+            return geometry;
+        }
+        MapGeometry g = levels[level];
+        if (g == null) {
+            final long start = System.nanoTime();
+            g = simplify(BASE_TOLERANCE * (1 << level));
+            buildTime += BaseTest.Result.toMillis(System.nanoTime() - start);
+            levels[level] = g;
+        }
+        return g;
+    }
+
+    /**
+     * @return the level index or -1 to use the original geometry
+     */
+    int getLevel(final AffineTransform at) {
+        final double scale = (at != null) ? getMaxScale(at) : 1.0;
+        if (!(scale > 0.0)) {
+            return -1;
+        }
+        // tolerance (map units) giving maxError device pixels:
+        final double tolerance = maxError / scale;
+        if (tolerance < BASE_TOLERANCE) {
+            return -1;
+        }
+        return Math.min(LEVELS - 1, (int) Math.floor(Math.log(tolerance / BASE_TOLERANCE) / Math.log(2.0)));
+    }
+
+    /**
+     * @return the largest singular value of the transform (the largest
+     * length of a transformed unit vector)
+     */
+    static double getMaxScale(final AffineTransform at) {
+        return getMaxScale(at.getScaleX(), at.getShearY(), at.getShearX(), at.getScaleY());
+    }
+
+    /**
+     * @return the largest singular value of the matrix [a c; b d]
+     */
+    static double getMaxScale(final double a, final double b, final double c, final double d) {
+        final double s = a * a + b * b + c * c + d * d;
+        final double det = a * d - b * c;
+        return Math.sqrt(0.5 * (s + Math.sqrt(Math.max(0.0, s * s - 4.0 * det * det))));
+    }
+
+    /**
+     * Simplifies the polylines (moveTo followed by lineTo segments) of every
+     * shape with the given tolerance
+     */
+    private MapGeometry simplify(final double tolerance) {
+        final MapGeometry g = geometry;
+        final int n = g.shapeCount;
+        final double tol2 = tolerance * tolerance;
+
+        final int[] segOffsets = new int[n + 1];
+        final int[] coordOffsets = new int[n + 1];
+        byte[] types = new byte[Math.max(16, g.getSegmentCount() / 2)];
+        float[] xy = new float[Math.max(32, g.getCoordinateCount() / 2)];
+        int segCount = 0;
+        int coordCount = 0;
+
+        final ByteBuffer srcTypes = g.segTypes;
+        final FloatBuffer srcCoords = g.coords;
+
+        for (int i = 0; i < n; i++) {
+            final int s0 = g.segOffsets.get(i);
+            final int s1 = g.segOffsets.get(i + 1);
+            int c = g.coordOffsets.get(i);
+
+            // worst case: no vertex removed
+            if (segCount + (s1 - s0) > types.length) {
+                types = Arrays.copyOf(types, Math.max(segCount + (s1 - s0), types.length << 1));
+            }
+            final int nCoords = g.coordOffsets.get(i + 1) - c;
+            if (coordCount + nCoords > xy.length) {
+                xy = Arrays.copyOf(xy, Math.max(coordCount + nCoords, xy.length << 1));
+            }
+
+            int s = s0;
+            while (s < s1) {
+                final byte type = srcTypes.get(s);
+
+                if (type == SEG_MOVETO) {
+                    // polyline: moveTo + lineTo*
+                    int e = s + 1;
+                    while (e < s1 && srcTypes.get(e) == SEG_LINETO) {
+                        e++;
+                    }
+                    final int nPoints = e - s;
+                    final int kept = simplifyPolyline(srcCoords, c, nPoints, tol2, xy, coordCount);
+
+                    types[segCount++] = SEG_MOVETO;
+                    for (int k = 1; k < kept; k++) {
+                        types[segCount++] = SEG_LINETO;
+                    }
+                    coordCount += 2 * kept;
+                    c += 2 * nPoints;
+                    s = e;
+                } else {
+                    // lineTo after close, curves and close are copied:
+                    final int nc = (type == SEG_CLOSE) ? 0 : (type == SEG_QUADTO) ? 4 : (type == SEG_CUBICTO) ? 6 : 2;
+                    types[segCount++] = type;
+                    for (int k = 0; k < nc; k++) {
+                        xy[coordCount++] = srcCoords.get(c++);
+                    }
+                    s++;
+                }
+            }
+            segOffsets[i + 1] = segCount;
+            coordOffsets[i + 1] = coordCount;
+        }
+
+        final int[] shapeAttrs = new int[n];
+        g.shapeAttrs.duplicate().get(shapeAttrs);
+        final int[] shapeCommands = new int[n];
+        g.shapeCommands.duplicate().get(shapeCommands);
+        final float[] shapeBounds = new float[4 * n];
+        g.shapeBounds.duplicate().get(shapeBounds);
+
+        return new MapGeometry(g.width, g.height, g.commandCount, g.attributes, n,
+                IntBuffer.wrap(shapeAttrs), IntBuffer.wrap(shapeCommands), FloatBuffer.wrap(shapeBounds),
+                IntBuffer.wrap(segOffsets), IntBuffer.wrap(coordOffsets),
+                ByteBuffer.wrap(Arrays.copyOf(types, segCount)),
+                FloatBuffer.wrap(Arrays.copyOf(xy, coordCount)));
+    }
+
+    /**
+     * Douglas-Peucker simplification of the polyline of nPoints points
+     * starting at src[c] (the first and last points are kept).
+     *
+     * @return the number of points written to dst[d]
+     */
+    private int simplifyPolyline(final FloatBuffer src, final int c, final int nPoints, final double tol2,
+                                 final float[] dst, final int d) {
+        if (nPoints <= 2) {
+            for (int k = 0; k < 2 * nPoints; k++) {
+                dst[d + k] = src.get(c + k);
+            }
+            return nPoints;
+        }
+        if (keep.length < nPoints) {
+            keep = new boolean[nPoints];
+            stack = new int[2 * nPoints];
+        }
+        final boolean[] _keep = keep;
+        final int[] _stack = stack;
+        Arrays.fill(_keep, 0, nPoints, false);
+        _keep[0] = true;
+        _keep[nPoints - 1] = true;
+
+        int sp = 0;
+        _stack[sp++] = 0;
+        _stack[sp++] = nPoints - 1;
+
+        while (sp != 0) {
+            final int last = _stack[--sp];
+            final int first = _stack[--sp];
+
+            final double x0 = src.get(c + 2 * first);
+            final double y0 = src.get(c + 2 * first + 1);
+            final double dx = src.get(c + 2 * last) - x0;
+            final double dy = src.get(c + 2 * last + 1) - y0;
+            final double len2 = dx * dx + dy * dy;
+
+            double maxDist2 = tol2;
+            int index = -1;
+
+            for (int k = first + 1; k < last; k++) {
+                final double px = src.get(c + 2 * k) - x0;
+                final double py = src.get(c + 2 * k + 1) - y0;
+                final double dist2;
+
+                // squared distance to the segment [first, last]:
+                final double t = (len2 > 0.0) ? (px * dx + py * dy) / len2 : 0.0;
+                if (t <= 0.0) {
+                    dist2 = px * px + py * py;
+                } else if (t >= 1.0) {
+                    final double qx = px - dx;
+                    final double qy = py - dy;
+                    dist2 = qx * qx + qy * qy;
+                } else {
+                    final double cross = px * dy - py * dx;
+                    dist2 = cross * cross / len2;
+                }
+                if (dist2 > maxDist2) {
+                    maxDist2 = dist2;
+                    index = k;
+                }
+            }
+            if (index != -1) {
+                _keep[index] = true;
+                if (index - first > 1) {
+                    _stack[sp++] = first;
+                    _stack[sp++] = index;
+                }
+                if (last - index > 1) {
+                    _stack[sp++] = index;
+                    _stack[sp++] = last;
+                }
+            }
+        }
+
+        int m = d;
+        for (int k = 0; k < nPoints; k++) {
+            if (_keep[k]) {
+                dst[m++] = src.get(c + 2 * k);
+                dst[m++] = src.get(c + 2 * k + 1);
+            }
+        }
+        return (m - d) >> 1;
+    }
+
+    void resetStatistics() {
+        Arrays.fill(selected, 0L);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(128);
+        sb.append("MapLevels{maxError=").append(maxError).append(" px, levels=[");
+        for (int i = 0; i < LEVELS; i++) {
+            if (i != 0) {
+                sb.append(", ");
+            }
+            sb.append(BASE_TOLERANCE * (1 << i)).append(": ");
+            sb.append((levels[i] != null) ? String.valueOf(levels[i].getCoordinateCount() / 2) : "-");
+        }
+        sb.append("] points (original: ").append(geometry.getCoordinateCount() / 2);
+        sb.append("), built in ").append(String.format("%.1f", buildTime)).append(" ms, selected=");
+        sb.append(Arrays.toString(selected)).append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,608 @@
+/*******************************************************************************
+ * MapBench project (GPLv2 + CP)
+ ******************************************************************************/
+package it.geosolutions.java2d;
+
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.RoundRectangle2D;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.effect.BlendMode;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.ArcType;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+import javafx.scene.text.Font;
+import org.jfree.fx.FXGraphics2D;
+import org.jfree.fx.FXHints;
+import org.jfree.fx.FXRenderTarget;
+import static it.geosolutions.java2d.MapGeometry.*;
+
+/**
+ * Render target that converts the primitives sent by FXGraphics2D into a
+ * MapGeometry: every fill or stroke becomes one shape, whose coordinates are
+ * transformed by the current transform (the stroke width is scaled too).
+ *
+ * Only solid colors and paths are supported (text and images are not), the
+ * clip is ignored (DrawingCommands sets its own clip).
+ *
+ * @author bourgesl
+ */
+final class MapRecorder implements FXRenderTarget {
+
+    /* members */
+    private final double width;
+    private final double height;
+    // current state:
+    private State state = new State();
+    private final ArrayList<State> stack = new ArrayList<State>();
+    // current path (transformed):
+    private byte[] pathTypes = new byte[64];
+    private int pathSegs = 0;
+    private float[] pathCoords = new float[256];
+    private int pathCoordCount = 0;
+    private final double[] pts = new double[6];
+    // attributes:
+    private final ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+    private final HashMap<Attribute, Integer> attributeIndex = new HashMap<Attribute, Integer>();
+    // shapes:
+    private int command = 0;
+    private int shapeCount = 0;
+    private int[] shapeAttrs = new int[1024];
+    private int[] shapeCommands = new int[1024];
+    private float[] shapeBounds = new float[4 * 1024];
+    private int[] segOffsets = new int[1024 + 1];
+    private int[] coordOffsets = new int[1024 + 1];
+    private byte[] segTypes = new byte[16 * 1024];
+    private int segCount = 0;
+    private float[] coords = new float[32 * 1024];
+    private int coordCount = 0;
+
+    MapRecorder(final double width, final double height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Translates the drawing commands (without the preparation filters) into
+     * a geometry on the heap, with pure strokes (no normalization) and no
+     * clip culling.
+     */
+    static MapGeometry record(final DrawingCommands dc) {
+        final MapRecorder recorder = new MapRecorder(dc.width, dc.height);
+        final FXGraphics2D g2 = new FXGraphics2D(recorder);
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        g2.setRenderingHint(FXHints.KEY_CLIP_CULLING, Boolean.FALSE);
+
+        final ArrayList<DrawingCommand> _commands = dc.commands;
+
+        for (int i = 0, len = _commands.size(); i < len; i++) {
+            recorder.setCommand(i);
+            _commands.get(i).execute(g2, MapConst.IDENTITY, false);
+        }
+        return recorder.toGeometry(dc.width, dc.height, _commands.size());
+    }
+
+    /**
+     * Sets the index of the drawing command that produces the next shapes.
+     */
+    void setCommand(final int command) {
+        this.command = command;
+    }
+
+    /**
+     * @return a geometry (on the heap) with all the shapes recorded so far
+     */
+    MapGeometry toGeometry(final int width, final int height, final int commandCount) {
+        final int n = shapeCount;
+        return new MapGeometry(width, height, commandCount,
+                attributes.toArray(new Attribute[attributes.size()]), n,
+                IntBuffer.wrap(Arrays.copyOf(shapeAttrs, n)),
+                IntBuffer.wrap(Arrays.copyOf(shapeCommands, n)),
+                FloatBuffer.wrap(Arrays.copyOf(shapeBounds, 4 * n)),
+                IntBuffer.wrap(Arrays.copyOf(segOffsets, n + 1)),
+                IntBuffer.wrap(Arrays.copyOf(coordOffsets, n + 1)),
+                ByteBuffer.wrap(Arrays.copyOf(segTypes, segCount)),
+                FloatBuffer.wrap(Arrays.copyOf(coords, coordCount)));
+    }
+
+    @Override
+    public double getWidth() {
+        return width;
+    }
+
+    @Override
+    public double getHeight() {
+        return height;
+    }
+
+    @Override
+    public Canvas getCanvas() {
+        return null;
+    }
+
+    @Override
+    public void save() {
+        stack.add(new State(state));
+    }
+
+    @Override
+    public void restore() {
+        if (!stack.isEmpty()) {
+            state = stack.remove(stack.size() - 1);
+        }
+    }
+
+    @Override
+    public void setFill(final Paint p) {
+        state.fill = p;
+    }
+
+    @Override
+    public void setStroke(final Paint p) {
+        state.stroke = p;
+    }
+
+    @Override
+    public void setLineWidth(final double lw) {
+        state.lineWidth = lw;
+    }
+
+    @Override
+    public void setLineCap(final StrokeLineCap cap) {
+        state.lineCap = cap;
+    }
+
+    @Override
+    public void setLineJoin(final StrokeLineJoin join) {
+        state.lineJoin = join;
+    }
+
+    @Override
+    public void setMiterLimit(final double ml) {
+        state.miterLimit = ml;
+    }
+
+    @Override
+    public void setLineDashes(final double[] dashes) {
+        state.lineDashes = (dashes != null && dashes.length != 0) ? dashes.clone() : null;
+    }
+
+    @Override
+    public void setLineDashOffset(final double dashOffset) {
+        state.lineDashOffset = dashOffset;
+    }
+
+    @Override
+    public void setGlobalAlpha(final double alpha) {
+        state.globalAlpha = alpha;
+    }
+
+    @Override
+    public void setGlobalBlendMode(final BlendMode op) {
+        state.blendMode = op;
+    }
+
+    @Override
+    public void setFont(final Font f) {
+        // text is not supported
+    }
+
+    @Override
+    public void setTransform(final double mxx, final double myx, final double mxy, final double myy,
+                             final double mxt, final double myt) {
+        final State s = state;
+        s.mxx = mxx;
+        s.myx = myx;
+        s.mxy = mxy;
+        s.myy = myy;
+        s.mxt = mxt;
+        s.myt = myt;
+    }
+
+    @Override
+    public void beginPath() {
+        pathSegs = 0;
+        pathCoordCount = 0;
+    }
+
+    @Override
+    public void moveTo(final double x0, final double y0) {
+        pts[0] = x0;
+        pts[1] = y0;
+        segment(SEG_MOVETO, 1);
+    }
+
+    @Override
+    public void lineTo(final double x1, final double y1) {
+        pts[0] = x1;
+        pts[1] = y1;
+        segment(SEG_LINETO, 1);
+    }
+
+    @Override
+    public void quadraticCurveTo(final double xc, final double yc, final double x1, final double y1) {
+        pts[0] = xc;
+        pts[1] = yc;
+        pts[2] = x1;
+        pts[3] = y1;
+        segment(SEG_QUADTO, 2);
+    }
+
+    @Override
+    public void bezierCurveTo(final double xc1, final double yc1, final double xc2, final double yc2,
+                              final double x1, final double y1) {
+        pts[0] = xc1;
+        pts[1] = yc1;
+        pts[2] = xc2;
+        pts[3] = yc2;
+        pts[4] = x1;
+        pts[5] = y1;
+        segment(SEG_CUBICTO, 3);
+    }
+
+    @Override
+    public void closePath() {
+        segment(SEG_CLOSE, 0);
+    }
+
+    @Override
+    public void rect(final double x, final double y, final double w, final double h) {
+        moveTo(x, y);
+        lineTo(x + w, y);
+        lineTo(x + w, y + h);
+        lineTo(x, y + h);
+        closePath();
+    }
+
+    @Override
+    public void fill() {
+        emit(false, 0, 0);
+    }
+
+    @Override
+    public void stroke() {
+        emit(true, 0, 0);
+    }
+
+    @Override
+    public void clip() {
+        // the clip is ignored
+    }
+
+    @Override
+    public void clearRect(final double x, final double y, final double w, final double h) {
+        // the background is cleared by DrawingCommands
+    }
+
+    @Override
+    public void fillRect(final double x, final double y, final double w, final double h) {
+        final int segMark = pathSegs;
+        final int coordMark = pathCoordCount;
+        rect(x, y, w, h);
+        emitTemporary(false, segMark, coordMark);
+    }
+
+    @Override
+    public void strokeRect(final double x, final double y, final double w, final double h) {
+        final int segMark = pathSegs;
+        final int coordMark = pathCoordCount;
+        rect(x, y, w, h);
+        emitTemporary(true, segMark, coordMark);
+    }
+
+    @Override
+    public void fillRoundRect(final double x, final double y, final double w, final double h,
+                              final double arcWidth, final double arcHeight) {
+        emitShape(new RoundRectangle2D.Double(x, y, w, h, arcWidth, arcHeight), false);
+    }
+
+    @Override
+    public void strokeRoundRect(final double x, final double y, final double w, final double h,
+                                final double arcWidth, final double arcHeight) {
+        emitShape(new RoundRectangle2D.Double(x, y, w, h, arcWidth, arcHeight), true);
+    }
+
+    @Override
+    public void fillOval(final double x, final double y, final double w, final double h) {
+        emitShape(new Ellipse2D.Double(x, y, w, h), false);
+    }
+
+    @Override
+    public void strokeOval(final double x, final double y, final double w, final double h) {
+        emitShape(new Ellipse2D.Double(x, y, w, h), true);
+    }
+
+    @Override
+    public void fillArc(final double x, final double y, final double w, final double h,
+                        final double startAngle, final double arcExtent, final ArcType closure) {
+        emitShape(new Arc2D.Double(x, y, w, h, startAngle, arcExtent, toArc2DType(closure)), false);
+    }
+
+    @Override
+    public void strokeArc(final double x, final double y, final double w, final double h,
+                          final double startAngle, final double arcExtent, final ArcType closure) {
+        emitShape(new Arc2D.Double(x, y, w, h, startAngle, arcExtent, toArc2DType(closure)), true);
+    }
+
+    @Override
+    public void strokeLine(final double x1, final double y1, final double x2, final double y2) {
+        final int segMark = pathSegs;
+        final int coordMark = pathCoordCount;
+        moveTo(x1, y1);
+        lineTo(x2, y2);
+        emitTemporary(true, segMark, coordMark);
+    }
+
+    @Override
+    public void fillPolygon(final double[] xPoints, final double[] yPoints, final int nPoints) {
+        polygon(xPoints, yPoints, nPoints, true, false);
+    }
+
+    @Override
+    public void strokePolygon(final double[] xPoints, final double[] yPoints, final int nPoints) {
+        polygon(xPoints, yPoints, nPoints, true, true);
+    }
+
+    @Override
+    public void strokePolyline(final double[] xPoints, final double[] yPoints, final int nPoints) {
+        polygon(xPoints, yPoints, nPoints, false, true);
+    }
+
+    @Override
+    public void fillText(final String text, final double x, final double y) {
+        throw new UnsupportedOperationException("Text is not supported by the compacted geometry");
+    }
+
+    @Override
+    public void drawImage(final Image img, final double x, final double y, final double w, final double h) {
+        throw new UnsupportedOperationException("Images are not supported by the compacted geometry");
+    }
+
+    @Override
+    public void drawImage(final Image img, final double sx, final double sy, final double sw, final double sh,
+                          final double dx, final double dy, final double dw, final double dh) {
+        throw new UnsupportedOperationException("Images are not supported by the compacted geometry");
+    }
+
+    private static int toArc2DType(final ArcType closure) {
+        switch (closure) {
+            case CHORD:
+                return Arc2D.CHORD;
+            case ROUND:
+                return Arc2D.PIE;
+            default:
+                return Arc2D.OPEN;
+        }
+    }
+
+    private void polygon(final double[] xPoints, final double[] yPoints, final int nPoints,
+                         final boolean close, final boolean stroked) {
+        if (nPoints <= 0) {
+            return;
+        }
+        final int segMark = pathSegs;
+        final int coordMark = pathCoordCount;
+        moveTo(xPoints[0], yPoints[0]);
+        for (int i = 1; i < nPoints; i++) {
+            lineTo(xPoints[i], yPoints[i]);
+        }
+        if (close) {
+            closePath();
+        }
+        emitTemporary(stroked, segMark, coordMark);
+    }
+
+    private void emitShape(final Shape shape, final boolean stroked) {
+        final int segMark = pathSegs;
+        final int coordMark = pathCoordCount;
+        final double[] c = pts;
+
+        for (final PathIterator it = shape.getPathIterator(null); !it.isDone(); it.next()) {
+            final int type = it.currentSegment(c);
+            switch (type) {
+                case PathIterator.SEG_MOVETO:
+                case PathIterator.SEG_LINETO:
+                    segment((byte) type, 1);
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    segment(SEG_QUADTO, 2);
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    segment(SEG_CUBICTO, 3);
+                    break;
+                default:
+                    segment(SEG_CLOSE, 0);
+            }
+        }
+        emitTemporary(stroked, segMark, coordMark);
+    }
+
+    /**
+     * Appends a segment to the current path, with its points (in pts)
+     * transformed by the current transform.
+     */
+    private void segment(final byte type, final int nPoints) {
+        if (pathSegs == pathTypes.length) {
+            pathTypes = Arrays.copyOf(pathTypes, pathSegs << 1);
+        }
+        pathTypes[pathSegs++] = type;
+
+        if (pathCoordCount + 2 * nPoints > pathCoords.length) {
+            pathCoords = Arrays.copyOf(pathCoords, pathCoords.length << 1);
+        }
+        final State s = state;
+        final float[] xy = pathCoords;
+        int n = pathCoordCount;
+
+        for (int i = 0; i < 2 * nPoints; i += 2) {
+            final double x = pts[i];
+            final double y = pts[i + 1];
+            xy[n++] = (float) (s.mxx * x + s.mxy * y + s.mxt);
+            xy[n++] = (float) (s.myx * x + s.myy * y + s.myt);
+        }
+        pathCoordCount = n;
+    }
+
+    /**
+     * Adds the segments appended to the current path by a fillXXX / strokeXXX
+     * method as a new shape and removes them from the current path.
+     */
+    private void emitTemporary(final boolean stroked, final int segMark, final int coordMark) {
+        emit(stroked, segMark, coordMark);
+        pathSegs = segMark;
+        pathCoordCount = coordMark;
+    }
+
+    /**
+     * Adds the current path segments [segMark, pathSegs[ as a new shape.
+     */
+    private void emit(final boolean stroked, final int segMark, final int coordMark) {
+        final int nSegs = pathSegs - segMark;
+        final int nCoords = pathCoordCount - coordMark;
+
+        if (nSegs != 0) {
+            final int attr = attribute(stroked);
+            final int n = shapeCount;
+
+            if (n + 1 == segOffsets.length) {
+                final int capacity = n << 1;
+                shapeAttrs = Arrays.copyOf(shapeAttrs, capacity);
+                shapeCommands = Arrays.copyOf(shapeCommands, capacity);
+                shapeBounds = Arrays.copyOf(shapeBounds, 4 * capacity);
+                segOffsets = Arrays.copyOf(segOffsets, capacity + 1);
+                coordOffsets = Arrays.copyOf(coordOffsets, capacity + 1);
+            }
+            if (segCount + nSegs > segTypes.length) {
+                segTypes = Arrays.copyOf(segTypes, Math.max(segCount + nSegs, segTypes.length << 1));
+            }
+            if (coordCount + nCoords > coords.length) {
+                coords = Arrays.copyOf(coords, Math.max(coordCount + nCoords, coords.length << 1));
+            }
+            System.arraycopy(pathTypes, segMark, segTypes, segCount, nSegs);
+            System.arraycopy(pathCoords, coordMark, coords, coordCount, nCoords);
+
+            float x0 = Float.POSITIVE_INFINITY;
+            float y0 = Float.POSITIVE_INFINITY;
+            float x1 = Float.NEGATIVE_INFINITY;
+            float y1 = Float.NEGATIVE_INFINITY;
+
+            for (int i = coordMark, end = pathCoordCount; i < end; i += 2) {
+                final float x = pathCoords[i];
+                final float y = pathCoords[i + 1];
+                if (x < x0) {
+                    x0 = x;
+                }
+                if (x > x1) {
+                    x1 = x;
+                }
+                if (y < y0) {
+                    y0 = y;
+                }
+                if (y > y1) {
+                    y1 = y;
+                }
+            }
+            shapeAttrs[n] = (stroked) ? (attr | STROKED) : attr;
+            shapeCommands[n] = command;
+            shapeBounds[4 * n] = x0;
+            shapeBounds[4 * n + 1] = y0;
+            shapeBounds[4 * n + 2] = x1;
+            shapeBounds[4 * n + 3] = y1;
+
+            segCount += nSegs;
+            coordCount += nCoords;
+            segOffsets[n + 1] = segCount;
+            coordOffsets[n + 1] = coordCount;
+            shapeCount = n + 1;
+        }
+    }
+
+    /**
+     * @return the index of the attribute matching the current state
+     */
+    private int attribute(final boolean stroked) {
+        final State s = state;
+        final Paint paint = (stroked) ? s.stroke : s.fill;
+        if (!(paint instanceof Color)) {
+            throw new UnsupportedOperationException("Unsupported paint: " + paint);
+        }
+        final Attribute attr;
+        if (stroked) {
+            // the stroke width is transformed like the coordinates:
+            final double scale = Math.sqrt(Math.abs(s.mxx * s.myy - s.mxy * s.myx));
+            double[] dashes = null;
+            if (s.lineDashes != null) {
+                dashes = new double[s.lineDashes.length];
+                for (int i = 0; i < dashes.length; i++) {
+                    dashes[i] = (float) (s.lineDashes[i] * scale);
+                }
+            }
+            attr = new Attribute((Color) paint, (float) (s.lineWidth * scale), s.lineCap, s.lineJoin,
+                    (float) s.miterLimit, dashes, (float) (s.lineDashOffset * scale),
+                    (float) s.globalAlpha, s.blendMode);
+        } else {
+            attr = new Attribute((Color) paint, 1.0, StrokeLineCap.SQUARE, StrokeLineJoin.MITER,
+                    10.0, null, 0.0, (float) s.globalAlpha, s.blendMode);
+        }
+        Integer index = attributeIndex.get(attr);
+        if (index == null) {
+            index = Integer.valueOf(attributes.size());
+            attributes.add(attr);
+            attributeIndex.put(attr, index);
+        }
+        return index.intValue();
+    }
+
+    /**
+     * The attributes of the graphics context (the defaults of a new one).
+     */
+    private static final class State {
+
+        Paint fill = Color.BLACK;
+        Paint stroke = Color.BLACK;
+        double lineWidth = 1.0;
+        StrokeLineCap lineCap = StrokeLineCap.SQUARE;
+        StrokeLineJoin lineJoin = StrokeLineJoin.MITER;
+        double miterLimit = 10.0;
+        double[] lineDashes = null;
+        double lineDashOffset = 0.0;
+        double globalAlpha = 1.0;
+        BlendMode blendMode = BlendMode.SRC_OVER;
+        double mxx = 1.0, myx = 0.0, mxy = 0.0, myy = 1.0, mxt = 0.0, myt = 0.0;
+
+        State() {
+        }
+
+        State(final State s) {
+            fill = s.fill;
+            stroke = s.stroke;
+            lineWidth = s.lineWidth;
+            lineCap = s.lineCap;
+            lineJoin = s.lineJoin;
+            miterLimit = s.miterLimit;
+            lineDashes = s.lineDashes;
+            lineDashOffset = s.lineDashOffset;
+            globalAlpha = s.globalAlpha;
+            blendMode = s.blendMode;
+            mxx = s.mxx;
+            myx = s.myx;
+            mxy = s.mxy;
+            myy = s.myy;
+            mxt = s.mxt;
+            myt = s.myt;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * MapBench project (GPLv2 + CP)
+ ******************************************************************************/
+package it.geosolutions.java2d;
+
+import static it.geosolutions.java2d.BaseTest.getSortedFiles;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Measures the preparation of the commands done by
+ * DrawingCommands.prepareCommands() (filter, transform and winding rule of
+ * every command, without its log and index) on each map, sequentially and
+ * with the fork/join pool at 2, 4 ... available processors threads (or the
+ * counts given by -DPrepareBenchmark.threads=1,2,8), and checks that the
+ * clipped shape count does not depend on the thread count.
+ *
+ * Usage: PrepareBenchmark [file.ser | file.mapbin]* (the files of the
+ * profile if none).
+ */
+@SuppressWarnings("UseOfSystemOutOrSystemErr")
+public final class PrepareBenchmark {
+
+    private final static int WARMUP = Integer.getInteger("PrepareBenchmark.warmup", 3);
+    private final static int PASSES = Integer.getInteger("PrepareBenchmark.passes", 10);
+    private final static String THREADS = System.getProperty("PrepareBenchmark.threads");
+
+    public static void main(String[] args) throws Exception {
+        Locale.setDefault(Locale.US);
+
+        final File[] files;
+        if (args.length == 0) {
+            files = getSortedFiles();
+        } else {
+            files = new File[args.length];
+            for (int i = 0; i < args.length; i++) {
+                files[i] = new File(args[i]);
+            }
+        }
+        final int[] threads = getThreadCounts();
+
+        System.out.println("PrepareBenchmark: threads = " + Arrays.toString(threads)
+                + " passes = " + PASSES + " (available processors = "
+                + Runtime.getRuntime().availableProcessors() + ")");
+
+        for (File file : files) {
+            final DrawingCommands dc = DrawingCommands.load(file);
+
+            double ref = 0.0;
+            int refClipped = -1;
+
+            for (int t : threads) {
+                final double time = run(dc, t);
+
+                if (refClipped == -1) {
+                    ref = time;
+                    refClipped = dc.clipped;
+                }
+                System.out.println(String.format("%-40s threads: %3d time: %10.3f ms speedup: %5.2f clipped: %d%s",
+                        file.getName(), t, time, ref / time, dc.clipped,
+                        (dc.clipped != refClipped) ? " (MISMATCH)" : ""));
+            }
+            dc.dispose();
+        }
+    }
+
+    private static int[] getThreadCounts() {
+        if (THREADS != null) {
+            final String[] values = THREADS.split(",");
+            final int[] threads = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                threads[i] = Integer.parseInt(values[i].trim());
+            }
+            return threads;
+        }
+        final int cpus = Runtime.getRuntime().availableProcessors();
+        int n = 1;
+        for (int t = 2; t < cpus; t <<= 1) {
+            n++;
+        }
+        final int[] threads = new int[(cpus > 1) ? n + 1 : 1];
+        for (int i = 0, t = 1; i < n; i++, t <<= 1) {
+            threads[i] = t;
+        }
+        if (cpus > 1) {
+            threads[n] = cpus;
+        }
+        return threads;
+    }
+
+    /**
+     * @return prepare time in milliseconds (median pass)
+     */
+    private static double run(final DrawingCommands dc, final int threads) {
+        final long[] nanos = new long[PASSES];
+
+        for (int pass = -WARMUP; pass < PASSES; pass++) {
+            final long start = System.nanoTime();
+
+            dc.prepareWithoutIndex(true, MapConst.doUseWindingRule, MapConst.customWindingRule, threads);
+
+            final long elapsed = System.nanoTime() - start;
+
+            if (pass >= 0) {
+                nanos[pass] = elapsed;
+            }
+        }
+        Arrays.sort(nanos);
+        return nanos[PASSES / 2] / 1e6;
+    }
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * MapBench project (GPLv2 + CP)
+ ******************************************************************************/
+package it.geosolutions.java2d;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import javafx.scene.canvas.Canvas;
+import org.jfree.fx.FXCanvasTarget;
+import org.jfree.fx.FXCommandBuffer;
+import org.jfree.fx.FXCountingTarget;
+import org.jfree.fx.FXGraphics2D;
+import org.jfree.fx.FXHints;
+import org.jfree.fx.FXPath2DAccess;
+import org.jfree.fx.FXRenderTarget;
+
+/**
+ * Measures the segments per second sent by FXGraphics2D.fill(Shape) to the
+ * JavaFX canvas for Path2D.Double, Path2D.Float and GeneralPath shapes, with
+ * the PathIterator (FXHints.KEY_DIRECT_PATH_ACCESS = false) and with the
+ * direct array access (requires --add-opens java.desktop/java.awt.geom=ALL-UNNAMED).
+ *
+ * Only the Java2D to JavaFX translation is measured (the canvas is never
+ * rendered by Prism). The render target is set by -DShapeToPathBenchmark.target:
+ * canvas (default) writes the canvas command buffer, counting only counts the
+ * primitives (pure translation cost, see FXCountingTarget) and recording stores
+ * them in a FXCommandBuffer.
+ */
+@SuppressWarnings("UseOfSystemOutOrSystemErr")
+public final class ShapeToPathBenchmark {
+
+    private final static int SHAPES = Integer.getInteger("ShapeToPathBenchmark.shapes", 20000);
+    private final static int POINTS = Integer.getInteger("ShapeToPathBenchmark.points", 50);
+    private final static int WARMUP = Integer.getInteger("ShapeToPathBenchmark.warmup", 20);
+    private final static int PASSES = Integer.getInteger("ShapeToPathBenchmark.passes", 20);
+    private final static String TARGET = System.getProperty("ShapeToPathBenchmark.target", "canvas");
+
+    private final static int SIZE = 1000;
+
+    public static void main(String[] args) {
+        Locale.setDefault(Locale.US);
+
+        System.out.println("ShapeToPathBenchmark: shapes = " + SHAPES + " points = " + POINTS
+                + " passes = " + PASSES + " target = " + TARGET);
+        System.out.println("FXPath2DAccess enabled: " + FXPath2DAccess.isEnabled());
+
+        final Random random = new Random(3447667858947863824L);
+
+        final String[] names = new String[]{"Path2D.Double", "Path2D.Float", "GeneralPath"};
+        final Shape[][] shapes = new Shape[names.length][];
+
+        for (int t = 0; t < names.length; t++) {
+            shapes[t] = createShapes(random, t);
+        }
+        // moveTo + lineTo + close per shape:
+        final long segments = (long) SHAPES * (POINTS + 1);
+
+        for (int t = 0; t < names.length; t++) {
+            final double iterated = run(shapes[t], false, segments);
+            final double direct = run(shapes[t], true, segments);
+
+            System.out.println(String.format("%-14s iterator: %10.3f Msegs/s direct: %10.3f Msegs/s gain: %.2f",
+                    names[t], iterated / 1e6, direct / 1e6, direct / iterated));
+        }
+    }
+
+    private static Shape[] createShapes(final Random random, final int type) {
+        final Shape[] shapes = new Shape[SHAPES];
+
+        for (int i = 0; i < SHAPES; i++) {
+            final Path2D p;
+            switch (type) {
+                case 0:
+                    p = new Path2D.Double(Path2D.WIND_NON_ZERO, POINTS + 1);
+                    break;
+                case 1:
+                    p = new Path2D.Float(Path2D.WIND_NON_ZERO, POINTS + 1);
+                    break;
+                default:
+                    p = new GeneralPath(Path2D.WIND_NON_ZERO, POINTS + 1);
+            }
+            p.moveTo(SIZE * random.nextDouble(), SIZE * random.nextDouble());
+            for (int j = 1; j < POINTS; j++) {
+                p.lineTo(SIZE * random.nextDouble(), SIZE * random.nextDouble());
+            }
+            p.closePath();
+            shapes[i] = p;
+        }
+        return shapes;
+    }
+
+    private static FXRenderTarget lastTarget = null;
+
+    private static FXRenderTarget createTarget() {
+        switch (TARGET) {
+            case "counting":
+                lastTarget = new FXCountingTarget(SIZE, SIZE);
+                break;
+            case "recording":
+                lastTarget = new FXCommandBuffer(SIZE, SIZE);
+                break;
+            default:
+                lastTarget = new FXCanvasTarget(new Canvas(SIZE, SIZE).getGraphicsContext2D());
+        }
+        return lastTarget;
+    }
+
+    /**
+     * @return segments per second (median pass)
+     */
+    private static double run(final Shape[] shapes, final boolean direct, final long segments) {
+        final long[] nanos = new long[PASSES];
+
+        for (int pass = -WARMUP; pass < PASSES; pass++) {
+            // new canvas (or target) per pass to release the command buffer:
+            final FXGraphics2D g2 = new FXGraphics2D(createTarget());
+            g2.setRenderingHint(FXHints.KEY_DIRECT_PATH_ACCESS, direct);
+            g2.setColor(Color.BLUE);
+
+            final long start = System.nanoTime();
+
+            for (int i = 0; i < shapes.length; i++) {
+                g2.fill(shapes[i]);
+            }
+            final long elapsed = System.nanoTime() - start;
+
+            if (pass >= 0) {
+                nanos[pass] = elapsed;
+            }
+        }
+        Arrays.sort(nanos);
+        if (!"canvas".equals(TARGET) && !direct) {
+            System.out.println("Last pass: " + lastTarget);
+        }
+        return segments / (nanos[PASSES / 2] / 1e9);
+    }
+}
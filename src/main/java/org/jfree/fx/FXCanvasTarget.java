@@ -0,0 +1,307 @@
+/* ============
+ * FXGraphics2D
+ * ============
+ * 
+ * (C)opyright 2014-2017, by Object Refinery Limited.
+ * 
+ * http://www.jfree.org/fxgraphics2d/index.html
+ *
+ * The FXGraphics2D class has been developed by Object Refinery Limited for 
+ * use in Orson Charts (http://www.object-refinery.com/orsoncharts) and
+ * JFreeChart (http://www.jfree.org/jfreechart).  It may be useful for other
+ * code that uses the Graphics2D API provided by Java2D.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   - Neither the name of the Object Refinery Limited nor the
+ *     names of its contributors may be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL OBJECT REFINERY LIMITED BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+
+
+package org.jfree.fx;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.effect.BlendMode;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.ArcType;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+import javafx.scene.text.Font;
+
+/**
+ * A render target that forwards the drawing primitives to the 
+ * {@link GraphicsContext} of a JavaFX canvas.
+ * 
+ * @since 1.6
+ */
+public final class FXCanvasTarget implements FXRenderTarget {
+
+    /** The graphics context. */
+    private final GraphicsContext gc;
+
+    /**
+     * Creates a new target for a graphics context.
+     * 
+     * @param gc  the graphics context ({@code null} not permitted).
+     */
+    public FXCanvasTarget(GraphicsContext gc) {
+        if (gc == null) {
+            throw new IllegalArgumentException("Null 'gc' argument.");
+        }
+        this.gc = gc;
+    }
+
+    /**
+     * Returns the graphics context.
+     * 
+     * @return The graphics context (never {@code null}). 
+     */
+    public GraphicsContext getGraphicsContext() {
+        return this.gc;
+    }
+
+    @Override
+    public double getWidth() {
+        return this.gc.getCanvas().getWidth();
+    }
+
+    @Override
+    public double getHeight() {
+        return this.gc.getCanvas().getHeight();
+    }
+
+    @Override
+    public Canvas getCanvas() {
+        return this.gc.getCanvas();
+    }
+
+    @Override
+    public void save() {
+        this.gc.save();
+    }
+
+    @Override
+    public void restore() {
+        this.gc.restore();
+    }
+
+    @Override
+    public void setFill(Paint p) {
+        this.gc.setFill(p);
+    }
+
+    @Override
+    public void setStroke(Paint p) {
+        this.gc.setStroke(p);
+    }
+
+    @Override
+    public void setLineWidth(double lw) {
+        this.gc.setLineWidth(lw);
+    }
+
+    @Override
+    public void setLineCap(StrokeLineCap cap) {
+        this.gc.setLineCap(cap);
+    }
+
+    @Override
+    public void setLineJoin(StrokeLineJoin join) {
+        this.gc.setLineJoin(join);
+    }
+
+    @Override
+    public void setMiterLimit(double ml) {
+        this.gc.setMiterLimit(ml);
+    }
+
+    @Override
+    public void setLineDashes(double[] dashes) {
+        this.gc.setLineDashes(dashes);
+    }
+
+    @Override
+    public void setLineDashOffset(double dashOffset) {
+        this.gc.setLineDashOffset(dashOffset);
+    }
+
+    @Override
+    public void setGlobalAlpha(double alpha) {
+        this.gc.setGlobalAlpha(alpha);
+    }
+
+    @Override
+    public void setGlobalBlendMode(BlendMode op) {
+        this.gc.setGlobalBlendMode(op);
+    }
+
+    @Override
+    public void setFont(Font f) {
+        this.gc.setFont(f);
+    }
+
+    @Override
+    public void setTransform(double mxx, double myx, double mxy, double myy, 
+            double mxt, double myt) {
+        this.gc.setTransform(mxx, myx, mxy, myy, mxt, myt);
+    }
+
+    @Override
+    public void beginPath() {
+        this.gc.beginPath();
+    }
+
+    @Override
+    public void moveTo(double x0, double y0) {
+        this.gc.moveTo(x0, y0);
+    }
+
+    @Override
+    public void lineTo(double x1, double y1) {
+        this.gc.lineTo(x1, y1);
+    }
+
+    @Override
+    public void quadraticCurveTo(double xc, double yc, double x1, double y1) {
+        this.gc.quadraticCurveTo(xc, yc, x1, y1);
+    }
+
+    @Override
+    public void bezierCurveTo(double xc1, double yc1, double xc2, double yc2, 
+            double x1, double y1) {
+        this.gc.bezierCurveTo(xc1, yc1, xc2, yc2, x1, y1);
+    }
+
+    @Override
+    public void closePath() {
+        this.gc.closePath();
+    }
+
+    @Override
+    public void rect(double x, double y, double w, double h) {
+        this.gc.rect(x, y, w, h);
+    }
+
+    @Override
+    public void fill() {
+        this.gc.fill();
+    }
+
+    @Override
+    public void stroke() {
+        this.gc.stroke();
+    }
+
+    @Override
+    public void clip() {
+        this.gc.clip();
+    }
+
+    @Override
+    public void clearRect(double x, double y, double w, double h) {
+        this.gc.clearRect(x, y, w, h);
+    }
+
+    @Override
+    public void fillRect(double x, double y, double w, double h) {
+        this.gc.fillRect(x, y, w, h);
+    }
+
+    @Override
+    public void strokeRect(double x, double y, double w, double h) {
+        this.gc.strokeRect(x, y, w, h);
+    }
+
+    @Override
+    public void fillRoundRect(double x, double y, double w, double h, 
+            double arcWidth, double arcHeight) {
+        this.gc.fillRoundRect(x, y, w, h, arcWidth, arcHeight);
+    }
+
+    @Override
+    public void strokeRoundRect(double x, double y, double w, double h, 
+            double arcWidth, double arcHeight) {
+        this.gc.strokeRoundRect(x, y, w, h, arcWidth, arcHeight);
+    }
+
+    @Override
+    public void fillOval(double x, double y, double w, double h) {
+        this.gc.fillOval(x, y, w, h);
+    }
+
+    @Override
+    public void strokeOval(double x, double y, double w, double h) {
+        this.gc.strokeOval(x, y, w, h);
+    }
+
+    @Override
+    public void fillArc(double x, double y, double w, double h, 
+            double startAngle, double arcExtent, ArcType closure) {
+        this.gc.fillArc(x, y, w, h, startAngle, arcExtent, closure);
+    }
+
+    @Override
+    public void strokeArc(double x, double y, double w, double h, 
+            double startAngle, double arcExtent, ArcType closure) {
+        this.gc.strokeArc(x, y, w, h, startAngle, arcExtent, closure);
+    }
+
+    @Override
+    public void strokeLine(double x1, double y1, double x2, double y2) {
+        this.gc.strokeLine(x1, y1, x2, y2);
+    }
+
+    @Override
+    public void fillPolygon(double[] xPoints, double[] yPoints, int nPoints) {
+        this.gc.fillPolygon(xPoints, yPoints, nPoints);
+    }
+
+    @Override
+    public void strokePolygon(double[] xPoints, double[] yPoints, 
+            int nPoints) {
+        this.gc.strokePolygon(xPoints, yPoints, nPoints);
+    }
+
+    @Override
+    public void strokePolyline(double[] xPoints, double[] yPoints, 
+            int nPoints) {
+        this.gc.strokePolyline(xPoints, yPoints, nPoints);
+    }
+
+    @Override
+    public void fillText(String text, double x, double y) {
+        this.gc.fillText(text, x, y);
+    }
+
+    @Override
+    public void drawImage(Image img, double x, double y, double w, double h) {
+        this.gc.drawImage(img, x, y, w, h);
+    }
+
+    @Override
+    public void drawImage(Image img, double sx, double sy, double sw, 
+            double sh, double dx, double dy, double dw, double dh) {
+        this.gc.drawImage(img, sx, sy, sw, sh, dx, dy, dw, dh);
+    }
+
+}
@@ -0,0 +1,128 @@
+/* ============
+ * FXGraphics2D
+ * ============
+ * 
+ * (C)opyright 2014-2017, by Object Refinery Limited.
+ * 
+ * http://www.jfree.org/fxgraphics2d/index.html
+ *
+ * The FXGraphics2D class has been developed by Object Refinery Limited for 
+ * use in Orson Charts (http://www.object-refinery.com/orsoncharts) and
+ * JFreeChart (http://www.jfree.org/jfreechart).  It may be useful for other
+ * code that uses the Graphics2D API provided by Java2D.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   - Neither the name of the Object Refinery Limited nor the
+ *     names of its contributors may be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL OBJECT REFINERY LIMITED BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+
+
+package org.jfree.fx;
+
+/**
+ * The bounds test used by {@link FXGraphics2D} to drop the shapes that lie
+ * entirely outside the device clip and the canvas, before any path is sent 
+ * to the JavaFX graphics context (see {@link FXHints#KEY_CLIP_CULLING}).  
+ * The instance is shared by all the {@code FXGraphics2D} instances that 
+ * render to the same context, and counts the tested and culled shapes.
+ * 
+ * @since 1.6
+ */
+public final class FXClipCuller {
+
+    private long testedCount;
+    private long culledCount;
+
+    /**
+     * Creates a new instance.
+     */
+    FXClipCuller() {
+        // nothing to do
+    }
+
+    /**
+     * Returns {@code true} if the device space bounds {@code (x0, y0)} - 
+     * {@code (x1, y1)} do not intersect the visible area, that is the 
+     * canvas area {@code (0, 0) - (width, height)} clipped by the device 
+     * clip bounds (if any).
+     * 
+     * @param x0  the minimum x-coordinate.
+     * @param y0  the minimum y-coordinate.
+     * @param x1  the maximum x-coordinate.
+     * @param y1  the maximum y-coordinate.
+     * @param clipX0  the minimum x-coordinate of the clip.
+     * @param clipY0  the minimum y-coordinate of the clip.
+     * @param clipX1  the maximum x-coordinate of the clip.
+     * @param clipY1  the maximum y-coordinate of the clip.
+     * @param width  the canvas width.
+     * @param height  the canvas height.
+     * 
+     * @return A boolean. 
+     */
+    boolean isOutside(double x0, double y0, double x1, double y1, 
+            double clipX0, double clipY0, double clipX1, double clipY1,
+            double width, double height) {
+        this.testedCount++;
+        // NaN coordinates are never culled (all the tests are false):
+        if (x1 < Math.max(0.0, clipX0) || y1 < Math.max(0.0, clipY0)
+                || x0 > Math.min(width, clipX1) 
+                || y0 > Math.min(height, clipY1)) {
+            this.culledCount++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of shapes tested against the visible area.
+     * 
+     * @return The count.
+     */
+    public long getTestedCount() {
+        return this.testedCount;
+    }
+
+    /**
+     * Returns the number of shapes that were dropped because they were 
+     * entirely outside the visible area.
+     * 
+     * @return The count.
+     */
+    public long getCulledCount() {
+        return this.culledCount;
+    }
+
+    /**
+     * Resets the counters.
+     */
+    public void resetStatistics() {
+        this.testedCount = 0L;
+        this.culledCount = 0L;
+    }
+
+    @Override
+    public String toString() {
+        return "FXClipCuller{tested=" + this.testedCount + ", culled=" 
+                + this.culledCount + "}";
+    }
+
+}
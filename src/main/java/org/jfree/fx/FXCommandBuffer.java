@@ -0,0 +1,754 @@
+/* ============
+ * FXGraphics2D
+ * ============
+ * 
+ * (C)opyright 2014-2017, by Object Refinery Limited.
+ * 
+ * http://www.jfree.org/fxgraphics2d/index.html
+ *
+ * The FXGraphics2D class has been developed by Object Refinery Limited for 
+ * use in Orson Charts (http://www.object-refinery.com/orsoncharts) and
+ * JFreeChart (http://www.jfree.org/jfreechart).  It may be useful for other
+ * code that uses the Graphics2D API provided by Java2D.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   - Neither the name of the Object Refinery Limited nor the
+ *     names of its contributors may be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL OBJECT REFINERY LIMITED BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+
+
+package org.jfree.fx;
+
+import java.awt.geom.AffineTransform;
+import java.util.Arrays;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.effect.BlendMode;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.ArcType;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+import javafx.scene.text.Font;
+
+/**
+ * A buffer that records the drawing primitives produced by an 
+ * {@link FXGraphics2D} instance (created with 
+ * {@link FXGraphics2D#FXGraphics2D(FXRenderTarget)}) instead of sending 
+ * them to a canvas.  The Java2D operations are translated once (shapes, 
+ * strokes, paints, fonts and images), and the buffer can then be replayed 
+ * any number of times onto a {@link GraphicsContext} or drawn with
+ * {@link FXGraphics2D#drawCommands(FXDrawing)}, under an additional 
+ * transform.
+ * <p>
+ * The primitives are stored in three arrays: one byte per operation, the 
+ * numeric arguments in a {@code double[]} array and the objects (paints, 
+ * fonts, images, strings and dash arrays) in an {@code Object[]} array.  
+ * The recorded objects are referenced, not copied, so the images must not 
+ * be modified while the buffer is in use.</p>
+ * 
+ * @since 1.6
+ */
+public final class FXCommandBuffer implements FXRenderTarget, FXDrawing {
+
+    private static final byte SAVE = 0;
+    private static final byte RESTORE = 1;
+    private static final byte SET_FILL = 2;
+    private static final byte SET_STROKE = 3;
+    private static final byte SET_LINE_WIDTH = 4;
+    private static final byte SET_LINE_CAP = 5;
+    private static final byte SET_LINE_JOIN = 6;
+    private static final byte SET_MITER_LIMIT = 7;
+    private static final byte SET_LINE_DASHES = 8;
+    private static final byte SET_LINE_DASH_OFFSET = 9;
+    private static final byte SET_GLOBAL_ALPHA = 10;
+    private static final byte SET_BLEND_MODE = 11;
+    private static final byte SET_FONT = 12;
+    private static final byte SET_TRANSFORM = 13;
+    private static final byte BEGIN_PATH = 14;
+    private static final byte MOVE_TO = 15;
+    private static final byte LINE_TO = 16;
+    private static final byte QUAD_TO = 17;
+    private static final byte CUBIC_TO = 18;
+    private static final byte CLOSE_PATH = 19;
+    private static final byte RECT = 20;
+    private static final byte FILL = 21;
+    private static final byte STROKE = 22;
+    private static final byte CLIP = 23;
+    private static final byte CLEAR_RECT = 24;
+    private static final byte FILL_RECT = 25;
+    private static final byte STROKE_RECT = 26;
+    private static final byte FILL_ROUND_RECT = 27;
+    private static final byte STROKE_ROUND_RECT = 28;
+    private static final byte FILL_OVAL = 29;
+    private static final byte STROKE_OVAL = 30;
+    private static final byte FILL_ARC = 31;
+    private static final byte STROKE_ARC = 32;
+    private static final byte STROKE_LINE = 33;
+    private static final byte FILL_POLYGON = 34;
+    private static final byte STROKE_POLYGON = 35;
+    private static final byte STROKE_POLYLINE = 36;
+    private static final byte FILL_TEXT = 37;
+    private static final byte DRAW_IMAGE = 38;
+    private static final byte DRAW_IMAGE_REGION = 39;
+
+    private static final StrokeLineCap[] CAPS = StrokeLineCap.values();
+    private static final StrokeLineJoin[] JOINS = StrokeLineJoin.values();
+    private static final BlendMode[] BLEND_MODES = BlendMode.values();
+    private static final ArcType[] ARC_TYPES = ArcType.values();
+
+    /** The width of the drawing area. */
+    private final double width;
+
+    /** The height of the drawing area. */
+    private final double height;
+
+    private byte[] ops = new byte[256];
+    private int opCount;
+
+    private double[] args = new double[1024];
+    private int argCount;
+
+    private Object[] refs = new Object[64];
+    private int refCount;
+
+    /**
+     * Creates a new empty buffer for a drawing area of the given size (the
+     * size is used by {@link FXGraphics2D} to cull the shapes and to create
+     * its device configuration).
+     * 
+     * @param width  the width.
+     * @param height  the height.
+     */
+    public FXCommandBuffer(double width, double height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public double getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public double getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Returns {@code null}, the buffer has no pixels.
+     * 
+     * @return {@code null}. 
+     */
+    @Override
+    public Canvas getCanvas() {
+        return null;
+    }
+
+    /**
+     * Returns the number of recorded operations.
+     * 
+     * @return The count.
+     */
+    public int getCommandCount() {
+        return this.opCount;
+    }
+
+    /**
+     * Returns the approximate number of bytes used by the recorded 
+     * operations (the referenced objects are not included).
+     * 
+     * @return The number of bytes.
+     */
+    public long getBytes() {
+        return this.opCount + 8L * this.argCount + 4L * this.refCount;
+    }
+
+    /**
+     * Discards the recorded operations (the arrays are kept to record the
+     * next operations).
+     */
+    public void clear() {
+        Arrays.fill(this.refs, 0, this.refCount, null);
+        this.opCount = 0;
+        this.argCount = 0;
+        this.refCount = 0;
+    }
+
+    private void op(byte op, int nArgs) {
+        if (this.opCount == this.ops.length) {
+            this.ops = Arrays.copyOf(this.ops, this.opCount << 1);
+        }
+        this.ops[this.opCount++] = op;
+        if (this.argCount + nArgs > this.args.length) {
+            this.args = Arrays.copyOf(this.args, 
+                    Math.max(this.argCount + nArgs, this.args.length << 1));
+        }
+    }
+
+    private void ref(Object obj) {
+        if (this.refCount == this.refs.length) {
+            this.refs = Arrays.copyOf(this.refs, this.refCount << 1);
+        }
+        this.refs[this.refCount++] = obj;
+    }
+
+    private void args(double a0, double a1) {
+        final double[] a = this.args;
+        int n = this.argCount;
+        a[n] = a0;
+        a[n + 1] = a1;
+        this.argCount = n + 2;
+    }
+
+    private void args(double a0, double a1, double a2, double a3) {
+        final double[] a = this.args;
+        int n = this.argCount;
+        a[n] = a0;
+        a[n + 1] = a1;
+        a[n + 2] = a2;
+        a[n + 3] = a3;
+        this.argCount = n + 4;
+    }
+
+    private void args(double a0, double a1, double a2, double a3, double a4, 
+            double a5) {
+        final double[] a = this.args;
+        int n = this.argCount;
+        a[n] = a0;
+        a[n + 1] = a1;
+        a[n + 2] = a2;
+        a[n + 3] = a3;
+        a[n + 4] = a4;
+        a[n + 5] = a5;
+        this.argCount = n + 6;
+    }
+
+    private void points(byte op, double[] xPoints, double[] yPoints, 
+            int nPoints) {
+        op(op, 1 + 2 * nPoints);
+        this.args[this.argCount++] = nPoints;
+        System.arraycopy(xPoints, 0, this.args, this.argCount, nPoints);
+        this.argCount += nPoints;
+        System.arraycopy(yPoints, 0, this.args, this.argCount, nPoints);
+        this.argCount += nPoints;
+    }
+
+    @Override
+    public void save() {
+        op(SAVE, 0);
+    }
+
+    @Override
+    public void restore() {
+        op(RESTORE, 0);
+    }
+
+    @Override
+    public void setFill(Paint p) {
+        op(SET_FILL, 0);
+        ref(p);
+    }
+
+    @Override
+    public void setStroke(Paint p) {
+        op(SET_STROKE, 0);
+        ref(p);
+    }
+
+    @Override
+    public void setLineWidth(double lw) {
+        op(SET_LINE_WIDTH, 1);
+        this.args[this.argCount++] = lw;
+    }
+
+    @Override
+    public void setLineCap(StrokeLineCap cap) {
+        op(SET_LINE_CAP, 1);
+        this.args[this.argCount++] = cap.ordinal();
+    }
+
+    @Override
+    public void setLineJoin(StrokeLineJoin join) {
+        op(SET_LINE_JOIN, 1);
+        this.args[this.argCount++] = join.ordinal();
+    }
+
+    @Override
+    public void setMiterLimit(double ml) {
+        op(SET_MITER_LIMIT, 1);
+        this.args[this.argCount++] = ml;
+    }
+
+    @Override
+    public void setLineDashes(double[] dashes) {
+        op(SET_LINE_DASHES, 0);
+        ref(dashes != null ? dashes.clone() : null);
+    }
+
+    @Override
+    public void setLineDashOffset(double dashOffset) {
+        op(SET_LINE_DASH_OFFSET, 1);
+        this.args[this.argCount++] = dashOffset;
+    }
+
+    @Override
+    public void setGlobalAlpha(double alpha) {
+        op(SET_GLOBAL_ALPHA, 1);
+        this.args[this.argCount++] = alpha;
+    }
+
+    @Override
+    public void setGlobalBlendMode(BlendMode op) {
+        op(SET_BLEND_MODE, 1);
+        this.args[this.argCount++] = op.ordinal();
+    }
+
+    @Override
+    public void setFont(Font f) {
+        op(SET_FONT, 0);
+        ref(f);
+    }
+
+    @Override
+    public void setTransform(double mxx, double myx, double mxy, double myy, 
+            double mxt, double myt) {
+        op(SET_TRANSFORM, 6);
+        args(mxx, myx, mxy, myy, mxt, myt);
+    }
+
+    @Override
+    public void beginPath() {
+        op(BEGIN_PATH, 0);
+    }
+
+    @Override
+    public void moveTo(double x0, double y0) {
+        op(MOVE_TO, 2);
+        args(x0, y0);
+    }
+
+    @Override
+    public void lineTo(double x1, double y1) {
+        op(LINE_TO, 2);
+        args(x1, y1);
+    }
+
+    @Override
+    public void quadraticCurveTo(double xc, double yc, double x1, double y1) {
+        op(QUAD_TO, 4);
+        args(xc, yc, x1, y1);
+    }
+
+    @Override
+    public void bezierCurveTo(double xc1, double yc1, double xc2, double yc2, 
+            double x1, double y1) {
+        op(CUBIC_TO, 6);
+        args(xc1, yc1, xc2, yc2, x1, y1);
+    }
+
+    @Override
+    public void closePath() {
+        op(CLOSE_PATH, 0);
+    }
+
+    @Override
+    public void rect(double x, double y, double w, double h) {
+        op(RECT, 4);
+        args(x, y, w, h);
+    }
+
+    @Override
+    public void fill() {
+        op(FILL, 0);
+    }
+
+    @Override
+    public void stroke() {
+        op(STROKE, 0);
+    }
+
+    @Override
+    public void clip() {
+        op(CLIP, 0);
+    }
+
+    @Override
+    public void clearRect(double x, double y, double w, double h) {
+        op(CLEAR_RECT, 4);
+        args(x, y, w, h);
+    }
+
+    @Override
+    public void fillRect(double x, double y, double w, double h) {
+        op(FILL_RECT, 4);
+        args(x, y, w, h);
+    }
+
+    @Override
+    public void strokeRect(double x, double y, double w, double h) {
+        op(STROKE_RECT, 4);
+        args(x, y, w, h);
+    }
+
+    @Override
+    public void fillRoundRect(double x, double y, double w, double h, 
+            double arcWidth, double arcHeight) {
+        op(FILL_ROUND_RECT, 6);
+        args(x, y, w, h, arcWidth, arcHeight);
+    }
+
+    @Override
+    public void strokeRoundRect(double x, double y, double w, double h, 
+            double arcWidth, double arcHeight) {
+        op(STROKE_ROUND_RECT, 6);
+        args(x, y, w, h, arcWidth, arcHeight);
+    }
+
+    @Override
+    public void fillOval(double x, double y, double w, double h) {
+        op(FILL_OVAL, 4);
+        args(x, y, w, h);
+    }
+
+    @Override
+    public void strokeOval(double x, double y, double w, double h) {
+        op(STROKE_OVAL, 4);
+        args(x, y, w, h);
+    }
+
+    @Override
+    public void fillArc(double x, double y, double w, double h, 
+            double startAngle, double arcExtent, ArcType closure) {
+        op(FILL_ARC, 7);
+        args(x, y, w, h, startAngle, arcExtent);
+        this.args[this.argCount++] = closure.ordinal();
+    }
+
+    @Override
+    public void strokeArc(double x, double y, double w, double h, 
+            double startAngle, double arcExtent, ArcType closure) {
+        op(STROKE_ARC, 7);
+        args(x, y, w, h, startAngle, arcExtent);
+        this.args[this.argCount++] = closure.ordinal();
+    }
+
+    @Override
+    public void strokeLine(double x1, double y1, double x2, double y2) {
+        op(STROKE_LINE, 4);
+        args(x1, y1, x2, y2);
+    }
+
+    @Override
+    public void fillPolygon(double[] xPoints, double[] yPoints, int nPoints) {
+        points(FILL_POLYGON, xPoints, yPoints, nPoints);
+    }
+
+    @Override
+    public void strokePolygon(double[] xPoints, double[] yPoints, 
+            int nPoints) {
+        points(STROKE_POLYGON, xPoints, yPoints, nPoints);
+    }
+
+    @Override
+    public void strokePolyline(double[] xPoints, double[] yPoints, 
+            int nPoints) {
+        points(STROKE_POLYLINE, xPoints, yPoints, nPoints);
+    }
+
+    @Override
+    public void fillText(String text, double x, double y) {
+        op(FILL_TEXT, 2);
+        ref(text);
+        args(x, y);
+    }
+
+    @Override
+    public void drawImage(Image img, double x, double y, double w, double h) {
+        op(DRAW_IMAGE, 4);
+        ref(img);
+        args(x, y, w, h);
+    }
+
+    @Override
+    public void drawImage(Image img, double sx, double sy, double sw, 
+            double sh, double dx, double dy, double dw, double dh) {
+        op(DRAW_IMAGE_REGION, 8);
+        ref(img);
+        args(sx, sy, sw, sh);
+        args(dx, dy, dw, dh);
+    }
+
+    /**
+     * Replays the recorded operations onto a graphics context.  The 
+     * attributes and the clip of the graphics context are saved before and 
+     * restored after the replay.
+     * 
+     * @param gc  the graphics context ({@code null} not permitted).
+     * @param tx  the transform applied to the recorded coordinates 
+     *     ({@code null} for none).
+     */
+    public void replay(GraphicsContext gc, AffineTransform tx) {
+        replay(new FXCanvasTarget(gc), tx);
+    }
+
+    /**
+     * Replays the recorded operations onto a render target.  The recording
+     * starts with the default attributes of a graphics context, which are 
+     * set first.  The replay is enclosed in a {@code save()} / 
+     * {@code restore()} pair (the levels left saved by the recording are 
+     * restored too).
+     * 
+     * @param target  the target ({@code null} not permitted).
+     * @param tx  the transform applied to the recorded coordinates 
+     *     ({@code null} for none).
+     */
+    @Override
+    public void replay(FXRenderTarget target, AffineTransform tx) {
+        final double a, b, c, d, e, f;
+        if (tx != null) {
+            a = tx.getScaleX();
+            b = tx.getShearY();
+            c = tx.getShearX();
+            d = tx.getScaleY();
+            e = tx.getTranslateX();
+            f = tx.getTranslateY();
+        } else {
+            a = d = 1.0;
+            b = c = e = f = 0.0;
+        }
+        target.save();
+        int depth = 0;
+
+        final FXContextState s = FXContextState.DEFAULTS;
+        target.setFill(s.fill);
+        target.setStroke(s.stroke);
+        target.setLineWidth(s.lineWidth);
+        target.setLineCap(s.lineCap);
+        target.setLineJoin(s.lineJoin);
+        target.setMiterLimit(s.miterLimit);
+        target.setLineDashes(s.lineDashes);
+        target.setLineDashOffset(s.lineDashOffset);
+        target.setGlobalAlpha(s.globalAlpha);
+        target.setGlobalBlendMode(s.blendMode);
+        target.setFont(s.font);
+        target.setTransform(a, b, c, d, e, f);
+
+        final byte[] o = this.ops;
+        final double[] v = this.args;
+        final Object[] r = this.refs;
+        int j = 0;
+        int k = 0;
+        int n;
+        double[] xs = null;
+        double[] ys = null;
+        for (int i = 0, len = this.opCount; i < len; i++) {
+            switch (o[i]) {
+                case SAVE:
+                    target.save();
+                    depth++;
+                    break;
+                case RESTORE:
+                    if (depth > 0) {
+                        target.restore();
+                        depth--;
+                    }
+                    break;
+                case SET_FILL:
+                    target.setFill((Paint) r[k++]);
+                    break;
+                case SET_STROKE:
+                    target.setStroke((Paint) r[k++]);
+                    break;
+                case SET_LINE_WIDTH:
+                    target.setLineWidth(v[j++]);
+                    break;
+                case SET_LINE_CAP:
+                    target.setLineCap(CAPS[(int) v[j++]]);
+                    break;
+                case SET_LINE_JOIN:
+                    target.setLineJoin(JOINS[(int) v[j++]]);
+                    break;
+                case SET_MITER_LIMIT:
+                    target.setMiterLimit(v[j++]);
+                    break;
+                case SET_LINE_DASHES:
+                    target.setLineDashes((double[]) r[k++]);
+                    break;
+                case SET_LINE_DASH_OFFSET:
+                    target.setLineDashOffset(v[j++]);
+                    break;
+                case SET_GLOBAL_ALPHA:
+                    target.setGlobalAlpha(v[j++]);
+                    break;
+                case SET_BLEND_MODE:
+                    target.setGlobalBlendMode(BLEND_MODES[(int) v[j++]]);
+                    break;
+                case SET_FONT:
+                    target.setFont((Font) r[k++]);
+                    break;
+                case SET_TRANSFORM:
+                    // tx x recorded transform:
+                    target.setTransform(
+                            a * v[j] + c * v[j + 1], 
+                            b * v[j] + d * v[j + 1],
+                            a * v[j + 2] + c * v[j + 3],
+                            b * v[j + 2] + d * v[j + 3],
+                            a * v[j + 4] + c * v[j + 5] + e,
+                            b * v[j + 4] + d * v[j + 5] + f);
+                    j += 6;
+                    break;
+                case BEGIN_PATH:
+                    target.beginPath();
+                    break;
+                case MOVE_TO:
+                    target.moveTo(v[j], v[j + 1]);
+                    j += 2;
+                    break;
+                case LINE_TO:
+                    target.lineTo(v[j], v[j + 1]);
+                    j += 2;
+                    break;
+                case QUAD_TO:
+                    target.quadraticCurveTo(v[j], v[j + 1], v[j + 2], 
+                            v[j + 3]);
+                    j += 4;
+                    break;
+                case CUBIC_TO:
+                    target.bezierCurveTo(v[j], v[j + 1], v[j + 2], v[j + 3], 
+                            v[j + 4], v[j + 5]);
+                    j += 6;
+                    break;
+                case CLOSE_PATH:
+                    target.closePath();
+                    break;
+                case RECT:
+                    target.rect(v[j], v[j + 1], v[j + 2], v[j + 3]);
+                    j += 4;
+                    break;
+                case FILL:
+                    target.fill();
+                    break;
+                case STROKE:
+                    target.stroke();
+                    break;
+                case CLIP:
+                    target.clip();
+                    break;
+                case CLEAR_RECT:
+                    target.clearRect(v[j], v[j + 1], v[j + 2], v[j + 3]);
+                    j += 4;
+                    break;
+                case FILL_RECT:
+                    target.fillRect(v[j], v[j + 1], v[j + 2], v[j + 3]);
+                    j += 4;
+                    break;
+                case STROKE_RECT:
+                    target.strokeRect(v[j], v[j + 1], v[j + 2], v[j + 3]);
+                    j += 4;
+                    break;
+                case FILL_ROUND_RECT:
+                    target.fillRoundRect(v[j], v[j + 1], v[j + 2], v[j + 3], 
+                            v[j + 4], v[j + 5]);
+                    j += 6;
+                    break;
+                case STROKE_ROUND_RECT:
+                    target.strokeRoundRect(v[j], v[j + 1], v[j + 2], 
+                            v[j + 3], v[j + 4], v[j + 5]);
+                    j += 6;
+                    break;
+                case FILL_OVAL:
+                    target.fillOval(v[j], v[j + 1], v[j + 2], v[j + 3]);
+                    j += 4;
+                    break;
+                case STROKE_OVAL:
+                    target.strokeOval(v[j], v[j + 1], v[j + 2], v[j + 3]);
+                    j += 4;
+                    break;
+                case FILL_ARC:
+                    target.fillArc(v[j], v[j + 1], v[j + 2], v[j + 3], 
+                            v[j + 4], v[j + 5], ARC_TYPES[(int) v[j + 6]]);
+                    j += 7;
+                    break;
+                case STROKE_ARC:
+                    target.strokeArc(v[j], v[j + 1], v[j + 2], v[j + 3], 
+                            v[j + 4], v[j + 5], ARC_TYPES[(int) v[j + 6]]);
+                    j += 7;
+                    break;
+                case STROKE_LINE:
+                    target.strokeLine(v[j], v[j + 1], v[j + 2], v[j + 3]);
+                    j += 4;
+                    break;
+                case FILL_POLYGON:
+                case STROKE_POLYGON:
+                case STROKE_POLYLINE:
+                    n = (int) v[j];
+                    if (xs == null || xs.length < n) {
+                        xs = new double[n];
+                        ys = new double[n];
+                    }
+                    System.arraycopy(v, j + 1, xs, 0, n);
+                    System.arraycopy(v, j + 1 + n, ys, 0, n);
+                    if (o[i] == FILL_POLYGON) {
+                        target.fillPolygon(xs, ys, n);
+                    } else if (o[i] == STROKE_POLYGON) {
+                        target.strokePolygon(xs, ys, n);
+                    } else {
+                        target.strokePolyline(xs, ys, n);
+                    }
+                    j += 1 + 2 * n;
+                    break;
+                case FILL_TEXT:
+                    target.fillText((String) r[k++], v[j], v[j + 1]);
+                    j += 2;
+                    break;
+                case DRAW_IMAGE:
+                    target.drawImage((Image) r[k++], v[j], v[j + 1], 
+                            v[j + 2], v[j + 3]);
+                    j += 4;
+                    break;
+                case DRAW_IMAGE_REGION:
+                    target.drawImage((Image) r[k++], v[j], v[j + 1], 
+                            v[j + 2], v[j + 3], v[j + 4], v[j + 5], 
+                            v[j + 6], v[j + 7]);
+                    j += 8;
+                    break;
+                default:
+                    throw new IllegalStateException(
+                            "Unrecognised operation " + o[i]);
+            }
+        }
+        while (depth-- > 0) {
+            target.restore();
+        }
+        target.restore();
+    }
+
+    @Override
+    public String toString() {
+        return "FXCommandBuffer{commands=" + this.opCount + ", args=" 
+                + this.argCount + ", refs=" + this.refCount + ", bytes=" 
+                + getBytes() + "}";
+    }
+
+}
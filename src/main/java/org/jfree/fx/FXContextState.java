@@ -0,0 +1,321 @@
+/* ============
+ * FXGraphics2D
+ * ============
+ * 
+ * (C)opyright 2014-2017, by Object Refinery Limited.
+ * 
+ * http://www.jfree.org/fxgraphics2d/index.html
+ *
+ * The FXGraphics2D class has been developed by Object Refinery Limited for 
+ * use in Orson Charts (http://www.object-refinery.com/orsoncharts) and
+ * JFreeChart (http://www.jfree.org/jfreechart).  It may be useful for other
+ * code that uses the Graphics2D API provided by Java2D.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   - Neither the name of the Object Refinery Limited nor the
+ *     names of its contributors may be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL OBJECT REFINERY LIMITED BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+
+
+package org.jfree.fx;
+
+import java.awt.geom.AffineTransform;
+import java.util.Arrays;
+import java.util.Objects;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.effect.BlendMode;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+import javafx.scene.text.Font;
+import javafx.scene.transform.Affine;
+
+/**
+ * A snapshot of the attributes of a JavaFX {@link GraphicsContext} that are
+ * controlled by {@link FXGraphics2D}.  Each setter records the attribute in 
+ * a dirty mask, so that {@link FXContextTracker} only needs to compare the 
+ * attributes that were changed since the state was last applied.
+ * 
+ * @since 1.6
+ */
+final class FXContextState {
+
+    static final int FILL = 1;
+    static final int STROKE = 1 << 1;
+    static final int LINE_WIDTH = 1 << 2;
+    static final int LINE_CAP = 1 << 3;
+    static final int LINE_JOIN = 1 << 4;
+    static final int MITER_LIMIT = 1 << 5;
+    static final int LINE_DASHES = 1 << 6;
+    static final int LINE_DASH_OFFSET = 1 << 7;
+    static final int GLOBAL_ALPHA = 1 << 8;
+    static final int BLEND_MODE = 1 << 9;
+    static final int FONT = 1 << 10;
+    static final int TRANSFORM = 1 << 11;
+
+    /** A mask with all the attribute bits set. */
+    static final int ALL = (1 << 12) - 1;
+
+    /** The default attributes of a new graphics context. */
+    static final FXContextState DEFAULTS = new FXContextState();
+
+    Paint fill;
+    Paint stroke;
+    double lineWidth;
+    StrokeLineCap lineCap;
+    StrokeLineJoin lineJoin;
+    double miterLimit;
+    double[] lineDashes;
+    double lineDashOffset;
+    double globalAlpha;
+    BlendMode blendMode;
+    Font font;
+    
+    /** The transform coefficients, in the JavaFX order. */
+    double mxx, myx, mxy, myy, mxt, myt;
+
+    /** The attributes modified since the state was last applied. */
+    int dirty;
+
+    /**
+     * Creates a new state with the default attributes of a new graphics 
+     * context.
+     */
+    FXContextState() {
+        this.fill = Color.BLACK;
+        this.stroke = Color.BLACK;
+        this.lineWidth = 1.0;
+        this.lineCap = StrokeLineCap.SQUARE;
+        this.lineJoin = StrokeLineJoin.MITER;
+        this.miterLimit = 10.0;
+        this.lineDashOffset = 0.0;
+        this.globalAlpha = 1.0;
+        this.blendMode = BlendMode.SRC_OVER;
+        this.font = Font.getDefault();
+        this.mxx = 1.0;
+        this.myy = 1.0;
+    }
+
+    /**
+     * Creates a new state with the current attributes of a graphics
+     * context.
+     * 
+     * @param gc  the graphics context ({@code null} not permitted).
+     */
+    FXContextState(GraphicsContext gc) {
+        this.fill = gc.getFill();
+        this.stroke = gc.getStroke();
+        this.lineWidth = gc.getLineWidth();
+        this.lineCap = gc.getLineCap();
+        this.lineJoin = gc.getLineJoin();
+        this.miterLimit = gc.getMiterLimit();
+        this.lineDashes = gc.getLineDashes();
+        this.lineDashOffset = gc.getLineDashOffset();
+        this.globalAlpha = gc.getGlobalAlpha();
+        this.blendMode = gc.getGlobalBlendMode();
+        this.font = gc.getFont();
+        Affine t = gc.getTransform();
+        this.mxx = t.getMxx();
+        this.myx = t.getMyx();
+        this.mxy = t.getMxy();
+        this.myy = t.getMyy();
+        this.mxt = t.getTx();
+        this.myt = t.getTy();
+    }
+
+    /**
+     * Creates a copy of the specified state.
+     * 
+     * @param s  the state ({@code null} not permitted). 
+     */
+    FXContextState(FXContextState s) {
+        set(s);
+    }
+
+    /**
+     * Copies all the attributes (and the dirty mask) of another state.
+     * 
+     * @param s  the state ({@code null} not permitted).
+     */
+    void set(FXContextState s) {
+        this.fill = s.fill;
+        this.stroke = s.stroke;
+        this.lineWidth = s.lineWidth;
+        this.lineCap = s.lineCap;
+        this.lineJoin = s.lineJoin;
+        this.miterLimit = s.miterLimit;
+        this.lineDashes = s.lineDashes;
+        this.lineDashOffset = s.lineDashOffset;
+        this.globalAlpha = s.globalAlpha;
+        this.blendMode = s.blendMode;
+        this.font = s.font;
+        this.mxx = s.mxx;
+        this.myx = s.myx;
+        this.mxy = s.mxy;
+        this.myy = s.myy;
+        this.mxt = s.mxt;
+        this.myt = s.myt;
+        this.dirty = s.dirty;
+    }
+
+    void setFill(Paint p) {
+        this.fill = p;
+        this.dirty |= FILL;
+    }
+
+    void setStroke(Paint p) {
+        this.stroke = p;
+        this.dirty |= STROKE;
+    }
+
+    void setLineWidth(double w) {
+        this.lineWidth = w;
+        this.dirty |= LINE_WIDTH;
+    }
+
+    void setLineCap(StrokeLineCap cap) {
+        this.lineCap = cap;
+        this.dirty |= LINE_CAP;
+    }
+
+    void setLineJoin(StrokeLineJoin join) {
+        this.lineJoin = join;
+        this.dirty |= LINE_JOIN;
+    }
+
+    void setMiterLimit(double limit) {
+        this.miterLimit = limit;
+        this.dirty |= MITER_LIMIT;
+    }
+
+    void setLineDashes(double[] dashes) {
+        this.lineDashes = dashes;
+        this.dirty |= LINE_DASHES;
+    }
+
+    void setLineDashOffset(double offset) {
+        this.lineDashOffset = offset;
+        this.dirty |= LINE_DASH_OFFSET;
+    }
+
+    void setGlobalAlpha(double alpha) {
+        this.globalAlpha = alpha;
+        this.dirty |= GLOBAL_ALPHA;
+    }
+
+    void setGlobalBlendMode(BlendMode mode) {
+        this.blendMode = mode;
+        this.dirty |= BLEND_MODE;
+    }
+
+    void setFont(Font f) {
+        this.font = f;
+        this.dirty |= FONT;
+    }
+
+    /**
+     * Sets the transform from an AWT transform (the dirty flag is only set
+     * if the coefficients are different).
+     * 
+     * @param t  the transform ({@code null} not permitted).
+     */
+    void setTransform(AffineTransform t) {
+        setTransform(t.getScaleX(), t.getShearY(), t.getShearX(),
+                t.getScaleY(), t.getTranslateX(), t.getTranslateY());
+    }
+
+    void setTransform(double mxx, double myx, double mxy, double myy, 
+            double mxt, double myt) {
+        if (this.mxx != mxx || this.myx != myx || this.mxy != mxy 
+                || this.myy != myy || this.mxt != mxt || this.myt != myt) {
+            this.mxx = mxx;
+            this.myx = myx;
+            this.mxy = mxy;
+            this.myy = myy;
+            this.mxt = mxt;
+            this.myt = myt;
+            this.dirty |= TRANSFORM;
+        }
+    }
+
+    /**
+     * Returns a mask of the attributes (among those in {@code mask}) that 
+     * differ from the attributes of another state.
+     * 
+     * @param s  the other state ({@code null} not permitted).
+     * @param mask  the attributes to compare.
+     * 
+     * @return A mask of the attributes that differ.
+     */
+    int diff(FXContextState s, int mask) {
+        int d = 0;
+        if ((mask & FILL) != 0 && !paintsEqual(this.fill, s.fill)) {
+            d |= FILL;
+        }
+        if ((mask & STROKE) != 0 && !paintsEqual(this.stroke, s.stroke)) {
+            d |= STROKE;
+        }
+        if ((mask & LINE_WIDTH) != 0 && this.lineWidth != s.lineWidth) {
+            d |= LINE_WIDTH;
+        }
+        if ((mask & LINE_CAP) != 0 && this.lineCap != s.lineCap) {
+            d |= LINE_CAP;
+        }
+        if ((mask & LINE_JOIN) != 0 && this.lineJoin != s.lineJoin) {
+            d |= LINE_JOIN;
+        }
+        if ((mask & MITER_LIMIT) != 0 && this.miterLimit != s.miterLimit) {
+            d |= MITER_LIMIT;
+        }
+        if ((mask & LINE_DASHES) != 0 
+                && !Arrays.equals(this.lineDashes, s.lineDashes)) {
+            d |= LINE_DASHES;
+        }
+        if ((mask & LINE_DASH_OFFSET) != 0 
+                && this.lineDashOffset != s.lineDashOffset) {
+            d |= LINE_DASH_OFFSET;
+        }
+        if ((mask & GLOBAL_ALPHA) != 0 && this.globalAlpha != s.globalAlpha) {
+            d |= GLOBAL_ALPHA;
+        }
+        if ((mask & BLEND_MODE) != 0 && this.blendMode != s.blendMode) {
+            d |= BLEND_MODE;
+        }
+        if ((mask & FONT) != 0 && !Objects.equals(this.font, s.font)) {
+            d |= FONT;
+        }
+        if ((mask & TRANSFORM) != 0 && (this.mxx != s.mxx 
+                || this.myx != s.myx || this.mxy != s.mxy 
+                || this.myy != s.myy || this.mxt != s.mxt 
+                || this.myt != s.myt)) {
+            d |= TRANSFORM;
+        }
+        return d;
+    }
+
+    private static boolean paintsEqual(Paint p1, Paint p2) {
+        return p1 == p2 || (p1 != null && p1.equals(p2));
+    }
+
+}
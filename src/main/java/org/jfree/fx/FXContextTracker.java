@@ -0,0 +1,388 @@
+/* ============
+ * FXGraphics2D
+ * ============
+ * 
+ * (C)opyright 2014-2017, by Object Refinery Limited.
+ * 
+ * http://www.jfree.org/fxgraphics2d/index.html
+ *
+ * The FXGraphics2D class has been developed by Object Refinery Limited for 
+ * use in Orson Charts (http://www.object-refinery.com/orsoncharts) and
+ * JFreeChart (http://www.jfree.org/jfreechart).  It may be useful for other
+ * code that uses the Graphics2D API provided by Java2D.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   - Neither the name of the Object Refinery Limited nor the
+ *     names of its contributors may be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL OBJECT REFINERY LIMITED BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+
+
+package org.jfree.fx;
+
+import java.util.Arrays;
+
+import javafx.scene.canvas.GraphicsContext;
+
+/**
+ * Tracks the attributes that have been sent to a JavaFX 
+ * {@link GraphicsContext} so that {@link FXGraphics2D} only emits the
+ * attributes that really change.  Attribute changes are recorded in a
+ * {@link FXContextState} and applied just before the next drawing operation,
+ * so that intermediate changes never reach the canvas command buffer.
+ * <br><br>
+ * The tracker mirrors the {@code save()} / {@code restore()} stack of the 
+ * graphics context and is shared by all the {@code FXGraphics2D} instances
+ * that render to the same context.  Each level of the stack records the 
+ * instance that saved it (for its clip) and an identifier that changes when
+ * the clip of the level is modified, so that an instance can check that the
+ * levels it relies on are still in force before drawing.
+ * 
+ * @since 1.6
+ */
+public final class FXContextTracker {
+
+    /** The target that receives the attributes. */
+    private final FXRenderTarget target;
+
+    /** The attributes currently in force in the graphics context. */
+    private final FXContextState current;
+
+    /** The states saved by {@link #save()}. */
+    private FXContextState[] stack = new FXContextState[4];
+
+    /** The instances that saved each level of the stack. */
+    private Object[] owners = new Object[4];
+
+    /** The identifiers of the levels of the stack. */
+    private long[] ids = new long[4];
+
+    /** The last identifier given to a level. */
+    private long lastId;
+
+    /** The number of saved states. */
+    private int depth;
+
+    /** 
+     * The state that was last applied (if it has no dirty attributes, it
+     * does not need to be compared again).
+     */
+    private FXContextState owner;
+
+    private long applyCount;
+    private long emittedCount;
+    private long elidedCount;
+    private long saveCount;
+    private long restoreCount;
+
+    /**
+     * Creates a new tracker for a render target.
+     * 
+     * @param target  the target ({@code null} not permitted).
+     * @param initial  the attributes in force in the target ({@code null} 
+     *     not permitted).
+     */
+    FXContextTracker(FXRenderTarget target, FXContextState initial) {
+        this.target = target;
+        this.current = initial;
+    }
+
+    /**
+     * Returns a copy of the attributes currently in force in the graphics
+     * context.
+     * 
+     * @return A new state (never {@code null}). 
+     */
+    FXContextState copyCurrentState() {
+        FXContextState s = new FXContextState(this.current);
+        s.dirty = 0;
+        return s;
+    }
+
+    /**
+     * Sends the attributes of {@code state} that differ from those in force 
+     * to the graphics context.
+     * 
+     * @param state  the required state ({@code null} not permitted).
+     */
+    void apply(FXContextState state) {
+        int mask = state.dirty;
+        if (this.owner != state) {
+            // another state (or a restore) has changed the graphics context:
+            mask = FXContextState.ALL;
+        } else if (mask == 0) {
+            return;
+        }
+        this.applyCount++;
+        int d = state.diff(this.current, mask);
+        this.elidedCount += Integer.bitCount(state.dirty & ~d);
+        if (d != 0) {
+            this.emittedCount += Integer.bitCount(d);
+            emit(state, d);
+        }
+        state.dirty = 0;
+        this.owner = state;
+    }
+
+    private void emit(FXContextState s, int d) {
+        FXContextState c = this.current;
+        if ((d & FXContextState.FILL) != 0) {
+            this.target.setFill(s.fill);
+            c.fill = s.fill;
+        }
+        if ((d & FXContextState.STROKE) != 0) {
+            this.target.setStroke(s.stroke);
+            c.stroke = s.stroke;
+        }
+        if ((d & FXContextState.LINE_WIDTH) != 0) {
+            this.target.setLineWidth(s.lineWidth);
+            c.lineWidth = s.lineWidth;
+        }
+        if ((d & FXContextState.LINE_CAP) != 0) {
+            this.target.setLineCap(s.lineCap);
+            c.lineCap = s.lineCap;
+        }
+        if ((d & FXContextState.LINE_JOIN) != 0) {
+            this.target.setLineJoin(s.lineJoin);
+            c.lineJoin = s.lineJoin;
+        }
+        if ((d & FXContextState.MITER_LIMIT) != 0) {
+            this.target.setMiterLimit(s.miterLimit);
+            c.miterLimit = s.miterLimit;
+        }
+        if ((d & FXContextState.LINE_DASHES) != 0) {
+            this.target.setLineDashes(s.lineDashes);
+            c.lineDashes = s.lineDashes;
+        }
+        if ((d & FXContextState.LINE_DASH_OFFSET) != 0) {
+            this.target.setLineDashOffset(s.lineDashOffset);
+            c.lineDashOffset = s.lineDashOffset;
+        }
+        if ((d & FXContextState.GLOBAL_ALPHA) != 0) {
+            this.target.setGlobalAlpha(s.globalAlpha);
+            c.globalAlpha = s.globalAlpha;
+        }
+        if ((d & FXContextState.BLEND_MODE) != 0) {
+            this.target.setGlobalBlendMode(s.blendMode);
+            c.blendMode = s.blendMode;
+        }
+        if ((d & FXContextState.FONT) != 0) {
+            this.target.setFont(s.font);
+            c.font = s.font;
+        }
+        if ((d & FXContextState.TRANSFORM) != 0) {
+            this.target.setTransform(s.mxx, s.myx, s.mxy, s.myy, s.mxt, s.myt);
+            c.setTransform(s.mxx, s.myx, s.mxy, s.myy, s.mxt, s.myt);
+        }
+    }
+
+    /**
+     * Saves the state of the graphics context.
+     * 
+     * @param owner  the instance that saves the level ({@code null} not 
+     *     permitted).
+     * 
+     * @return The identifier of the new level.
+     */
+    long save(Object owner) {
+        this.saveCount++;
+        this.target.save();
+        if (this.depth == this.stack.length) {
+            this.stack = Arrays.copyOf(this.stack, this.depth << 1);
+            this.owners = Arrays.copyOf(this.owners, this.depth << 1);
+            this.ids = Arrays.copyOf(this.ids, this.depth << 1);
+        }
+        FXContextState s = this.stack[this.depth];
+        if (s == null) {
+            this.stack[this.depth] = new FXContextState(this.current);
+        } else {
+            s.set(this.current);
+        }
+        this.owners[this.depth] = owner;
+        this.ids[this.depth] = ++this.lastId;
+        this.depth++;
+        return this.lastId;
+    }
+
+    /**
+     * Gives a new identifier to the last saved level, after its clip has 
+     * been modified.
+     * 
+     * @return The new identifier of the level.
+     */
+    long touch() {
+        this.ids[this.depth - 1] = ++this.lastId;
+        return this.lastId;
+    }
+
+    /**
+     * Returns {@code true} if the stack has at least {@code depth} levels 
+     * and the level {@code depth} (the last one of a stack of this depth) 
+     * was saved by {@code owner} and still has the identifier {@code id}.  
+     * The bottom of the stack (depth 0) always holds.
+     * 
+     * @param depth  the depth.
+     * @param owner  the owner of the level.
+     * @param id  the identifier of the level.
+     * 
+     * @return A boolean.
+     */
+    boolean holds(int depth, Object owner, long id) {
+        return depth == 0 || (depth <= this.depth 
+                && this.owners[depth - 1] == owner 
+                && this.ids[depth - 1] == id);
+    }
+
+    /**
+     * Returns the instance that saved the level {@code depth}.
+     * 
+     * @param depth  the depth.
+     * 
+     * @return The owner ({@code null} for depth 0).
+     */
+    Object getOwner(int depth) {
+        return (depth == 0) ? null : this.owners[depth - 1];
+    }
+
+    /**
+     * Returns the identifier of the level {@code depth}.
+     * 
+     * @param depth  the depth.
+     * 
+     * @return The identifier (0 for depth 0).
+     */
+    long getId(int depth) {
+        return (depth == 0) ? 0L : this.ids[depth - 1];
+    }
+
+    /**
+     * Restores the last saved state of the graphics context.  The tracked
+     * attributes are reverted too, so that the next call to 
+     * {@link #apply(FXContextState)} emits the required changes only.
+     */
+    void restore() {
+        this.restoreCount++;
+        this.target.restore();
+        if (this.depth > 0) {
+            this.depth--;
+            this.owners[this.depth] = null;
+            this.current.set(this.stack[this.depth]);
+            this.owner = null;
+        }
+    }
+
+    /**
+     * Restores the saved states until the stack has the given depth (does 
+     * nothing if the stack is not deeper).
+     * 
+     * @param depth  the required depth.
+     */
+    void restoreTo(int depth) {
+        if (this.depth <= depth) {
+            return;
+        }
+        while (this.depth > depth) {
+            this.restoreCount++;
+            this.target.restore();
+            this.depth--;
+            this.owners[this.depth] = null;
+        }
+        // the attributes are reverted once, to the outermost restored state:
+        this.current.set(this.stack[depth]);
+        this.owner = null;
+    }
+
+    /**
+     * Returns the number of saved states.
+     * 
+     * @return The depth of the stack.
+     */
+    int getDepth() {
+        return this.depth;
+    }
+
+    /**
+     * Returns the number of times that a modified state was applied.
+     * 
+     * @return The count.
+     */
+    public long getApplyCount() {
+        return this.applyCount;
+    }
+
+    /**
+     * Returns the number of attributes sent to the graphics context.
+     * 
+     * @return The count.
+     */
+    public long getEmittedCount() {
+        return this.emittedCount;
+    }
+
+    /**
+     * Returns the number of attribute changes that were not sent to the 
+     * graphics context because the attribute already had the required 
+     * value.
+     * 
+     * @return The count.
+     */
+    public long getElidedCount() {
+        return this.elidedCount;
+    }
+
+    /**
+     * Returns the number of states saved on the graphics context.
+     * 
+     * @return The count.
+     */
+    public long getSaveCount() {
+        return this.saveCount;
+    }
+
+    /**
+     * Returns the number of states restored on the graphics context.
+     * 
+     * @return The count.
+     */
+    public long getRestoreCount() {
+        return this.restoreCount;
+    }
+
+    /**
+     * Resets the counters.
+     */
+    public void resetStatistics() {
+        this.applyCount = 0L;
+        this.emittedCount = 0L;
+        this.elidedCount = 0L;
+        this.saveCount = 0L;
+        this.restoreCount = 0L;
+    }
+
+    @Override
+    public String toString() {
+        return "FXContextTracker{applied=" + this.applyCount + ", emitted=" 
+                + this.emittedCount + ", elided=" + this.elidedCount 
+                + ", saved=" + this.saveCount + ", restored=" 
+                + this.restoreCount + "}";
+    }
+
+}
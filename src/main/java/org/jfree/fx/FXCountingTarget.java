@@ -0,0 +1,403 @@
+/* ============
+ * FXGraphics2D
+ * ============
+ * 
+ * (C)opyright 2014-2017, by Object Refinery Limited.
+ * 
+ * http://www.jfree.org/fxgraphics2d/index.html
+ *
+ * The FXGraphics2D class has been developed by Object Refinery Limited for 
+ * use in Orson Charts (http://www.object-refinery.com/orsoncharts) and
+ * JFreeChart (http://www.jfree.org/jfreechart).  It may be useful for other
+ * code that uses the Graphics2D API provided by Java2D.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   - Neither the name of the Object Refinery Limited nor the
+ *     names of its contributors may be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL OBJECT REFINERY LIMITED BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+
+
+package org.jfree.fx;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.effect.BlendMode;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.ArcType;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+import javafx.scene.text.Font;
+
+/**
+ * A render target that counts the drawing primitives and discards them.  
+ * With this target, {@link FXGraphics2D} performs the whole Java2D to 
+ * JavaFX translation (shapes, strokes, paints, fonts and images) but no 
+ * canvas command buffer is written, so that benchmarks can measure the 
+ * translation cost alone.
+ * 
+ * @since 1.6
+ */
+public final class FXCountingTarget implements FXRenderTarget {
+
+    /** The width of the drawing area. */
+    private final double width;
+
+    /** The height of the drawing area. */
+    private final double height;
+
+    private long segmentCount;
+    private long pathCount;
+    private long shapeCount;
+    private long attributeCount;
+    private long imageCount;
+    private long textCount;
+    private long saveCount;
+
+    /**
+     * Creates a new target for a drawing area of the given size.
+     * 
+     * @param width  the width.
+     * @param height  the height.
+     */
+    public FXCountingTarget(double width, double height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public double getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public double getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Returns {@code null}, the target has no pixels.
+     * 
+     * @return {@code null}. 
+     */
+    @Override
+    public Canvas getCanvas() {
+        return null;
+    }
+
+    /**
+     * Returns the number of path segments ({@code moveTo()} to 
+     * {@code closePath()} and {@code rect()} calls).
+     * 
+     * @return The count.
+     */
+    public long getSegmentCount() {
+        return this.segmentCount;
+    }
+
+    /**
+     * Returns the number of paths filled, stroked or used as clip.
+     * 
+     * @return The count.
+     */
+    public long getPathCount() {
+        return this.pathCount;
+    }
+
+    /**
+     * Returns the number of shapes drawn with a dedicated primitive 
+     * (rectangles, ovals, arcs, lines, polygons and {@code clearRect()}).
+     * 
+     * @return The count.
+     */
+    public long getShapeCount() {
+        return this.shapeCount;
+    }
+
+    /**
+     * Returns the number of attribute changes (paints, stroke attributes, 
+     * alpha, blend mode, font and transform).
+     * 
+     * @return The count.
+     */
+    public long getAttributeCount() {
+        return this.attributeCount;
+    }
+
+    /**
+     * Returns the number of images drawn.
+     * 
+     * @return The count.
+     */
+    public long getImageCount() {
+        return this.imageCount;
+    }
+
+    /**
+     * Returns the number of strings drawn.
+     * 
+     * @return The count.
+     */
+    public long getTextCount() {
+        return this.textCount;
+    }
+
+    /**
+     * Returns the number of {@code save()} calls.
+     * 
+     * @return The count.
+     */
+    public long getSaveCount() {
+        return this.saveCount;
+    }
+
+    /**
+     * Resets the counters.
+     */
+    public void resetStatistics() {
+        this.segmentCount = 0L;
+        this.pathCount = 0L;
+        this.shapeCount = 0L;
+        this.attributeCount = 0L;
+        this.imageCount = 0L;
+        this.textCount = 0L;
+        this.saveCount = 0L;
+    }
+
+    @Override
+    public void save() {
+        this.saveCount++;
+    }
+
+    @Override
+    public void restore() {
+        // nothing to do
+    }
+
+    @Override
+    public void setFill(Paint p) {
+        this.attributeCount++;
+    }
+
+    @Override
+    public void setStroke(Paint p) {
+        this.attributeCount++;
+    }
+
+    @Override
+    public void setLineWidth(double lw) {
+        this.attributeCount++;
+    }
+
+    @Override
+    public void setLineCap(StrokeLineCap cap) {
+        this.attributeCount++;
+    }
+
+    @Override
+    public void setLineJoin(StrokeLineJoin join) {
+        this.attributeCount++;
+    }
+
+    @Override
+    public void setMiterLimit(double ml) {
+        this.attributeCount++;
+    }
+
+    @Override
+    public void setLineDashes(double[] dashes) {
+        this.attributeCount++;
+    }
+
+    @Override
+    public void setLineDashOffset(double dashOffset) {
+        this.attributeCount++;
+    }
+
+    @Override
+    public void setGlobalAlpha(double alpha) {
+        this.attributeCount++;
+    }
+
+    @Override
+    public void setGlobalBlendMode(BlendMode op) {
+        this.attributeCount++;
+    }
+
+    @Override
+    public void setFont(Font f) {
+        this.attributeCount++;
+    }
+
+    @Override
+    public void setTransform(double mxx, double myx, double mxy, double myy, 
+            double mxt, double myt) {
+        this.attributeCount++;
+    }
+
+    @Override
+    public void beginPath() {
+        // nothing to do
+    }
+
+    @Override
+    public void moveTo(double x0, double y0) {
+        this.segmentCount++;
+    }
+
+    @Override
+    public void lineTo(double x1, double y1) {
+        this.segmentCount++;
+    }
+
+    @Override
+    public void quadraticCurveTo(double xc, double yc, double x1, double y1) {
+        this.segmentCount++;
+    }
+
+    @Override
+    public void bezierCurveTo(double xc1, double yc1, double xc2, double yc2, 
+            double x1, double y1) {
+        this.segmentCount++;
+    }
+
+    @Override
+    public void closePath() {
+        this.segmentCount++;
+    }
+
+    @Override
+    public void rect(double x, double y, double w, double h) {
+        this.segmentCount++;
+    }
+
+    @Override
+    public void fill() {
+        this.pathCount++;
+    }
+
+    @Override
+    public void stroke() {
+        this.pathCount++;
+    }
+
+    @Override
+    public void clip() {
+        this.pathCount++;
+    }
+
+    @Override
+    public void clearRect(double x, double y, double w, double h) {
+        this.shapeCount++;
+    }
+
+    @Override
+    public void fillRect(double x, double y, double w, double h) {
+        this.shapeCount++;
+    }
+
+    @Override
+    public void strokeRect(double x, double y, double w, double h) {
+        this.shapeCount++;
+    }
+
+    @Override
+    public void fillRoundRect(double x, double y, double w, double h, 
+            double arcWidth, double arcHeight) {
+        this.shapeCount++;
+    }
+
+    @Override
+    public void strokeRoundRect(double x, double y, double w, double h, 
+            double arcWidth, double arcHeight) {
+        this.shapeCount++;
+    }
+
+    @Override
+    public void fillOval(double x, double y, double w, double h) {
+        this.shapeCount++;
+    }
+
+    @Override
+    public void strokeOval(double x, double y, double w, double h) {
+        this.shapeCount++;
+    }
+
+    @Override
+    public void fillArc(double x, double y, double w, double h, 
+            double startAngle, double arcExtent, ArcType closure) {
+        this.shapeCount++;
+    }
+
+    @Override
+    public void strokeArc(double x, double y, double w, double h, 
+            double startAngle, double arcExtent, ArcType closure) {
+        this.shapeCount++;
+    }
+
+    @Override
+    public void strokeLine(double x1, double y1, double x2, double y2) {
+        this.shapeCount++;
+    }
+
+    @Override
+    public void fillPolygon(double[] xPoints, double[] yPoints, int nPoints) {
+        this.shapeCount++;
+    }
+
+    @Override
+    public void strokePolygon(double[] xPoints, double[] yPoints, 
+            int nPoints) {
+        this.shapeCount++;
+    }
+
+    @Override
+    public void strokePolyline(double[] xPoints, double[] yPoints, 
+            int nPoints) {
+        this.shapeCount++;
+    }
+
+    @Override
+    public void fillText(String text, double x, double y) {
+        this.textCount++;
+    }
+
+    @Override
+    public void drawImage(Image img, double x, double y, double w, double h) {
+        this.imageCount++;
+    }
+
+    @Override
+    public void drawImage(Image img, double sx, double sy, double sw, 
+            double sh, double dx, double dy, double dw, double dh) {
+        this.imageCount++;
+    }
+
+    @Override
+    public String toString() {
+        return "FXCountingTarget{segments=" + this.segmentCount + ", paths=" 
+                + this.pathCount + ", shapes=" + this.shapeCount 
+                + ", attributes=" + this.attributeCount + ", images=" 
+                + this.imageCount + ", texts=" + this.textCount + ", saves=" 
+                + this.saveCount + "}";
+    }
+
+}
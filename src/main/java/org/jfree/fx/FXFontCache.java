@@ -0,0 +1,234 @@
+/* ============
+ * FXGraphics2D
+ * ============
+ * 
+ * (C)opyright 2014-2017, by Object Refinery Limited.
+ * 
+ * http://www.jfree.org/fxgraphics2d/index.html
+ *
+ * The FXGraphics2D class has been developed by Object Refinery Limited for 
+ * use in Orson Charts (http://www.object-refinery.com/orsoncharts) and
+ * JFreeChart (http://www.jfree.org/jfreechart).  It may be useful for other
+ * code that uses the Graphics2D API provided by Java2D.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   - Neither the name of the Object Refinery Limited nor the
+ *     names of its contributors may be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL OBJECT REFINERY LIMITED BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+
+
+package org.jfree.fx;
+
+import java.awt.Font;
+import java.util.Arrays;
+
+import javafx.scene.text.FontPosture;
+import javafx.scene.text.FontWeight;
+
+/**
+ * A small cache for the translation of AWT fonts to JavaFX fonts, used by
+ * {@link FXGraphics2D} so that switching between the few fonts used to draw
+ * labels does not query the JavaFX font registry (or allocate) each time.
+ * The {@link FXFontMetrics} of each font are also kept here, so that their
+ * measurement caches survive the font changes.
+ * <br><br>
+ * The fonts are kept in a most-recently-used first array that is searched 
+ * linearly (the working set is expected to be small), and the least 
+ * recently used font is replaced on a miss.  Instances of this class are 
+ * not thread-safe.
+ *
+ * @since 1.6
+ */
+public final class FXFontCache {
+
+    /** The default number of fonts kept in the cache. */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /** The AWT fonts (most recently used first). */
+    private final Font[] keys;
+
+    /** The JavaFX fonts for the AWT fonts in {@code keys}. */
+    private final javafx.scene.text.Font[] values;
+
+    /** 
+     * The font metrics for the AWT fonts in {@code keys} (created on 
+     * demand).
+     */
+    private final FXFontMetrics[] metrics;
+
+    /** The number of fonts in the cache. */
+    private int size;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a new cache with the default capacity.
+     */
+    public FXFontCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param capacity  the maximum number of fonts (must be greater than 
+     *     zero).
+     */
+    public FXFontCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Requires 'capacity' > 0.");
+        }
+        this.keys = new Font[capacity];
+        this.values = new javafx.scene.text.Font[capacity];
+        this.metrics = new FXFontMetrics[capacity];
+    }
+
+    /**
+     * Returns the JavaFX font that is equivalent to the specified AWT font.
+     *
+     * @param font  the font ({@code null} not permitted).
+     *
+     * @return A JavaFX font (never {@code null}).
+     */
+    public javafx.scene.text.Font getFont(Font font) {
+        lookup(font);
+        return this.values[0];
+    }
+
+    /**
+     * Returns the JavaFX font metrics for the specified AWT font.  The 
+     * metrics (and the measurements that they cache) are kept as long as 
+     * the font stays in this cache.
+     *
+     * @param font  the font ({@code null} not permitted).
+     *
+     * @return The font metrics (never {@code null}).
+     */
+    public FXFontMetrics getFontMetrics(Font font) {
+        lookup(font);
+        FXFontMetrics fm = this.metrics[0];
+        if (fm == null) {
+            fm = new FXFontMetrics(this.keys[0], this.values[0]);
+            this.metrics[0] = fm;
+        }
+        return fm;
+    }
+
+    /**
+     * Moves the entry for the specified font to the front of the cache,
+     * creating it if necessary.
+     *
+     * @param font  the font ({@code null} not permitted).
+     */
+    private void lookup(Font font) {
+        final Font[] k = this.keys;
+        for (int i = 0; i < this.size; i++) {
+            if (k[i] == font || k[i].equals(font)) {
+                if (i > 0) {
+                    moveToFront(i);
+                }
+                this.hits++;
+                return;
+            }
+        }
+        this.misses++;
+        if (this.size < k.length) {
+            this.size++;
+        }
+        // the least recently used font (if any) is dropped:
+        moveToFront(this.size - 1);
+        k[0] = font;
+        this.values[0] = createFont(font);
+        this.metrics[0] = null;
+    }
+
+    private void moveToFront(int i) {
+        Font key = this.keys[i];
+        javafx.scene.text.Font fx = this.values[i];
+        FXFontMetrics fm = this.metrics[i];
+        System.arraycopy(this.keys, 0, this.keys, 1, i);
+        System.arraycopy(this.values, 0, this.values, 1, i);
+        System.arraycopy(this.metrics, 0, this.metrics, 1, i);
+        this.keys[0] = key;
+        this.values[0] = fx;
+        this.metrics[0] = fm;
+    }
+
+    /**
+     * Creates the JavaFX font that is equivalent to the specified AWT font.
+     *
+     * @param font  the font ({@code null} not permitted).
+     *
+     * @return A JavaFX font (never {@code null}).
+     */
+    static javafx.scene.text.Font createFont(Font font) {
+        FontWeight weight = font.isBold() ? FontWeight.BOLD : FontWeight.NORMAL;
+        FontPosture posture = font.isItalic() 
+                ? FontPosture.ITALIC : FontPosture.REGULAR;
+        return javafx.scene.text.Font.font(font.getFamily(), weight, posture, 
+                font.getSize());
+    }
+
+    /**
+     * Returns the number of lookups that were found in the cache.
+     *
+     * @return The count.
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of lookups that created a new JavaFX font.
+     *
+     * @return The count.
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Resets the hit and miss counters.
+     */
+    public void resetStatistics() {
+        this.hits = 0L;
+        this.misses = 0L;
+    }
+
+    /**
+     * Removes all the fonts from the cache.
+     */
+    public void clear() {
+        Arrays.fill(this.keys, null);
+        Arrays.fill(this.values, null);
+        Arrays.fill(this.metrics, null);
+        this.size = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "FXFontCache{size=" + this.size + ", hits=" + this.hits 
+                + ", misses=" + this.misses + "}";
+    }
+
+}
@@ -0,0 +1,202 @@
+/* ============
+ * FXGraphics2D
+ * ============
+ * 
+ * (C)opyright 2014-2017, by Object Refinery Limited.
+ * 
+ * http://www.jfree.org/fxgraphics2d/index.html
+ *
+ * The FXGraphics2D class has been developed by Object Refinery Limited for 
+ * use in Orson Charts (http://www.object-refinery.com/orsoncharts) and
+ * JFreeChart (http://www.jfree.org/jfreechart).  It may be useful for other
+ * code that uses the Graphics2D API provided by Java2D.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   - Neither the name of the Object Refinery Limited nor the
+ *     names of its contributors may be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL OBJECT REFINERY LIMITED BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+
+
+
+package org.jfree.fx;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import javafx.scene.text.Font;
+
+/**
+ * Provides access to the font metrics and character advances computed by
+ * the JavaFX toolkit font loader, so that {@link FXFontMetrics} can measure
+ * text without creating {@code javafx.scene.text.Text} nodes.
+ * <br><br>
+ * The font loader is not part of the public JavaFX API, so this requires
+ * the JVM option 
+ * {@code --add-exports javafx.graphics/com.sun.javafx.tk=ALL-UNNAMED} when
+ * JavaFX is loaded as a module.  If the package is not accessible, 
+ * {@link #isEnabled()} returns {@code false} and {@code FXFontMetrics} 
+ * measures (once per character) with {@code Text} nodes.
+ * 
+ * @since 1.6
+ */
+public final class FXFontLoaderAccess {
+
+    private static final MethodHandle GET_TOOLKIT;
+    private static final MethodHandle GET_FONT_LOADER;
+    private static final MethodHandle GET_FONT_METRICS;
+    private static final MethodHandle GET_CHAR_WIDTH;
+    private static final MethodHandle GET_ASCENT;
+    private static final MethodHandle GET_DESCENT;
+    private static final MethodHandle GET_LEADING;
+    private static final MethodHandle GET_MAX_ASCENT;
+    private static final MethodHandle GET_MAX_DESCENT;
+
+    static {
+        MethodHandle getToolkit = null;
+        MethodHandle getFontLoader = null;
+        MethodHandle getFontMetrics = null;
+        MethodHandle getCharWidth = null;
+        MethodHandle getAscent = null;
+        MethodHandle getDescent = null;
+        MethodHandle getLeading = null;
+        MethodHandle getMaxAscent = null;
+        MethodHandle getMaxDescent = null;
+        try {
+            MethodHandles.Lookup l = MethodHandles.publicLookup();
+            Class<?> tk = Class.forName("com.sun.javafx.tk.Toolkit");
+            Class<?> fl = Class.forName("com.sun.javafx.tk.FontLoader");
+            Class<?> fm = Class.forName("com.sun.javafx.tk.FontMetrics");
+            getToolkit = l.findStatic(tk, "getToolkit", 
+                    MethodType.methodType(tk))
+                    .asType(MethodType.methodType(Object.class));
+            getFontLoader = l.findVirtual(tk, "getFontLoader", 
+                    MethodType.methodType(fl))
+                    .asType(MethodType.methodType(Object.class, 
+                            Object.class));
+            getFontMetrics = l.findVirtual(fl, "getFontMetrics", 
+                    MethodType.methodType(fm, Font.class))
+                    .asType(MethodType.methodType(Object.class, 
+                            Object.class, Font.class));
+            getCharWidth = l.findVirtual(fl, "getCharWidth", 
+                    MethodType.methodType(float.class, char.class, 
+                            Font.class))
+                    .asType(MethodType.methodType(float.class, 
+                            Object.class, char.class, Font.class));
+            MethodType getter = MethodType.methodType(float.class);
+            MethodType generic = MethodType.methodType(float.class, 
+                    Object.class);
+            getAscent = l.findVirtual(fm, "getAscent", getter)
+                    .asType(generic);
+            getDescent = l.findVirtual(fm, "getDescent", getter)
+                    .asType(generic);
+            getLeading = l.findVirtual(fm, "getLeading", getter)
+                    .asType(generic);
+            getMaxAscent = l.findVirtual(fm, "getMaxAscent", getter)
+                    .asType(generic);
+            getMaxDescent = l.findVirtual(fm, "getMaxDescent", getter)
+                    .asType(generic);
+        } catch (ReflectiveOperationException | RuntimeException 
+                | LinkageError ex) {
+            // com.sun.javafx.tk is not exported (or the internals differ):
+            getToolkit = null;
+        }
+        GET_TOOLKIT = getToolkit;
+        GET_FONT_LOADER = getFontLoader;
+        GET_FONT_METRICS = getFontMetrics;
+        GET_CHAR_WIDTH = getCharWidth;
+        GET_ASCENT = getAscent;
+        GET_DESCENT = getDescent;
+        GET_LEADING = getLeading;
+        GET_MAX_ASCENT = getMaxAscent;
+        GET_MAX_DESCENT = getMaxDescent;
+    }
+
+    /** The font loader (obtained on first use). */
+    private static Object fontLoader;
+
+    private FXFontLoaderAccess() {
+        // no need to instantiate this
+    }
+
+    /**
+     * Returns {@code true} if the toolkit font loader can be accessed.
+     * 
+     * @return A boolean.
+     */
+    public static boolean isEnabled() {
+        return GET_TOOLKIT != null;
+    }
+
+    private static Object fontLoader() throws Throwable {
+        Object loader = fontLoader;
+        if (loader == null) {
+            loader = GET_FONT_LOADER.invokeExact(GET_TOOLKIT.invokeExact());
+            fontLoader = loader;
+        }
+        return loader;
+    }
+
+    /**
+     * Returns the line metrics of a font, in the order: ascent, descent, 
+     * leading, max ascent and max descent (all positive values).  This 
+     * method must only be called if {@link #isEnabled()} returns 
+     * {@code true}.
+     * 
+     * @param font  the font ({@code null} not permitted).
+     * 
+     * @return The metrics (never {@code null}).
+     */
+    static float[] lineMetrics(Font font) {
+        try {
+            Object fm = GET_FONT_METRICS.invokeExact(fontLoader(), font);
+            // JavaFX returns the ascent (and max ascent) as negative values:
+            return new float[] { 
+                Math.abs((float) GET_ASCENT.invokeExact(fm)),
+                (float) GET_DESCENT.invokeExact(fm),
+                (float) GET_LEADING.invokeExact(fm),
+                Math.abs((float) GET_MAX_ASCENT.invokeExact(fm)),
+                (float) GET_MAX_DESCENT.invokeExact(fm)
+            };
+        } catch (Throwable th) {
+            throw new IllegalStateException(th);
+        }
+    }
+
+    /**
+     * Returns the advance of a character in the given font.  This method
+     * must only be called if {@link #isEnabled()} returns {@code true}.
+     * 
+     * @param c  the character.
+     * @param font  the font ({@code null} not permitted).
+     * 
+     * @return The advance.
+     */
+    static float charWidth(char c, Font font) {
+        try {
+            return (float) GET_CHAR_WIDTH.invokeExact(fontLoader(), c, font);
+        } catch (Throwable th) {
+            throw new IllegalStateException(th);
+        }
+    }
+
+}
@@ -1,40 +1,3 @@
-/* ============
- * FXGraphics2D
- * ============
- * 
- * (C)opyright 2014-2017, by Object Refinery Limited.
- * 
- * http://www.jfree.org/fxgraphics2d/index.html
- *
- * The FXGraphics2D class has been developed by Object Refinery Limited for 
- * use in Orson Charts (http://www.object-refinery.com/orsoncharts) and
- * JFreeChart (http://www.jfree.org/jfreechart).  It may be useful for other
- * code that uses the Graphics2D API provided by Java2D.
- * 
- * Redistribution and use in source and binary forms, with or without
- * modification, are permitted provided that the following conditions are met:
- *   - Redistributions of source code must retain the above copyright
- *     notice, this list of conditions and the following disclaimer.
- *   - Redistributions in binary form must reproduce the above copyright
- *     notice, this list of conditions and the following disclaimer in the
- *     documentation and/or other materials provided with the distribution.
- *   - Neither the name of the Object Refinery Limited nor the
- *     names of its contributors may be used to endorse or promote products
- *     derived from this software without specific prior written permission.
- *
- * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
- * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
- * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
- * ARE DISCLAIMED. IN NO EVENT SHALL OBJECT REFINERY LIMITED BE LIABLE FOR ANY
- * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
- * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
- * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
- * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
- * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
- * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
- * 
- */
-
 package org.jfree.fx;
 
 import java.awt.Font;
@@ -43,43 +6,215 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.geom.Rectangle2D;
 import java.text.CharacterIterator;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javafx.geometry.Bounds;
-import javafx.scene.text.FontPosture;
-import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
 
 /**
  * A font metrics implementation for JavaFX.  This uses the JavaFX APIs to
  * get font measurements, which is more exact than relying on the equivalent
  * Java2D APIs.
+ * <br><br>
+ * The line metrics are read once from the JavaFX font loader (see 
+ * {@link FXFontLoaderAccess}), and the advance of each character is cached
+ * when it is first measured, so that string widths are computed as the sum
+ * of the cached advances.  The widths of the most recently measured strings
+ * are also cached.  No scene graph node is created, unless the font loader
+ * is not accessible (then each character is measured once with a 
+ * {@code Text} node).
  * 
  * @since 1.5
  */
 public class FXFontMetrics extends FontMetrics {
     
-    private Graphics2D g2;
-    
+    /** The number of string widths kept in the cache. */
+    private static final int STRING_CACHE_SIZE = 256;
+
+    /** The number of characters in a page of the advance cache. */
+    private static final int PAGE_SIZE = 256;
+
+    /** The JavaFX font. */
+    private final javafx.scene.text.Font fxFont;
+
+    private final float ascent;
+    private final float descent;
+    private final float leading;
+    private final float maxAscent;
+    private final float maxDescent;
+
+    /** 
+     * The character advances, by pages of {@code PAGE_SIZE} characters 
+     * (allocated on first use, {@code NaN} for the characters not measured
+     * yet).
+     */
+    private final float[][] advances = new float[65536 / PAGE_SIZE][];
+
+    /** The string widths (in access order). */
+    private final Map<String, Float> stringWidths 
+            = new LinkedHashMap<String, Float>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Float> eldest) {
+            return size() > STRING_CACHE_SIZE;
+        }
+    };
+
     /**
      * Creates a new instance.
      * 
      * @param font  the font ({@code null} not permitted).
-     * @param g2  the graphics target ({@code null} not permitted).
+     * @param g2  the graphics target (not used, kept for compatibility).
      */
     public FXFontMetrics(Font font, Graphics2D g2) {
+        this(font, FXFontCache.createFont(font));
+    }
+
+    /**
+     * Creates a new instance.
+     * 
+     * @param font  the font ({@code null} not permitted).
+     * @param fxFont  the JavaFX font equivalent to {@code font} 
+     *     ({@code null} not permitted).
+     */
+    FXFontMetrics(Font font, javafx.scene.text.Font fxFont) {
         super(font);
-        this.g2 = g2;
+        this.fxFont = fxFont;
+        if (FXFontLoaderAccess.isEnabled()) {
+            float[] m = FXFontLoaderAccess.lineMetrics(fxFont);
+            this.ascent = m[0];
+            this.descent = m[1];
+            this.leading = m[2];
+            this.maxAscent = m[3];
+            this.maxDescent = m[4];
+        } else {
+            Text text = new Text("Hg");
+            text.setFont(fxFont);
+            Bounds b = text.getLayoutBounds();
+            this.ascent = (float) -b.getMinY();
+            this.descent = (float) b.getMaxY();
+            this.leading = 0f;
+            this.maxAscent = this.ascent;
+            this.maxDescent = this.descent;
+        }
+    }
+
+    /**
+     * Returns the advance of a character (measured on first use, then 
+     * cached).
+     * 
+     * @param c  the character.
+     * 
+     * @return The advance.
+     */
+    private float advance(char c) {
+        float[] page = this.advances[c / PAGE_SIZE];
+        if (page == null) {
+            page = new float[PAGE_SIZE];
+            Arrays.fill(page, Float.NaN);
+            this.advances[c / PAGE_SIZE] = page;
+        }
+        float w = page[c % PAGE_SIZE];
+        if (Float.isNaN(w)) {
+            if (FXFontLoaderAccess.isEnabled()) {
+                w = FXFontLoaderAccess.charWidth(c, this.fxFont);
+            } else {
+                Text text = new Text(String.valueOf(c));
+                text.setFont(this.fxFont);
+                w = (float) text.getLayoutBounds().getWidth();
+            }
+            page[c % PAGE_SIZE] = w;
+        }
+        return w;
+    }
+
+    /**
+     * Returns the width of a string in the current font (the sum of the 
+     * character advances).
+     * 
+     * @param str  the string ({@code null} not permitted).
+     * 
+     * @return The width.
+     */
+    private float width(String str) {
+        Float cached = this.stringWidths.get(str);
+        if (cached != null) {
+            return cached;
+        }
+        float w = 0f;
+        for (int i = 0, n = str.length(); i < n; i++) {
+            w += advance(str.charAt(i));
+        }
+        this.stringWidths.put(str, w);
+        return w;
+    }
+
+    /**
+     * Returns the bounds of a string with the specified width, relative to 
+     * the baseline origin (as the layout bounds of a JavaFX {@code Text} 
+     * node).
+     */
+    private Rectangle2D bounds(float width) {
+        return new Rectangle2D.Double(0.0, -this.ascent, width, 
+                this.ascent + this.descent + this.leading);
+    }
+
+    @Override
+    public int getAscent() {
+        return Math.round(this.ascent);
+    }
+
+    @Override
+    public int getDescent() {
+        return Math.round(this.descent);
+    }
+
+    @Override
+    public int getLeading() {
+        return Math.round(this.leading);
+    }
+
+    @Override
+    public int getMaxAscent() {
+        return Math.round(this.maxAscent);
+    }
+
+    @Override
+    public int getMaxDescent() {
+        return Math.round(this.maxDescent);
+    }
+
+    @Override
+    public int charWidth(char ch) {
+        return (int) advance(ch);
+    }
+
+    @Override
+    public int charWidth(int codePoint) {
+        if (Character.isBmpCodePoint(codePoint)) {
+            return charWidth((char) codePoint);
+        }
+        return stringWidth(new String(Character.toChars(codePoint)));
+    }
+
+    @Override
+    public int charsWidth(char[] data, int off, int len) {
+        float w = 0f;
+        for (int i = off, end = off + len; i < end; i++) {
+            w += advance(data[i]);
+        }
+        return (int) w;
     }
 
     @Override
     public Rectangle2D getStringBounds(CharacterIterator ci, int beginIndex, 
             int limit, Graphics context) {
-        char[]  arr = new char[limit - beginIndex];
-        ci.setIndex(beginIndex);
-        for(int idx = 0; idx < arr.length; idx++) {
-            arr[idx] = ci.current();
-            ci.next();
+        float w = 0f;
+        for (char c = ci.setIndex(beginIndex); ci.getIndex() < limit; 
+                c = ci.next()) {
+            w += advance(c);
         }
-        return getStringBounds(arr, beginIndex, limit, context);
+        return bounds(w);
     }
 
     @Override
@@ -93,26 +228,17 @@ public class FXFontMetrics extends FontMetrics {
     public Rectangle2D getStringBounds(String str, int beginIndex, int limit, 
             Graphics context) {
         String substr = str.substring(beginIndex, limit);
-        return super.getStringBounds(substr, context);
+        return getStringBounds(substr, context);
     }
 
     @Override
     public Rectangle2D getStringBounds(String str, Graphics context) {
-        Text text = new Text(str);
-        FontWeight weight = font.isBold() ? FontWeight.BOLD : FontWeight.NORMAL;
-        FontPosture posture = font.isItalic() 
-                ? FontPosture.ITALIC : FontPosture.REGULAR;
-        javafx.scene.text.Font jfxfont = javafx.scene.text.Font.font(
-                font.getFamily(), weight, posture, font.getSize());
-        text.setFont(jfxfont);
-        Bounds b = text.getLayoutBounds();
-        return new Rectangle2D.Double(b.getMinX(), b.getMinY(), b.getWidth(), 
-                b.getHeight());
+        return bounds(width(str));
     }
 
     @Override
     public int stringWidth(String str) {
-        return (int) getStringBounds(str, this.g2).getWidth();
+        return (int) width(str);
     }
     
 }
@@ -0,0 +1,301 @@
+/* ============
+ * FXGraphics2D
+ * ============
+ * 
+ * (C)opyright 2014-2017, by Object Refinery Limited.
+ * 
+ * http://www.jfree.org/fxgraphics2d/index.html
+ *
+ * The FXGraphics2D class has been developed by Object Refinery Limited for 
+ * use in Orson Charts (http://www.object-refinery.com/orsoncharts) and
+ * JFreeChart (http://www.jfree.org/jfreechart).  It may be useful for other
+ * code that uses the Graphics2D API provided by Java2D.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   - Neither the name of the Object Refinery Limited nor the
+ *     names of its contributors may be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL OBJECT REFINERY LIMITED BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+
+
+
+package org.jfree.fx;
+
+import java.awt.Font;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * A cache of glyph outlines, used by {@link FXGraphics2D} to draw glyph 
+ * vectors and attributed strings without building the outline of the whole
+ * text (or a {@code TextLayout}) on every call.  The outlines are keyed by
+ * font and glyph code, stored relative to the glyph origin in compact 
+ * arrays, and translated to the glyph position when they are added to the 
+ * path of the graphics context.
+ * <br><br>
+ * The least recently used outlines are evicted when the number of cached 
+ * outlines exceeds the capacity.  Instances of this class are not 
+ * thread-safe.
+ * 
+ * @since 1.6
+ */
+public final class FXGlyphCache {
+
+    /** The default maximum number of outlines. */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /** A glyph outline relative to the glyph origin. */
+    static final class Outline {
+
+        /** The segment types ({@code PathIterator.SEG_*} values). */
+        final byte[] types;
+
+        /** The coordinates of the segments. */
+        final float[] coords;
+
+        Outline(byte[] types, float[] coords) {
+            this.types = types;
+            this.coords = coords;
+        }
+
+        /**
+         * Adds the outline, translated by {@code (dx, dy)}, to the current 
+         * path of the render target.
+         * 
+         * @param target  the render target ({@code null} not permitted).
+         * @param dx  the x-translation.
+         * @param dy  the y-translation.
+         */
+        void appendTo(FXRenderTarget target, double dx, double dy) {
+            final byte[] t = this.types;
+            final float[] c = this.coords;
+            for (int i = 0, j = 0; i < t.length; i++) {
+                switch (t[i]) {
+                    case PathIterator.SEG_MOVETO:
+                        target.moveTo(c[j] + dx, c[j + 1] + dy);
+                        j += 2;
+                        break;
+                    case PathIterator.SEG_LINETO:
+                        target.lineTo(c[j] + dx, c[j + 1] + dy);
+                        j += 2;
+                        break;
+                    case PathIterator.SEG_QUADTO:
+                        target.quadraticCurveTo(c[j] + dx, c[j + 1] + dy, 
+                                c[j + 2] + dx, c[j + 3] + dy);
+                        j += 4;
+                        break;
+                    case PathIterator.SEG_CUBICTO:
+                        target.bezierCurveTo(c[j] + dx, c[j + 1] + dy, 
+                                c[j + 2] + dx, c[j + 3] + dy, 
+                                c[j + 4] + dx, c[j + 5] + dy);
+                        j += 6;
+                        break;
+                    case PathIterator.SEG_CLOSE:
+                        target.closePath();
+                        break;
+                    default:
+                        throw new RuntimeException(
+                                "Unrecognised segment type " + t[i]);
+                }
+            }
+        }
+    }
+
+    /** The outlines (in access order). */
+    private final Map<GlyphKey, Outline> outlines;
+
+    /** A reusable key for the lookups. */
+    private final GlyphKey probe = new GlyphKey();
+
+    /** The render context used to create the glyph outlines. */
+    private final FontRenderContext frc 
+            = new FontRenderContext(null, true, true);
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a new cache with the default capacity.
+     */
+    public FXGlyphCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new cache.
+     * 
+     * @param capacity  the maximum number of outlines (must be greater than 
+     *     zero).
+     */
+    public FXGlyphCache(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Requires 'capacity' > 0.");
+        }
+        this.outlines = new LinkedHashMap<GlyphKey, Outline>(256, 0.75f, 
+                true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<GlyphKey, Outline> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the outline of a glyph relative to its origin.
+     * 
+     * @param font  the font ({@code null} not permitted).
+     * @param glyphCode  the glyph code.
+     * 
+     * @return The outline (never {@code null}). 
+     */
+    Outline get(Font font, int glyphCode) {
+        this.probe.font = font;
+        this.probe.glyphCode = glyphCode;
+        Outline outline = this.outlines.get(this.probe);
+        if (outline != null) {
+            this.hits++;
+            return outline;
+        }
+        this.misses++;
+        Shape s = font.createGlyphVector(this.frc, new int[] {glyphCode})
+                .getGlyphOutline(0);
+        outline = toOutline(s);
+        GlyphKey key = new GlyphKey();
+        key.font = font;
+        key.glyphCode = glyphCode;
+        this.outlines.put(key, outline);
+        return outline;
+    }
+
+    /**
+     * Copies the segments of a shape into an outline.
+     */
+    private static Outline toOutline(Shape s) {
+        byte[] types = new byte[16];
+        float[] coords = new float[64];
+        int nt = 0;
+        int nc = 0;
+        float[] c = new float[6];
+        for (PathIterator it = s.getPathIterator(null); !it.isDone(); 
+                it.next()) {
+            int type = it.currentSegment(c);
+            int n;
+            switch (type) {
+                case PathIterator.SEG_MOVETO:
+                case PathIterator.SEG_LINETO:
+                    n = 2;
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    n = 4;
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    n = 6;
+                    break;
+                default:
+                    n = 0;
+            }
+            if (nt == types.length) {
+                types = Arrays.copyOf(types, nt * 2);
+            }
+            if (nc + n > coords.length) {
+                coords = Arrays.copyOf(coords, coords.length * 2);
+            }
+            types[nt++] = (byte) type;
+            System.arraycopy(c, 0, coords, nc, n);
+            nc += n;
+        }
+        return new Outline(Arrays.copyOf(types, nt), 
+                Arrays.copyOf(coords, nc));
+    }
+
+    /**
+     * Returns the number of lookups that found a cached outline.
+     * 
+     * @return The count.
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of outlines that were created.
+     * 
+     * @return The count.
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Resets the counters.
+     */
+    public void resetStatistics() {
+        this.hits = 0L;
+        this.misses = 0L;
+    }
+
+    /**
+     * Removes all the outlines from the cache.
+     */
+    public void clear() {
+        this.outlines.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "FXGlyphCache{outlines=" + this.outlines.size() + ", hits=" 
+                + this.hits + ", misses=" + this.misses + "}";
+    }
+
+    /**
+     * The key of a glyph outline.
+     */
+    private static final class GlyphKey {
+
+        Font font;
+        int glyphCode;
+
+        @Override
+        public int hashCode() {
+            return this.font.hashCode() * 31 + this.glyphCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof GlyphKey)) {
+                return false;
+            }
+            GlyphKey that = (GlyphKey) obj;
+            return this.glyphCode == that.glyphCode 
+                    && this.font.equals(that.font);
+        }
+    }
+
+}
@@ -49,8 +49,8 @@ import java.awt.Graphics2D;
 import java.awt.GraphicsConfiguration;
 import java.awt.Image;
 import java.awt.LinearGradientPaint;
-import java.awt.MultipleGradientPaint;
 import java.awt.Paint;
+import java.awt.Polygon;
 import java.awt.RadialGradientPaint;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
@@ -58,6 +58,7 @@ import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.font.FontRenderContext;
 import java.awt.font.GlyphVector;
+import java.awt.font.TextAttribute;
 import java.awt.font.TextLayout;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Arc2D;
@@ -68,7 +69,6 @@ import java.awt.geom.Line2D;
 import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Path2D;
 import java.awt.geom.PathIterator;
-import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.geom.RoundRectangle2D;
 import java.awt.image.BufferedImage;
@@ -80,23 +80,21 @@ import java.awt.image.WritableRaster;
 import java.awt.image.renderable.RenderableImage;
 import java.text.AttributedCharacterIterator;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.Set;
 
 import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.SnapshotParameters;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.effect.BlendMode;
-import javafx.scene.paint.CycleMethod;
-import javafx.scene.paint.LinearGradient;
-import javafx.scene.paint.RadialGradient;
-import javafx.scene.paint.Stop;
+import javafx.scene.image.WritableImage;
 import javafx.scene.shape.ArcType;
 import javafx.scene.shape.StrokeLineCap;
 import javafx.scene.shape.StrokeLineJoin;
-import javafx.scene.text.FontPosture;
-import javafx.scene.text.FontWeight;
+import javafx.scene.transform.NonInvertibleTransformException;
 
 /**
  * A {@link Graphics2D} implementation that writes to a JavaFX {@link Canvas}.
@@ -106,8 +104,23 @@ import javafx.scene.text.FontWeight;
  */
 public class FXGraphics2D extends Graphics2D {
     
-    /** The graphics context for the JavaFX canvas. */
-    private final GraphicsContext gc;
+    /** 
+     * The target for the drawing primitives (the graphics context of the 
+     * JavaFX canvas, or a command buffer).
+     */
+    private final FXRenderTarget target;
+
+    /** 
+     * Tracks the attributes in force in the graphics context (shared with
+     * the instances returned by {@link #create()}).
+     */
+    private final FXContextTracker tracker;
+
+    /** 
+     * The JavaFX attributes required by this instance, applied to the 
+     * graphics context before each drawing operation.
+     */
+    private final FXContextState state;
     
     /** Rendering hints. */
     private final RenderingHints hints;
@@ -138,19 +151,109 @@ public class FXGraphics2D extends Graphics2D {
     private final FontRenderContext fontRenderContext = new FontRenderContext(
             null, false, true);
 
-    private AffineTransform transform = new AffineTransform();
+    /** 
+     * The current transform.  This instance is updated in place (it is 
+     * never shared), and is sent to the graphics context when the next 
+     * drawing operation is performed.
+     */
+    private final AffineTransform transform = new AffineTransform();
+
+    /** The cache for the JavaFX equivalents of the AWT paints. */
+    private FXPaintCache paintCache = new FXPaintCache();
+
+    /** The cache for the JavaFX images created in the drawImage methods. */
+    private FXImageCache imageCache = new FXImageCache();
+
+    /** The cache for the JavaFX equivalents of the AWT fonts. */
+    private FXFontCache fontCache = new FXFontCache();
+
+    /** The atlas of rasterized text runs (see FXHints.KEY_TEXT_RUN_CACHE). */
+    private FXTextAtlas textAtlas = new FXTextAtlas();
+
+    /** The cache of the glyph outlines used to draw glyph vectors. */
+    private FXGlyphCache glyphCache = new FXGlyphCache();
+
+    /** The cache of the outlines of the shapes drawn with custom strokes. */
+    private FXStrokeCache strokeCache = new FXStrokeCache();
+
+    /** Counts the shapes culled in the draw and fill methods. */
+    private FXClipCuller culler = new FXClipCuller();
 
     /** The background color, used in the {@code clearRect()} method. */
     private Color background = Color.BLACK;
     
-    /** A flag that is set when the JavaFX graphics state has been saved. */
-    private boolean stateSaved = false;
-
-    private Stroke savedStroke;
-    private Paint savedPaint;
-    private Color savedColor;
-    private Font savedFont;
-    private AffineTransform savedTransform;
+    /** 
+     * A flag that is set when the segments of {@code Path2D} shapes can be
+     * read directly (see {@link FXHints#KEY_DIRECT_PATH_ACCESS}).
+     */
+    private boolean directPathAccess = FXPath2DAccess.isEnabled();
+
+    /** 
+     * A flag that is set when the shapes outside the visible area are 
+     * dropped (see {@link FXHints#KEY_CLIP_CULLING}).
+     */
+    private boolean clipCulling;
+
+    /** 
+     * A flag that is set when the strings are drawn from the text atlas 
+     * (see {@link FXHints#KEY_TEXT_RUN_CACHE}).
+     */
+    private boolean textRunCache;
+
+    /** 
+     * A flag that is set when the pixels of the images are shared with the
+     * JavaFX images (see {@link FXHints#KEY_SHARED_IMAGE_BUFFERS}).
+     */
+    private boolean sharedImageBuffers;
+
+    /** 
+     * The bounds of the device clip, computed when needed for the culling
+     * test ({@code null} if not computed yet or if there is no clip).
+     */
+    private Rectangle2D clipBounds;
+
+    /** The image reused by {@link #copyArea(int, int, int, int, int, int)}. */
+    private WritableImage copyAreaImage;
+
+    /** The attributes used to draw the area copied by copyArea(). */
+    private FXContextState copyAreaState;
+
+    /** The points used to transform the bounds of the culled shapes. */
+    private final double[] cullPoints = new double[8];
+
+    /** 
+     * The hit tester (and its cache of stroked outlines), created by the 
+     * first call to {@link #hit(java.awt.Rectangle, java.awt.Shape, boolean)}.
+     */
+    private FXHitTester hitTester;
+
+    /** 
+     * The depth of the graphics context stack when this instance was 
+     * created (the levels below belong to the parent instances), or 0 once
+     * the clip of this instance no longer relies on them.
+     */
+    private int baseDepth;
+
+    /** The owner of the level {@code baseDepth} (see FXContextTracker). */
+    private Object baseOwner;
+
+    /** The identifier of the level {@code baseDepth}. */
+    private long baseId;
+
+    /** 
+     * A flag that is set when this instance has saved a level of the 
+     * graphics context stack (at {@code baseDepth}) for its clip.
+     */
+    private boolean clipSaved;
+
+    /** The identifier of the level saved for the clip. */
+    private long clipId;
+
+    /** 
+     * A flag that is set for the instances created by {@link #create()}
+     * that have not been disposed yet.
+     */
+    private boolean disposable;
     
     /**
      * An instance that is lazily instantiated in drawLine and then 
@@ -176,6 +279,13 @@ public class FXGraphics2D extends Graphics2D {
      */
    private Ellipse2D oval;
     
+    /**
+     * The buffers used to pass the polygon coordinates to the graphics
+     * context (grown as required and then reused).
+     */
+    private double[] xPolyBuffer = new double[64];
+    private double[] yPolyBuffer = new double[64];
+
     /**
      * An instance that is lazily instantiated in draw/fillArc and then
      * subsequently reused to avoid creating a lot of garbage.
@@ -190,9 +300,6 @@ public class FXGraphics2D extends Graphics2D {
      * metrics.  Used in the getFontMetrics(Font f) method.
      */
     private Graphics2D fmImageG2;
-    
-    /** The FXFontMetrics. */
-    private FXFontMetrics fxFontMetrics;
 
     /** 
      * The device configuration (this is lazily instantiated in the 
@@ -221,14 +328,172 @@ public class FXGraphics2D extends Graphics2D {
      * @param gc  the graphics context ({@code null} not permitted). 
      */
     public FXGraphics2D(GraphicsContext gc) {
-        nullNotPermitted(gc, "gc");
-        this.gc = gc;
+        this(new FXCanvasTarget(gc));
+    }
+
+    /**
+     * Creates a new instance that will send the drawing primitives to the
+     * specified target (see {@link FXRenderTarget}).
+     * 
+     * @param target  the render target ({@code null} not permitted). 
+     * 
+     * @since 1.6
+     */
+    public FXGraphics2D(FXRenderTarget target) {
+        nullNotPermitted(target, "target");
+        this.target = target;
+        this.tracker = new FXContextTracker(target, 
+                (target instanceof FXCanvasTarget) 
+                ? new FXContextState(
+                        ((FXCanvasTarget) target).getGraphicsContext())
+                : new FXContextState());
+        this.state = this.tracker.copyCurrentState();
         this.zeroStrokeWidth = 0.5;
         this.hints = new RenderingHints(RenderingHints.KEY_ANTIALIASING, 
                 RenderingHints.VALUE_ANTIALIAS_DEFAULT);
         this.hints.put(FXHints.KEY_USE_FX_FONT_METRICS, true);
     }
-    
+
+    /**
+     * Creates a new instance that renders to the same graphics context as
+     * {@code parent}, starting with the same JavaFX attributes.
+     * 
+     * @param parent  the parent instance ({@code null} not permitted).
+     */
+    private FXGraphics2D(FXGraphics2D parent) {
+        this.target = parent.target;
+        this.tracker = parent.tracker;
+        this.state = new FXContextState(parent.state);
+        this.paintCache = parent.paintCache;
+        this.imageCache = parent.imageCache;
+        this.culler = parent.culler;
+        this.fontCache = parent.fontCache;
+        this.textAtlas = parent.textAtlas;
+        this.glyphCache = parent.glyphCache;
+        this.strokeCache = parent.strokeCache;
+        this.zeroStrokeWidth = parent.zeroStrokeWidth;
+        this.hints = new RenderingHints(RenderingHints.KEY_ANTIALIASING, 
+                RenderingHints.VALUE_ANTIALIAS_DEFAULT);
+        this.hints.put(FXHints.KEY_USE_FX_FONT_METRICS, true);
+    }
+
+    /**
+     * Returns the cache used to translate AWT paints to JavaFX paints.  The
+     * cache is shared with the graphics instances obtained from
+     * {@link #create()}.
+     *
+     * @return The paint cache (never {@code null}).
+     *
+     * @since 1.6
+     */
+    public FXPaintCache getPaintCache() {
+        return this.paintCache;
+    }
+
+    /**
+     * Returns the object that tracks the attributes of the JavaFX graphics
+     * context, and counts the attribute changes that are sent to (or 
+     * elided from) the canvas.
+     *
+     * @return The context tracker (never {@code null}).
+     *
+     * @since 1.6
+     */
+    public FXContextTracker getContextTracker() {
+        return this.tracker;
+    }
+
+    /**
+     * Returns the cache of the JavaFX images created by the 
+     * {@code drawImage()} methods.  The cache is shared with the graphics 
+     * instances obtained from {@link #create()}.
+     *
+     * @return The image cache (never {@code null}).
+     *
+     * @since 1.6
+     */
+    public FXImageCache getImageCache() {
+        return this.imageCache;
+    }
+
+    /**
+     * Returns the cache used to translate AWT fonts to JavaFX fonts.  The
+     * cache is shared with the graphics instances obtained from
+     * {@link #create()}.
+     *
+     * @return The font cache (never {@code null}).
+     *
+     * @since 1.6
+     */
+    public FXFontCache getFontCache() {
+        return this.fontCache;
+    }
+
+    /**
+     * Returns the atlas of rasterized text runs used when the 
+     * {@link FXHints#KEY_TEXT_RUN_CACHE} hint is set.  The atlas is shared 
+     * with the graphics instances obtained from {@link #create()}.
+     *
+     * @return The text atlas (never {@code null}).
+     *
+     * @since 1.6
+     */
+    public FXTextAtlas getTextAtlas() {
+        return this.textAtlas;
+    }
+
+    /**
+     * Returns the cache of the glyph outlines used to draw glyph vectors and
+     * attributed strings.  The cache is shared with the graphics instances
+     * obtained from {@link #create()}.
+     *
+     * @return The glyph cache (never {@code null}).
+     *
+     * @since 1.6
+     */
+    public FXGlyphCache getGlyphCache() {
+        return this.glyphCache;
+    }
+
+    /**
+     * Returns the cache of the stroked outlines used to draw shapes with 
+     * strokes that are not a {@code BasicStroke} (and to test hits on 
+     * stroked outlines).  The cache is shared with the graphics instances 
+     * obtained from {@link #create()}.
+     *
+     * @return The stroke cache (never {@code null}).
+     *
+     * @since 1.6
+     */
+    public FXStrokeCache getStrokeCache() {
+        return this.strokeCache;
+    }
+
+    /**
+     * Returns the object that counts the shapes dropped by the 
+     * {@code draw()} and {@code fill()} methods when the 
+     * {@link FXHints#KEY_CLIP_CULLING} hint is set.  The instance is shared 
+     * with the graphics instances obtained from {@link #create()}.
+     *
+     * @return The clip culler (never {@code null}).
+     *
+     * @since 1.6
+     */
+    public FXClipCuller getClipCuller() {
+        return this.culler;
+    }
+
+    /**
+     * Sends the pending attribute changes to the graphics context.  This
+     * must be called before any operation that uses the current attributes
+     * of the graphics context.
+     */
+    private void applyState() {
+        validateClip();
+        this.state.setTransform(this.transform);
+        this.tracker.apply(this.state);
+    }
+
     /**
      * Returns the width to use for the stroke when the AWT stroke
      * specified has a zero width (the default value is {@code 0.5}).  
@@ -267,8 +532,8 @@ public class FXGraphics2D extends Graphics2D {
     @Override
     public GraphicsConfiguration getDeviceConfiguration() {
         if (this.deviceConfiguration == null) {
-            int width = (int) this.gc.getCanvas().getWidth();
-            int height = (int) this.gc.getCanvas().getHeight();
+            int width = (int) this.target.getWidth();
+            int height = (int) this.target.getHeight();
             this.deviceConfiguration = new FXGraphicsConfiguration(width,
                     height);
         }
@@ -277,21 +542,44 @@ public class FXGraphics2D extends Graphics2D {
 
     /**
      * Creates a new graphics object that is a copy of this graphics object.
+     * <p>
+     * The copy shares the graphics context, and nothing is sent to it here:
+     * the attributes are copied from this instance (the JavaFX attributes 
+     * are applied lazily, only those that differ from the attributes in 
+     * force are emitted before the next drawing operation) and the clip 
+     * already in force in the graphics context is inherited.  A clip set on
+     * the copy is saved on the graphics context stack, and 
+     * {@link #dispose()} restores the stack to its state when the copy was 
+     * created (the levels left by the copies that are not disposed are also 
+     * discarded when the parent changes its clip).  {@link #clip(Shape)} on
+     * the copy intersects the inherited clip, while 
+     * {@link #setClip(Shape)} replaces it: the graphics context can only 
+     * reduce the clip, so the whole stack is restored, including the levels
+     * of the parent, and the parent sets its clip again before its next 
+     * drawing operation.</p>
      * 
      * @return A new graphics object.
      */
     @Override
     public Graphics create() {
-        FXGraphics2D copy = new FXGraphics2D(this.gc);
-        copy.setRenderingHints(getRenderingHints());
-        copy.setClip(getClip());
-        copy.setPaint(getPaint());
-        copy.setColor(getColor());
-        copy.setComposite(getComposite());
-        copy.setStroke(getStroke());
-        copy.setFont(getFont());
-        copy.setTransform(getTransform());
-        copy.setBackground(getBackground());    
+        // the copy relies on the levels of this instance:
+        validateClip();
+        FXGraphics2D copy = new FXGraphics2D(this);
+        copy.hints.putAll(this.hints);
+        copy.hintsChanged();
+        copy.clip = this.clip;
+        copy.clipBounds = this.clipBounds;
+        copy.paint = this.paint;
+        copy.color = this.color;
+        copy.composite = this.composite;
+        copy.stroke = this.stroke;
+        copy.font = this.font;
+        copy.transform.setTransform(this.transform);
+        copy.background = this.background;
+        copy.baseDepth = this.tracker.getDepth();
+        copy.baseOwner = this.tracker.getOwner(copy.baseDepth);
+        copy.baseId = this.tracker.getId(copy.baseDepth);
+        copy.disposable = true;
         return copy;
     }
 
@@ -337,55 +625,15 @@ public class FXGraphics2D extends Graphics2D {
         this.paint = paint;
         if (paint instanceof Color) {
             setColor((Color) paint);
-        } else if (paint instanceof GradientPaint) {
-            GradientPaint gp = (GradientPaint) paint;
-            Stop[] stops = new Stop[] { new Stop(0, 
-                    awtColorToJavaFX(gp.getColor1())), 
-                    new Stop(1, awtColorToJavaFX(gp.getColor2())) };
-            Point2D p1 = gp.getPoint1();
-            Point2D p2 = gp.getPoint2();
-            LinearGradient lg = new LinearGradient(p1.getX(), p1.getY(), 
-                    p2.getX(), p2.getY(), false, CycleMethod.NO_CYCLE, stops);
-            this.gc.setStroke(lg);
-            this.gc.setFill(lg);
-        } else if (paint instanceof MultipleGradientPaint) {
-            MultipleGradientPaint mgp = (MultipleGradientPaint) paint;
-            Color[] colors = mgp.getColors();
-            float[] fractions = mgp.getFractions();
-            Stop[] stops = new Stop[colors.length];
-            for (int i = 0; i < colors.length; i++) {
-                stops[i] = new Stop(fractions[i], awtColorToJavaFX(colors[i]));
-            }
-
-            if (paint instanceof RadialGradientPaint) {
-                RadialGradientPaint rgp = (RadialGradientPaint) paint;
-                Point2D center = rgp.getCenterPoint();
-                Point2D focus = rgp.getFocusPoint();           
-                double focusDistance = focus.distance(center);
-                double focusAngle = 0.0;
-                if (!focus.equals(center)) {
-                    focusAngle = Math.atan2(focus.getY() - center.getY(), 
-                        focus.getX() - center.getX());
-                }
-                double radius = rgp.getRadius();
-                RadialGradient rg = new RadialGradient(
-                        Math.toDegrees(focusAngle), focusDistance, 
-                        center.getX(), center.getY(), radius, false, 
-                        CycleMethod.NO_CYCLE, stops);
-                this.gc.setStroke(rg);
-                this.gc.setFill(rg);
-            } else if (paint instanceof LinearGradientPaint) {
-                LinearGradientPaint lgp = (LinearGradientPaint) paint;
-                Point2D start = lgp.getStartPoint();
-                Point2D end = lgp.getEndPoint();
-                LinearGradient lg = new LinearGradient(start.getX(), 
-                        start.getY(), end.getX(), end.getY(), false, 
-                        CycleMethod.NO_CYCLE, stops);
-                this.gc.setStroke(lg);
-                this.gc.setFill(lg);
-            }
         } else {
-            // this is a paint we don't recognise
+            javafx.scene.paint.Paint fxpaint = this.paintCache.getGradient(
+                    paint);
+            if (fxpaint != null) {
+                this.state.setStroke(fxpaint);
+                this.state.setFill(fxpaint);
+            } else {
+                // this is a paint we don't recognise
+            }
         }
     }
 
@@ -422,8 +670,8 @@ public class FXGraphics2D extends Graphics2D {
         this.color = c;
         this.paint = c;
         javafx.scene.paint.Color fxcolor = awtColorToJavaFX(c);
-        this.gc.setFill(fxcolor);
-        this.gc.setStroke(fxcolor);
+        this.state.setFill(fxcolor);
+        this.state.setStroke(fxcolor);
     }
 
     /**
@@ -434,8 +682,7 @@ public class FXGraphics2D extends Graphics2D {
      * @return A JavaFX color. 
      */
     private javafx.scene.paint.Color awtColorToJavaFX(Color c) {
-        return javafx.scene.paint.Color.rgb(c.getRed(), c.getGreen(), 
-                c.getBlue(), c.getAlpha() / 255.0);
+        return this.paintCache.getColor(c);
     }
     
     /**
@@ -495,8 +742,8 @@ public class FXGraphics2D extends Graphics2D {
         this.composite = comp;
         if (comp instanceof AlphaComposite) {
             AlphaComposite ac = (AlphaComposite) comp;
-            this.gc.setGlobalAlpha(ac.getAlpha());
-            this.gc.setGlobalBlendMode(blendMode(ac.getRule()));
+            this.state.setGlobalAlpha(ac.getAlpha());
+            this.state.setGlobalBlendMode(blendMode(ac.getRule()));
         }
     }
     
@@ -563,12 +810,12 @@ public class FXGraphics2D extends Graphics2D {
             if (lineWidth == 0.0) {
                 lineWidth = this.zeroStrokeWidth;
             }
-            this.gc.setLineWidth(lineWidth);
-            this.gc.setLineCap(awtToJavaFXLineCap(bs.getEndCap()));
-            this.gc.setLineJoin(awtToJavaFXLineJoin(bs.getLineJoin()));
-            this.gc.setMiterLimit(bs.getMiterLimit());
-            this.gc.setLineDashes(floatToDoubleArray(bs.getDashArray()));
-            this.gc.setLineDashOffset(bs.getDashPhase());
+            this.state.setLineWidth(lineWidth);
+            this.state.setLineCap(awtToJavaFXLineCap(bs.getEndCap()));
+            this.state.setLineJoin(awtToJavaFXLineJoin(bs.getLineJoin()));
+            this.state.setMiterLimit(bs.getMiterLimit());
+            this.state.setLineDashes(floatToDoubleArray(bs.getDashArray()));
+            this.state.setLineDashOffset(bs.getDashPhase());
         }
         this.stroke = s;
     }
@@ -652,6 +899,7 @@ public class FXGraphics2D extends Graphics2D {
     @Override
     public void setRenderingHint(RenderingHints.Key hintKey, Object hintValue) {
         this.hints.put(hintKey, hintValue);
+        hintsChanged();
     }
 
     /**
@@ -679,6 +927,7 @@ public class FXGraphics2D extends Graphics2D {
     public void setRenderingHints(Map<?, ?> hints) {
         this.hints.clear();
         this.hints.putAll(hints);
+        hintsChanged();
     }
 
     /**
@@ -689,6 +938,80 @@ public class FXGraphics2D extends Graphics2D {
     @Override
     public void addRenderingHints(Map<?, ?> hints) {
         this.hints.putAll(hints);
+        hintsChanged();
+    }
+
+    /**
+     * Updates the flags that cache the value of hints read in the drawing 
+     * methods.
+     */
+    private void hintsChanged() {
+        this.directPathAccess = FXPath2DAccess.isEnabled() 
+                && this.hints.get(FXHints.KEY_DIRECT_PATH_ACCESS) 
+                != Boolean.FALSE;
+        this.clipCulling = this.hints.get(FXHints.KEY_CLIP_CULLING) 
+                == Boolean.TRUE;
+        this.textRunCache = this.hints.get(FXHints.KEY_TEXT_RUN_CACHE) 
+                == Boolean.TRUE;
+        this.sharedImageBuffers = this.hints.get(
+                FXHints.KEY_SHARED_IMAGE_BUFFERS) == Boolean.TRUE;
+    }
+
+    /**
+     * Returns {@code true} if the given shape lies entirely outside the 
+     * device clip and the canvas bounds, once its bounds are expanded by 
+     * {@code pad} (in user space) and transformed to device space.
+     * 
+     * @param s  the shape ({@code null} not permitted).
+     * @param pad  the margin for the stroke, in user space.
+     * 
+     * @return A boolean. 
+     */
+    private boolean isCulled(Shape s, double pad) {
+        Rectangle2D b = s.getBounds2D();
+        double[] pts = this.cullPoints;
+        pts[0] = pts[6] = b.getMinX() - pad;
+        pts[1] = pts[3] = b.getMinY() - pad;
+        pts[2] = pts[4] = b.getMaxX() + pad;
+        pts[5] = pts[7] = b.getMaxY() + pad;
+        this.transform.transform(pts, 0, pts, 0, 4);
+        double x0 = Math.min(Math.min(pts[0], pts[2]), Math.min(pts[4], pts[6]));
+        double y0 = Math.min(Math.min(pts[1], pts[3]), Math.min(pts[5], pts[7]));
+        double x1 = Math.max(Math.max(pts[0], pts[2]), Math.max(pts[4], pts[6]));
+        double y1 = Math.max(Math.max(pts[1], pts[3]), Math.max(pts[5], pts[7]));
+        if (this.clip != null && this.clipBounds == null) {
+            this.clipBounds = this.clip.getBounds2D();
+        }
+        Rectangle2D cb = this.clipBounds;
+        // one pixel margin for antialiasing:
+        return this.culler.isOutside(x0 - 1.0, y0 - 1.0, x1 + 1.0, y1 + 1.0, 
+                cb != null ? cb.getMinX() : Double.NEGATIVE_INFINITY,
+                cb != null ? cb.getMinY() : Double.NEGATIVE_INFINITY,
+                cb != null ? cb.getMaxX() : Double.POSITIVE_INFINITY,
+                cb != null ? cb.getMaxY() : Double.POSITIVE_INFINITY,
+                this.target.getWidth(), this.target.getHeight());
+    }
+
+    /**
+     * Returns the distance (in user space) that the outline drawn with the
+     * given stroke can extend beyond the bounds of a shape.
+     * 
+     * @param bs  the stroke ({@code null} not permitted).
+     * 
+     * @return The distance. 
+     */
+    private double strokePad(BasicStroke bs) {
+        double w = bs.getLineWidth();
+        if (w == 0.0) {
+            w = this.zeroStrokeWidth;
+        }
+        // square caps extend by sqrt(2) * w / 2 at the corners, and the 
+        // stroke control adjustment moves lines by half a unit:
+        double f = Math.sqrt(2.0);
+        if (bs.getLineJoin() == BasicStroke.JOIN_MITER) {
+            f = Math.max(f, bs.getMiterLimit());
+        }
+        return 0.5 * w * f + 0.5;
     }
 
     /**
@@ -707,9 +1030,14 @@ public class FXGraphics2D extends Graphics2D {
         // if the current stroke is not a BasicStroke then it is handled as
         // a special case
         if (!(this.stroke instanceof BasicStroke)) {
-            fill(this.stroke.createStrokedShape(s));
+            fill(strokedShape(s));
+            return;
+        }
+        if (this.clipCulling 
+                && isCulled(s, strokePad((BasicStroke) this.stroke))) {
             return;
         }
+        applyState();
         if (s instanceof Line2D) {
             Line2D l = (Line2D) s;
             Object hint = getRenderingHint(RenderingHints.KEY_STROKE_CONTROL);
@@ -720,7 +1048,7 @@ public class FXGraphics2D extends Graphics2D {
                 double y2 = Math.rint(l.getY2()) - 0.5;
                 l.setLine(x1, y1, x2, y2);
             }
-            this.gc.strokeLine(l.getX1(), l.getY1(), l.getX2(), l.getY2());
+            this.target.strokeLine(l.getX1(), l.getY1(), l.getX2(), l.getY2());
         } else if (s instanceof Rectangle2D) {
             Rectangle2D r = (Rectangle2D) s;
             if (s instanceof Rectangle) {
@@ -735,54 +1063,97 @@ public class FXGraphics2D extends Graphics2D {
                 double h = Math.floor(r.getHeight());
                 r.setRect(x, y, w, h);
             }
-            this.gc.strokeRect(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+            this.target.strokeRect(r.getX(), r.getY(), r.getWidth(), r.getHeight());
         } else if (s instanceof RoundRectangle2D) {
             RoundRectangle2D rr = (RoundRectangle2D) s;
-            this.gc.strokeRoundRect(rr.getX(), rr.getY(), rr.getWidth(), 
+            this.target.strokeRoundRect(rr.getX(), rr.getY(), rr.getWidth(), 
                     rr.getHeight(), rr.getArcWidth(), rr.getArcHeight());
         } else if (s instanceof Ellipse2D) {
             Ellipse2D e = (Ellipse2D) s;
-            this.gc.strokeOval(e.getX(), e.getY(), e.getWidth(), e.getHeight());
+            this.target.strokeOval(e.getX(), e.getY(), e.getWidth(), e.getHeight());
         } else if (s instanceof Arc2D) {
             Arc2D a = (Arc2D) s;
-            this.gc.strokeArc(a.getX(), a.getY(), a.getWidth(), a.getHeight(), 
+            this.target.strokeArc(a.getX(), a.getY(), a.getWidth(), a.getHeight(), 
                     a.getAngleStart(), a.getAngleExtent(), 
                     intToArcType(a.getArcType()));
         } else {
             shapeToPath(s);
-            this.gc.stroke();
+            this.target.stroke();
         }
     }
 
+    /**
+     * Draws a shape created by this class for a single call with the 
+     * current (custom) stroke, without the stroke cache (the shape is never
+     * drawn again, so caching its outline would only evict useful ones).
+     * 
+     * @param s  the shape ({@code null} not permitted).
+     */
+    private void drawTransient(Shape s) {
+        fill(this.stroke.createStrokedShape(s));
+    }
+
+    /**
+     * Returns the outline of a shape stroked with the current (custom) 
+     * stroke, from the stroke cache unless the shape is one of the 
+     * instances reused by this class.
+     * 
+     * @param s  the shape ({@code null} not permitted).
+     * 
+     * @return The stroked outline.
+     */
+    private Shape strokedShape(Shape s) {
+        if (s == this.line || s == this.rect || s == this.roundRect 
+                || s == this.oval || s == this.arc) {
+            return this.stroke.createStrokedShape(s);
+        }
+        return this.strokeCache.getStrokedShape(s, this.stroke);
+    }
+
     private final double[] coords = new double[6];
     
     /**
-     * Maps a shape to a path in the graphics context. 
+     * Maps a shape to a path in the graphics context.  {@code Path2D} and
+     * {@code Polygon} shapes are streamed directly from their coordinate
+     * arrays when possible, other shapes use a path iterator.
      * 
      * @param s  the shape ({@code null} not permitted).
      */
     private void shapeToPath(Shape s) {
-        this.gc.beginPath();
+        this.target.beginPath();
+        if (this.directPathAccess && s instanceof Path2D) {
+            if (s instanceof Path2D.Float) {
+                floatPathToPath((Path2D.Float) s);
+            } else {
+                doublePathToPath((Path2D.Double) s);
+            }
+            return;
+        }
+        if (s instanceof Polygon) {
+            Polygon p = (Polygon) s;
+            polygonToPath(p.xpoints, p.ypoints, p.npoints, true);
+            return;
+        }
         PathIterator iterator = s.getPathIterator(null);
         while (!iterator.isDone()) {
             int segType = iterator.currentSegment(coords);
             switch (segType) {
                 case PathIterator.SEG_MOVETO:
-                    this.gc.moveTo(coords[0], coords[1]);
+                    this.target.moveTo(coords[0], coords[1]);
                     break;
                 case PathIterator.SEG_LINETO:
-                    this.gc.lineTo(coords[0], coords[1]);
+                    this.target.lineTo(coords[0], coords[1]);
                     break;
                 case PathIterator.SEG_QUADTO:
-                    this.gc.quadraticCurveTo(coords[0], coords[1], coords[2], 
+                    this.target.quadraticCurveTo(coords[0], coords[1], coords[2], 
                             coords[3]);
                     break;
                 case PathIterator.SEG_CUBICTO:
-                    this.gc.bezierCurveTo(coords[0], coords[1], coords[2], 
+                    this.target.bezierCurveTo(coords[0], coords[1], coords[2], 
                             coords[3], coords[4], coords[5]);
                     break;
                 case PathIterator.SEG_CLOSE:
-                    this.gc.closePath();
+                    this.target.closePath();
                     break;
                 default:
                     throw new RuntimeException("Unrecognised segment type " 
@@ -791,6 +1162,111 @@ public class FXGraphics2D extends Graphics2D {
             iterator.next();
         }
     }
+
+    /**
+     * Adds the segments of a path (including {@code GeneralPath}) to the 
+     * current path of the graphics context, reading the path arrays 
+     * directly.
+     * 
+     * @param p  the path ({@code null} not permitted).
+     */
+    private void floatPathToPath(Path2D.Float p) {
+        final FXRenderTarget ctx = this.target;
+        final byte[] types = FXPath2DAccess.types(p);
+        final float[] c = FXPath2DAccess.coords(p);
+        final int n = FXPath2DAccess.numTypes(p);
+        for (int i = 0, j = 0; i < n; i++) {
+            switch (types[i]) {
+                case PathIterator.SEG_MOVETO:
+                    ctx.moveTo(c[j], c[j + 1]);
+                    j += 2;
+                    break;
+                case PathIterator.SEG_LINETO:
+                    ctx.lineTo(c[j], c[j + 1]);
+                    j += 2;
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    ctx.quadraticCurveTo(c[j], c[j + 1], c[j + 2], c[j + 3]);
+                    j += 4;
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    ctx.bezierCurveTo(c[j], c[j + 1], c[j + 2], c[j + 3], 
+                            c[j + 4], c[j + 5]);
+                    j += 6;
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    ctx.closePath();
+                    break;
+                default:
+                    throw new RuntimeException("Unrecognised segment type " 
+                            + types[i]);
+            }
+        }
+    }
+
+    /**
+     * Adds the segments of a path to the current path of the graphics 
+     * context, reading the path arrays directly.
+     * 
+     * @param p  the path ({@code null} not permitted).
+     */
+    private void doublePathToPath(Path2D.Double p) {
+        final FXRenderTarget ctx = this.target;
+        final byte[] types = FXPath2DAccess.types(p);
+        final double[] c = FXPath2DAccess.coords(p);
+        final int n = FXPath2DAccess.numTypes(p);
+        for (int i = 0, j = 0; i < n; i++) {
+            switch (types[i]) {
+                case PathIterator.SEG_MOVETO:
+                    ctx.moveTo(c[j], c[j + 1]);
+                    j += 2;
+                    break;
+                case PathIterator.SEG_LINETO:
+                    ctx.lineTo(c[j], c[j + 1]);
+                    j += 2;
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    ctx.quadraticCurveTo(c[j], c[j + 1], c[j + 2], c[j + 3]);
+                    j += 4;
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    ctx.bezierCurveTo(c[j], c[j + 1], c[j + 2], c[j + 3], 
+                            c[j + 4], c[j + 5]);
+                    j += 6;
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    ctx.closePath();
+                    break;
+                default:
+                    throw new RuntimeException("Unrecognised segment type " 
+                            + types[i]);
+            }
+        }
+    }
+
+    /**
+     * Adds a polyline or polygon to the current path of the graphics 
+     * context.
+     * 
+     * @param xPoints  the x-points.
+     * @param yPoints  the y-points.
+     * @param nPoints  the number of points.
+     * @param close  close the path?
+     */
+    private void polygonToPath(int[] xPoints, int[] yPoints, int nPoints, 
+            boolean close) {
+        if (nPoints <= 0) {
+            return;
+        }
+        final FXRenderTarget ctx = this.target;
+        ctx.moveTo(xPoints[0], yPoints[0]);
+        for (int i = 1; i < nPoints; i++) {
+            ctx.lineTo(xPoints[i], yPoints[i]);
+        }
+        if (close) {
+            ctx.closePath();
+        }
+    }
     
     private ArcType intToArcType(int t) {
         if (t == Arc2D.CHORD) {
@@ -815,24 +1291,28 @@ public class FXGraphics2D extends Graphics2D {
      */
     @Override
     public void fill(Shape s) {
+        if (this.clipCulling && isCulled(s, 0.0)) {
+            return;
+        }
+        applyState();
         if (s instanceof Rectangle2D) {
             Rectangle2D r = (Rectangle2D) s;
-            this.gc.fillRect(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+            this.target.fillRect(r.getX(), r.getY(), r.getWidth(), r.getHeight());
         } else if (s instanceof RoundRectangle2D) {
             RoundRectangle2D rr = (RoundRectangle2D) s;
-            this.gc.fillRoundRect(rr.getX(), rr.getY(), rr.getWidth(), 
+            this.target.fillRoundRect(rr.getX(), rr.getY(), rr.getWidth(), 
                     rr.getHeight(), rr.getArcWidth(), rr.getArcHeight());
         } else if (s instanceof Ellipse2D) {
             Ellipse2D e = (Ellipse2D) s;
-            this.gc.fillOval(e.getX(), e.getY(), e.getWidth(), e.getHeight());
+            this.target.fillOval(e.getX(), e.getY(), e.getWidth(), e.getHeight());
         } else if (s instanceof Arc2D) {
             Arc2D a = (Arc2D) s;
-            this.gc.fillArc(a.getX(), a.getY(), a.getWidth(), a.getHeight(), 
+            this.target.fillArc(a.getX(), a.getY(), a.getWidth(), a.getHeight(), 
                     a.getAngleStart(), a.getAngleExtent(), 
                     intToArcType(a.getArcType()));
         } else {
             shapeToPath(s);
-            this.gc.fill();
+            this.target.fill();
         }
     }
 
@@ -865,12 +1345,7 @@ public class FXGraphics2D extends Graphics2D {
 
     private void applyFont(Font font) {
         this.font = font;
-        FontWeight weight = font.isBold() ? FontWeight.BOLD : FontWeight.NORMAL;
-        FontPosture posture = font.isItalic() 
-                ? FontPosture.ITALIC : FontPosture.REGULAR;
-        javafx.scene.text.Font jfxfont = javafx.scene.text.Font.font(
-                font.getFamily(), weight, posture, font.getSize());
-        this.gc.setFont(jfxfont);
+        this.state.setFont(this.fontCache.getFont(font));
     }
 
     /**
@@ -885,11 +1360,7 @@ public class FXGraphics2D extends Graphics2D {
     @Override
     public FontMetrics getFontMetrics(Font f) {
         if (getRenderingHint(FXHints.KEY_USE_FX_FONT_METRICS) == Boolean.TRUE) {
-            if (this.fxFontMetrics == null 
-                    || !f.equals(this.fxFontMetrics.getFont())) {
-                this.fxFontMetrics = new FXFontMetrics(this.font, this);
-            }
-            return this.fxFontMetrics;
+            return this.fontCache.getFontMetrics(f);
         } 
         
         // be lazy about creating the underlying objects...
@@ -944,7 +1415,42 @@ public class FXGraphics2D extends Graphics2D {
         if (str == null) {
             throw new NullPointerException("Null 'str' argument.");
         }
-        this.gc.fillText(str, x, y);
+        if (this.textRunCache && this.paint instanceof Color
+                && (this.transform.getType() 
+                & ~AffineTransform.TYPE_TRANSLATION) == 0 
+                && drawTextRun(str, x, y)) {
+            return;
+        }
+        applyState();
+        this.target.fillText(str, x, y);
+    }
+
+    /**
+     * Draws a string from the text atlas.  The run is aligned to the device
+     * pixels, so that the atlas image is not resampled.
+     * 
+     * @param str  the string ({@code null} not permitted).
+     * @param x  the x-coordinate.
+     * @param y  the y-coordinate.
+     * 
+     * @return {@code false} if the run is not cached (too large).
+     */
+    private boolean drawTextRun(String str, float x, float y) {
+        FXTextAtlas.Run run = this.textAtlas.get(str, this.font, 
+                ((Color) this.paint).getRGB());
+        if (run == null) {
+            return false;
+        }
+        if (run.width > 0) {
+            applyState();
+            double tx = this.transform.getTranslateX();
+            double ty = this.transform.getTranslateY();
+            double dx = Math.rint(x + tx) + run.originX - tx;
+            double dy = Math.rint(y + ty) + run.originY - ty;
+            this.target.drawImage(run.getImage(), run.x, run.y, run.width, 
+                    run.height, dx, dy, run.width, run.height);
+        }
+        return true;
     }
 
     /**
@@ -962,7 +1468,10 @@ public class FXGraphics2D extends Graphics2D {
     }
 
     /**
-     * Draws a string of attributed characters at {@code (x, y)}. 
+     * Draws a string of attributed characters at {@code (x, y)}.  Strings 
+     * that only use font and foreground attributes (and that do not require
+     * a complex layout) are drawn run by run from the glyph outline cache, 
+     * other strings are drawn with a {@code TextLayout}.
      * 
      * @param iterator  an iterator over the characters ({@code null} not 
      *     permitted).
@@ -975,9 +1484,11 @@ public class FXGraphics2D extends Graphics2D {
         Set<AttributedCharacterIterator.Attribute> 
                 s = iterator.getAllAttributeKeys();
         if (!s.isEmpty()) {
-            TextLayout layout = new TextLayout(iterator, 
-                    getFontRenderContext());
-            layout.draw(this, x, y);
+            if (!drawStyledRuns(iterator, s, x, y)) {
+                TextLayout layout = new TextLayout(iterator, 
+                        getFontRenderContext());
+                layout.draw(this, x, y);
+            }
         } else {
             StringBuilder strb = new StringBuilder();
             iterator.first();
@@ -999,7 +1510,100 @@ public class FXGraphics2D extends Graphics2D {
      */
     @Override
     public void drawGlyphVector(GlyphVector g, float x, float y) {
-        fill(g.getOutline(x, y));
+        if (!drawGlyphs(g, x, y)) {
+            fill(g.getOutline(x, y));
+        }
+    }
+
+    /** The attributes handled by {@link #drawStyledRuns}. */
+    private static final Set<AttributedCharacterIterator.Attribute> 
+            RUN_ATTRIBUTES = new HashSet<>(Arrays.asList(TextAttribute.FONT, 
+            TextAttribute.FAMILY, TextAttribute.SIZE, TextAttribute.WEIGHT, 
+            TextAttribute.POSTURE, TextAttribute.FOREGROUND));
+
+    /**
+     * Draws the style runs of an attributed string from the glyph outline 
+     * cache, one after the other on the baseline.
+     * 
+     * @param iterator  the characters.
+     * @param keys  the attribute keys used by the characters.
+     * @param x  the x-coordinate.
+     * @param y  the y-coordinate.
+     * 
+     * @return {@code false} if the string requires a {@code TextLayout} 
+     *     (nothing is drawn).
+     */
+    private boolean drawStyledRuns(AttributedCharacterIterator iterator, 
+            Set<AttributedCharacterIterator.Attribute> keys, float x, 
+            float y) {
+        if (!RUN_ATTRIBUTES.containsAll(keys)) {
+            return false;
+        }
+        int begin = iterator.getBeginIndex();
+        int end = iterator.getEndIndex();
+        char[] chars = new char[end - begin];
+        iterator.first();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = iterator.current();
+            iterator.next();
+        }
+        if (Font.textRequiresLayout(chars, 0, chars.length)) {
+            return false;
+        }
+        Paint savedPaint = this.paint;
+        float runX = x;
+        for (int i = begin; i < end; ) {
+            iterator.setIndex(i);
+            int limit = iterator.getRunLimit();
+            Map<AttributedCharacterIterator.Attribute, Object> attributes 
+                    = iterator.getAttributes();
+            Paint foreground = (Paint) attributes.get(
+                    TextAttribute.FOREGROUND);
+            setPaint(foreground != null ? foreground : savedPaint);
+            GlyphVector gv = Font.getFont(attributes).createGlyphVector(
+                    getFontRenderContext(), Arrays.copyOfRange(chars, 
+                    i - begin, limit - begin));
+            if (!drawGlyphs(gv, runX, y)) {
+                fill(gv.getOutline(runX, y));
+            }
+            runX += (float) gv.getGlyphPosition(gv.getNumGlyphs()).getX();
+            i = limit;
+        }
+        setPaint(savedPaint);
+        return true;
+    }
+
+    /**
+     * Draws a glyph vector from the glyph outline cache, as a single path.
+     * 
+     * @param g  the glyph vector ({@code null} not permitted).
+     * @param x  the x-coordinate.
+     * @param y  the y-coordinate.
+     * 
+     * @return {@code false} if the glyph vector uses transforms (nothing 
+     *     is drawn).
+     */
+    private boolean drawGlyphs(GlyphVector g, float x, float y) {
+        if (g.getFontRenderContext().isTransformed()) {
+            return false;
+        }
+        int n = g.getNumGlyphs();
+        for (int i = 0; i < n; i++) {
+            if (g.getGlyphTransform(i) != null) {
+                return false;
+            }
+        }
+        int[] codes = g.getGlyphCodes(0, n, null);
+        float[] positions = g.getGlyphPositions(0, n, null);
+        Font f = g.getFont();
+        applyState();
+        this.target.beginPath();
+        for (int i = 0; i < n; i++) {
+            this.glyphCache.get(f, codes[i]).appendTo(this.target, 
+                    x + positions[2 * i], y + positions[2 * i + 1]);
+        }
+        this.target.fill();
+        return true;
     }
 
     /**
@@ -1025,7 +1629,6 @@ public class FXGraphics2D extends Graphics2D {
     @Override
     public void translate(double tx, double ty) {
         this.transform.translate(tx, ty);
-        this.gc.translate(tx, ty);
     }
 
     /**
@@ -1036,7 +1639,6 @@ public class FXGraphics2D extends Graphics2D {
     @Override
     public void rotate(double theta) {
         this.transform.rotate(theta);
-        this.gc.rotate(Math.toDegrees(theta));
     }
 
     /**
@@ -1048,9 +1650,7 @@ public class FXGraphics2D extends Graphics2D {
      */
     @Override
     public void rotate(double theta, double x, double y) {
-        translate(x, y);
-        rotate(theta);
-        translate(-x, -y);
+        this.transform.rotate(theta, x, y);
     }
 
     /**
@@ -1062,12 +1662,12 @@ public class FXGraphics2D extends Graphics2D {
     @Override
     public void scale(double sx, double sy) {
         this.transform.scale(sx, sy);
-        this.gc.scale(sx, sy);
     }
 
     /**
-     * Applies a shear transformation. This is equivalent to the following 
-     * call to the {@code transform} method:
+     * Applies a shear transformation (without creating a new transform). 
+     * This is equivalent to the following call to the {@code transform} 
+     * method:
      * <br><br>
      * <ul><li>
      * {@code transform(AffineTransform.getShearInstance(shx, shy));}
@@ -1078,7 +1678,7 @@ public class FXGraphics2D extends Graphics2D {
      */
     @Override
     public void shear(double shx, double shy) {
-        transform(AffineTransform.getShearInstance(shx, shy));
+        this.transform.shear(shx, shy);
     }
 
     /**
@@ -1088,13 +1688,13 @@ public class FXGraphics2D extends Graphics2D {
      */
     @Override
     public void transform(AffineTransform t) {
-        AffineTransform tx = getTransform();
-        tx.concatenate(t);
-        setTransform(tx);
+        this.transform.concatenate(t);
     }
 
     /**
-     * Returns a copy of the current transform.
+     * Returns a copy of the current transform (a copy is required by the 
+     * {@code Graphics2D} specification, the methods of this class do not
+     * call this method).
      * 
      * @return A copy of the current transform (never {@code null}).
      * 
@@ -1116,19 +1716,18 @@ public class FXGraphics2D extends Graphics2D {
     @Override
     public void setTransform(AffineTransform t) {
         if (t == null) {
-            this.transform = new AffineTransform();
-            t = this.transform;
+            this.transform.setToIdentity();
         } else {
-            this.transform = new AffineTransform(t);
+            this.transform.setTransform(t);
         }
-        this.gc.setTransform(t.getScaleX(), t.getShearY(), t.getShearX(), 
-                t.getScaleY(), t.getTranslateX(), t.getTranslateY());
     }
 
     /**
      * Returns {@code true} if the rectangle (in device space) intersects
      * with the shape (the interior, if {@code onStroke} is {@code false}, 
-     * otherwise the stroked outline of the shape).
+     * otherwise the stroked outline of the shape).  The test does not build
+     * any {@code Area}, and the stroked outlines are cached for repeated 
+     * queries (see {@link FXHitTester}).
      * 
      * @param rect  a rectangle (in device space).
      * @param s the shape.
@@ -1138,20 +1737,11 @@ public class FXGraphics2D extends Graphics2D {
      */
     @Override
     public boolean hit(Rectangle rect, Shape s, boolean onStroke) {
-        Shape ts;
-        if (onStroke) {
-            ts = this.transform.createTransformedShape(
-                    this.stroke.createStrokedShape(s));
-        } else {
-            ts = this.transform.createTransformedShape(s);
+        if (this.hitTester == null) {
+            this.hitTester = new FXHitTester(this.strokeCache);
         }
-        if (!rect.getBounds2D().intersects(ts.getBounds2D())) {
-            return false;
-        }
-        Area a1 = new Area(rect);
-        Area a2 = new Area(ts);
-        a1.intersect(a2);
-        return !a1.isEmpty();
+        return this.hitTester.hit(rect, s, onStroke ? this.stroke : null, 
+                this.transform);
     }
 
     /**
@@ -1216,55 +1806,28 @@ public class FXGraphics2D extends Graphics2D {
      */
     @Override
     public void setClip(Shape shape) {
-        if (this.stateSaved) {
-            this.gc.restore(); // get back original clip
-            reapplyAttributes(); // but keep other attributes
-            this.stateSaved = false;
-        }
-        // null is handled fine here...
-        this.clip = this.transform.createTransformedShape(shape);
-        if (clip != null) {
-            this.gc.save(); 
-            rememberSavedAttributes();
-            shapeToPath(shape);
-            this.gc.clip();
-        }
-    }
-    
-    /** 
-     * Remember the Graphics2D attributes in force at the point of pushing
-     * the JavaFX context.
-     */
-    private void rememberSavedAttributes() {
-        this.stateSaved = true;
-        this.savedColor = this.color;
-        this.savedFont = this.font;
-        this.savedPaint = this.paint;
-        this.savedStroke = this.stroke;
-        this.savedTransform = new AffineTransform(this.transform);
-    }
-    
-    private void reapplyAttributes() {
-        if (!paintsAreEqual(this.paint, this.savedPaint)) {
-            setPaint(this.savedPaint);
-        }
-        if (!this.color.equals(this.savedColor)) {
-            setColor(this.savedColor);
-        }
-        if (!this.stroke.equals(this.savedColor)) {
-            setStroke(this.savedStroke);
-        }
-        if (!this.font.equals(this.savedFont)) {
-            setFont(this.savedFont);
-        }
-        if (!this.transform.equals(this.savedTransform)) {
-            setTransform(this.transform);
+        // the new clip replaces the clip inherited from the parents, so the
+        // whole stack is restored (the other attributes are reapplied by the
+        // tracker when needed, and the parents set their clip again before 
+        // they draw), this also discards the levels left by the copies that
+        // were not disposed:
+        this.baseDepth = 0;
+        this.baseOwner = null;
+        this.baseId = 0L;
+        this.tracker.restoreTo(0);
+        this.clipSaved = false;
+        this.clipBounds = null;
+        if (shape == null) {
+            this.clip = null;
+            return;
         }
-        this.savedColor = null;
-        this.savedFont = null;
-        this.savedPaint = null;
-        this.savedStroke = null;
-        this.savedTransform = null;
+        Rectangle2D r = deviceRect(shape);
+        this.clip = (r != null) ? r
+                : this.transform.createTransformedShape(shape);
+        this.clipId = this.tracker.save(this);
+        this.clipSaved = true;
+        applyState();
+        clipToPath(shape);
     }
     
     /**
@@ -1291,23 +1854,127 @@ public class FXGraphics2D extends Graphics2D {
             setClip(s);
             return;
         }
-        Shape ts = this.transform.createTransformedShape(s);
+        // discard the levels left by the copies that were not disposed (or
+        // set the clip again if another instance has restored it):
+        validateClip();
+        Rectangle2D r = (this.clip instanceof Rectangle2D) 
+                ? deviceRect(s) : null;
         Shape clipNew;
-        if (!ts.intersects(this.clip.getBounds2D())) {
-            clipNew = new Rectangle2D.Double();
+        if (r != null) {
+            // both clips are rectangles in device space: no Area needed
+            Rectangle2D.intersect((Rectangle2D) this.clip, r, r);
+            if (r.getWidth() < 0.0 || r.getHeight() < 0.0) {
+                r.setRect(r.getX(), r.getY(), 0.0, 0.0);
+            }
+            clipNew = r;
         } else {
-            Area a1 = new Area(ts);
-            Area a2 = new Area(this.clip);
-            a1.intersect(a2);
-            clipNew = new Path2D.Double(a1);
+            Shape ts = this.transform.createTransformedShape(s);
+            if (!ts.intersects(this.clip.getBounds2D())) {
+                clipNew = new Rectangle2D.Double();
+            } else {
+                Area a1 = new Area(ts);
+                Area a2 = new Area(this.clip);
+                a1.intersect(a2);
+                clipNew = new Path2D.Double(a1);
+            }
         }
         this.clip = clipNew;
-        if (!this.stateSaved) {
-            this.gc.save();
-            rememberSavedAttributes();
+        this.clipBounds = null;
+        if (this.clipSaved) {
+            // the copies relying on the level must see that it changed:
+            this.clipId = this.tracker.touch();
+        } else {
+            this.clipId = this.tracker.save(this);
+            this.clipSaved = true;
+        }
+        // the canvas intersects the new shape with its current clip, so only
+        // the user space shape is emitted (under the current transform):
+        applyState();
+        clipToPath(s);
+    }
+
+    /**
+     * Makes the graphics context stack match the clip of this instance 
+     * before it is used: the levels saved above those of this instance (by
+     * copies that have not been disposed) are restored, and if the levels 
+     * of this instance (or those of its parents that it relies on) have 
+     * been restored or modified by another instance, the clip is set again
+     * (in device space).
+     */
+    private void validateClip() {
+        FXContextTracker t = this.tracker;
+        boolean baseHolds = t.holds(this.baseDepth, this.baseOwner, 
+                this.baseId);
+        if (this.clipSaved ? t.holds(this.baseDepth + 1, this, this.clipId)
+                : baseHolds) {
+            t.restoreTo(this.baseDepth + (this.clipSaved ? 1 : 0));
+            return;
+        }
+        if (!baseHolds) {
+            // the clip of a parent has changed, so this instance can only
+            // rely on the bottom of the stack:
+            this.baseDepth = 0;
+            this.baseOwner = null;
+            this.baseId = 0L;
+        }
+        t.restoreTo(this.baseDepth);
+        this.clipSaved = false;
+        if (this.clip != null) {
+            this.clipId = t.save(this);
+            this.clipSaved = true;
+            this.state.setTransform(1.0, 0.0, 0.0, 1.0, 0.0, 0.0);
+            t.apply(this.state);
+            clipToPath(this.clip);
+        }
+    }
+
+    /**
+     * Returns a new rectangle holding the device space bounds of the given 
+     * shape when it is a {@link Rectangle2D} and the current transform keeps 
+     * it axis-aligned (no rotation or shear), otherwise {@code null}.  An 
+     * empty rectangle gives an empty (zero size) result.
+     * 
+     * @param s  the shape in user space ({@code null} not permitted).
+     * 
+     * @return The device space rectangle or {@code null}. 
+     */
+    private Rectangle2D deviceRect(Shape s) {
+        if (!(s instanceof Rectangle2D)) {
+            return null;
+        }
+        AffineTransform t = this.transform;
+        if (t.getShearX() != 0.0 || t.getShearY() != 0.0) {
+            return null;
+        }
+        Rectangle2D r = (Rectangle2D) s;
+        double x0 = t.getScaleX() * r.getX() + t.getTranslateX();
+        double y0 = t.getScaleY() * r.getY() + t.getTranslateY();
+        if (r.isEmpty()) {
+            return new Rectangle2D.Double(x0, y0, 0.0, 0.0);
+        }
+        double x1 = t.getScaleX() * r.getMaxX() + t.getTranslateX();
+        double y1 = t.getScaleY() * r.getMaxY() + t.getTranslateY();
+        return new Rectangle2D.Double(Math.min(x0, x1), Math.min(y0, y1), 
+                Math.abs(x1 - x0), Math.abs(y1 - y0));
+    }
+
+    /**
+     * Intersects the canvas clip with the given user space shape, using a 
+     * single {@code rect()} call for rectangles.
+     * 
+     * @param s  the shape ({@code null} not permitted).
+     */
+    private void clipToPath(Shape s) {
+        if (s instanceof Rectangle2D) {
+            Rectangle2D r = (Rectangle2D) s;
+            this.target.beginPath();
+            if (!r.isEmpty()) {
+                this.target.rect(r.getX(), r.getY(), r.getWidth(), r.getHeight());
+            }
+        } else {
+            shapeToPath(s);
         }
-        shapeToPath(this.clip);
-        this.gc.clip();
+        this.target.clip();
     }
 
     /**
@@ -1514,8 +2181,16 @@ public class FXGraphics2D extends Graphics2D {
      */
     @Override
     public void drawPolyline(int[] xPoints, int[] yPoints, int nPoints) {
-        GeneralPath p = createPolygon(xPoints, yPoints, nPoints, false);
-        draw(p);
+        if (!(this.stroke instanceof BasicStroke)) {
+            drawTransient(createPolygon(xPoints, yPoints, nPoints, false));
+            return;
+        }
+        if (nPoints <= 0) {
+            return;
+        }
+        copyToPolyBuffers(xPoints, yPoints, nPoints);
+        applyState();
+        this.target.strokePolyline(this.xPolyBuffer, this.yPolyBuffer, nPoints);
     }
 
     /**
@@ -1529,8 +2204,16 @@ public class FXGraphics2D extends Graphics2D {
      * @see #fillPolygon(int[], int[], int)      */
     @Override
     public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints) {
-        GeneralPath p = createPolygon(xPoints, yPoints, nPoints, true);
-        draw(p);
+        if (!(this.stroke instanceof BasicStroke)) {
+            drawTransient(createPolygon(xPoints, yPoints, nPoints, true));
+            return;
+        }
+        if (nPoints <= 0) {
+            return;
+        }
+        copyToPolyBuffers(xPoints, yPoints, nPoints);
+        applyState();
+        this.target.strokePolygon(this.xPolyBuffer, this.yPolyBuffer, nPoints);
     }
 
     /**
@@ -1544,8 +2227,200 @@ public class FXGraphics2D extends Graphics2D {
      */
     @Override
     public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
-        GeneralPath p = createPolygon(xPoints, yPoints, nPoints, true);
-        fill(p);
+        if (nPoints <= 0) {
+            return;
+        }
+        copyToPolyBuffers(xPoints, yPoints, nPoints);
+        applyState();
+        this.target.fillPolygon(this.xPolyBuffer, this.yPolyBuffer, nPoints);
+    }
+
+    /**
+     * Draws the specified multi-segment line using the current 
+     * {@code paint} and {@code stroke}.  This is an extension to the 
+     * {@code Graphics2D} API that avoids the creation of a shape.
+     * 
+     * @param xPoints  the x-points.
+     * @param yPoints  the y-points.
+     * @param nPoints  the number of points to use for the polyline.
+     * 
+     * @since 1.6
+     */
+    public void drawPolyline(double[] xPoints, double[] yPoints, 
+            int nPoints) {
+        if (!(this.stroke instanceof BasicStroke)) {
+            drawTransient(createPath(xPoints, yPoints, nPoints, false));
+            return;
+        }
+        if (nPoints <= 0) {
+            return;
+        }
+        applyState();
+        this.target.strokePolyline(xPoints, yPoints, nPoints);
+    }
+
+    /**
+     * Draws the specified polygon using the current {@code paint} and 
+     * {@code stroke}.  This is an extension to the {@code Graphics2D} API 
+     * that avoids the creation of a shape.
+     * 
+     * @param xPoints  the x-points.
+     * @param yPoints  the y-points.
+     * @param nPoints  the number of points to use for the polygon.
+     * 
+     * @since 1.6
+     */
+    public void drawPolygon(double[] xPoints, double[] yPoints, 
+            int nPoints) {
+        if (!(this.stroke instanceof BasicStroke)) {
+            drawTransient(createPath(xPoints, yPoints, nPoints, true));
+            return;
+        }
+        if (nPoints <= 0) {
+            return;
+        }
+        applyState();
+        this.target.strokePolygon(xPoints, yPoints, nPoints);
+    }
+
+    /**
+     * Fills the specified polygon using the current {@code paint}.  This is
+     * an extension to the {@code Graphics2D} API that avoids the creation 
+     * of a shape.
+     * 
+     * @param xPoints  the x-points.
+     * @param yPoints  the y-points.
+     * @param nPoints  the number of points to use for the polygon.
+     * 
+     * @since 1.6
+     */
+    public void fillPolygon(double[] xPoints, double[] yPoints, 
+            int nPoints) {
+        if (nPoints <= 0) {
+            return;
+        }
+        applyState();
+        this.target.fillPolygon(xPoints, yPoints, nPoints);
+    }
+
+    /**
+     * Draws the specified multi-segment line using the current 
+     * {@code paint} and {@code stroke}.  This is an extension to the 
+     * {@code Graphics2D} API that avoids the creation of a shape.
+     * 
+     * @param xPoints  the x-points.
+     * @param yPoints  the y-points.
+     * @param nPoints  the number of points to use for the polyline.
+     * 
+     * @since 1.6
+     */
+    public void drawPolyline(float[] xPoints, float[] yPoints, int nPoints) {
+        if (nPoints <= 0) {
+            return;
+        }
+        copyToPolyBuffers(xPoints, yPoints, nPoints);
+        drawPolyline(this.xPolyBuffer, this.yPolyBuffer, nPoints);
+    }
+
+    /**
+     * Draws the specified polygon using the current {@code paint} and 
+     * {@code stroke}.  This is an extension to the {@code Graphics2D} API 
+     * that avoids the creation of a shape.
+     * 
+     * @param xPoints  the x-points.
+     * @param yPoints  the y-points.
+     * @param nPoints  the number of points to use for the polygon.
+     * 
+     * @since 1.6
+     */
+    public void drawPolygon(float[] xPoints, float[] yPoints, int nPoints) {
+        if (nPoints <= 0) {
+            return;
+        }
+        copyToPolyBuffers(xPoints, yPoints, nPoints);
+        drawPolygon(this.xPolyBuffer, this.yPolyBuffer, nPoints);
+    }
+
+    /**
+     * Fills the specified polygon using the current {@code paint}.  This is
+     * an extension to the {@code Graphics2D} API that avoids the creation 
+     * of a shape.
+     * 
+     * @param xPoints  the x-points.
+     * @param yPoints  the y-points.
+     * @param nPoints  the number of points to use for the polygon.
+     * 
+     * @since 1.6
+     */
+    public void fillPolygon(float[] xPoints, float[] yPoints, int nPoints) {
+        if (nPoints <= 0) {
+            return;
+        }
+        copyToPolyBuffers(xPoints, yPoints, nPoints);
+        fillPolygon(this.xPolyBuffer, this.yPolyBuffer, nPoints);
+    }
+
+    /**
+     * Ensures that the reusable polygon buffers can hold {@code n} points.
+     * 
+     * @param n  the number of points.
+     */
+    private void ensurePolyBuffers(int n) {
+        if (this.xPolyBuffer.length < n) {
+            int len = Math.max(n, this.xPolyBuffer.length 
+                    + (this.xPolyBuffer.length >> 1));
+            this.xPolyBuffer = new double[len];
+            this.yPolyBuffer = new double[len];
+        }
+    }
+
+    private void copyToPolyBuffers(int[] xPoints, int[] yPoints, 
+            int nPoints) {
+        ensurePolyBuffers(nPoints);
+        final double[] xs = this.xPolyBuffer;
+        final double[] ys = this.yPolyBuffer;
+        for (int i = 0; i < nPoints; i++) {
+            xs[i] = xPoints[i];
+            ys[i] = yPoints[i];
+        }
+    }
+
+    private void copyToPolyBuffers(float[] xPoints, float[] yPoints, 
+            int nPoints) {
+        ensurePolyBuffers(nPoints);
+        final double[] xs = this.xPolyBuffer;
+        final double[] ys = this.yPolyBuffer;
+        for (int i = 0; i < nPoints; i++) {
+            xs[i] = xPoints[i];
+            ys[i] = yPoints[i];
+        }
+    }
+
+    /**
+     * Creates a path from the specified {@code x} and {@code y} coordinate
+     * arrays (used when the current stroke is not a {@code BasicStroke}).
+     * 
+     * @param xPoints  the x-points.
+     * @param yPoints  the y-points.
+     * @param nPoints  the number of points.
+     * @param close  closed?
+     * 
+     * @return A path.
+     */
+    private static Path2D createPath(double[] xPoints, double[] yPoints, 
+            int nPoints, boolean close) {
+        Path2D p = new Path2D.Double(Path2D.WIND_NON_ZERO, 
+                Math.max(nPoints, 1) + 1);
+        if (nPoints > 0) {
+            p.moveTo(xPoints[0], yPoints[0]);
+            for (int i = 1; i < nPoints; i++) {
+                p.lineTo(xPoints[i], yPoints[i]);
+            }
+            if (close) {
+                p.closePath();
+            }
+        }
+        return p;
     }
 
     /**
@@ -1602,7 +2477,8 @@ public class FXGraphics2D extends Graphics2D {
     /**
      * Draws the image into the rectangle defined by {@code (x, y, w, h)}.  
      * Note that the {@code observer} is ignored (it is not useful in this
-     * context).
+     * context).  The JavaFX images created from {@code BufferedImage} 
+     * instances are cached (see {@link #getImageCache()}).
      * 
      * @param img  the image ({@code null} permitted...draws nothing).
      * @param x  the x-coordinate.
@@ -1616,22 +2492,41 @@ public class FXGraphics2D extends Graphics2D {
     @Override
     public boolean drawImage(final Image img, int x, int y, 
             int w, int h, ImageObserver observer) {
-        final BufferedImage buffered;
-        if (img instanceof BufferedImage) {
-            buffered = (BufferedImage) img;
-        } else {
-            buffered = new BufferedImage(w, h, 
-                    BufferedImage.TYPE_INT_ARGB);
-            final Graphics2D g2 = buffered.createGraphics();
-            g2.drawImage(img, 0, 0, w, h, null);
-            g2.dispose();
-        }
-        javafx.scene.image.WritableImage fxImage = SwingFXUtils.toFXImage(
-                buffered, null);
-        this.gc.drawImage(fxImage, x, y, w, h);
+        if (img == null) {
+            return true;
+        }
+        javafx.scene.image.Image fxImage = toFXImage(img, w, h);
+        applyState();
+        this.target.drawImage(fxImage, x, y, w, h);
         return true;
     }
 
+    /**
+     * Returns a JavaFX image with the content of an AWT image.  For a 
+     * {@code BufferedImage}, the image is obtained from the image cache 
+     * (sharing its pixels if {@link FXHints#KEY_SHARED_IMAGE_BUFFERS} is 
+     * set), other images are first drawn to a new {@code BufferedImage} with the
+     * specified size.
+     * 
+     * @param img  the image ({@code null} not permitted).
+     * @param w  the width (ignored for a {@code BufferedImage}).
+     * @param h  the height (ignored for a {@code BufferedImage}).
+     * 
+     * @return A JavaFX image. 
+     */
+    private javafx.scene.image.Image toFXImage(Image img, int w, int h) {
+        if (img instanceof BufferedImage) {
+            return this.imageCache.get((BufferedImage) img, 
+                    this.sharedImageBuffers);
+        }
+        final BufferedImage buffered = new BufferedImage(w, h, 
+                BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D g2 = buffered.createGraphics();
+        g2.drawImage(img, 0, 0, w, h, null);
+        g2.dispose();
+        return SwingFXUtils.toFXImage(buffered, null);
+    }
+
     /**
      * Draws an image at the location {@code (x, y)}.  Note that the 
      * {@code observer} is ignored.
@@ -1690,7 +2585,9 @@ public class FXGraphics2D extends Graphics2D {
      * Draws part of an image (defined by the source rectangle 
      * {@code (sx1, sy1, sx2, sy2)}) into the destination rectangle
      * {@code (dx1, dy1, dx2, dy2)}.  Note that the {@code observer} 
-     * is ignored in this implementation.
+     * is ignored in this implementation.  The source rectangle is drawn 
+     * directly from the (cached) JavaFX image, the image is flipped if the 
+     * source and destination rectangles have opposite orientations.
      * 
      * @param img  the image.
      * @param dx1  the x-coordinate for the top left of the destination.
@@ -1707,13 +2604,45 @@ public class FXGraphics2D extends Graphics2D {
     @Override
     public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2, 
             int sx1, int sy1, int sx2, int sy2, ImageObserver observer) {
-        int w = dx2 - dx1;
-        int h = dy2 - dy1;
-        BufferedImage img2 = new BufferedImage(w, h, 
-                BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2 = img2.createGraphics();
-        g2.drawImage(img, 0, 0, w, h, sx1, sy1, sx2, sy2, null);
-        return drawImage(img2, dx1, dy1, null);
+        if (img == null) {
+            return true;
+        }
+        int sw = Math.abs(sx2 - sx1);
+        int sh = Math.abs(sy2 - sy1);
+        int dw = Math.abs(dx2 - dx1);
+        int dh = Math.abs(dy2 - dy1);
+        if (sw == 0 || sh == 0 || dw == 0 || dh == 0) {
+            return true;
+        }
+        int w = img.getWidth(observer);
+        int h = img.getHeight(observer);
+        if (w < 0 || h < 0) {
+            return false;
+        }
+        javafx.scene.image.Image fxImage = toFXImage(img, w, h);
+        int dx = Math.min(dx1, dx2);
+        int dy = Math.min(dy1, dy2);
+        boolean flipX = (sx2 < sx1) != (dx2 < dx1);
+        boolean flipY = (sy2 < sy1) != (dy2 < dy1);
+        applyState();
+        if (flipX || flipY) {
+            // mirror the destination rectangle (in user space):
+            double fx = flipX ? -1.0 : 1.0;
+            double fy = flipY ? -1.0 : 1.0;
+            double tx = flipX ? 2.0 * dx + dw : 0.0;
+            double ty = flipY ? 2.0 * dy + dh : 0.0;
+            AffineTransform t = this.transform;
+            this.state.setTransform(t.getScaleX() * fx, t.getShearY() * fx,
+                    t.getShearX() * fy, t.getScaleY() * fy, 
+                    t.getScaleX() * tx + t.getShearX() * ty 
+                    + t.getTranslateX(), 
+                    t.getShearY() * tx + t.getScaleY() * ty 
+                    + t.getTranslateY());
+            this.tracker.apply(this.state);
+        }
+        this.target.drawImage(fxImage, Math.min(sx1, sx2), Math.min(sy1, sy2), 
+                sw, sh, dx, dy, dw, dh);
+        return true;
     }
 
     /**
@@ -1819,14 +2748,19 @@ public class FXGraphics2D extends Graphics2D {
     @Override
     public boolean drawImage(Image img, AffineTransform xform, 
             ImageObserver obs) {
-        AffineTransform savedTransform = getTransform();
-        if (xform != null) {
-            transform(xform);
-        }
+        if (xform == null) {
+            return drawImage(img, 0, 0, obs);
+        }
+        final AffineTransform t = this.transform;
+        final double m00 = t.getScaleX();
+        final double m10 = t.getShearY();
+        final double m01 = t.getShearX();
+        final double m11 = t.getScaleY();
+        final double m02 = t.getTranslateX();
+        final double m12 = t.getTranslateY();
+        t.concatenate(xform);
         boolean result = drawImage(img, 0, 0, obs);
-        if (xform != null) {
-            setTransform(savedTransform);
-        }
+        t.setTransform(m00, m10, m01, m11, m02, m12);
         return result;
     }
 
@@ -1842,11 +2776,22 @@ public class FXGraphics2D extends Graphics2D {
     @Override
     public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y) {
         BufferedImage imageToDraw = op.filter(img, null);
-        drawImage(imageToDraw, new AffineTransform(1f, 0f, 0f, 1f, x, y), null);
+        drawImage(imageToDraw, x, y, null);
     }
 
     /**
-     * Not yet implemented.
+     * Copies an area of the canvas by a distance {@code (dx, dy)}.  The 
+     * area is captured with a snapshot of the canvas into a reusable 
+     * {@code WritableImage}, which is then drawn at the offset (the 
+     * destination is cleared first, so that the copy replaces the pixels 
+     * as in Java2D).  The current clip applies to the destination.
+     * <p>
+     * The snapshot renders the drawing commands queued so far, so this 
+     * method must be called on the JavaFX application thread.  Transforms 
+     * with a rotation or shear are not supported (nothing is copied), and 
+     * the copy is made at the canvas resolution (without the output 
+     * scaling of HiDPI screens).  Nothing is copied when recording to a 
+     * {@link FXCommandBuffer}.</p>
      * 
      * @param x  the x-coordinate.
      * @param y  the y-coordinate.
@@ -1857,14 +2802,112 @@ public class FXGraphics2D extends Graphics2D {
      */
     @Override
     public void copyArea(int x, int y, int width, int height, int dx, int dy) {
-        // FIXME: implement this, low priority
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        Rectangle2D r = deviceRect(rect(x, y, width, height));
+        if (r == null) {
+            return;
+        }
+        double ddx = this.transform.getScaleX() * dx;
+        double ddy = this.transform.getScaleY() * dy;
+        Canvas canvas = this.target.getCanvas();
+        if (canvas == null) {
+            return;
+        }
+        int x0 = (int) Math.max(Math.floor(r.getMinX()), 0.0);
+        int y0 = (int) Math.max(Math.floor(r.getMinY()), 0.0);
+        int x1 = (int) Math.min(Math.ceil(r.getMaxX()), canvas.getWidth());
+        int y1 = (int) Math.min(Math.ceil(r.getMaxY()), canvas.getHeight());
+        if (x1 <= x0 || y1 <= y0) {
+            return;
+        }
+        int w = x1 - x0;
+        int h = y1 - y0;
+        WritableImage img = this.copyAreaImage;
+        if (img == null || img.getWidth() < w || img.getHeight() < h) {
+            img = new WritableImage(
+                    Math.max(w, img == null ? 0 : (int) img.getWidth()),
+                    Math.max(h, img == null ? 0 : (int) img.getHeight()));
+            this.copyAreaImage = img;
+        }
+        SnapshotParameters params = new SnapshotParameters();
+        params.setFill(javafx.scene.paint.Color.TRANSPARENT);
+        try {
+            // undo the node transforms to work in canvas pixels:
+            params.setTransform(
+                    canvas.getLocalToParentTransform().createInverse());
+        } catch (NonInvertibleTransformException ex) {
+            return;
+        }
+        params.setViewport(new javafx.geometry.Rectangle2D(x0, y0, w, h));
+        canvas.snapshot(params, img);
+
+        // draw in device space, with no alpha or blending:
+        FXContextState s = this.copyAreaState;
+        if (s == null) {
+            s = new FXContextState(this.state);
+            this.copyAreaState = s;
+        } else {
+            s.set(this.state);
+        }
+        s.setGlobalAlpha(1.0);
+        s.setGlobalBlendMode(BlendMode.SRC_OVER);
+        s.setTransform(1.0, 0.0, 0.0, 1.0, 0.0, 0.0);
+        validateClip();
+        this.tracker.apply(s);
+        this.target.clearRect(x0 + ddx, y0 + ddy, w, h);
+        this.target.drawImage(img, 0, 0, w, h, x0 + ddx, y0 + ddy, w, h);
+    }
+
+    /**
+     * Draws the primitives recorded in a command buffer (or any other 
+     * drawing), under the current transform and clip.  The other attributes
+     * (paints, strokes, fonts, alpha and blend mode) are those recorded in 
+     * the drawing.
+     * 
+     * @param drawing  the drawing, for example a {@link FXCommandBuffer} 
+     *     ({@code null} not permitted).
+     * 
+     * @since 1.6
+     */
+    public void drawCommands(FXDrawing drawing) {
+        nullNotPermitted(drawing, "drawing");
+        // the replay restores the attributes of the target when done, so 
+        // the tracked state remains valid:
+        validateClip();
+        drawing.replay(this.target, this.transform);
     }
 
     /**
-     * This method does nothing.
+     * Releases the graphics context level saved by an instance obtained 
+     * from {@link #create()} for its clip, if it is still in force (the 
+     * levels below belong to the parent instances).  This method does 
+     * nothing for the instance that owns the graphics context, or if the 
+     * instance has already been disposed.
      */
     @Override
     public void dispose() {
+        if (this.disposable) {
+            if (this.clipSaved && this.tracker.holds(this.baseDepth + 1, 
+                    this, this.clipId)) {
+                this.tracker.restoreTo(this.baseDepth);
+            }
+            this.clipSaved = false;
+            this.disposable = false;
+        }
+    }
+
+    /**
+     * Does nothing: the inherited implementation calls {@link #dispose()}, 
+     * which must not be run on the finalizer thread (the graphics context 
+     * stack is only updated by the rendering thread).  The levels of the 
+     * instances that are not disposed are restored when another instance 
+     * draws or changes its clip.
+     */
+    @Override
+    @SuppressWarnings("deprecation")
+    public void finalize() {
         // nothing to do
     }
  
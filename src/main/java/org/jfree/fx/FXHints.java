@@ -41,10 +41,20 @@ import java.awt.RenderingHints;
 
 /**
  * Defines the rendering hints that can be used with the {@link FXGraphics2D} 
- * class.  There is just one hint defined at present:<br>
+ * class:<br>
  * <ul>
  * <li>{@link #KEY_USE_FX_FONT_METRICS} that controls whether JavaFX font
- * metrics or Java2D font metrics are used.</li>
+ * metrics or Java2D font metrics are used;</li>
+ * <li>{@link #KEY_DIRECT_PATH_ACCESS} that controls whether the coordinates
+ * of {@code Path2D} shapes are read directly (without a path 
+ * iterator).</li>
+ * <li>{@link #KEY_CLIP_CULLING} that controls whether the shapes outside 
+ * the clip and the canvas are dropped before reaching the canvas.</li>
+ * <li>{@link #KEY_TEXT_RUN_CACHE} that controls whether the strings are 
+ * drawn from a cache of rasterized text runs.</li>
+ * <li>{@link #KEY_SHARED_IMAGE_BUFFERS} that controls whether the pixels of
+ * {@code TYPE_INT_ARGB_PRE} images are shared with the JavaFX images 
+ * instead of being copied.</li>
  * </ul>
  * 
  * @since 1.5
@@ -63,6 +73,62 @@ public final class FXHints {
      */
     public static final FXHints.Key KEY_USE_FX_FONT_METRICS 
             = new FXHints.Key(0);
+
+    /**
+     * The key for the hint that controls whether the segments of 
+     * {@code Path2D} shapes are read directly from their internal arrays
+     * (see {@link FXPath2DAccess}) rather than through a 
+     * {@code PathIterator}.  A {@code Boolean} value (or {@code null}, 
+     * meaning {@code true}) can be assigned as the value for this key.  
+     * The hint has no effect if {@link FXPath2DAccess#isEnabled()} returns
+     * {@code false}.
+     * 
+     * @since 1.6
+     */
+    public static final FXHints.Key KEY_DIRECT_PATH_ACCESS 
+            = new FXHints.Key(1);
+
+    /**
+     * The key for the hint that controls whether the {@code draw()} and 
+     * {@code fill()} methods test the bounds of each shape against the 
+     * device clip and the canvas bounds, and drop the shapes that are 
+     * entirely outside (see {@link FXClipCuller}).  A {@code Boolean} value
+     * (or {@code null}, meaning {@code false}) can be assigned as the value 
+     * for this key.
+     * 
+     * @since 1.6
+     */
+    public static final FXHints.Key KEY_CLIP_CULLING 
+            = new FXHints.Key(2);
+
+    /**
+     * The key for the hint that controls whether the 
+     * {@code drawString(String, float, float)} method rasterizes each 
+     * (string, font, color) run once into a texture atlas and draws the 
+     * later calls from the atlas when the transform is a translation (see 
+     * {@link FXTextAtlas}).  A {@code Boolean} value (or {@code null}, 
+     * meaning {@code false}) can be assigned as the value for this key.
+     * 
+     * @since 1.6
+     */
+    public static final FXHints.Key KEY_TEXT_RUN_CACHE 
+            = new FXHints.Key(3);
+
+    /**
+     * The key for the hint that controls whether the {@code drawImage()} 
+     * methods share the pixel array of a {@code TYPE_INT_ARGB_PRE} 
+     * {@code BufferedImage} with the JavaFX image (through a 
+     * {@code PixelBuffer}) instead of copying the pixels.  A shared image 
+     * must then only be modified through 
+     * {@link FXImageCache#update(java.awt.image.BufferedImage, int, int, int, int, java.util.function.Consumer)}
+     * (see {@link FXImageCache#get(java.awt.image.BufferedImage, boolean)}).
+     * A {@code Boolean} value (or {@code null}, meaning {@code false}) can be
+     * assigned as the value for this key.
+     * 
+     * @since 1.6
+     */
+    public static final FXHints.Key KEY_SHARED_IMAGE_BUFFERS 
+            = new FXHints.Key(4);
     
     /**
      * A key for hints used by the {@link FXGraphics2D} class.
@@ -85,6 +151,10 @@ public final class FXHints {
         public boolean isCompatibleValue(Object val) {
             switch (intKey()) {
                 case 0:
+                case 1:
+                case 2:
+                case 3:
+                case 4:
                     return val == null 
                             || val instanceof Boolean;
                 default:
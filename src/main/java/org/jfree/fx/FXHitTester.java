@@ -0,0 +1,228 @@
+/* ============
+ * FXGraphics2D
+ * ============
+ * 
+ * (C)opyright 2014-2017, by Object Refinery Limited.
+ * 
+ * http://www.jfree.org/fxgraphics2d/index.html
+ *
+ * The FXGraphics2D class has been developed by Object Refinery Limited for 
+ * use in Orson Charts (http://www.object-refinery.com/orsoncharts) and
+ * JFreeChart (http://www.jfree.org/jfreechart).  It may be useful for other
+ * code that uses the Graphics2D API provided by Java2D.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   - Neither the name of the Object Refinery Limited nor the
+ *     names of its contributors may be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL OBJECT REFINERY LIMITED BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+
+
+package org.jfree.fx;
+
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Implements {@link FXGraphics2D#hit(java.awt.Rectangle, java.awt.Shape, 
+ * boolean)} without building {@code Area} objects: the device space bounds
+ * of the shape are compared with the rectangle first, then the flattened 
+ * outline is walked once, testing each segment against the rectangle and
+ * counting the crossings of a ray from the rectangle center (so that a 
+ * rectangle lying entirely inside the shape is detected).
+ * <br><br>
+ * The stroked outlines used by the {@code onStroke} queries are taken from
+ * a {@link FXStrokeCache} so that repeated queries on the same shape (for 
+ * example while the mouse hovers a map feature) do not stroke the shape 
+ * again.  Note that a shape with an empty interior (a line for example) is
+ * hit by the rectangles it crosses.
+ */
+final class FXHitTester {
+
+    /** The flatness used to iterate the curves (in device space). */
+    private static final double FLATNESS = 0.25;
+
+    /** The cache of the stroked outlines. */
+    private final FXStrokeCache strokeCache;
+
+    private final double[] coords = new double[6];
+
+    private final double[] points = new double[8];
+
+    private final Rectangle2D.Double rect = new Rectangle2D.Double();
+
+    /**
+     * Creates a new instance.
+     * 
+     * @param strokeCache  the cache of the stroked outlines ({@code null} 
+     *     not permitted).
+     */
+    FXHitTester(FXStrokeCache strokeCache) {
+        this.strokeCache = strokeCache;
+    }
+
+    /**
+     * Returns {@code true} if the rectangle (in device space) intersects 
+     * the interior of the shape (or the interior of its stroked outline if
+     * {@code stroke} is not {@code null}) transformed by {@code at}.
+     * 
+     * @param r  the rectangle (in device space, {@code null} not permitted).
+     * @param s  the shape ({@code null} not permitted).
+     * @param stroke  the stroke ({@code null} to test the shape interior).
+     * @param at  the transform ({@code null} not permitted).
+     * 
+     * @return A boolean.
+     */
+    boolean hit(Rectangle2D r, Shape s, Stroke stroke, AffineTransform at) {
+        if (r.isEmpty()) {
+            return false;
+        }
+        Shape target;
+        Rectangle2D bounds;
+        if (stroke != null) {
+            FXStrokeCache.Entry e = this.strokeCache.get(s, stroke);
+            target = e.outline;
+            bounds = e.getOutlineBounds();
+        } else {
+            target = s;
+            bounds = s.getBounds2D();
+        }
+        // bounds rejection:
+        double[] pts = this.points;
+        pts[0] = pts[6] = bounds.getMinX();
+        pts[1] = pts[3] = bounds.getMinY();
+        pts[2] = pts[4] = bounds.getMaxX();
+        pts[5] = pts[7] = bounds.getMaxY();
+        at.transform(pts, 0, pts, 0, 4);
+        double x0 = Math.min(Math.min(pts[0], pts[2]), Math.min(pts[4], pts[6]));
+        double y0 = Math.min(Math.min(pts[1], pts[3]), Math.min(pts[5], pts[7]));
+        double x1 = Math.max(Math.max(pts[0], pts[2]), Math.max(pts[4], pts[6]));
+        double y1 = Math.max(Math.max(pts[1], pts[3]), Math.max(pts[5], pts[7]));
+        if (x1 <= r.getMinX() || y1 <= r.getMinY() || x0 >= r.getMaxX() 
+                || y0 >= r.getMaxY()) {
+            return false;
+        }
+        return intersects(target, at, r);
+    }
+
+    /**
+     * Walks the flattened outline of the shape in device space and returns
+     * {@code true} if one of its segments (including the segments that 
+     * implicitly close each subpath) intersects the rectangle, or if the 
+     * center of the rectangle is inside the shape.
+     * 
+     * @param s  the shape.
+     * @param at  the transform.
+     * @param r  the rectangle (in device space).
+     * 
+     * @return A boolean. 
+     */
+    private boolean intersects(Shape s, AffineTransform at, Rectangle2D r) {
+        final Rectangle2D.Double rr = this.rect;
+        rr.setRect(r);
+        final double cx = rr.getCenterX();
+        final double cy = rr.getCenterY();
+        final double[] c = this.coords;
+        final PathIterator it = s.getPathIterator(at, FLATNESS);
+        double mx = 0.0, my = 0.0; // subpath start
+        double px = 0.0, py = 0.0; // current point
+        boolean open = false;
+        int winding = 0;
+        for (; !it.isDone(); it.next()) {
+            switch (it.currentSegment(c)) {
+                case PathIterator.SEG_MOVETO:
+                    if (open && (px != mx || py != my)) {
+                        if (rr.intersectsLine(px, py, mx, my)) {
+                            return true;
+                        }
+                        winding += crossing(px, py, mx, my, cx, cy);
+                    }
+                    mx = px = c[0];
+                    my = py = c[1];
+                    open = true;
+                    break;
+                case PathIterator.SEG_LINETO:
+                    if (rr.intersectsLine(px, py, c[0], c[1])) {
+                        return true;
+                    }
+                    winding += crossing(px, py, c[0], c[1], cx, cy);
+                    px = c[0];
+                    py = c[1];
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    if (px != mx || py != my) {
+                        if (rr.intersectsLine(px, py, mx, my)) {
+                            return true;
+                        }
+                        winding += crossing(px, py, mx, my, cx, cy);
+                    }
+                    px = mx;
+                    py = my;
+                    break;
+                default:
+                    // not returned by a flattening iterator
+                    break;
+            }
+        }
+        if (open && (px != mx || py != my)) {
+            if (rr.intersectsLine(px, py, mx, my)) {
+                return true;
+            }
+            winding += crossing(px, py, mx, my, cx, cy);
+        }
+        if (it.getWindingRule() == PathIterator.WIND_EVEN_ODD) {
+            return (winding & 1) != 0;
+        }
+        return winding != 0;
+    }
+
+    /**
+     * Returns the contribution of the segment {@code (x0, y0) - (x1, y1)} to
+     * the winding number of the point {@code (px, py)}: {@code +1} or 
+     * {@code -1} if the segment crosses the horizontal ray going right from 
+     * the point (upwards or downwards), otherwise {@code 0}.
+     */
+    private static int crossing(double x0, double y0, double x1, double y1, 
+            double px, double py) {
+        if (y0 <= py) {
+            if (y1 > py && side(x0, y0, x1, y1, px, py) > 0.0) {
+                return 1;
+            }
+        } else if (y1 <= py && side(x0, y0, x1, y1, px, py) < 0.0) {
+            return -1;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns a positive value if {@code (px, py)} is on the left of the 
+     * line from {@code (x0, y0)} to {@code (x1, y1)}, a negative value if 
+     * it is on the right and zero if it is on the line.
+     */
+    private static double side(double x0, double y0, double x1, double y1, 
+            double px, double py) {
+        return (x1 - x0) * (py - y0) - (px - x0) * (y1 - y0);
+    }
+
+}
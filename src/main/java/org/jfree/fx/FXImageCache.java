@@ -0,0 +1,641 @@
+/* ============
+ * FXGraphics2D
+ * ============
+ * 
+ * (C)opyright 2014-2017, by Object Refinery Limited.
+ * 
+ * http://www.jfree.org/fxgraphics2d/index.html
+ *
+ * The FXGraphics2D class has been developed by Object Refinery Limited for 
+ * use in Orson Charts (http://www.object-refinery.com/orsoncharts) and
+ * JFreeChart (http://www.jfree.org/jfreechart).  It may be useful for other
+ * code that uses the Graphics2D API provided by Java2D.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   - Neither the name of the Object Refinery Limited nor the
+ *     names of its contributors may be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL OBJECT REFINERY LIMITED BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+
+
+package org.jfree.fx;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.IntBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * A cache of the JavaFX images created from AWT images by 
+ * {@link FXGraphics2D}, so that an image drawn many times is only 
+ * converted (and uploaded to a texture) once.
+ * <br><br>
+ * The images are the keys of the cache, compared by identity and weakly 
+ * referenced, so that the entry is dropped when the source image is 
+ * garbage collected (the cache never keeps an AWT image alive).  The least
+ * recently used entries are evicted when the total size of the JavaFX 
+ * images exceeds a limit (in bytes, 4 bytes per pixel).
+ * <br><br>
+ * An entry is converted again when its source image has been modified.  
+ * Modifications are detected with the state tracking of the JDK (the same 
+ * mechanism used by Java2D to cache images in video memory), which requires
+ * the JVM options 
+ * {@code --add-opens java.desktop/java.awt.image=ALL-UNNAMED} and 
+ * {@code --add-opens java.desktop/sun.java2d=ALL-UNNAMED}.  Without them (or
+ * for images whose pixel array has been exposed with 
+ * {@code DataBufferInt.getData()}), the image is converted on every call.  
+ * A modified image is always converted into a new JavaFX image: a canvas 
+ * only keeps a reference to the images drawn in a frame and reads their 
+ * pixels when the frame is rendered, so the pixels of an image that may 
+ * still be queued are never overwritten.  The pixels are read with 
+ * {@code Raster.getDataElements()} rather than 
+ * {@code SwingFXUtils.toFXImage()}, since the latter exposes the pixel 
+ * array and so disables the tracking of the source image.
+ * <br><br>
+ * Alternatively, the pixel array of a {@code TYPE_INT_ARGB_PRE} image can 
+ * be shared with the JavaFX image through a {@link PixelBuffer} (see 
+ * {@link #get(BufferedImage, boolean)}), so that the pixels are never 
+ * copied.  Since the JavaFX renderer may read the pixels at any time, a 
+ * shared image must only be modified on the JavaFX application thread, 
+ * inside {@link #update(BufferedImage, int, int, int, int, Consumer)} 
+ * (which runs the modifications in {@code PixelBuffer.updateBuffer()}), 
+ * and only the updated region is uploaded to the texture.
+ * 
+ * @since 1.6
+ */
+public final class FXImageCache {
+
+    /** The default maximum size of the cached images (64 MB). */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024L * 1024L;
+
+    private static final VarHandle THE_TRACKABLE;
+    private static final MethodHandle GET_STATE_TRACKER;
+    private static final MethodHandle IS_CURRENT;
+
+    static {
+        VarHandle theTrackable = null;
+        MethodHandle getStateTracker = null;
+        MethodHandle isCurrent = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> delegateClass = Class.forName(
+                    "sun.java2d.StateTrackableDelegate");
+            Class<?> trackerClass = Class.forName("sun.java2d.StateTracker");
+            theTrackable = MethodHandles.privateLookupIn(DataBuffer.class, 
+                    lookup).findVarHandle(DataBuffer.class, "theTrackable", 
+                    delegateClass);
+            getStateTracker = MethodHandles.privateLookupIn(delegateClass, 
+                    lookup).findVirtual(delegateClass, "getStateTracker", 
+                    MethodType.methodType(trackerClass)).asType(
+                    MethodType.methodType(Object.class, Object.class));
+            isCurrent = MethodHandles.privateLookupIn(trackerClass, lookup)
+                    .findVirtual(trackerClass, "isCurrent", 
+                    MethodType.methodType(boolean.class)).asType(
+                    MethodType.methodType(boolean.class, Object.class));
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // the packages are not open (or the JDK internals differ):
+            theTrackable = null;
+        }
+        if (theTrackable == null) {
+            THE_TRACKABLE = null;
+            GET_STATE_TRACKER = null;
+            IS_CURRENT = null;
+        } else {
+            THE_TRACKABLE = theTrackable;
+            GET_STATE_TRACKER = getStateTracker;
+            IS_CURRENT = isCurrent;
+        }
+    }
+
+    /**
+     * Returns {@code true} if the modifications of the source images can be
+     * detected (otherwise the images are converted on every call).
+     * 
+     * @return A boolean.
+     */
+    public static boolean isTrackingEnabled() {
+        return THE_TRACKABLE != null;
+    }
+
+    /**
+     * Returns an object that tracks the modifications of an image, or 
+     * {@code null} if tracking is not available.
+     * 
+     * @param img  the image ({@code null} not permitted).
+     * 
+     * @return The state tracker (possibly {@code null}). 
+     */
+    private static Object stateTracker(BufferedImage img) {
+        if (THE_TRACKABLE == null) {
+            return null;
+        }
+        try {
+            Object trackable = (Object) THE_TRACKABLE.get(
+                    img.getRaster().getDataBuffer());
+            return (trackable == null) ? null 
+                    : (Object) GET_STATE_TRACKER.invokeExact(trackable);
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns {@code true} if the image has not been modified since the 
+     * tracker was created.
+     * 
+     * @param tracker  the tracker ({@code null} permitted).
+     * 
+     * @return A boolean. 
+     */
+    private static boolean isCurrent(Object tracker) {
+        if (tracker == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_CURRENT.invokeExact(tracker);
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    /** The maximum size of the cached images (in bytes). */
+    private final long maxBytes;
+
+    /** The current size of the cached images (in bytes). */
+    private long bytes;
+
+    /** The cache entries (in access order). */
+    private final LinkedHashMap<Object, Entry> entries 
+            = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** The queue of the keys whose image has been garbage collected. */
+    private final ReferenceQueue<Image> queue = new ReferenceQueue<>();
+
+    /** A reusable key for the lookups. */
+    private final Probe probe = new Probe();
+
+    /** A buffer for the pixels being converted (grown as required). */
+    private int[] pixels = new int[0];
+
+    private long hits;
+    private long misses;
+    private long updates;
+    private long evictions;
+    private long shared;
+
+    /**
+     * Creates a new cache with the default maximum size.
+     */
+    public FXImageCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Creates a new cache.
+     * 
+     * @param maxBytes  the maximum size of the cached images, in bytes.
+     */
+    public FXImageCache(long maxBytes) {
+        if (maxBytes < 0L) {
+            throw new IllegalArgumentException("Requires 'maxBytes' >= 0.");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns {@code true} if the pixel array of the specified image can be
+     * shared with a JavaFX image: the image must have the type 
+     * {@code TYPE_INT_ARGB_PRE} and its raster must cover the whole data 
+     * buffer, one row after the other (no sub-image).
+     * 
+     * @param img  the image ({@code null} not permitted).
+     * 
+     * @return A boolean. 
+     */
+    public static boolean isShareable(BufferedImage img) {
+        if (img.getType() != BufferedImage.TYPE_INT_ARGB_PRE) {
+            return false;
+        }
+        WritableRaster raster = img.getRaster();
+        DataBuffer db = raster.getDataBuffer();
+        if (!(db instanceof DataBufferInt) || db.getNumBanks() != 1 
+                || db.getOffset() != 0 || raster.getParent() != null
+                || raster.getSampleModelTranslateX() != 0 
+                || raster.getSampleModelTranslateY() != 0) {
+            return false;
+        }
+        SampleModel sm = raster.getSampleModel();
+        return sm instanceof SinglePixelPackedSampleModel 
+                && ((SinglePixelPackedSampleModel) sm).getScanlineStride() 
+                == img.getWidth();
+    }
+
+    /**
+     * Returns a JavaFX image with the content of the specified image, 
+     * converting the image only if it is not cached or it has been 
+     * modified.
+     * 
+     * @param img  the image ({@code null} not permitted).
+     * 
+     * @return A JavaFX image (never {@code null}). 
+     */
+    public WritableImage get(BufferedImage img) {
+        return get(img, false);
+    }
+
+    /**
+     * Returns a JavaFX image with the content of the specified image.  If 
+     * {@code share} is {@code true} and the image is shareable (see 
+     * {@link #isShareable(BufferedImage)}), the JavaFX image is created on 
+     * a {@link PixelBuffer} that wraps the pixel array of the image: the 
+     * pixels are never copied.  From then on, the image must only be 
+     * modified with {@link #update(BufferedImage, int, int, int, int, 
+     * Consumer)}: the JavaFX renderer may read the pixel array at any time,
+     * and any other modification (from Java2D or from another thread) 
+     * breaks the {@code PixelBuffer} contract.  Note also that a canvas 
+     * draws the image when the frame is rendered (at the next pulse), so 
+     * every {@code drawImage()} call of a frame shows the pixels of the 
+     * image at that time: an image drawn twice in a frame must not be 
+     * updated in between (as for {@link FXTextAtlas}).  The pixel array is 
+     * obtained with {@code DataBufferInt.getData()}, so that Java2D can no 
+     * longer cache the image in video memory.  Otherwise, the image is 
+     * converted as for {@link #get(BufferedImage)} (an image that is 
+     * already shared remains shared).
+     * 
+     * @param img  the image ({@code null} not permitted).
+     * @param share  share the pixels if possible?
+     * 
+     * @return A JavaFX image (never {@code null}). 
+     */
+    public WritableImage get(BufferedImage img, boolean share) {
+        purge();
+        Entry e = lookup(img);
+        int w = img.getWidth();
+        int h = img.getHeight();
+        if (e != null) {
+            if (e.width == w && e.height == h 
+                    && (e.buffer != null || !share || !isShareable(img))) {
+                if (e.buffer != null || isCurrent(e.tracker)) {
+                    this.hits++;
+                    return e.image;
+                }
+                // modified (or untracked) image: the previous JavaFX image
+                // may still be queued (canvas, FXCommandBuffer), so convert
+                // into a new image
+                this.updates++;
+                e.tracker = stateTracker(img);
+                e.image = toFXImage(img);
+                return e.image;
+            }
+            remove(img);
+        }
+        this.misses++;
+        Object tracker = null;
+        PixelBuffer<IntBuffer> buffer = null;
+        WritableImage fxImage;
+        if (share && isShareable(img)) {
+            int[] data = ((DataBufferInt) img.getRaster().getDataBuffer())
+                    .getData();
+            buffer = new PixelBuffer<>(w, h, IntBuffer.wrap(data), 
+                    PixelFormat.getIntArgbPreInstance());
+            fxImage = new WritableImage(buffer);
+            this.shared++;
+        } else {
+            tracker = stateTracker(img);
+            fxImage = toFXImage(img);
+        }
+        long size = 4L * w * h;
+        if (size <= this.maxBytes) {
+            Entry entry = new Entry(fxImage, tracker, w, h);
+            entry.buffer = buffer;
+            this.entries.put(new Key(img, this.queue), entry);
+            this.bytes += size;
+            evict();
+        }
+        return fxImage;
+    }
+
+    /**
+     * Copies the pixels of an AWT image to a new JavaFX image.
+     * 
+     * @param img  the source image ({@code null} not permitted).
+     * 
+     * @return The JavaFX image.
+     */
+    private WritableImage toFXImage(BufferedImage img) {
+        int w = img.getWidth();
+        int h = img.getHeight();
+        WritableImage fxImage = new WritableImage(w, h);
+        if (this.pixels.length < w * h) {
+            this.pixels = new int[w * h];
+        }
+        int[] data = this.pixels;
+        PixelFormat<IntBuffer> format;
+        switch (img.getType()) {
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+                img.getRaster().getDataElements(0, 0, w, h, data);
+                format = PixelFormat.getIntArgbPreInstance();
+                break;
+            case BufferedImage.TYPE_INT_ARGB:
+                img.getRaster().getDataElements(0, 0, w, h, data);
+                format = PixelFormat.getIntArgbInstance();
+                break;
+            default:
+                img.getRGB(0, 0, w, h, data, 0, w);
+                format = PixelFormat.getIntArgbInstance();
+        }
+        fxImage.getPixelWriter().setPixels(0, 0, w, h, format, data, 0, w);
+        return fxImage;
+    }
+
+    /**
+     * Modifies a region of an image with the specified writer (for example
+     * code that draws on {@code img.createGraphics()}).  For a shared image
+     * (see {@link #get(BufferedImage, boolean)}), the writer is run inside
+     * {@code PixelBuffer.updateBuffer()}, as required by the pixel buffer 
+     * contract, so this must be called on the JavaFX application thread; 
+     * only the region is then uploaded the next time the image is rendered.
+     * Other images are modified directly, and their cached copy is 
+     * converted again by the next call to {@code get()}.
+     * 
+     * @param img  the image ({@code null} not permitted).
+     * @param x  the x-coordinate of the modified region.
+     * @param y  the y-coordinate of the modified region.
+     * @param width  the width of the modified region.
+     * @param height  the height of the modified region.
+     * @param writer  the code that modifies the region of the image 
+     *     ({@code null} not permitted).
+     * 
+     * @throws IllegalStateException if the image is shared and this method 
+     *     is not called on the JavaFX application thread.
+     */
+    public void update(BufferedImage img, int x, int y, int width, 
+            int height, Consumer<? super BufferedImage> writer) {
+        purge();
+        Entry e = lookup(img);
+        if (e == null || e.buffer == null) {
+            writer.accept(img);
+            if (e != null) {
+                e.tracker = null;
+            }
+            return;
+        }
+        if (!Platform.isFxApplicationThread()) {
+            throw new IllegalStateException(
+                    "A shared image must be updated on the JavaFX application"
+                    + " thread.");
+        }
+        int x0 = Math.max(x, 0);
+        int y0 = Math.max(y, 0);
+        int x1 = Math.min(x + width, e.width);
+        int y1 = Math.min(y + height, e.height);
+        final Rectangle2D region = (x1 <= x0 || y1 <= y0) 
+                ? Rectangle2D.EMPTY 
+                : new Rectangle2D(x0, y0, x1 - x0, y1 - y0);
+        e.buffer.updateBuffer(b -> {
+            writer.accept(img);
+            return region;
+        });
+        this.updates++;
+    }
+
+    /**
+     * Returns the entry for the specified image.
+     * 
+     * @param img  the image ({@code null} permitted).
+     * 
+     * @return The entry (possibly {@code null}).
+     */
+    private Entry lookup(Image img) {
+        if (img == null) {
+            return null;
+        }
+        this.probe.image = img;
+        Entry e = this.entries.get(this.probe);
+        this.probe.image = null;
+        return e;
+    }
+
+    /**
+     * Removes the entries whose image has been garbage collected.
+     */
+    private void purge() {
+        for (Object key; (key = this.queue.poll()) != null; ) {
+            Entry e = this.entries.remove(key);
+            if (e != null) {
+                this.bytes -= e.bytes();
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries until the total size is within
+     * the limit.
+     */
+    private void evict() {
+        Iterator<Map.Entry<Object, Entry>> iterator 
+                = this.entries.entrySet().iterator();
+        while (this.bytes > this.maxBytes && iterator.hasNext()) {
+            Entry e = iterator.next().getValue();
+            iterator.remove();
+            this.bytes -= e.bytes();
+            this.evictions++;
+        }
+    }
+
+    /**
+     * Removes the entry for the specified image, if there is one.  Call 
+     * this method after modifying an image when the modifications cannot
+     * be tracked (see {@link #isTrackingEnabled()}).
+     * 
+     * @param img  the image ({@code null} permitted).
+     */
+    public void remove(Image img) {
+        purge();
+        if (img == null) {
+            return;
+        }
+        this.probe.image = img;
+        Entry e = this.entries.remove(this.probe);
+        this.probe.image = null;
+        if (e != null) {
+            this.bytes -= e.bytes();
+        }
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        this.entries.clear();
+        this.bytes = 0L;
+        this.pixels = new int[0];
+        while (this.queue.poll() != null) {
+            // drop the references to the removed keys
+        }
+    }
+
+    /**
+     * Returns the number of cached images.
+     * 
+     * @return The number of cached images.
+     */
+    public int size() {
+        purge();
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the total size of the cached images.
+     * 
+     * @return The size in bytes.
+     */
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Returns the maximum size of the cached images.
+     * 
+     * @return The size in bytes.
+     */
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    /**
+     * Resets the counters.
+     */
+    public void resetStatistics() {
+        this.hits = 0L;
+        this.misses = 0L;
+        this.updates = 0L;
+        this.evictions = 0L;
+        this.shared = 0L;
+    }
+
+    @Override
+    public String toString() {
+        return "FXImageCache{images=" + this.entries.size() + ", bytes=" 
+                + this.bytes + ", hits=" + this.hits + ", misses=" 
+                + this.misses + ", updates=" + this.updates + ", evictions=" 
+                + this.evictions + ", shared=" + this.shared + ", tracking=" 
+                + isTrackingEnabled() + "}";
+    }
+
+    /**
+     * A cached JavaFX image.
+     */
+    private static final class Entry {
+
+        WritableImage image;
+
+        /** The state tracker of the source image (possibly null). */
+        Object tracker;
+
+        /** The buffer sharing the pixels of the source image (or null). */
+        PixelBuffer<IntBuffer> buffer;
+
+        final int width;
+        final int height;
+
+        Entry(WritableImage image, Object tracker, int width, int height) {
+            this.image = image;
+            this.tracker = tracker;
+            this.width = width;
+            this.height = height;
+        }
+
+        long bytes() {
+            return 4L * this.width * this.height;
+        }
+    }
+
+    /**
+     * The key of a cached image: a weak reference to the image, compared by
+     * identity.
+     */
+    private static final class Key extends WeakReference<Image> {
+
+        final int hash;
+
+        Key(Image image, ReferenceQueue<Image> queue) {
+            super(image, queue);
+            this.hash = System.identityHashCode(image);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Image image = get();
+            return image != null && image == ((Key) obj).get();
+        }
+    }
+
+    /**
+     * A lookup key holding a strong reference to the image.
+     */
+    private static final class Probe {
+
+        Image image;
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this.image);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && this.image == ((Key) obj).get();
+        }
+    }
+
+}
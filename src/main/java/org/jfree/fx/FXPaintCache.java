@@ -0,0 +1,498 @@
+/* ============
+ * FXGraphics2D
+ * ============
+ *
+ * (C)opyright 2014-2017, by Object Refinery Limited.
+ *
+ * http://www.jfree.org/fxgraphics2d/index.html
+ *
+ * The FXGraphics2D class has been developed by Object Refinery Limited for
+ * use in Orson Charts (http://www.object-refinery.com/orsoncharts) and
+ * JFreeChart (http://www.jfree.org/jfreechart).  It may be useful for other
+ * code that uses the Graphics2D API provided by Java2D.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   - Neither the name of the Object Refinery Limited nor the
+ *     names of its contributors may be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL OBJECT REFINERY LIMITED BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package org.jfree.fx;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.LinearGradientPaint;
+import java.awt.MultipleGradientPaint;
+import java.awt.Paint;
+import java.awt.RadialGradientPaint;
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javafx.scene.paint.CycleMethod;
+import javafx.scene.paint.LinearGradient;
+import javafx.scene.paint.RadialGradient;
+import javafx.scene.paint.Stop;
+
+/**
+ * A bounded cache for the translation of AWT paints to their JavaFX
+ * equivalents, used by {@link FXGraphics2D} to avoid creating new JavaFX
+ * paint objects every time the paint is changed.
+ * <br><br>
+ * Colors are looked up by their packed ARGB value in a two-way set
+ * associative table (the least recently used entry of a set is replaced on
+ * a miss).  Gradients are looked up by value in a small LRU map.  Hit and
+ * miss counters are maintained so that the efficiency of the cache can be
+ * checked.
+ * <br><br>
+ * Instances of this class are not thread-safe (like the JavaFX canvas
+ * itself, they are intended to be used on the JavaFX application thread).
+ *
+ * @since 1.6
+ */
+public final class FXPaintCache {
+
+    /** The default number of color sets (each set holds 2 colors). */
+    public static final int DEFAULT_COLOR_SETS = 256;
+
+    /** The default maximum number of gradients. */
+    public static final int DEFAULT_GRADIENT_CAPACITY = 64;
+
+    /** The mask applied to the hash code to find the color set. */
+    private final int colorMask;
+
+    /** The ARGB keys (two consecutive slots per set). */
+    private final int[] colorKeys;
+
+    /** The cached JavaFX colors ({@code null} for an empty slot). */
+    private final javafx.scene.paint.Color[] colorValues;
+
+    /** For each set, the index (0 or 1) of the most recently used slot. */
+    private final byte[] colorRecent;
+
+    /** The gradient cache (in access order). */
+    private final Map<GradientKey, javafx.scene.paint.Paint> gradients;
+
+    /** A reusable key for gradient lookups. */
+    private final GradientKey probe = new GradientKey();
+
+    private long colorHits;
+    private long colorMisses;
+    private long gradientHits;
+    private long gradientMisses;
+
+    /**
+     * Creates a new cache with the default capacities.
+     */
+    public FXPaintCache() {
+        this(DEFAULT_COLOR_SETS, DEFAULT_GRADIENT_CAPACITY);
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param colorSets  the number of color sets (rounded up to a power of
+     *     two, must be greater than zero).
+     * @param gradientCapacity  the maximum number of gradients (must be
+     *     greater than zero).
+     */
+    public FXPaintCache(int colorSets, final int gradientCapacity) {
+        if (colorSets <= 0) {
+            throw new IllegalArgumentException("Requires 'colorSets' > 0.");
+        }
+        if (gradientCapacity <= 0) {
+            throw new IllegalArgumentException(
+                    "Requires 'gradientCapacity' > 0.");
+        }
+        colorSets = Integer.highestOneBit(colorSets - 1) << 1;
+        if (colorSets == 0) {
+            colorSets = 1;
+        }
+        this.colorMask = colorSets - 1;
+        this.colorKeys = new int[colorSets << 1];
+        this.colorValues = new javafx.scene.paint.Color[colorSets << 1];
+        this.colorRecent = new byte[colorSets];
+        this.gradients = new LinkedHashMap<GradientKey,
+                javafx.scene.paint.Paint>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<GradientKey,
+                    javafx.scene.paint.Paint> eldest) {
+                return size() > gradientCapacity;
+            }
+        };
+    }
+
+    /**
+     * Returns a JavaFX color that is equivalent to the specified AWT color.
+     *
+     * @param c  the color ({@code null} not permitted).
+     *
+     * @return A JavaFX color (never {@code null}).
+     */
+    public javafx.scene.paint.Color getColor(Color c) {
+        return getColor(c.getRGB());
+    }
+
+    /**
+     * Returns a JavaFX color that is equivalent to the specified packed
+     * ARGB value.
+     *
+     * @param argb  the color (packed ARGB value).
+     *
+     * @return A JavaFX color (never {@code null}).
+     */
+    public javafx.scene.paint.Color getColor(int argb) {
+        // spread the bits so that colors differing by the alpha channel only
+        // do not all fall into the same set:
+        int h = argb * 0x9E3779B9;
+        int set = (h ^ (h >>> 16)) & this.colorMask;
+        int slot = set << 1;
+        javafx.scene.paint.Color fx = this.colorValues[slot];
+        if (fx != null && this.colorKeys[slot] == argb) {
+            this.colorRecent[set] = 0;
+            this.colorHits++;
+            return fx;
+        }
+        fx = this.colorValues[slot + 1];
+        if (fx != null && this.colorKeys[slot + 1] == argb) {
+            this.colorRecent[set] = 1;
+            this.colorHits++;
+            return fx;
+        }
+        this.colorMisses++;
+        fx = javafx.scene.paint.Color.rgb((argb >> 16) & 0xFF,
+                (argb >> 8) & 0xFF, argb & 0xFF,
+                ((argb >> 24) & 0xFF) / 255.0);
+        // replace the least recently used slot:
+        int victim = (this.colorRecent[set] == 0) ? 1 : 0;
+        this.colorKeys[slot + victim] = argb;
+        this.colorValues[slot + victim] = fx;
+        this.colorRecent[set] = (byte) victim;
+        return fx;
+    }
+
+    /**
+     * Returns a JavaFX paint that is equivalent to the specified AWT
+     * gradient paint, or {@code null} if the paint is not a
+     * {@code GradientPaint}, {@code LinearGradientPaint} or
+     * {@code RadialGradientPaint}.
+     *
+     * @param paint  the paint ({@code null} not permitted).
+     *
+     * @return A JavaFX paint (possibly {@code null}).
+     */
+    public javafx.scene.paint.Paint getGradient(Paint paint) {
+        if (!this.probe.set(paint)) {
+            return null;
+        }
+        javafx.scene.paint.Paint fx = this.gradients.get(this.probe);
+        if (fx != null) {
+            this.gradientHits++;
+            return fx;
+        }
+        this.gradientMisses++;
+        fx = createGradient(paint);
+        if (fx != null) {
+            this.gradients.put(this.probe.copy(), fx);
+        }
+        return fx;
+    }
+
+    /**
+     * Creates the JavaFX equivalent of an AWT gradient paint.
+     *
+     * @param paint  the paint ({@code null} not permitted).
+     *
+     * @return A JavaFX paint (possibly {@code null}).
+     */
+    private javafx.scene.paint.Paint createGradient(Paint paint) {
+        if (paint instanceof GradientPaint) {
+            GradientPaint gp = (GradientPaint) paint;
+            Stop[] stops = new Stop[] { new Stop(0,
+                    getColor(gp.getColor1())),
+                    new Stop(1, getColor(gp.getColor2())) };
+            Point2D p1 = gp.getPoint1();
+            Point2D p2 = gp.getPoint2();
+            return new LinearGradient(p1.getX(), p1.getY(),
+                    p2.getX(), p2.getY(), false, CycleMethod.NO_CYCLE, stops);
+        } else if (paint instanceof MultipleGradientPaint) {
+            MultipleGradientPaint mgp = (MultipleGradientPaint) paint;
+            Color[] colors = mgp.getColors();
+            float[] fractions = mgp.getFractions();
+            Stop[] stops = new Stop[colors.length];
+            for (int i = 0; i < colors.length; i++) {
+                stops[i] = new Stop(fractions[i], getColor(colors[i]));
+            }
+
+            if (paint instanceof RadialGradientPaint) {
+                RadialGradientPaint rgp = (RadialGradientPaint) paint;
+                Point2D center = rgp.getCenterPoint();
+                Point2D focus = rgp.getFocusPoint();
+                double focusDistance = focus.distance(center);
+                double focusAngle = 0.0;
+                if (!focus.equals(center)) {
+                    focusAngle = Math.atan2(focus.getY() - center.getY(),
+                        focus.getX() - center.getX());
+                }
+                double radius = rgp.getRadius();
+                return new RadialGradient(
+                        Math.toDegrees(focusAngle), focusDistance,
+                        center.getX(), center.getY(), radius, false,
+                        CycleMethod.NO_CYCLE, stops);
+            } else if (paint instanceof LinearGradientPaint) {
+                LinearGradientPaint lgp = (LinearGradientPaint) paint;
+                Point2D start = lgp.getStartPoint();
+                Point2D end = lgp.getEndPoint();
+                return new LinearGradient(start.getX(),
+                        start.getY(), end.getX(), end.getY(), false,
+                        CycleMethod.NO_CYCLE, stops);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of color lookups that were found in the cache.
+     *
+     * @return The number of color hits.
+     */
+    public long getColorHits() {
+        return this.colorHits;
+    }
+
+    /**
+     * Returns the number of color lookups that required a new JavaFX color.
+     *
+     * @return The number of color misses.
+     */
+    public long getColorMisses() {
+        return this.colorMisses;
+    }
+
+    /**
+     * Returns the number of gradient lookups that were found in the cache.
+     *
+     * @return The number of gradient hits.
+     */
+    public long getGradientHits() {
+        return this.gradientHits;
+    }
+
+    /**
+     * Returns the number of gradient lookups that required a new JavaFX
+     * gradient.
+     *
+     * @return The number of gradient misses.
+     */
+    public long getGradientMisses() {
+        return this.gradientMisses;
+    }
+
+    /**
+     * Resets the hit and miss counters (the cached paints are kept).
+     */
+    public void resetStatistics() {
+        this.colorHits = 0L;
+        this.colorMisses = 0L;
+        this.gradientHits = 0L;
+        this.gradientMisses = 0L;
+    }
+
+    /**
+     * Removes all the cached paints (the counters are kept).
+     */
+    public void clear() {
+        Arrays.fill(this.colorValues, null);
+        Arrays.fill(this.colorRecent, (byte) 0);
+        this.gradients.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "FXPaintCache{colors: hits=" + this.colorHits + ", misses="
+                + this.colorMisses + " (" + ratio(this.colorHits,
+                this.colorMisses) + "%), gradients: hits=" + this.gradientHits
+                + ", misses=" + this.gradientMisses + " ("
+                + ratio(this.gradientHits, this.gradientMisses) + "%)}";
+    }
+
+    private static long ratio(long hits, long misses) {
+        long total = hits + misses;
+        return (total == 0L) ? 0L : (100L * hits) / total;
+    }
+
+    /**
+     * A value key for the gradient paints (the AWT gradient classes do not
+     * override {@code equals()} and {@code hashCode()}).
+     */
+    private static final class GradientKey {
+
+        /** The paint class (0 = gradient, 1 = linear, 2 = radial). */
+        private int type;
+
+        /** The geometry (points, radius and transform). */
+        private double[] geom = new double[11];
+
+        /** The number of values used in {@code geom}. */
+        private int geomLength;
+
+        /** A temporary array for the gradient transform. */
+        private final double[] matrix = new double[6];
+
+        /** The ARGB colors. */
+        private int[] colors = new int[2];
+
+        /** The fractions (for multiple gradient paints only). */
+        private float[] fractions;
+
+        /** The cycle method, color space and transparency flags. */
+        private int flags;
+
+        private int hash;
+
+        /**
+         * Updates this key with the values of the specified paint.
+         *
+         * @param paint  the paint.
+         *
+         * @return {@code false} if the paint is not a gradient.
+         */
+        boolean set(Paint paint) {
+            if (paint instanceof GradientPaint) {
+                GradientPaint gp = (GradientPaint) paint;
+                this.type = 0;
+                this.geomLength = 0;
+                addPoint(gp.getPoint1());
+                addPoint(gp.getPoint2());
+                setColors(2);
+                this.colors[0] = gp.getColor1().getRGB();
+                this.colors[1] = gp.getColor2().getRGB();
+                this.fractions = null;
+                this.flags = gp.isCyclic() ? 1 : 0;
+            } else if (paint instanceof MultipleGradientPaint) {
+                MultipleGradientPaint mgp = (MultipleGradientPaint) paint;
+                this.geomLength = 0;
+                if (paint instanceof RadialGradientPaint) {
+                    RadialGradientPaint rgp = (RadialGradientPaint) paint;
+                    this.type = 2;
+                    addPoint(rgp.getCenterPoint());
+                    addPoint(rgp.getFocusPoint());
+                    this.geom[this.geomLength++] = rgp.getRadius();
+                } else if (paint instanceof LinearGradientPaint) {
+                    LinearGradientPaint lgp = (LinearGradientPaint) paint;
+                    this.type = 1;
+                    addPoint(lgp.getStartPoint());
+                    addPoint(lgp.getEndPoint());
+                } else {
+                    return false;
+                }
+                mgp.getTransform().getMatrix(this.matrix);
+                System.arraycopy(this.matrix, 0, this.geom, this.geomLength,
+                        6);
+                this.geomLength += 6;
+                Color[] c = mgp.getColors();
+                setColors(c.length);
+                for (int i = 0; i < c.length; i++) {
+                    this.colors[i] = c[i].getRGB();
+                }
+                // getFractions() returns a copy, safe to keep:
+                this.fractions = mgp.getFractions();
+                this.flags = (mgp.getCycleMethod().ordinal() << 1)
+                        | (mgp.getColorSpace().ordinal() << 3);
+            } else {
+                return false;
+            }
+            this.hash = computeHash();
+            return true;
+        }
+
+        private void addPoint(Point2D p) {
+            this.geom[this.geomLength++] = p.getX();
+            this.geom[this.geomLength++] = p.getY();
+        }
+
+        private void setColors(int n) {
+            if (this.colors.length != n) {
+                this.colors = new int[n];
+            }
+        }
+
+        private int computeHash() {
+            int h = this.type;
+            for (int i = 0; i < this.geomLength; i++) {
+                long bits = Double.doubleToLongBits(this.geom[i]);
+                h = 31 * h + (int) (bits ^ (bits >>> 32));
+            }
+            h = 31 * h + Arrays.hashCode(this.colors);
+            h = 31 * h + Arrays.hashCode(this.fractions);
+            return 31 * h + this.flags;
+        }
+
+        /**
+         * Returns an independent copy of this key (used to store a probe
+         * key in the map).
+         *
+         * @return A copy.
+         */
+        GradientKey copy() {
+            GradientKey k = new GradientKey();
+            k.type = this.type;
+            k.geom = Arrays.copyOf(this.geom, this.geomLength);
+            k.geomLength = this.geomLength;
+            k.colors = this.colors.clone();
+            k.fractions = this.fractions;
+            k.flags = this.flags;
+            k.hash = this.hash;
+            return k;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof GradientKey)) {
+                return false;
+            }
+            GradientKey that = (GradientKey) obj;
+            if (this.hash != that.hash || this.type != that.type
+                    || this.flags != that.flags
+                    || this.geomLength != that.geomLength) {
+                return false;
+            }
+            for (int i = 0; i < this.geomLength; i++) {
+                if (Double.doubleToLongBits(this.geom[i])
+                        != Double.doubleToLongBits(that.geom[i])) {
+                    return false;
+                }
+            }
+            return Arrays.equals(this.colors, that.colors)
+                    && Arrays.equals(this.fractions, that.fractions);
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+/* ============
+ * FXGraphics2D
+ * ============
+ * 
+ * (C)opyright 2014-2017, by Object Refinery Limited.
+ * 
+ * http://www.jfree.org/fxgraphics2d/index.html
+ *
+ * The FXGraphics2D class has been developed by Object Refinery Limited for 
+ * use in Orson Charts (http://www.object-refinery.com/orsoncharts) and
+ * JFreeChart (http://www.jfree.org/jfreechart).  It may be useful for other
+ * code that uses the Graphics2D API provided by Java2D.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   - Neither the name of the Object Refinery Limited nor the
+ *     names of its contributors may be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL OBJECT REFINERY LIMITED BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+
+
+package org.jfree.fx;
+
+import java.awt.geom.Path2D;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Provides direct access to the segment types and coordinates stored in
+ * {@link Path2D} instances, so that {@link FXGraphics2D} can stream them to
+ * the JavaFX graphics context without creating a {@code PathIterator} and 
+ * without a virtual call per segment.
+ * <br><br>
+ * The fields are private to the {@code java.awt.geom} package, so this
+ * requires the JVM option 
+ * {@code --add-opens java.desktop/java.awt.geom=ALL-UNNAMED}.  If the
+ * package is not open, {@link #isEnabled()} returns {@code false} and
+ * {@code FXGraphics2D} uses the path iterator.
+ * 
+ * @since 1.6
+ */
+public final class FXPath2DAccess {
+
+    private static final VarHandle POINT_TYPES;
+    private static final VarHandle NUM_TYPES;
+    private static final VarHandle FLOAT_COORDS;
+    private static final VarHandle DOUBLE_COORDS;
+
+    static {
+        VarHandle pointTypes = null;
+        VarHandle numTypes = null;
+        VarHandle floatCoords = null;
+        VarHandle doubleCoords = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandles.Lookup l = MethodHandles.privateLookupIn(
+                    Path2D.class, lookup);
+            pointTypes = l.findVarHandle(Path2D.class, "pointTypes", 
+                    byte[].class);
+            numTypes = l.findVarHandle(Path2D.class, "numTypes", int.class);
+            floatCoords = MethodHandles.privateLookupIn(Path2D.Float.class,
+                    lookup).findVarHandle(Path2D.Float.class, "floatCoords",
+                    float[].class);
+            doubleCoords = MethodHandles.privateLookupIn(Path2D.Double.class,
+                    lookup).findVarHandle(Path2D.Double.class, 
+                    "doubleCoords", double[].class);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // java.awt.geom is not open (or the JDK internals differ):
+            pointTypes = null;
+        }
+        if (pointTypes == null) {
+            POINT_TYPES = null;
+            NUM_TYPES = null;
+            FLOAT_COORDS = null;
+            DOUBLE_COORDS = null;
+        } else {
+            POINT_TYPES = pointTypes;
+            NUM_TYPES = numTypes;
+            FLOAT_COORDS = floatCoords;
+            DOUBLE_COORDS = doubleCoords;
+        }
+    }
+
+    private FXPath2DAccess() {
+        // no need to instantiate this
+    }
+
+    /**
+     * Returns {@code true} if the path internals can be accessed.
+     * 
+     * @return A boolean.
+     */
+    public static boolean isEnabled() {
+        return POINT_TYPES != null;
+    }
+
+    /**
+     * Returns the segment types array of a path (only the first 
+     * {@link #numTypes(Path2D)} entries are valid).  The values are the
+     * {@code PathIterator.SEG_*} constants.
+     * 
+     * @param p  the path ({@code null} not permitted).
+     * 
+     * @return The segment types (never modify this array). 
+     */
+    static byte[] types(Path2D p) {
+        return (byte[]) POINT_TYPES.get(p);
+    }
+
+    /**
+     * Returns the number of segments in a path.
+     * 
+     * @param p  the path ({@code null} not permitted).
+     * 
+     * @return The number of segments. 
+     */
+    static int numTypes(Path2D p) {
+        return (int) NUM_TYPES.get(p);
+    }
+
+    /**
+     * Returns the coordinates array of a path.
+     * 
+     * @param p  the path ({@code null} not permitted).
+     * 
+     * @return The coordinates (never modify this array). 
+     */
+    static float[] coords(Path2D.Float p) {
+        return (float[]) FLOAT_COORDS.get(p);
+    }
+
+    /**
+     * Returns the coordinates array of a path.
+     * 
+     * @param p  the path ({@code null} not permitted).
+     * 
+     * @return The coordinates (never modify this array). 
+     */
+    static double[] coords(Path2D.Double p) {
+        return (double[]) DOUBLE_COORDS.get(p);
+    }
+
+}
@@ -0,0 +1,213 @@
+/* ============
+ * FXGraphics2D
+ * ============
+ * 
+ * (C)opyright 2014-2017, by Object Refinery Limited.
+ * 
+ * http://www.jfree.org/fxgraphics2d/index.html
+ *
+ * The FXGraphics2D class has been developed by Object Refinery Limited for 
+ * use in Orson Charts (http://www.object-refinery.com/orsoncharts) and
+ * JFreeChart (http://www.jfree.org/jfreechart).  It may be useful for other
+ * code that uses the Graphics2D API provided by Java2D.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   - Neither the name of the Object Refinery Limited nor the
+ *     names of its contributors may be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL OBJECT REFINERY LIMITED BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+
+
+package org.jfree.fx;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.effect.BlendMode;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.ArcType;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+import javafx.scene.text.Font;
+
+/**
+ * The drawing primitives that {@link FXGraphics2D} sends once the Java2D
+ * operations have been translated: the subset of the JavaFX 
+ * {@link GraphicsContext} API that is used for the paths, the attributes, 
+ * the images and the text.  Each method has the same meaning as the 
+ * {@code GraphicsContext} method with the same name.
+ * <br><br>
+ * The target is chosen when the {@code FXGraphics2D} instance is created 
+ * (see {@link FXGraphics2D#FXGraphics2D(FXRenderTarget)}).  The following
+ * implementations are provided:
+ * <ul>
+ * <li>{@link FXCanvasTarget} - draws to the graphics context of a canvas
+ * (this is the target used by 
+ * {@link FXGraphics2D#FXGraphics2D(javafx.scene.canvas.GraphicsContext)});
+ * </li>
+ * <li>{@link FXCommandBuffer} - records the primitives, to replay them 
+ * later;</li>
+ * <li>{@link FXCountingTarget} - counts the primitives and discards them,
+ * to measure the cost of the Java2D to JavaFX translation alone.</li>
+ * </ul>
+ * The attributes are only sent when they change, and the target is assumed
+ * to start with the default attributes of a new graphics context (except 
+ * for the canvas target, whose current attributes are read).
+ * 
+ * @since 1.6
+ */
+public interface FXRenderTarget {
+
+    /**
+     * Returns the width of the drawing area, in pixels.
+     * 
+     * @return The width.
+     */
+    double getWidth();
+
+    /**
+     * Returns the height of the drawing area, in pixels.
+     * 
+     * @return The height.
+     */
+    double getHeight();
+
+    /**
+     * Returns the canvas that receives the drawing operations, if any (it 
+     * is used to read back pixels in 
+     * {@link FXGraphics2D#copyArea(int, int, int, int, int, int)}).
+     * 
+     * @return The canvas (possibly {@code null}).
+     */
+    Canvas getCanvas();
+
+    void save();
+
+    void restore();
+
+    void setFill(Paint p);
+
+    void setStroke(Paint p);
+
+    void setLineWidth(double lw);
+
+    void setLineCap(StrokeLineCap cap);
+
+    void setLineJoin(StrokeLineJoin join);
+
+    void setMiterLimit(double ml);
+
+    void setLineDashes(double[] dashes);
+
+    void setLineDashOffset(double dashOffset);
+
+    void setGlobalAlpha(double alpha);
+
+    void setGlobalBlendMode(BlendMode op);
+
+    void setFont(Font f);
+
+    void setTransform(double mxx, double myx, double mxy, double myy, 
+            double mxt, double myt);
+
+    void beginPath();
+
+    void moveTo(double x0, double y0);
+
+    void lineTo(double x1, double y1);
+
+    void quadraticCurveTo(double xc, double yc, double x1, double y1);
+
+    void bezierCurveTo(double xc1, double yc1, double xc2, double yc2, 
+            double x1, double y1);
+
+    void closePath();
+
+    void rect(double x, double y, double w, double h);
+
+    void fill();
+
+    void stroke();
+
+    void clip();
+
+    void clearRect(double x, double y, double w, double h);
+
+    void fillRect(double x, double y, double w, double h);
+
+    void strokeRect(double x, double y, double w, double h);
+
+    void fillRoundRect(double x, double y, double w, double h, 
+            double arcWidth, double arcHeight);
+
+    void strokeRoundRect(double x, double y, double w, double h, 
+            double arcWidth, double arcHeight);
+
+    void fillOval(double x, double y, double w, double h);
+
+    void strokeOval(double x, double y, double w, double h);
+
+    void fillArc(double x, double y, double w, double h, double startAngle, 
+            double arcExtent, ArcType closure);
+
+    void strokeArc(double x, double y, double w, double h, double startAngle, 
+            double arcExtent, ArcType closure);
+
+    void strokeLine(double x1, double y1, double x2, double y2);
+
+    /**
+     * Fills a polygon.  The arrays may be reused by the caller once the 
+     * method returns.
+     * 
+     * @param xPoints  the x-coordinates.
+     * @param yPoints  the y-coordinates.
+     * @param nPoints  the number of points.
+     */
+    void fillPolygon(double[] xPoints, double[] yPoints, int nPoints);
+
+    /**
+     * Strokes a polygon.  The arrays may be reused by the caller once the 
+     * method returns.
+     * 
+     * @param xPoints  the x-coordinates.
+     * @param yPoints  the y-coordinates.
+     * @param nPoints  the number of points.
+     */
+    void strokePolygon(double[] xPoints, double[] yPoints, int nPoints);
+
+    /**
+     * Strokes a polyline.  The arrays may be reused by the caller once the 
+     * method returns.
+     * 
+     * @param xPoints  the x-coordinates.
+     * @param yPoints  the y-coordinates.
+     * @param nPoints  the number of points.
+     */
+    void strokePolyline(double[] xPoints, double[] yPoints, int nPoints);
+
+    void fillText(String text, double x, double y);
+
+    void drawImage(Image img, double x, double y, double w, double h);
+
+    void drawImage(Image img, double sx, double sy, double sw, double sh, 
+            double dx, double dy, double dw, double dh);
+
+}
@@ -0,0 +1,498 @@
+/* ============
+ * FXGraphics2D
+ * ============
+ * 
+ * (C)opyright 2014-2017, by Object Refinery Limited.
+ * 
+ * http://www.jfree.org/fxgraphics2d/index.html
+ *
+ * The FXGraphics2D class has been developed by Object Refinery Limited for 
+ * use in Orson Charts (http://www.object-refinery.com/orsoncharts) and
+ * JFreeChart (http://www.jfree.org/jfreechart).  It may be useful for other
+ * code that uses the Graphics2D API provided by Java2D.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   - Neither the name of the Object Refinery Limited nor the
+ *     names of its contributors may be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL OBJECT REFINERY LIMITED BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+
+
+
+package org.jfree.fx;
+
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of stroked outlines, used by {@link FXGraphics2D} to draw shapes
+ * with strokes that are not a {@code BasicStroke} (for example the 
+ * hatched or composite strokes of cartographic styles), and to test hits on
+ * stroked outlines, without calling {@code Stroke.createStrokedShape()} 
+ * every time the same shape is drawn.
+ * <br><br>
+ * The outlines are keyed by the identity of the shape (weakly referenced, 
+ * so that the entry is dropped when the shape is garbage collected) and by
+ * the stroke (compared with {@code equals()}).  Since a shape can be 
+ * modified after it has been drawn (a {@code Path2D} reset and filled 
+ * again, for example), each entry records the number of segments of the 
+ * shape and a checksum of its segment types and coordinates, and the 
+ * outline is created again when they differ.  They are read directly from 
+ * the arrays of a {@code Path2D} when {@link FXPath2DAccess} is enabled, 
+ * otherwise from the path iterator: in both cases the validation is much
+ * cheaper than stroking the shape.  The least recently used outlines are 
+ * evicted when their estimated size exceeds a limit (in bytes).
+ * <br><br>
+ * Instances of this class are not thread-safe.
+ *
+ * @since 1.6
+ */
+public final class FXStrokeCache {
+
+    /** The default maximum size of the cached outlines (16 MB). */
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024L * 1024L;
+
+    /** A cached outline. */
+    static final class Entry {
+
+        /** The stroked outline. */
+        final Shape outline;
+
+        /** The number of segments of the shape. */
+        final int segments;
+
+        /** The checksum of the shape when the outline was created. */
+        final long checksum;
+
+        /** The estimated size of the outline. */
+        final long bytes;
+
+        /** The bounds of the outline (computed on demand). */
+        private Rectangle2D outlineBounds;
+
+        Entry(Shape outline, int segments, long checksum, long bytes) {
+            this.outline = outline;
+            this.segments = segments;
+            this.checksum = checksum;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Returns the bounds of the outline.
+         * 
+         * @return The bounds (never {@code null}).
+         */
+        Rectangle2D getOutlineBounds() {
+            if (this.outlineBounds == null) {
+                this.outlineBounds = this.outline.getBounds2D();
+            }
+            return this.outlineBounds;
+        }
+    }
+
+    /** The cached outlines (in access order). */
+    private final Map<Object, Entry> entries 
+            = new LinkedHashMap<>(64, 0.75f, true);
+
+    /** The queue of the keys whose shape has been garbage collected. */
+    private final ReferenceQueue<Shape> queue = new ReferenceQueue<>();
+
+    /** A reusable key for the lookups. */
+    private final Probe probe = new Probe();
+
+    /** The coordinates of the current segment (see checksum()). */
+    private final double[] coords = new double[6];
+
+    /** The number of segments counted by the last call to checksum(). */
+    private int segments;
+
+    private final long maxBytes;
+
+    private long bytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a new cache with the default maximum size.
+     */
+    public FXStrokeCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxBytes  the maximum size of the cached outlines (in bytes, 
+     *     must be greater than zero).
+     */
+    public FXStrokeCache(long maxBytes) {
+        if (maxBytes <= 0L) {
+            throw new IllegalArgumentException("Requires 'maxBytes' > 0.");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the outline of the shape stroked with the specified stroke.
+     *
+     * @param s  the shape ({@code null} not permitted).
+     * @param stroke  the stroke ({@code null} not permitted).
+     *
+     * @return The stroked outline (never {@code null}).
+     */
+    public Shape getStrokedShape(Shape s, Stroke stroke) {
+        return get(s, stroke).outline;
+    }
+
+    /**
+     * Returns the cache entry for the shape stroked with the specified 
+     * stroke, creating it if necessary.
+     *
+     * @param s  the shape ({@code null} not permitted).
+     * @param stroke  the stroke ({@code null} not permitted).
+     *
+     * @return The cache entry (never {@code null}).
+     */
+    Entry get(Shape s, Stroke stroke) {
+        purge();
+        long checksum = checksum(s);
+        int n = this.segments;
+        this.probe.set(s, stroke);
+        Entry e = this.entries.get(this.probe);
+        this.probe.shape = null;
+        if (e != null && e.segments == n && e.checksum == checksum) {
+            this.hits++;
+            return e;
+        }
+        this.misses++;
+        Key key = new Key(s, stroke, this.queue);
+        if (e != null) {
+            // the shape has been modified:
+            this.entries.remove(key);
+            this.bytes -= e.bytes;
+        }
+        Shape outline = stroke.createStrokedShape(s);
+        e = new Entry(outline, n, checksum, estimateBytes(outline));
+        if (e.bytes <= this.maxBytes) {
+            this.entries.put(key, e);
+            this.bytes += e.bytes;
+            evict();
+        }
+        return e;
+    }
+
+    /**
+     * Returns a checksum of the segment types and coordinates (and the 
+     * winding rule) of a shape, and stores its number of segments in
+     * {@code this.segments}.
+     * 
+     * @param s  the shape ({@code null} not permitted).
+     * 
+     * @return The checksum.
+     */
+    private long checksum(Shape s) {
+        if (s instanceof Path2D && FXPath2DAccess.isEnabled()) {
+            return checksum((Path2D) s);
+        }
+        double[] c = this.coords;
+        int n = 0;
+        long h = 1L;
+        PathIterator it = s.getPathIterator(null);
+        h = mix(h, it.getWindingRule());
+        for (; !it.isDone(); it.next()) {
+            int type = it.currentSegment(c);
+            h = mix(h, type);
+            for (int i = 0, len = coordCount(type); i < len; i++) {
+                h = mix(h, Double.doubleToLongBits(c[i]));
+            }
+            n++;
+        }
+        this.segments = n;
+        return h;
+    }
+
+    /**
+     * Returns a checksum of a path read directly from its arrays (see 
+     * {@link #checksum(Shape)}).
+     */
+    private long checksum(Path2D p) {
+        byte[] types = FXPath2DAccess.types(p);
+        int n = FXPath2DAccess.numTypes(p);
+        int numCoords = 0;
+        long h = mix(1L, p.getWindingRule());
+        for (int i = 0; i < n; i++) {
+            h = mix(h, types[i]);
+            numCoords += coordCount(types[i]);
+        }
+        if (p instanceof Path2D.Float) {
+            float[] c = FXPath2DAccess.coords((Path2D.Float) p);
+            for (int i = 0; i < numCoords; i++) {
+                h = mix(h, Float.floatToIntBits(c[i]));
+            }
+        } else {
+            double[] c = FXPath2DAccess.coords((Path2D.Double) p);
+            for (int i = 0; i < numCoords; i++) {
+                h = mix(h, Double.doubleToLongBits(c[i]));
+            }
+        }
+        this.segments = n;
+        return h;
+    }
+
+    private static long mix(long h, long v) {
+        return (h ^ v) * 0x9E3779B97F4A7C15L;
+    }
+
+    /**
+     * Returns the number of coordinates of a segment type.
+     */
+    private static int coordCount(int type) {
+        switch (type) {
+            case PathIterator.SEG_MOVETO:
+            case PathIterator.SEG_LINETO:
+                return 2;
+            case PathIterator.SEG_QUADTO:
+                return 4;
+            case PathIterator.SEG_CUBICTO:
+                return 6;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Returns an estimate of the memory used by a shape (one byte per 
+     * segment type and 8 bytes per coordinate, plus the object overhead).
+     */
+    private static long estimateBytes(Shape s) {
+        long size = 64L;
+        float[] coords = new float[6];
+        for (PathIterator it = s.getPathIterator(null); !it.isDone(); 
+                it.next()) {
+            switch (it.currentSegment(coords)) {
+                case PathIterator.SEG_MOVETO:
+                case PathIterator.SEG_LINETO:
+                    size += 17L;
+                    break;
+                case PathIterator.SEG_QUADTO:
+                    size += 33L;
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    size += 49L;
+                    break;
+                default:
+                    size += 1L;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes the entries whose shape has been garbage collected.
+     */
+    private void purge() {
+        for (Object key; (key = this.queue.poll()) != null; ) {
+            Entry e = this.entries.remove(key);
+            if (e != null) {
+                this.bytes -= e.bytes;
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used entries until the size of the cache
+     * is within the limit.
+     */
+    private void evict() {
+        Iterator<Entry> iterator = this.entries.values().iterator();
+        while (this.bytes > this.maxBytes && iterator.hasNext()) {
+            Entry e = iterator.next();
+            iterator.remove();
+            this.bytes -= e.bytes;
+            this.evictions++;
+        }
+    }
+
+    /**
+     * Returns the number of outlines in the cache.
+     * 
+     * @return The number of outlines.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the estimated size of the cached outlines (in bytes).
+     * 
+     * @return The size.
+     */
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Returns the maximum size of the cached outlines (in bytes).
+     * 
+     * @return The maximum size.
+     */
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    /**
+     * Returns the number of lookups that found a cached outline.
+     *
+     * @return The count.
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of outlines that were created.
+     *
+     * @return The count.
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Returns the number of outlines evicted to stay within the size limit.
+     *
+     * @return The count.
+     */
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Resets the counters.
+     */
+    public void resetStatistics() {
+        this.hits = 0L;
+        this.misses = 0L;
+        this.evictions = 0L;
+    }
+
+    /**
+     * Removes all the outlines from the cache.
+     */
+    public void clear() {
+        this.entries.clear();
+        this.bytes = 0L;
+        while (this.queue.poll() != null) {
+            // drop the references to the removed keys
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FXStrokeCache{outlines=" + this.entries.size() + ", bytes=" 
+                + this.bytes + ", hits=" + this.hits + ", misses=" 
+                + this.misses + ", evictions=" + this.evictions + "}";
+    }
+
+    /**
+     * The key of a cached outline: a weak reference to the shape, and the
+     * stroke.
+     */
+    private static final class Key extends WeakReference<Shape> {
+
+        final Stroke stroke;
+
+        final int hash;
+
+        Key(Shape shape, Stroke stroke, ReferenceQueue<Shape> queue) {
+            super(shape, queue);
+            this.stroke = stroke;
+            this.hash = hash(shape, stroke);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) obj;
+            Shape shape = get();
+            return shape != null && shape == that.get() 
+                    && this.stroke.equals(that.stroke);
+        }
+    }
+
+    /**
+     * A lookup key holding a strong reference to the shape.
+     */
+    private static final class Probe {
+
+        Shape shape;
+
+        Stroke stroke;
+
+        int hash;
+
+        void set(Shape shape, Stroke stroke) {
+            this.shape = shape;
+            this.stroke = stroke;
+            this.hash = hash(shape, stroke);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) obj;
+            return this.shape == that.get() 
+                    && this.stroke.equals(that.stroke);
+        }
+    }
+
+    private static int hash(Shape shape, Stroke stroke) {
+        return System.identityHashCode(shape) * 31 + stroke.hashCode();
+    }
+
+}
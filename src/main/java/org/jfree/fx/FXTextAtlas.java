@@ -0,0 +1,475 @@
+/* ============
+ * FXGraphics2D
+ * ============
+ * 
+ * (C)opyright 2014-2017, by Object Refinery Limited.
+ * 
+ * http://www.jfree.org/fxgraphics2d/index.html
+ *
+ * The FXGraphics2D class has been developed by Object Refinery Limited for 
+ * use in Orson Charts (http://www.object-refinery.com/orsoncharts) and
+ * JFreeChart (http://www.jfree.org/jfreechart).  It may be useful for other
+ * code that uses the Graphics2D API provided by Java2D.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   - Neither the name of the Object Refinery Limited nor the
+ *     names of its contributors may be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL OBJECT REFINERY LIMITED BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+
+
+
+package org.jfree.fx;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * A cache of rasterized text runs, used by {@link FXGraphics2D} when the 
+ * {@link FXHints#KEY_TEXT_RUN_CACHE} hint is set: each (string, font, 
+ * color) run is rasterized once (with Java2D, antialiased) into a shared 
+ * texture atlas, and later {@code drawString()} calls with a translation-only
+ * transform draw the run as a sub-rectangle of the atlas image, so that 
+ * JavaFX does not shape and rasterize the glyphs again.
+ * <br><br>
+ * The atlas is made of a few pages (JavaFX images) that are filled with 
+ * shelves of runs of similar heights.  When there is no room left, the 
+ * least recently used page is evicted with all its runs.  An evicted page 
+ * is replaced by a new image rather than overwritten, since the canvas may
+ * still have to render drawing commands that refer to the old pixels.  The
+ * runs that are not in a page (the runs that draw nothing and those that 
+ * are too large for a page) are kept in a separate map, bounded to the 
+ * most recently used ones, so that their size is only measured once.
+ * <br><br>
+ * Instances of this class are not thread-safe.
+ * 
+ * @since 1.6
+ */
+public final class FXTextAtlas {
+
+    /** The default width and height of the atlas pages. */
+    public static final int DEFAULT_PAGE_SIZE = 1024;
+
+    /** The default maximum number of atlas pages. */
+    public static final int DEFAULT_MAX_PAGES = 2;
+
+    /** The margin around the visual bounds of each run. */
+    private static final int PAD = 1;
+
+    /** The shelf heights are rounded up to a multiple of this value. */
+    private static final int SHELF_ROUNDING = 8;
+
+    /** The maximum number of runs kept outside the pages. */
+    private static final int MAX_UNPLACED_RUNS = 1024;
+
+    /** A rasterized run in the atlas. */
+    static final class Run {
+
+        /** 
+         * The page holding the run ({@code null} for an empty or uncached 
+         * run). 
+         */
+        Page page;
+
+        /** Is the run too large to be cached? */
+        boolean uncached;
+
+        /** The position of the run in the page image. */
+        int x, y;
+
+        /** The size of the run (0 for a run that draws nothing). */
+        int width, height;
+
+        /** The offset from the baseline origin to the top left corner. */
+        int originX, originY;
+
+        /** The key of the run in the map. */
+        Key key;
+
+        /**
+         * Returns the atlas image holding the run.
+         * 
+         * @return The image.
+         */
+        WritableImage getImage() {
+            return this.page.image;
+        }
+    }
+
+    /** A page of the atlas. */
+    private static final class Page {
+
+        final WritableImage image;
+
+        /** The shelves (each one is {@code {y, height, used width}}). */
+        final List<int[]> shelves = new ArrayList<>();
+
+        /** The top of the free area below the shelves. */
+        int nextY;
+
+        /** The last time a run of this page was used. */
+        long stamp;
+
+        final List<Run> runs = new ArrayList<>();
+
+        Page(int size) {
+            this.image = new WritableImage(size, size);
+        }
+    }
+
+    private final int pageSize;
+
+    private final int maxPages;
+
+    private final List<Page> pages = new ArrayList<>();
+
+    private final Map<Key, Run> runs = new HashMap<>();
+
+    /** The runs that are not in a page (in access order). */
+    private final Map<Key, Run> unplacedRuns 
+            = new LinkedHashMap<Key, Run>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Run> eldest) {
+            return size() > MAX_UNPLACED_RUNS;
+        }
+    };
+
+    /** A reusable key for the lookups. */
+    private final Key probe = new Key();
+
+    private final FontRenderContext frc 
+            = new FontRenderContext(null, true, true);
+
+    /** The image used to rasterize the runs (grown when necessary). */
+    private BufferedImage scratch;
+
+    private Graphics2D scratchG2;
+
+    private long clock;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long uncached;
+
+    /**
+     * Creates a new atlas with the default page size and number of pages.
+     */
+    public FXTextAtlas() {
+        this(DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+    }
+
+    /**
+     * Creates a new atlas.  The pages are created when they are first 
+     * needed.
+     * 
+     * @param pageSize  the width and height of the pages (at least 64).
+     * @param maxPages  the maximum number of pages (must be greater than 
+     *     zero).
+     */
+    public FXTextAtlas(int pageSize, int maxPages) {
+        if (pageSize < 64) {
+            throw new IllegalArgumentException("Requires 'pageSize' >= 64.");
+        }
+        if (maxPages <= 0) {
+            throw new IllegalArgumentException("Requires 'maxPages' > 0.");
+        }
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+    }
+
+    /**
+     * Returns the rasterized run for a string drawn with the specified font
+     * and color, rasterizing it if necessary, or {@code null} if the run is
+     * too large to be cached.
+     * 
+     * @param str  the string ({@code null} not permitted).
+     * @param font  the font ({@code null} not permitted).
+     * @param argb  the color (in ARGB format).
+     * 
+     * @return The run (possibly {@code null}).
+     */
+    Run get(String str, Font font, int argb) {
+        this.probe.set(str, font, argb);
+        Run run = this.runs.get(this.probe);
+        if (run != null) {
+            this.hits++;
+            run.page.stamp = ++this.clock;
+            return run;
+        }
+        run = this.unplacedRuns.get(this.probe);
+        if (run != null) {
+            this.hits++;
+            return run.uncached ? null : run;
+        }
+        Rectangle2D vb = font.createGlyphVector(this.frc, str)
+                .getVisualBounds();
+        run = new Run();
+        run.key = this.probe.copy();
+        if (vb.isEmpty()) {
+            this.misses++;
+            this.unplacedRuns.put(run.key, run);
+            return run;
+        }
+        int x0 = (int) Math.floor(vb.getMinX()) - PAD;
+        int y0 = (int) Math.floor(vb.getMinY()) - PAD;
+        int w = (int) Math.ceil(vb.getMaxX()) + PAD - x0;
+        int h = (int) Math.ceil(vb.getMaxY()) + PAD - y0;
+        if (w > this.pageSize || h > this.pageSize / 4) {
+            this.uncached++;
+            run.uncached = true;
+            this.unplacedRuns.put(run.key, run);
+            return null;
+        }
+        run.originX = x0;
+        run.originY = y0;
+        run.width = w;
+        run.height = h;
+        allocate(run);
+        rasterize(run, str, font, argb);
+        run.page.runs.add(run);
+        run.page.stamp = ++this.clock;
+        this.misses++;
+        this.runs.put(run.key, run);
+        return run;
+    }
+
+    /**
+     * Finds room for a run in the atlas, evicting the least recently used 
+     * page if necessary, and sets the run page and position.
+     * 
+     * @param run  the run (with its size set).
+     */
+    private void allocate(Run run) {
+        int h = (run.height + SHELF_ROUNDING - 1) 
+                / SHELF_ROUNDING * SHELF_ROUNDING;
+        for (Page page : this.pages) {
+            for (int[] shelf : page.shelves) {
+                if (shelf[1] == h && this.pageSize - shelf[2] >= run.width) {
+                    place(run, page, shelf);
+                    return;
+                }
+            }
+        }
+        for (Page page : this.pages) {
+            if (page.nextY + h <= this.pageSize) {
+                place(run, page, addShelf(page, h));
+                return;
+            }
+        }
+        Page page = new Page(this.pageSize);
+        if (this.pages.size() < this.maxPages) {
+            this.pages.add(page);
+        } else {
+            // replace the least recently used page:
+            int lru = 0;
+            for (int i = 1; i < this.pages.size(); i++) {
+                if (this.pages.get(i).stamp < this.pages.get(lru).stamp) {
+                    lru = i;
+                }
+            }
+            Page evicted = this.pages.set(lru, page);
+            for (Run r : evicted.runs) {
+                this.runs.remove(r.key);
+            }
+            this.evictions += evicted.runs.size();
+        }
+        place(run, page, addShelf(page, h));
+    }
+
+    private static int[] addShelf(Page page, int h) {
+        int[] shelf = new int[] {page.nextY, h, 0};
+        page.shelves.add(shelf);
+        page.nextY += h;
+        return shelf;
+    }
+
+    private static void place(Run run, Page page, int[] shelf) {
+        run.page = page;
+        run.x = shelf[2];
+        run.y = shelf[0];
+        shelf[2] += run.width;
+    }
+
+    /**
+     * Draws the string into the scratch image and copies the pixels to the
+     * run area of the atlas.
+     */
+    private void rasterize(Run run, String str, Font font, int argb) {
+        if (this.scratch == null || this.scratch.getWidth() < run.width 
+                || this.scratch.getHeight() < run.height) {
+            if (this.scratchG2 != null) {
+                this.scratchG2.dispose();
+            }
+            int w = Math.max(run.width, this.scratch == null 
+                    ? 256 : this.scratch.getWidth());
+            int h = Math.max(run.height, this.scratch == null 
+                    ? 64 : this.scratch.getHeight());
+            this.scratch = new BufferedImage(w, h, 
+                    BufferedImage.TYPE_INT_ARGB_PRE);
+            this.scratchG2 = this.scratch.createGraphics();
+            this.scratchG2.setRenderingHint(
+                    RenderingHints.KEY_TEXT_ANTIALIASING, 
+                    RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            this.scratchG2.setRenderingHint(
+                    RenderingHints.KEY_FRACTIONALMETRICS, 
+                    RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+        }
+        Graphics2D g2 = this.scratchG2;
+        g2.setComposite(AlphaComposite.Clear);
+        g2.fillRect(0, 0, run.width, run.height);
+        g2.setComposite(AlphaComposite.SrcOver);
+        g2.setColor(new Color(argb, true));
+        g2.setFont(font);
+        g2.drawString(str, (float) -run.originX, (float) -run.originY);
+        int[] data = ((DataBufferInt) this.scratch.getRaster()
+                .getDataBuffer()).getData();
+        run.page.image.getPixelWriter().setPixels(run.x, run.y, run.width, 
+                run.height, PixelFormat.getIntArgbPreInstance(), data, 0, 
+                this.scratch.getWidth());
+    }
+
+    /**
+     * Returns the number of lookups that found a rasterized run.
+     * 
+     * @return The count.
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of runs that were rasterized.
+     * 
+     * @return The count.
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Returns the number of runs evicted from the atlas.
+     * 
+     * @return The count.
+     */
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Returns the number of runs that were too large to be cached.
+     * 
+     * @return The count.
+     */
+    public long getUncached() {
+        return this.uncached;
+    }
+
+    /**
+     * Resets the counters.
+     */
+    public void resetStatistics() {
+        this.hits = 0L;
+        this.misses = 0L;
+        this.evictions = 0L;
+        this.uncached = 0L;
+    }
+
+    /**
+     * Removes all the runs and pages.
+     */
+    public void clear() {
+        this.runs.clear();
+        this.unplacedRuns.clear();
+        this.pages.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "FXTextAtlas{runs=" + this.runs.size() + ", unplacedRuns=" 
+                + this.unplacedRuns.size() + ", pages=" 
+                + this.pages.size() + ", hits=" + this.hits + ", misses=" 
+                + this.misses + ", evictions=" + this.evictions 
+                + ", uncached=" + this.uncached + "}";
+    }
+
+    /**
+     * The key of a run.
+     */
+    static final class Key {
+
+        private String str;
+        private Font font;
+        private int argb;
+        private int hash;
+
+        void set(String str, Font font, int argb) {
+            this.str = str;
+            this.font = font;
+            this.argb = argb;
+            this.hash = (str.hashCode() * 31 + font.hashCode()) * 31 + argb;
+        }
+
+        Key copy() {
+            Key k = new Key();
+            k.str = this.str;
+            k.font = this.font;
+            k.argb = this.argb;
+            k.hash = this.hash;
+            return k;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) obj;
+            return this.hash == that.hash && this.argb == that.argb 
+                    && this.str.equals(that.str) 
+                    && this.font.equals(that.font);
+        }
+    }
+
+}
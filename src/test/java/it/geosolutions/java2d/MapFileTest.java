@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * MapBench project (GPLv2 + CP)
+ ******************************************************************************/
+package it.geosolutions.java2d;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import it.geosolutions.java2d.MapCommandRecorder.Recording;
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Writes a recording to a binary map (see MapFile), reads it back and
+ * checks that the recording of the loaded commands is identical; damaged
+ * files must be rejected with an IOException.
+ */
+public class MapFileTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * @return a recording with every shape type, filled and stroked shapes,
+     * dashes and several composites (3 commands, the last one empty)
+     */
+    private static Recording createRecording() {
+        final Recording rec = new Recording();
+        final AlphaComposite srcOver = AlphaComposite.SrcOver;
+        final AlphaComposite half = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f);
+        final BasicStroke thin = new BasicStroke(1.5f);
+        final BasicStroke dashed = new BasicStroke(3f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_BEVEL, 10f,
+                new float[]{4f, 2f, 1f}, 0.5f);
+
+        final Path2D.Float polygon = new Path2D.Float(Path2D.WIND_EVEN_ODD);
+        polygon.moveTo(10f, 10f);
+        polygon.lineTo(90.5f, 12.25f);
+        polygon.quadTo(100f, 50f, 80f, 90f);
+        polygon.closePath();
+        polygon.moveTo(30f, 30f);
+        polygon.lineTo(40f, 30f);
+        polygon.lineTo(35f, 40f);
+        polygon.closePath();
+
+        rec.addShape(polygon, true, 0xFF336699, null, srcOver);
+        rec.addShape(new Rectangle2D.Double(5.0, 6.0, 70.0, 20.0), false, 0x80FF0000, thin, half);
+        rec.endCommand();
+
+        rec.addShape(new Path2D.Double(new Ellipse2D.Double(20.0, 20.0, 40.0, 30.0)), false, 0xFF00FF00,
+                dashed, srcOver);
+        rec.addShape(new Line2D.Double(0.0, 0.0, 120.0, 80.0), false, 0xFF000000, thin, srcOver);
+        rec.addShape(new Rectangle2D.Double(1.0, 2.0, 3.0, 4.0), true, 0xFFFFFFFF, null, half);
+        rec.endCommand();
+
+        rec.endCommand();
+        return rec;
+    }
+
+    private File write(final Recording rec) throws IOException {
+        final File file = folder.newFile("test.mapbin");
+        MapFile.write(rec, 120, 100, file);
+        return file;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final Recording rec = createRecording();
+        final DrawingCommands dc = MapFile.read(write(rec));
+
+        assertEquals(120, dc.width);
+        assertEquals(100, dc.height);
+        assertEquals(rec.commandCount, dc.commands.size());
+
+        final Recording copy = MapCommandRecorder.record(dc);
+
+        assertEquals(rec.strokes, copy.strokes);
+        assertEquals(rec.composites, copy.composites);
+        assertEquals(rec.commandCount, copy.commandCount);
+        assertEquals(rec.shapeCount, copy.shapeCount);
+        assertEquals(rec.segCount, copy.segCount);
+        assertEquals(rec.coordCount, copy.coordCount);
+
+        final int n = rec.shapeCount;
+        assertArrayEquals(Arrays.copyOf(rec.commandOffsets, rec.commandCount + 1),
+                Arrays.copyOf(copy.commandOffsets, copy.commandCount + 1));
+        assertArrayEquals(Arrays.copyOf(rec.shapeColors, n), Arrays.copyOf(copy.shapeColors, n));
+        assertArrayEquals(Arrays.copyOf(rec.shapeStrokes, n), Arrays.copyOf(copy.shapeStrokes, n));
+        assertArrayEquals(Arrays.copyOf(rec.shapeComposites, n), Arrays.copyOf(copy.shapeComposites, n));
+        assertArrayEquals(Arrays.copyOf(rec.shapeFlags, n), Arrays.copyOf(copy.shapeFlags, n));
+        assertArrayEquals(Arrays.copyOf(rec.segOffsets, n + 1), Arrays.copyOf(copy.segOffsets, n + 1));
+        assertArrayEquals(Arrays.copyOf(rec.coordOffsets, n + 1), Arrays.copyOf(copy.coordOffsets, n + 1));
+        assertArrayEquals(Arrays.copyOf(rec.segTypes, rec.segCount), Arrays.copyOf(copy.segTypes, copy.segCount));
+        assertArrayEquals(Arrays.copyOf(rec.coords, rec.coordCount), Arrays.copyOf(copy.coords, copy.coordCount),
+                0.0);
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        final File file = write(createRecording());
+        final byte[] data = Files.readAllBytes(file.toPath());
+
+        // every shorter file (header or data truncated) is rejected:
+        for (int len = 0; len < data.length; len += 7) {
+            assertInvalid(Arrays.copyOf(data, len));
+        }
+    }
+
+    @Test
+    public void testBadOffsets() throws IOException {
+        final Recording rec = createRecording();
+        final int[] layout = MapFile.layout(rec.strokes.size(), rec.composites.size(), rec.getDashCount(),
+                rec.commandCount, rec.shapeCount, rec.segCount, rec.coordCount);
+        final File file = write(rec);
+        final byte[] data = Files.readAllBytes(file.toPath());
+
+        // bad magic number:
+        assertInvalid(data, 0, 0);
+        // decreasing offset:
+        assertInvalid(data, layout[MapFile.COMMAND_OFFSETS] + 8, 0);
+        // first offset not 0:
+        assertInvalid(data, layout[MapFile.SEG_OFFSETS], 1);
+        // last offset beyond the coordinates:
+        assertInvalid(data, layout[MapFile.COORD_OFFSETS] + 4 * rec.shapeCount, rec.coordCount + 2);
+        // segments that do not match the shape types:
+        assertInvalid(data, layout[MapFile.SEG_OFFSETS] + 4, rec.segOffsets[1] - 1);
+    }
+
+    /**
+     * Checks that the data with the int at the given position replaced is
+     * rejected
+     */
+    private void assertInvalid(final byte[] data, final int pos, final int value) throws IOException {
+        final byte[] copy = data.clone();
+        ByteBuffer.wrap(copy).order(ByteOrder.LITTLE_ENDIAN).putInt(pos, value);
+        assertInvalid(copy);
+    }
+
+    /**
+     * Checks that the data (written to a new file, as the previous ones may
+     * still be mapped) is rejected
+     */
+    private void assertInvalid(final byte[] data) throws IOException {
+        final File file = folder.newFile();
+        Files.write(file.toPath(), data);
+        try {
+            MapFile.read(file);
+            fail("IOException expected");
+        } catch (IOException ioe) {
+            // expected
+        }
+    }
+}
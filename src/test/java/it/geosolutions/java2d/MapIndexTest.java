@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * MapBench project (GPLv2 + CP)
+ ******************************************************************************/
+package it.geosolutions.java2d;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Compares the items found by MapIndex.query() with a brute-force loop over
+ * the item bounds.
+ */
+public class MapIndexTest {
+
+    /** margin added to the viewport by MapIndex (device pixels) */
+    private final static double AA_MARGIN = 1.0;
+
+    /**
+     * @return random item bounds (x0, y0, x1, y1) in [0, size], mostly small
+     * items, a few large ones and a few empty ones (as given by
+     * MapBoundsTarget for the commands that draw nothing)
+     */
+    private static float[] createBounds(final Random random, final int n, final float size) {
+        final float[] bounds = new float[4 * n];
+        for (int i = 0; i < n; i++) {
+            final int k = 4 * i;
+            if (random.nextInt(50) == 0) {
+                bounds[k] = Float.POSITIVE_INFINITY;
+                bounds[k + 1] = Float.POSITIVE_INFINITY;
+                bounds[k + 2] = Float.NEGATIVE_INFINITY;
+                bounds[k + 3] = Float.NEGATIVE_INFINITY;
+                continue;
+            }
+            final float extent = (random.nextInt(20) == 0) ? size / 2f : size / 100f;
+            bounds[k] = random.nextFloat() * size;
+            bounds[k + 1] = random.nextFloat() * size;
+            bounds[k + 2] = bounds[k] + random.nextFloat() * extent;
+            bounds[k + 3] = bounds[k + 1] + random.nextFloat() * extent;
+        }
+        return bounds;
+    }
+
+    /**
+     * @return the bitmap of the items intersecting the device area (inverse
+     * transformed and enlarged by the margin) and the clip
+     */
+    private static long[] bruteForce(final float[] bounds, final AffineTransform at, final Rectangle2D area,
+                                     final Rectangle2D clip) throws Exception {
+        final double ax0 = area.getMinX() - AA_MARGIN;
+        final double ay0 = area.getMinY() - AA_MARGIN;
+        final double ax1 = area.getMaxX() + AA_MARGIN;
+        final double ay1 = area.getMaxY() + AA_MARGIN;
+        final double[] p = new double[]{ax0, ay0, ax1, ay0, ax1, ay1, ax0, ay1};
+        at.inverseTransform(p, 0, p, 0, 4);
+        double x0 = Double.POSITIVE_INFINITY;
+        double y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY;
+        double y1 = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < 8; i += 2) {
+            x0 = Math.min(x0, p[i]);
+            y0 = Math.min(y0, p[i + 1]);
+            x1 = Math.max(x1, p[i]);
+            y1 = Math.max(y1, p[i + 1]);
+        }
+        if (clip != null) {
+            x0 = Math.max(x0, clip.getMinX());
+            y0 = Math.max(y0, clip.getMinY());
+            x1 = Math.min(x1, clip.getMaxX());
+            y1 = Math.min(y1, clip.getMaxY());
+        }
+        final int n = bounds.length / 4;
+        final long[] visible = new long[(n + 63) >> 6];
+        if (x0 > x1 || y0 > y1) {
+            // the clip is outside the viewport
+            return visible;
+        }
+        for (int i = 0; i < n; i++) {
+            final int k = 4 * i;
+            if (bounds[k] <= x1 && bounds[k + 2] >= x0 && bounds[k + 1] <= y1 && bounds[k + 3] >= y0) {
+                visible[i >> 6] |= 1L << i;
+            }
+        }
+        return visible;
+    }
+
+    private static void check(final int n, final long seed) throws Exception {
+        final Random random = new Random(seed);
+        final float size = 1000f;
+        final float[] bounds = createBounds(random, n, size);
+        final MapIndex index = MapIndex.forCommands(bounds.clone());
+
+        for (int q = 0; q < 200; q++) {
+            final double scale = Math.pow(2.0, random.nextInt(9) - 4);
+            final AffineTransform at = AffineTransform.getScaleInstance(scale, scale);
+            at.translate(-random.nextDouble() * size, -random.nextDouble() * size);
+            if (random.nextInt(4) == 0) {
+                at.rotate(random.nextDouble() * Math.PI);
+            }
+            final Rectangle2D area = new Rectangle2D.Double(random.nextInt(100), random.nextInt(100),
+                    random.nextInt(400), random.nextInt(300));
+            final Rectangle2D clip = (random.nextBoolean()) ? null
+                    : new Rectangle2D.Double(random.nextDouble() * size, random.nextDouble() * size,
+                            random.nextDouble() * size, random.nextDouble() * size);
+
+            assertTrue(index.query(at, area, clip));
+            assertArrayEquals("query " + q + " (seed " + seed + ")", bruteForce(bounds, at, area, clip),
+                    index.getVisible());
+        }
+    }
+
+    @Test
+    public void testQuery() throws Exception {
+        // empty, single leaf, one level and several levels:
+        for (int n : new int[]{0, 1, 15, 16, 17, 300, 5000}) {
+            check(n, 31L * n + 7L);
+        }
+    }
+
+    @Test
+    public void testNonInvertible() {
+        final MapIndex index = MapIndex.forCommands(createBounds(new Random(1L), 100, 100f));
+        assertFalse(index.query(new AffineTransform(0.0, 0.0, 0.0, 0.0, 1.0, 1.0),
+                new Rectangle2D.Double(0.0, 0.0, 10.0, 10.0), null));
+    }
+}
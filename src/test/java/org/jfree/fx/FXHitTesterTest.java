@@ -0,0 +1,170 @@
+/* ============
+ * FXGraphics2D
+ * ============
+ * 
+ * (C)opyright 2014-2017, by Object Refinery Limited.
+ * 
+ * http://www.jfree.org/fxgraphics2d/index.html
+ *
+ * The FXGraphics2D class has been developed by Object Refinery Limited for 
+ * use in Orson Charts (http://www.object-refinery.com/orsoncharts) and
+ * JFreeChart (http://www.jfree.org/jfreechart).  It may be useful for other
+ * code that uses the Graphics2D API provided by Java2D.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *   - Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *   - Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *   - Neither the name of the Object Refinery Limited nor the
+ *     names of its contributors may be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL OBJECT REFINERY LIMITED BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ */
+
+
+package org.jfree.fx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.BasicStroke;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link FXHitTester} with the hit test of Java2D (the 
+ * intersection of the rectangle with the {@code Area} of the transformed 
+ * shape or stroked outline).  The shapes are polygons and the strokes have
+ * miter joins and butt caps, so that the flattening of the curves does not
+ * change the result.
+ */
+public class FXHitTesterTest {
+
+    private static Shape createPolygon(Random random, int windingRule) {
+        Path2D.Double path = new Path2D.Double(windingRule);
+        int n = 3 + random.nextInt(8);
+        path.moveTo(random.nextDouble() * 100.0, random.nextDouble() * 100.0);
+        for (int i = 1; i < n; i++) {
+            path.lineTo(random.nextDouble() * 100.0, 
+                    random.nextDouble() * 100.0);
+        }
+        if (random.nextBoolean()) {
+            path.closePath();
+        }
+        return path;
+    }
+
+    private static Shape createShape(Random random) {
+        switch (random.nextInt(3)) {
+            case 0:
+                return new Rectangle2D.Double(random.nextDouble() * 50.0, 
+                        random.nextDouble() * 50.0, 
+                        1.0 + random.nextDouble() * 50.0, 
+                        1.0 + random.nextDouble() * 50.0);
+            case 1:
+                return createPolygon(random, Path2D.WIND_NON_ZERO);
+            default:
+                return createPolygon(random, Path2D.WIND_EVEN_ODD);
+        }
+    }
+
+    private static AffineTransform createTransform(Random random) {
+        AffineTransform at = AffineTransform.getTranslateInstance(
+                random.nextDouble() * 20.0, random.nextDouble() * 20.0);
+        double scale = 0.5 + random.nextDouble() * 2.0;
+        at.scale(scale, scale);
+        if (random.nextBoolean()) {
+            at.rotate(random.nextDouble() * Math.PI);
+        }
+        return at;
+    }
+
+    private static boolean areaHit(Rectangle2D r, Shape s, Stroke stroke, 
+            AffineTransform at) {
+        Shape target = (stroke != null) ? stroke.createStrokedShape(s) : s;
+        return new Area(at.createTransformedShape(target)).intersects(r);
+    }
+
+    private static void check(boolean stroked, long seed) {
+        Random random = new Random(seed);
+        FXHitTester tester = new FXHitTester(new FXStrokeCache());
+        int hits = 0;
+        int count = 2000;
+        for (int i = 0; i < count; i++) {
+            Shape s = createShape(random);
+            Stroke stroke = stroked ? new BasicStroke(
+                    0.5f + random.nextFloat() * 8.0f, BasicStroke.CAP_BUTT, 
+                    BasicStroke.JOIN_MITER, 4.0f) : null;
+            AffineTransform at = createTransform(random);
+            // a small rectangle around the shape (in device space):
+            Rectangle2D b = at.createTransformedShape(s).getBounds2D();
+            Rectangle2D r = new Rectangle2D.Double(
+                    b.getX() - 10.0 + random.nextDouble() 
+                    * (b.getWidth() + 20.0), 
+                    b.getY() - 10.0 + random.nextDouble() 
+                    * (b.getHeight() + 20.0),
+                    0.5 + random.nextDouble() * 5.0, 
+                    0.5 + random.nextDouble() * 5.0);
+            boolean expected = areaHit(r, s, stroke, at);
+            assertEquals("test " + i + " (seed " + seed + ")", expected, 
+                    tester.hit(r, s, stroke, at));
+            if (expected) {
+                hits++;
+            }
+        }
+        // both outcomes are tested:
+        assertTrue("hits: " + hits, hits > count / 20 
+                && hits < count - count / 20);
+    }
+
+    @Test
+    public void testFilled() {
+        check(false, 1L);
+    }
+
+    @Test
+    public void testStroked() {
+        check(true, 2L);
+    }
+
+    @Test
+    public void testEmptyRectangle() {
+        FXHitTester tester = new FXHitTester(new FXStrokeCache());
+        Shape s = new Rectangle2D.Double(0.0, 0.0, 10.0, 10.0);
+        assertFalse(tester.hit(new Rectangle2D.Double(5.0, 5.0, 
+                0.0, 0.0), s, null, new AffineTransform()));
+    }
+
+    @Test
+    public void testRectangleInside() {
+        // no segment crosses the rectangle: found by the winding number
+        FXHitTester tester = new FXHitTester(new FXStrokeCache());
+        Shape s = new Rectangle2D.Double(0.0, 0.0, 100.0, 100.0);
+        assertTrue(tester.hit(new Rectangle2D.Double(40.0, 40.0, 2.0, 2.0), 
+                s, null, new AffineTransform()));
+        assertFalse(tester.hit(new Rectangle2D.Double(40.0, 40.0, 
+                2.0, 2.0), s, new BasicStroke(2.0f), new AffineTransform()));
+    }
+}